@@ -0,0 +1,332 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.analyze.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A heuristic two-level minimizer in the manner of Espresso, for truth
+ * tables too large for the exact method of {@link Implicant}. The rows of
+ * the table are kept as bitmaps, and each product term is a cube packed
+ * into a long: the mask of its unknown inputs in the upper half, and the
+ * values of its other inputs in the lower half.
+ *
+ * <p>The desired rows are first covered by expanding each into a prime
+ * cube, and the cover is made irredundant. Then it is reduced, expanded
+ * and made irredundant again for as long as that makes it cheaper. The
+ * result is a cover by prime implicants that is often, but not always, as
+ * small as the exact one.</p>
+ */
+class Espresso {
+	/** Bound on the number of reduce and expand passes over a cover. */
+	private static final int MAX_PASSES = 16;
+
+	private final int inputs;
+	private final int allInputs;
+	private final long[] on;  // rows where the table has the desired value
+	private final long[] off; // rows where it has the undesired value
+	private final int[] rank; // number of desired rows before each word of on
+	private final int[] counts; // number of cubes covering each desired row
+
+	private Espresso(int inputs, long[] on, long[] off) {
+		this.inputs = inputs;
+		this.allInputs = (1 << inputs) - 1;
+		this.on = on;
+		this.off = off;
+		this.rank = new int[on.length];
+		int total = 0;
+		for (int i = 0; i < on.length; i++) {
+			rank[i] = total;
+			total += Long.bitCount(on[i]);
+		}
+		this.counts = new int[total];
+	}
+
+	static List<Implicant> minimize(int format, Entry[] column) {
+		Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS
+			? Entry.ONE : Entry.ZERO;
+		Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
+
+		int inputs = Integer.numberOfTrailingZeros(column.length);
+		long[] on = new long[(column.length + 63) >>> 6];
+		long[] off = new long[on.length];
+		boolean knownFound = false;
+		for (int i = 0; i < column.length; i++) {
+			Entry entry = column[i];
+			if (entry == desired) {
+				on[i >>> 6] |= 1L << i;
+				knownFound = true;
+			} else if (entry == undesired) {
+				off[i >>> 6] |= 1L << i;
+				knownFound = true;
+			}
+		}
+		if (!knownFound) return null;
+		return new Espresso(inputs, on, off).minimize();
+	}
+
+	private List<Implicant> minimize() {
+		long[] cover = irredundant(expand(new long[0]));
+		long cost = cost(cover);
+		for (int pass = 0; pass < MAX_PASSES; pass++) {
+			long[] next = irredundant(expand(reduce(cover)));
+			long nextCost = cost(next);
+			if (nextCost >= cost) break;
+			cover = next;
+			cost = nextCost;
+		}
+
+		ArrayList<Implicant> ret = new ArrayList<Implicant>(cover.length);
+		for (long cube : cover) {
+			ret.add(new Implicant(unknowns(cube), values(cube)));
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
+	//
+	// the steps of the minimization
+	//
+	/**
+	 * Expands each cube of a cover, largest first, into a prime cube,
+	 * dropping any cube whose desired rows are already covered by those
+	 * expanded before it. Desired rows left uncovered are then expanded
+	 * in turn, so expanding an empty cover covers the whole table.
+	 */
+	private long[] expand(long[] cover) {
+		long[] todo = on.clone();
+		long[] ret = new long[cover.length + 16];
+		int size = 0;
+		for (int k = inputs; k >= 0; k--) {
+			for (long cube : cover) {
+				if (Integer.bitCount(unknowns(cube)) != k) continue;
+				if (!intersects(cube, todo)) continue;
+				cube = expandCube(cube, todo);
+				clear(cube, todo);
+				if (size == ret.length) ret = Arrays.copyOf(ret, 2 * size);
+				ret[size++] = cube;
+			}
+		}
+		for (int i = 0; i < todo.length; i++) {
+			while (todo[i] != 0) {
+				int row = (i << 6) | Long.numberOfTrailingZeros(todo[i]);
+				long cube = expandCube(cube(0, row), todo);
+				clear(cube, todo);
+				if (size == ret.length) ret = Arrays.copyOf(ret, 2 * size);
+				ret[size++] = cube;
+			}
+		}
+		return Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Raises the inputs of a cube one at a time, as long as it covers no
+	 * undesired row. Each step raises the input whose other half holds
+	 * the most rows still to be covered.
+	 */
+	private long expandCube(long cube, long[] todo) {
+		int blocked = 0;
+		while (true) {
+			int bound = allInputs & ~unknowns(cube) & ~blocked;
+			int best = 0;
+			int bestCount = -1;
+			for (int rest = bound; rest != 0; rest &= rest - 1) {
+				int bit = rest & -rest;
+				long mirror = cube(unknowns(cube), values(cube) ^ bit);
+				if (intersects(mirror, off)) {
+					// the mirror only grows, so this input stays blocked
+					blocked |= bit;
+				} else {
+					int count = count(mirror, todo);
+					if (count > bestCount) {
+						best = bit;
+						bestCount = count;
+					}
+				}
+			}
+			if (best == 0) return cube;
+			cube = cube(unknowns(cube) | best, values(cube) & ~best);
+		}
+	}
+
+	/**
+	 * Removes cubes from a cover, smallest first, as long as every desired
+	 * row stays covered. Leaves the counts for the cover returned.
+	 */
+	private long[] irredundant(long[] cover) {
+		Arrays.fill(counts, 0);
+		for (long cube : cover) addCounts(cube, 1);
+
+		long[] ret = new long[cover.length];
+		int size = 0;
+		for (int k = 0; k <= inputs; k++) {
+			for (long cube : cover) {
+				if (Integer.bitCount(unknowns(cube)) != k) continue;
+				if (coversAlone(cube)) {
+					ret[size++] = cube;
+				} else {
+					addCounts(cube, -1);
+				}
+			}
+		}
+		return Arrays.copyOf(ret, size);
+	}
+
+	/**
+	 * Shrinks each cube of an irredundant cover, largest first, to the
+	 * smallest cube containing the desired rows that no other cube
+	 * covers, so that the next expansion may find different primes.
+	 * Expects the counts left by {@link #irredundant}.
+	 */
+	private long[] reduce(long[] cover) {
+		long[] ret = new long[cover.length];
+		int size = 0;
+		for (int k = inputs; k >= 0; k--) {
+			for (long cube : cover) {
+				if (Integer.bitCount(unknowns(cube)) != k) continue;
+				long reduced = supercubeOfSoleRows(cube);
+				addCounts(cube, -1);
+				if (reduced != -1L) {
+					addCounts(reduced, 1);
+					ret[size++] = reduced;
+				}
+			}
+		}
+		return Arrays.copyOf(ret, size);
+	}
+
+	private long cost(long[] cover) {
+		long literals = 0;
+		for (long cube : cover) {
+			literals += Integer.bitCount(allInputs & ~unknowns(cube));
+		}
+		return ((long) cover.length << 32) + literals;
+	}
+
+	//
+	// operations on the rows of a cube
+	//
+	private static long cube(int unknowns, int values) {
+		return ((long) unknowns << 32) | (values & ~unknowns & 0xFFFFFFFFL);
+	}
+
+	private static int unknowns(long cube) {
+		return (int) (cube >>> 32);
+	}
+
+	private static int values(long cube) {
+		return (int) cube;
+	}
+
+	/** Returns the mask of the rows of a cube within each word of a
+	 * bitmap. */
+	private static long wordMask(long cube) {
+		int unknowns = unknowns(cube) & 63;
+		long ret = 1L << (values(cube) & 63);
+		for (int rest = unknowns; rest != 0; rest &= rest - 1) {
+			ret |= ret << (rest & -rest);
+		}
+		return ret;
+	}
+
+	/** Returns the next word of a cube after <code>sub</code>, or 0 after
+	 * the last, where <code>sub</code> ranges over the subsets of the
+	 * unknown inputs above those within a word. */
+	private static int nextSubset(int sub, long cube) {
+		int high = unknowns(cube) >>> 6;
+		return (sub - high) & high;
+	}
+
+	private static int word(int sub, long cube) {
+		return (values(cube) >>> 6) | sub;
+	}
+
+	private static boolean intersects(long cube, long[] bits) {
+		long mask = wordMask(cube);
+		int sub = 0;
+		do {
+			if ((bits[word(sub, cube)] & mask) != 0) return true;
+			sub = nextSubset(sub, cube);
+		} while (sub != 0);
+		return false;
+	}
+
+	private static int count(long cube, long[] bits) {
+		long mask = wordMask(cube);
+		int ret = 0;
+		int sub = 0;
+		do {
+			ret += Long.bitCount(bits[word(sub, cube)] & mask);
+			sub = nextSubset(sub, cube);
+		} while (sub != 0);
+		return ret;
+	}
+
+	private static void clear(long cube, long[] bits) {
+		long mask = ~wordMask(cube);
+		int sub = 0;
+		do {
+			bits[word(sub, cube)] &= mask;
+			sub = nextSubset(sub, cube);
+		} while (sub != 0);
+	}
+
+	private void addCounts(long cube, int delta) {
+		long mask = wordMask(cube);
+		int sub = 0;
+		do {
+			int w = word(sub, cube);
+			long word = on[w];
+			for (long rest = word & mask; rest != 0; rest &= rest - 1) {
+				long below = (rest & -rest) - 1;
+				counts[rank[w] + Long.bitCount(word & below)] += delta;
+			}
+			sub = nextSubset(sub, cube);
+		} while (sub != 0);
+	}
+
+	/** Returns whether a cube covers some desired row no other cube
+	 * does. */
+	private boolean coversAlone(long cube) {
+		long mask = wordMask(cube);
+		int sub = 0;
+		do {
+			int w = word(sub, cube);
+			long word = on[w];
+			for (long rest = word & mask; rest != 0; rest &= rest - 1) {
+				long below = (rest & -rest) - 1;
+				if (counts[rank[w] + Long.bitCount(word & below)] == 1) return true;
+			}
+			sub = nextSubset(sub, cube);
+		} while (sub != 0);
+		return false;
+	}
+
+	/** Returns the smallest cube containing the desired rows that only
+	 * the given cube covers, or -1 if there are none. */
+	private long supercubeOfSoleRows(long cube) {
+		long mask = wordMask(cube);
+		int and = -1;
+		int or = 0;
+		int sub = 0;
+		do {
+			int w = word(sub, cube);
+			long word = on[w];
+			for (long rest = word & mask; rest != 0; rest &= rest - 1) {
+				long low = rest & -rest;
+				if (counts[rank[w] + Long.bitCount(word & (low - 1))] == 1) {
+					int row = (w << 6) | Long.numberOfTrailingZeros(low);
+					and &= row;
+					or |= row;
+				}
+			}
+			sub = nextSubset(sub, cube);
+		} while (sub != 0);
+		if (and == -1) return -1L;
+		return cube(or & ~and, and);
+	}
+}
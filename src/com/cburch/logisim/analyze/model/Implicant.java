@@ -13,6 +13,10 @@ import java.util.List;
 import java.util.Map;
 
 public class Implicant implements Comparable<Implicant> {
+	/** Tables with more inputs than this are minimized heuristically, by
+	 * {@link Espresso}, rather than exactly. */
+	static final int EXACT_MAX_INPUTS = 10;
+
 	static Implicant MINIMAL_IMPLICANT = new Implicant(0, -1);
 	static List<Implicant> MINIMAL_LIST = Arrays.asList(new Implicant[] { MINIMAL_IMPLICANT });
 
@@ -51,7 +55,7 @@ public class Implicant implements Comparable<Implicant> {
 	private int unknowns;
 	private int values;
 	
-	private Implicant(int unknowns, int values) {
+	Implicant(int unknowns, int values) {
 		this.unknowns = unknowns;
 		this.values = values;
 	}
@@ -145,6 +149,17 @@ public class Implicant implements Comparable<Implicant> {
 		int column = model.getOutputs().indexOf(variable);
 		if (column < 0) return Collections.emptyList();
 		
+		Entry[] entries = table.getOutputColumn(column);
+		if (table.getInputColumnCount() > EXACT_MAX_INPUTS) {
+			return Espresso.minimize(format, entries);
+		} else {
+			return computeExact(format, entries);
+		}
+	}
+	
+	/** Computes a minimal cover by the Quine-McCluskey method, whose cost
+	 * grows too quickly for use on large tables. */
+	static List<Implicant> computeExact(int format, Entry[] column) {
 		Entry desired = format == AnalyzerModel.FORMAT_SUM_OF_PRODUCTS
 			? Entry.ONE : Entry.ZERO;
 		Entry undesired = desired == Entry.ONE ? Entry.ZERO : Entry.ONE;
@@ -154,8 +169,8 @@ public class Implicant implements Comparable<Implicant> {
 		HashMap<Implicant,Entry> base = new HashMap<Implicant,Entry>();
 		HashSet<Implicant> toCover = new HashSet<Implicant>();
 		boolean knownFound = false;
-		for (int i = 0; i < table.getRowCount(); i++) {
-			Entry entry = table.getOutputEntry(i, column);
+		for (int i = 0; i < column.length; i++) {
+			Entry entry = column[i];
 			if (entry == undesired) {
 				knownFound = true;
 			} else if (entry == desired) {
@@ -0,0 +1,129 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * A single measurement of the {@link SimulationBenchmarks} suite. The
+ * harness calls {@link #setUp} once, then calls {@link #run} repeatedly
+ * through a number of warmup iterations followed by a number of measured
+ * iterations, each lasting a fixed time, and reports the mean number of
+ * operations per second over the measured iterations, along with the
+ * bytes the measuring thread allocated per operation.
+ */
+public abstract class Benchmark {
+	/** The outcome of measuring a benchmark, in operations per second. */
+	public static class Result {
+		private String name;
+		private double[] scores;
+		private double allocated;
+
+		Result(String name, double[] scores, double allocated) {
+			this.name = name;
+			this.scores = scores;
+			this.allocated = allocated;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getCount() {
+			return scores.length;
+		}
+
+		public double getScore() {
+			double sum = 0.0;
+			for (double s : scores) sum += s;
+			return sum / scores.length;
+		}
+
+		/** Returns the half-width of a 99% confidence interval around
+		 * the score, using a normal approximation. */
+		public double getError() {
+			if (scores.length < 2) return 0.0;
+			double mean = getScore();
+			double sq = 0.0;
+			for (double s : scores) sq += (s - mean) * (s - mean);
+			double stddev = Math.sqrt(sq / (scores.length - 1));
+			return 2.576 * stddev / Math.sqrt(scores.length);
+		}
+
+		/** Returns the bytes allocated per operation by the thread that
+		 * ran the measured iterations, or NaN if the JVM does not count
+		 * them. Work handed to other threads is not included. */
+		public double getAllocated() {
+			return allocated;
+		}
+	}
+
+	private String name;
+	private volatile Object sink; // keeps results of run from being discarded
+	private long runs; // number of runs in the last iteration
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** Prepares the benchmark; not included in any measurement. */
+	public void setUp() throws Exception { }
+
+	/**
+	 * Performs the measured work, returning something computed from it
+	 * so that the work cannot be optimized away.
+	 */
+	public abstract Object run();
+
+	/** Returns how many operations one call to {@link #run} counts as. */
+	public int getOperationsPerRun() {
+		return 1;
+	}
+
+	public Result measure(int warmups, int iterations, long iterationMillis) {
+		for (int i = 0; i < warmups; i++) {
+			iterate(iterationMillis);
+		}
+		double[] scores = new double[iterations];
+		long bytes0 = getAllocatedBytes();
+		long ops = 0;
+		for (int i = 0; i < iterations; i++) {
+			scores[i] = iterate(iterationMillis);
+			ops += runs * getOperationsPerRun();
+		}
+		long bytes1 = getAllocatedBytes();
+		double allocated = bytes0 < 0 || bytes1 < 0 || ops == 0
+			? Double.NaN : (double) (bytes1 - bytes0) / ops;
+		return new Result(name, scores, allocated);
+	}
+
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+			if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled()) {
+				return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	private double iterate(long millis) {
+		runs = 0;
+		long start = System.nanoTime();
+		long end = start + millis * 1000000L;
+		long now;
+		do {
+			sink = run();
+			runs++;
+			now = System.nanoTime();
+		} while (now < end);
+		return (double) runs * getOperationsPerRun() * 1e9 / (now - start);
+	}
+}
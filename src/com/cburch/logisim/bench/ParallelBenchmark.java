@@ -0,0 +1,273 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.SubcircuitFactory;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.proj.Project;
+
+/**
+ * Measures how parallel propagation scales with the number of processors.
+ * The main circuit of a file is instantiated several times side by side
+ * in a new circuit, which is then simulated for a number of ticks, first
+ * sequentially and then in parallel on fork/join pools of 1, 2, 4 and 8
+ * threads. Each parallel run is checked to end with exactly the values
+ * of the sequential run. Then, with the random noise turned off, the
+ * circuit is simulated sequentially and on each pool, and the events
+ * processed are compared one by one, down to their times and serial
+ * numbers.
+ *
+ * <pre>java -cp logisim.jar com.cburch.logisim.bench.ParallelBenchmark
+ *     file.circ [copies [ticks]]</pre>
+ */
+public class ParallelBenchmark {
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("usage: ParallelBenchmark file.circ [copies [ticks]]"); //OK
+			System.exit(-1);
+		}
+		int copies = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		Loader loader = new Loader(null);
+		LogisimFile file = loader.openLogisimFile(new File(args[0]));
+		Circuit top = replicate(file.getMainCircuit(), copies);
+		Project proj = new Project(file);
+		System.out.println(args[0] + ": " + copies + " copies, " //OK
+				+ ticks + " ticks, " + Runtime.getRuntime().availableProcessors()
+				+ " processors");
+
+		run(proj, top, ticks, 0); // lets the JIT compiler settle
+		Result base = run(proj, top, ticks, 0);
+		System.out.println(base.describe("sequential", base)); //OK
+		boolean same = true;
+		for (int threads : THREADS) {
+			Result res = run(proj, top, ticks, threads);
+			System.out.println(res.describe(threads + " threads", base)); //OK
+			same &= res.hash == base.hash;
+		}
+		for (int threads : THREADS) {
+			String diff = compareEvents(proj, top, ticks, threads);
+			System.out.println(String.format("%-12s %s", threads + " threads", //OK
+					diff == null ? "same events" : "DIFFERENT EVENTS: " + diff));
+			same &= diff == null;
+		}
+		System.exit(same ? 0 : 1);
+	}
+
+	private static class Result {
+		long nanos;
+		int ticks;
+		long hash;
+
+		String describe(String name, Result base) {
+			double secs = nanos / 1e9;
+			return String.format("%-12s %10.1f ticks/s  speedup %5.2f  %s",
+					name, ticks / secs, (double) base.nanos / nanos,
+					hash == base.hash ? "same values" : "DIFFERENT VALUES");
+		}
+	}
+
+	private static Circuit replicate(Circuit circuit, int copies) {
+		Circuit ret = new Circuit("parallel benchmark");
+		SubcircuitFactory factory = circuit.getSubcircuitFactory();
+		CircuitMutation xn = new CircuitMutation(ret);
+		int y = 0;
+		for (int i = 0; i < copies; i++) {
+			AttributeSet attrs = factory.createAttributeSet();
+			int height = factory.getOffsetBounds(attrs).getHeight();
+			xn.add(factory.createComponent(Location.create(1000, y + 1000), attrs));
+			y += height + 100; // far enough apart that no ports coincide
+		}
+		xn.execute();
+		return ret;
+	}
+
+	private static Result run(Project proj, Circuit top, final int ticks,
+			int threads) throws Exception {
+		AttributeSet opts = proj.getOptions().getAttributeSet();
+		opts.setValue(Options.sim_parallel_attr, Boolean.valueOf(threads > 0));
+		final CircuitState state = new CircuitState(proj, top);
+		final Propagator prop = state.getPropagator();
+		Callable<Result> sim = new Callable<Result>() {
+			public Result call() {
+				prop.propagate();
+				for (int i = 0; i < ticks / 10; i++) { // warm up
+					prop.tick();
+					prop.propagate();
+				}
+				Result ret = new Result();
+				long start = System.nanoTime();
+				for (int i = 0; i < ticks; i++) {
+					prop.tick();
+					prop.propagate();
+				}
+				ret.nanos = System.nanoTime() - start;
+				ret.ticks = ticks;
+				ret.hash = hash(state);
+				return ret;
+			}
+		};
+		if (threads == 0) return sim.call();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			return pool.submit(sim).get();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/** Describes each event processed by a propagator independently of
+	 * the state objects, and hands the description on. */
+	private static abstract class EventLog implements Propagator.EventObserver {
+		private IdentityHashMap<CircuitState,String> paths
+			= new IdentityHashMap<CircuitState,String>();
+		int tick = 0;
+		String difference = null;
+
+		public void eventProcessed(int time, int serialNumber,
+				CircuitState state, Location loc, Component cause, Value val) {
+			if (difference != null) return;
+			try {
+				logEvent("tick " + tick + ": " + time + "/" + serialNumber
+						+ " " + getPath(state) + loc + " <- "
+						+ cause.getFactory().getName() + cause.getLocation()
+						+ " = " + val);
+			} catch (IOException e) {
+				difference = e.toString();
+			}
+		}
+
+		abstract void logEvent(String event) throws IOException;
+
+		// the locations of the subcircuit components leading to a state
+		private String getPath(CircuitState state) {
+			String ret = paths.get(state);
+			if (ret == null) {
+				CircuitState parent = state.getParentState();
+				ret = "";
+				if (parent != null) {
+					for (Component comp : parent.getCircuit().getNonWires()) {
+						if (parent.getData(comp) == state) {
+							ret = getPath(parent) + comp.getLocation() + "/";
+							break;
+						}
+					}
+				}
+				paths.put(state, ret);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Simulates the circuit sequentially and then in parallel, returning a
+	 * description of the first event in which they differ, or null if
+	 * every event is the same. The runs are not interleaved, since an
+	 * invalidation in one would reach the states of the other; the events
+	 * of the sequential run are kept in a temporary file meanwhile.
+	 */
+	private static String compareEvents(Project proj, Circuit top,
+			final int ticks, int threads) throws Exception {
+		final AttributeSet opts = proj.getOptions().getAttributeSet();
+		Integer rand = opts.getValue(Options.sim_rand_attr);
+		opts.setValue(Options.sim_rand_attr, Integer.valueOf(0));
+		File temp = File.createTempFile("events", ".txt");
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			final BufferedWriter out = new BufferedWriter(new FileWriter(temp));
+			EventLog seqLog = new EventLog() {
+				@Override
+				void logEvent(String event) throws IOException {
+					out.write(event);
+					out.newLine();
+				}
+			};
+			opts.setValue(Options.sim_parallel_attr, Boolean.FALSE);
+			simulate(new CircuitState(proj, top), seqLog, ticks);
+			out.close();
+			if (seqLog.difference != null) return seqLog.difference;
+
+			final BufferedReader in = new BufferedReader(new FileReader(temp));
+			final EventLog parLog = new EventLog() {
+				@Override
+				void logEvent(String event) throws IOException {
+					String expected = in.readLine();
+					if (!event.equals(expected)) {
+						difference = "sequential " + (expected == null ? "nothing" : expected)
+							+ ", parallel " + event;
+					}
+				}
+			};
+			opts.setValue(Options.sim_parallel_attr, Boolean.TRUE);
+			final CircuitState parState = new CircuitState(proj, top);
+			pool.submit(new Runnable() {
+				public void run() {
+					simulate(parState, parLog, ticks);
+				}
+			}).get();
+			String extra = in.readLine();
+			in.close();
+			if (parLog.difference == null && extra != null) {
+				parLog.difference = "sequential " + extra + ", parallel nothing";
+			}
+			return parLog.difference;
+		} finally {
+			pool.shutdown();
+			temp.delete();
+			opts.setValue(Options.sim_rand_attr, rand);
+		}
+	}
+
+	private static void simulate(CircuitState state, EventLog log, int ticks) {
+		Propagator prop = state.getPropagator();
+		prop.setEventObserver(log);
+		prop.propagate();
+		for (int i = 1; i <= ticks && log.difference == null; i++) {
+			log.tick = i;
+			prop.tick();
+			prop.propagate();
+		}
+		prop.setEventObserver(null);
+	}
+
+	private static long hash(CircuitState state) {
+		long ret = state.getCircuit().getName().hashCode();
+		for (Component comp : state.getCircuit().getNonWires()) {
+			long h = comp.getLocation().hashCode();
+			for (EndData end : comp.getEnds()) {
+				h = 31 * h + state.getValue(end.getLocation()).hashCode();
+			}
+			ret += h * h; // independent of the order of components
+		}
+		for (CircuitState sub : new ArrayList<CircuitState>(state.getSubstates())) {
+			ret += 37 * hash(sub);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,288 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+
+import com.cburch.logisim.analyze.model.MinimizerBenchmarks;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.WiresBenchmarks;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+
+/**
+ * The benchmark suite for the simulation core: throughput of whole
+ * circuits from the <code>Tests</code> directory, of the basic
+ * operations on values, of wire handling, and of truth table
+ * minimization. Each benchmark is run in a JVM of its own, with warmup
+ * iterations before those measured, so that the numbers of different
+ * builds can be compared. Besides its throughput, each reports the bytes
+ * allocated per operation, as a check that steady-state simulation keeps
+ * off the heap.
+ *
+ * <pre>java -cp logisim.jar com.cburch.logisim.bench.SimulationBenchmarks
+ *     [-dir Tests] [-wi 5] [-i 10] [-t 1000] [-csv] [-nofork] [name...]</pre>
+ *
+ * Names select the benchmarks whose name starts with any of them.
+ */
+public class SimulationBenchmarks {
+	private static final String[] NAMES = {
+		"propagate.processor", "propagate.pipe", "propagate.multdiv",
+		"value.combine", "value.and", "value.or", "value.xor",
+		"wires.propagate", "wires.bundleMap", "wires.bundleUpdate",
+		"minimize.exact10", "minimize.heuristic10",
+		"minimize.heuristic16", "minimize.heuristic24",
+		"minimize.random10", "minimize.random16",
+	};
+
+	private static final String PROCESSOR_FILE = "lrv32im-processor_Test.circ";
+	private static final String PIPE_FILE = "lrv32im-pipe_Test.circ";
+	private static final String MULTDIV_FILE = "MultDiv_Test.circ";
+
+	/** Ticks simulated before measuring, so that the circuit is past its
+	 * reset and the substates all exist. */
+	private static final int SETTLE_TICKS = 200;
+
+	/** Number of values operated on by each run of a value benchmark. */
+	private static final int VALUE_COUNT = 1024;
+
+	private static File dir = new File("Tests");
+	private static int warmups = 5;
+	private static int iterations = 10;
+	private static long iterationMillis = 1000;
+	private static boolean csv = false;
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		boolean fork = true;
+		String single = null;
+		ArrayList<String> filters = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if (arg.equals("-dir") && i + 1 < args.length) {
+				dir = new File(args[++i]);
+			} else if (arg.equals("-wi") && i + 1 < args.length) {
+				warmups = Integer.parseInt(args[++i]);
+			} else if (arg.equals("-i") && i + 1 < args.length) {
+				iterations = Integer.parseInt(args[++i]);
+			} else if (arg.equals("-t") && i + 1 < args.length) {
+				iterationMillis = Long.parseLong(args[++i]);
+			} else if (arg.equals("-csv")) {
+				csv = true;
+			} else if (arg.equals("-nofork")) {
+				fork = false;
+			} else if (arg.equals("-single") && i + 1 < args.length) {
+				single = args[++i];
+			} else if (arg.startsWith("-")) {
+				System.err.println("usage: SimulationBenchmarks [-dir directory] " //OK
+						+ "[-wi warmups] [-i iterations] [-t millis] [-csv] "
+						+ "[-nofork] [name...]");
+				System.exit(-1);
+			} else {
+				filters.add(arg);
+			}
+		}
+
+		if (single != null) { // we are the forked JVM for one benchmark
+			printResult(runBenchmark(single));
+			System.exit(0);
+		}
+
+		printHeader();
+		int failures = 0;
+		for (String name : NAMES) {
+			if (!matches(name, filters)) continue;
+			if (fork) {
+				if (!runForked(name)) failures++;
+			} else {
+				printResult(runBenchmark(name));
+			}
+		}
+		System.exit(failures == 0 ? 0 : 1);
+	}
+
+	private static boolean matches(String name, ArrayList<String> filters) {
+		if (filters.isEmpty()) return true;
+		for (String filter : filters) {
+			if (name.startsWith(filter)) return true;
+		}
+		return false;
+	}
+
+	private static boolean runForked(String name) throws Exception {
+		String java = System.getProperty("java.home") + File.separator
+			+ "bin" + File.separator + "java";
+		ArrayList<String> cmd = new ArrayList<String>();
+		cmd.add(java);
+		cmd.add("-cp");
+		cmd.add(System.getProperty("java.class.path"));
+		cmd.add(SimulationBenchmarks.class.getName());
+		cmd.add("-dir");
+		cmd.add(dir.getPath());
+		cmd.add("-wi");
+		cmd.add("" + warmups);
+		cmd.add("-i");
+		cmd.add("" + iterations);
+		cmd.add("-t");
+		cmd.add("" + iterationMillis);
+		if (csv) cmd.add("-csv");
+		cmd.add("-single");
+		cmd.add(name);
+		ProcessBuilder builder = new ProcessBuilder(cmd);
+		builder.redirectErrorStream(true);
+		Process proc = builder.start();
+		BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
+		String line;
+		String last = null;
+		while ((line = in.readLine()) != null) last = line;
+		int code = proc.waitFor();
+		if (code != 0 || last == null) {
+			System.err.println(name + ": failed" + (last == null ? "" : ": " + last)); //OK
+			return false;
+		}
+		// anything printed by the simulated circuit precedes the result
+		System.out.println(last); //OK
+		return true;
+	}
+
+	private static Benchmark.Result runBenchmark(String name) throws Exception {
+		Benchmark bench = createBenchmark(name);
+		bench.setUp();
+		return bench.measure(warmups, iterations, iterationMillis);
+	}
+
+	private static Benchmark createBenchmark(String name) throws Exception {
+		if (name.equals("propagate.processor")) {
+			return createPropagate(name, PROCESSOR_FILE);
+		} else if (name.equals("propagate.pipe")) {
+			return createPropagate(name, PIPE_FILE);
+		} else if (name.equals("propagate.multdiv")) {
+			return createPropagate(name, MULTDIV_FILE);
+		} else if (name.startsWith("value.")) {
+			return createValue(name, name.substring("value.".length()));
+		} else if (name.equals("wires.propagate")) {
+			return WiresBenchmarks.createPropagate(name, loadSettled(PROCESSOR_FILE));
+		} else if (name.equals("wires.bundleMap")) {
+			return WiresBenchmarks.createBundleMap(name,
+					loadSettled(PROCESSOR_FILE).getCircuit());
+		} else if (name.equals("wires.bundleUpdate")) {
+			return WiresBenchmarks.createBundleUpdate(name,
+					loadSettled(PROCESSOR_FILE).getCircuit());
+		} else if (name.startsWith("minimize.exact")) {
+			int inputs = Integer.parseInt(name.substring("minimize.exact".length()));
+			return MinimizerBenchmarks.createMinimize(name, inputs, true, false);
+		} else if (name.startsWith("minimize.heuristic")) {
+			int inputs = Integer.parseInt(name.substring("minimize.heuristic".length()));
+			return MinimizerBenchmarks.createMinimize(name, inputs, false, false);
+		} else if (name.startsWith("minimize.random")) {
+			int inputs = Integer.parseInt(name.substring("minimize.random".length()));
+			return MinimizerBenchmarks.createMinimize(name, inputs, false, true);
+		} else {
+			throw new IllegalArgumentException("unknown benchmark " + name);
+		}
+	}
+
+	/** Loads a circuit file and simulates its main circuit for a while,
+	 * returning the state in which it was simulated. */
+	private static CircuitState loadSettled(String fileName) throws Exception {
+		Loader loader = new Loader(null);
+		LogisimFile file = loader.openLogisimFile(new File(dir, fileName));
+		Project proj = new Project(file);
+		CircuitState state = new CircuitState(proj, file.getMainCircuit());
+		Propagator prop = state.getPropagator();
+		prop.propagate();
+		for (int i = 0; i < SETTLE_TICKS; i++) {
+			prop.tick();
+			prop.propagate();
+		}
+		return state;
+	}
+
+	private static Benchmark createPropagate(String name, String fileName)
+			throws Exception {
+		final Propagator prop = loadSettled(fileName).getPropagator();
+		return new Benchmark(name) {
+			@Override
+			public Object run() {
+				prop.tick();
+				prop.propagate();
+				return prop;
+			}
+		};
+	}
+
+	private static Benchmark createValue(String name, final String op) {
+		// a fixed mix of values, mostly defined, of various widths
+		Random rand = new Random(0);
+		Value[] bits = { Value.FALSE, Value.TRUE, Value.FALSE, Value.TRUE,
+				Value.FALSE, Value.TRUE, Value.UNKNOWN, Value.ERROR };
+		final Value[] as = new Value[VALUE_COUNT];
+		final Value[] bs = new Value[VALUE_COUNT];
+		for (int i = 0; i < VALUE_COUNT; i++) {
+			int width = 1 + rand.nextInt(32);
+			Value[] a = new Value[width];
+			Value[] b = new Value[width];
+			for (int j = 0; j < width; j++) {
+				a[j] = bits[rand.nextInt(bits.length)];
+				b[j] = bits[rand.nextInt(bits.length)];
+			}
+			as[i] = Value.create(a);
+			bs[i] = Value.create(b);
+		}
+		return new Benchmark(name) {
+			@Override
+			public Object run() {
+				Value ret = null;
+				if (op.equals("combine")) {
+					for (int i = 0; i < VALUE_COUNT; i++) ret = as[i].combine(bs[i]);
+				} else if (op.equals("and")) {
+					for (int i = 0; i < VALUE_COUNT; i++) ret = as[i].and(bs[i]);
+				} else if (op.equals("or")) {
+					for (int i = 0; i < VALUE_COUNT; i++) ret = as[i].or(bs[i]);
+				} else {
+					for (int i = 0; i < VALUE_COUNT; i++) ret = as[i].xor(bs[i]);
+				}
+				return ret;
+			}
+
+			@Override
+			public int getOperationsPerRun() {
+				return VALUE_COUNT;
+			}
+		};
+	}
+
+	private static void printHeader() {
+		if (csv) {
+			System.out.println("benchmark,count,score,error,unit,alloc"); //OK
+		} else {
+			System.out.println(String.format(Locale.ROOT, "%-22s %5s %16s %14s  %-5s %12s", //OK
+					"Benchmark", "Cnt", "Score", "Error", "Units", "Alloc B/op"));
+		}
+	}
+
+	private static void printResult(Benchmark.Result result) {
+		if (csv) {
+			System.out.println(String.format(Locale.ROOT, "%s,%d,%.3f,%.3f,ops/s,%.1f", //OK
+					result.getName(), Integer.valueOf(result.getCount()),
+					Double.valueOf(result.getScore()),
+					Double.valueOf(result.getError()),
+					Double.valueOf(result.getAllocated())));
+		} else {
+			System.out.println(String.format(Locale.ROOT, "%-22s %5d %16.3f +- %12.3f  ops/s %12.1f", //OK
+					result.getName(), Integer.valueOf(result.getCount()),
+					Double.valueOf(result.getScore()),
+					Double.valueOf(result.getError()),
+					Double.valueOf(result.getAllocated())));
+		}
+	}
+}
@@ -12,6 +12,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import com.cburch.logisim.analyze.model.AnalyzerModel;
 import com.cburch.logisim.analyze.model.Entry;
@@ -30,6 +33,9 @@ import com.cburch.logisim.std.wiring.Pin;
 
 public class Analyze {
 	private static final int MAX_ITERATIONS = 100;
+	/** Below this many rows per thread, a truth table is evaluated on the
+	 * calling thread alone. */
+	private static final int MIN_ROWS_PER_TASK = 256;
 	
 	private Analyze() { }
 	
@@ -321,8 +327,107 @@ public class Analyze {
 		int rowCount = 1 << inputCount;
 		Entry[][] columns = new Entry[outputPins.size()][rowCount];
 		
+		CompiledCircuit program = circuit.getCompiled();
+		if (program != null) {
+			computeCompiledRows(program, proj, circuit, inputPins, outputPins, columns);
+		} else {
+			computeSimulatedRows(proj, circuit, inputPins, outputPins, columns);
+		}
+		
+		model.setVariables(inputNames, outputNames);
+		for (int i = 0; i < columns.length; i++) {
+			model.getTruthTable().setOutputColumn(i, columns[i]);
+		}
+	}
+
+	/**
+	 * Fills in the truth table of a purely combinational circuit by
+	 * evaluating its compiled form once per row. The rows are split among
+	 * the threads of the common fork/join pool, each evaluating a frame of
+	 * its own, so that large tables take a fraction of the time, unless
+	 * the program changes its components as it evaluates them.
+	 */
+	private static void computeCompiledRows(CompiledCircuit program,
+			Project proj, Circuit circuit, ArrayList<Instance> inputPins,
+			ArrayList<Instance> outputPins, Entry[][] columns) {
+		int rowCount = 1 << inputPins.size();
+		int tasks = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(),
+				rowCount / MIN_ROWS_PER_TASK));
+		if (program.mustEvaluateSerially()) {
+			// a component such as a probe changes itself as it evaluates
+			tasks = 1;
+		}
+		ArrayList<TableRows> work = new ArrayList<TableRows>(tasks);
+		for (int t = 0; t < tasks; t++) {
+			// states are created here, since each registers with the circuit
+			CircuitState state = new CircuitState(proj, circuit);
+			CompiledCircuit.Frame frame = program.createDetachedFrame(state);
+			work.add(new TableRows(frame, inputPins, outputPins, columns,
+					(int) ((long) rowCount * t / tasks),
+					(int) ((long) rowCount * (t + 1) / tasks)));
+		}
+		if (tasks == 1) {
+			work.get(0).compute();
+		} else {
+			ForkJoinTask.invokeAll(work);
+		}
+	}
+
+	/** Evaluates a range of rows of a truth table in a frame of its own. */
+	private static class TableRows extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final CompiledCircuit.Frame frame;
+		private final ArrayList<Instance> inputPins;
+		private final ArrayList<Instance> outputPins;
+		private final Entry[][] columns;
+		private final int from;
+		private final int to;
+
+		TableRows(CompiledCircuit.Frame frame, ArrayList<Instance> inputPins,
+				ArrayList<Instance> outputPins, Entry[][] columns,
+				int from, int to) {
+			this.frame = frame;
+			this.inputPins = inputPins;
+			this.outputPins = outputPins;
+			this.columns = columns;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int inputCount = inputPins.size();
+			for (int i = from; i < to; i++) {
+				for (int j = 0; j < inputCount; j++) {
+					boolean value = TruthTable.isInputSet(i, j, inputCount);
+					frame.setInput(inputPins.get(j), value ? Value.TRUE : Value.FALSE);
+				}
+				frame.evaluate();
+				for (int j = 0; j < columns.length; j++) {
+					columns[j][i] = toEntry(frame.getOutput(outputPins.get(j)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills in the truth table of any other circuit by simulating each
+	 * row. A single state is reset and driven with each row's inputs in
+	 * turn, which settles just as a new state would without building the
+	 * state and its substates again. The rows are simulated one after
+	 * another, since events such as a probe invalidating itself reach
+	 * every state of the circuit.
+	 */
+	private static void computeSimulatedRows(Project proj, Circuit circuit,
+			ArrayList<Instance> inputPins, ArrayList<Instance> outputPins,
+			Entry[][] columns) {
+		int inputCount = inputPins.size();
+		int rowCount = 1 << inputCount;
+		CircuitState circuitState = new CircuitState(proj, circuit);
+		Propagator prop = circuitState.getPropagator();
 		for (int i = 0; i < rowCount; i++) {
-			CircuitState circuitState = new CircuitState(proj, circuit);
+			if (i > 0) prop.reset();
 			for (int j = 0; j < inputCount; j++) {
 				Instance pin = inputPins.get(j);
 				InstanceState pinState = circuitState.getInstanceState(pin);
@@ -330,7 +435,6 @@ public class Analyze {
 				Pin.FACTORY.setValue(pinState, value ? Value.TRUE : Value.FALSE);
 			}
 			
-			Propagator prop = circuitState.getPropagator();
 			prop.propagate();
 			/* TODO for the SimulatorPrototype class
 			do {
@@ -346,20 +450,17 @@ public class Analyze {
 				for (int j = 0; j < columns.length; j++) {
 					Instance pin = outputPins.get(j);
 					InstanceState pinState = circuitState.getInstanceState(pin);
-					Entry out;
-					Value outValue = Pin.FACTORY.getValue(pinState).get(0);
-					if (outValue == Value.TRUE) out = Entry.ONE;
-					else if (outValue == Value.FALSE) out = Entry.ZERO;
-					else if (outValue == Value.ERROR) out = Entry.BUS_ERROR;
-					else out = Entry.DONT_CARE;
-					columns[j][i] = out;
+					columns[j][i] = toEntry(Pin.FACTORY.getValue(pinState));
 				}
 			}
 		}
-		
-		model.setVariables(inputNames, outputNames);
-		for (int i = 0; i < columns.length; i++) {
-			model.getTruthTable().setOutputColumn(i, columns[i]);
-		}
+	}
+
+	private static Entry toEntry(Value value) {
+		Value outValue = value.get(0);
+		if (outValue == Value.TRUE) return Entry.ONE;
+		else if (outValue == Value.FALSE) return Entry.ZERO;
+		else if (outValue == Value.ERROR) return Entry.BUS_ERROR;
+		else return Entry.DONT_CARE;
 	}
 }
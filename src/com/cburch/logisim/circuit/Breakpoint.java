@@ -0,0 +1,91 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.data.Value;
+
+/**
+ * A condition on a value of a simulation, such as <code>cpu/pc ==
+ * 0x80</code>, tested after each tick of a {@link FastForward}. Values
+ * are compared as unsigned numbers of up to 64 bits, and a value that is
+ * not fully defined satisfies no condition.
+ */
+public class Breakpoint {
+	public static final int EQUAL = 0;
+	public static final int NOT_EQUAL = 1;
+	public static final int LESS = 2;
+	public static final int LESS_EQUAL = 3;
+	public static final int GREATER = 4;
+	public static final int GREATER_EQUAL = 5;
+
+	// longer operators first, so that "<=" is not taken for "<"
+	private static final String[] OPERATORS = { "==", "!=", "<=", ">=", "<", ">" };
+	private static final int[] OPERATOR_CODES = {
+		EQUAL, NOT_EQUAL, LESS_EQUAL, GREATER_EQUAL, LESS, GREATER
+	};
+
+	/** Parses a condition of the form <code>path op value</code>, where
+	 * <code>op</code> is one of <code>== != &lt; &lt;= &gt; &gt;=</code>
+	 * and the value is decimal or, prefixed by <code>0x</code>,
+	 * hexadecimal. A path alone stands for <code>path != 0</code>.
+	 * @throws CircuitException if the condition cannot be parsed or its
+	 * path names no value.
+	 */
+	public static Breakpoint parse(CircuitState root, String text) {
+		for (int i = 0; i < OPERATORS.length; i++) {
+			int pos = text.indexOf(OPERATORS[i]);
+			if (pos >= 0) {
+				String path = text.substring(0, pos).trim();
+				String num = text.substring(pos + OPERATORS[i].length()).trim();
+				long value;
+				try {
+					value = Long.decode(num).longValue();
+				} catch (NumberFormatException e) {
+					throw new CircuitException(Strings.get("breakpointSyntaxError", text));
+				}
+				return new Breakpoint(SignalProbe.find(root, path),
+						OPERATOR_CODES[i], value);
+			}
+		}
+		return new Breakpoint(SignalProbe.find(root, text.trim()), NOT_EQUAL, 0);
+	}
+
+	private SignalProbe probe;
+	private int op;
+	private long value;
+
+	public Breakpoint(SignalProbe probe, int op, long value) {
+		this.probe = probe;
+		this.op = op;
+		this.value = value;
+	}
+
+	public SignalProbe getProbe() {
+		return probe;
+	}
+
+	/** Returns whether the condition holds for the current value. */
+	public boolean test() {
+		Value v = probe.getValue();
+		if (!v.isFullyDefined()) return false;
+		int cmp = Long.compareUnsigned(v.toLongValue(), value);
+		switch (op) {
+		case EQUAL:         return cmp == 0;
+		case NOT_EQUAL:     return cmp != 0;
+		case LESS:          return cmp < 0;
+		case LESS_EQUAL:    return cmp <= 0;
+		case GREATER:       return cmp > 0;
+		default:            return cmp >= 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		String opText = OPERATORS[0];
+		for (int i = 0; i < OPERATOR_CODES.length; i++) {
+			if (OPERATOR_CODES[i] == op) opText = OPERATORS[i];
+		}
+		return probe + " " + opText + " 0x" + Long.toHexString(value);
+	}
+}
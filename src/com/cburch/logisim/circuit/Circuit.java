@@ -4,6 +4,7 @@
 package com.cburch.logisim.circuit;
 
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Collections;
@@ -28,11 +29,12 @@ import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.std.wiring.Clock;
-import com.cburch.logisim.util.CollectionUtil;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
 public class Circuit {
 	private static final PrintStream DEBUG_STREAM = null;
+	/** How far past the clip components are drawn, for their labels. */
+	private static final int DRAW_MARGIN = 100;
 	
 	private class EndChangedTransaction extends CircuitTransaction {
 		private Component comp;
@@ -77,6 +79,7 @@ public class Circuit {
 			HashMap<Location,EndData> toAdd = toMap(e.getData());
 			EndChangedTransaction xn = new EndChangedTransaction(comp, toRemove, toAdd);
 			locker.execute(xn);
+			componentBoundsChanged(comp);
 			fireEvent(CircuitEvent.ACTION_INVALIDATE, comp);
 		}
 
@@ -100,7 +103,13 @@ public class Circuit {
 		}
 		
 		public void componentInvalidated(ComponentEvent e) {
-			fireEvent(CircuitEvent.ACTION_INVALIDATE, e.getSource());
+			SubstateTask task = SubstateTask.getCurrent();
+			if (task != null) {
+				// delivered once the parallel tasks are all done
+				task.deferInvalidated(Circuit.this, e.getSource());
+			} else {
+				Circuit.this.componentInvalidated(e.getSource());
+			}
 		}
 	}
 
@@ -111,11 +120,13 @@ public class Circuit {
 	private EventSourceWeakSupport<CircuitListener> listeners
 		= new EventSourceWeakSupport<CircuitListener>();
 	private HashSet<Component> comps = new HashSet<Component>(); // doesn't include wires
+	private ComponentIndex<Component> index = new ComponentIndex<Component>(); // of comps
 	CircuitWires wires = new CircuitWires();
 		// wires is package-protected for CircuitState and Analyze only.
 	private ArrayList<Component> clocks = new ArrayList<Component>();
 	private CircuitLocker locker;
 	private WeakHashMap<Component, Circuit> circuitsUsingThis;
+	private CompiledCircuit compiled = null;
 
 	public Circuit(String name) {
 		appearance = new CircuitAppearance(this);
@@ -138,6 +149,7 @@ public class Circuit {
 
 		Set<Component> oldComps = comps;
 		comps = new HashSet<Component>();
+		index = new ComponentIndex<Component>();
 		wires = new CircuitWires();
 		clocks.clear();
 		for (Component comp : oldComps) {
@@ -214,10 +226,6 @@ public class Circuit {
 		return wires.points.getExclusive(loc);
 	}
 
-	private Set<Component> getComponents() {
-		return CollectionUtil.createUnmodifiableSetUnion(comps, wires.getWires());
-	}
-	
 	public boolean contains(Component c) {
 		return comps.contains(c) || wires.getWires().contains(c);
 	}
@@ -257,9 +265,28 @@ public class Circuit {
 		return wires.points.getSplitLocations();
 	}
 
+	/** Returns a point on each net of the circuit, in order, by which the
+	 * net's value may be found from a circuit state. */
+	public List<Location> getNetLocations() {
+		return wires.getNetLocations();
+	}
+
+	/** Returns the levelized form of this circuit, or null if the
+	 * circuit is not purely combinational. */
+	synchronized CompiledCircuit getCompiled() {
+		wires.ensureComputed();
+		PointIndex index = wires.getPointIndex();
+		CompiledCircuit ret = compiled;
+		if (ret == null || ret.getPointIndex() != index) {
+			ret = CompiledCircuit.compile(this, index);
+			compiled = ret;
+		}
+		return ret.isCompiled() ? ret : null;
+	}
+
 	public Collection<Component> getAllContaining(Location pt) {
 		HashSet<Component> ret = new HashSet<Component>();
-		for (Component comp : getComponents()) {
+		for (Component comp : getComponentsNear(Bounds.create(pt).expand(1))) {
 			if (comp.contains(pt)) ret.add(comp);
 		}
 		return ret;
@@ -267,7 +294,7 @@ public class Circuit {
 
 	public Collection<Component> getAllContaining(Location pt, Graphics g) {
 		HashSet<Component> ret = new HashSet<Component>();
-		for (Component comp : getComponents()) {
+		for (Component comp : getComponentsNear(Bounds.create(pt).expand(1))) {
 			if (comp.contains(pt, g)) ret.add(comp);
 		}
 		return ret;
@@ -275,7 +302,7 @@ public class Circuit {
 
 	public Collection<Component> getAllWithin(Bounds bds) {
 		HashSet<Component> ret = new HashSet<Component>();
-		for (Component comp : getComponents()) {
+		for (Component comp : getComponentsNear(bds)) {
 			if (bds.contains(comp.getBounds())) ret.add(comp);
 		}
 		return ret;
@@ -283,11 +310,20 @@ public class Circuit {
 
 	public Collection<Component> getAllWithin(Bounds bds, Graphics g) {
 		HashSet<Component> ret = new HashSet<Component>();
-		for (Component comp : getComponents()) {
+		for (Component comp : getComponentsNear(bds)) {
 			if (bds.contains(comp.getBounds(g))) ret.add(comp);
 		}
 		return ret;
 	}
+
+	/** Returns the components and wires that may overlap a rectangle,
+	 * as found in the spatial indexes; each must still be checked. */
+	private HashSet<Component> getComponentsNear(Bounds bds) {
+		HashSet<Component> ret = new HashSet<Component>();
+		index.query(bds, ret);
+		wires.getWiresNear(bds, ret);
+		return ret;
+	}
 	
 	public WireSet getWireSet(Wire start) {
 		return wires.getWireSet(start);
@@ -384,6 +420,7 @@ public class Circuit {
 			// add it into the circuit
 			boolean added = comps.add(c);
 			if (!added) return;
+			index.add(c);
 
 			wires.add(c);
 			ComponentFactory factory = c.getFactory();
@@ -407,6 +444,7 @@ public class Circuit {
 		} else {
 			wires.remove(c);
 			comps.remove(c);
+			index.remove(c);
 			ComponentFactory factory = c.getFactory();
 			if (factory instanceof Clock) {
 				clocks.remove(c);
@@ -419,6 +457,18 @@ public class Circuit {
 		fireEvent(CircuitEvent.ACTION_REMOVE, c);
 	}
 
+	void componentInvalidated(Component c) {
+		componentBoundsChanged(c);
+		fireEvent(CircuitEvent.ACTION_INVALIDATE, c);
+	}
+
+	/** Enters a component into the spatial index again, after a change
+	 * that may have altered its bounds; the index is left alone if the
+	 * bounds are as they were. */
+	void componentBoundsChanged(Component c) {
+		index.update(c);
+	}
+
 	//
 	// Graphics methods
 	//
@@ -428,17 +478,27 @@ public class Circuit {
 		context.setGraphics(g_copy);
 		wires.draw(context, hidden);
 
+		// only the components near the clip need drawing; the margin
+		// allows for labels not yet recorded in the index
+		Rectangle clip = g.getClipBounds();
+		Collection<Component> visible = comps;
+		if (clip != null) {
+			HashSet<Component> near = new HashSet<Component>();
+			index.query(Bounds.create(clip).expand(DRAW_MARGIN), near);
+			visible = near;
+		}
 		if (hidden == null || hidden.size() == 0) {
-			for (Component c : comps) {
+			for (Component c : visible) {
 				Graphics g_new = g.create();
 				context.setGraphics(g_new);
 				g_copy.dispose();
 				g_copy = g_new;
 
 				c.draw(context);
+				index.include(c, c.getBounds(g));
 			}
 		} else {
-			for (Component c : comps) {
+			for (Component c : visible) {
 				if (!hidden.contains(c)) {
 					Graphics g_new = g.create();
 					context.setGraphics(g_new);
@@ -447,6 +507,7 @@ public class Circuit {
 
 					try {
 						c.draw(context);
+						index.include(c, c.getBounds(g));
 					} catch (RuntimeException e) {
 						// this is a JAR developer error - display it and move on
 						e.printStackTrace();
@@ -3,18 +3,22 @@
 
 package com.cburch.logisim.circuit;
 
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.cburch.logisim.circuit.Propagator.SetData;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.comp.ComponentState;
+import com.cburch.logisim.comp.EndData;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
@@ -25,6 +29,7 @@ import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.Clock;
 import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Probe;
 import com.cburch.logisim.util.ArraySet;
 import com.cburch.logisim.util.SmallSet;
 
@@ -40,14 +45,21 @@ public class CircuitState implements InstanceData {
 					markPointAsDirty(w.getEnd1());
 				} else {
 					markComponentAsDirty(comp);
+					if (comp.getFactory() instanceof Clock && base != null) {
+						base.clocksChanged();
+					}
 				}
 			} else if (action == CircuitEvent.ACTION_REMOVE) {
 				Component comp = (Component) event.getData();
+				if (comp.getFactory() instanceof Clock && base != null) {
+					base.clocksChanged();
+				}
 				if (comp.getFactory() instanceof SubcircuitFactory) {
 					// disconnect from tree
 					CircuitState substate = (CircuitState) getData(comp);
 					if (substate != null && substate.parentComp == comp) {
 						substates.remove(substate);
+						substatesChanged();
 						substate.parentState = null;
 						substate.parentComp = null;
 					}
@@ -60,15 +72,17 @@ public class CircuitState implements InstanceData {
 				} else {
 					if (base != null) base.checkComponentEnds(CircuitState.this, comp);
 					dirtyComponents.remove(comp);
+					instanceStates.remove(comp);
 				}
 			} else if (action == CircuitEvent.ACTION_CLEAR) {
 				substates.clear();
+				substatesChanged();
 				wireData = null;
 				componentData.clear();
-				values.clear();
+				instanceStates.clear();
+				store = new PointStore(PointIndex.EMPTY);
 				dirtyComponents.clear();
 				dirtyPoints.clear();
-				causes.clear();
 			} else if (action == CircuitEvent.ACTION_CHANGE) {
 				Object data = event.getData();
 				if (data instanceof Collection) {
@@ -93,6 +107,7 @@ public class CircuitState implements InstanceData {
 				ReplacementMap map = event.getResult().getReplacementMap(circuit);
 				if (map != null) {
 					for (Component comp : map.getReplacedComponents()) {
+						instanceStates.remove(comp);
 						Object compState = componentData.remove(comp);
 						if (compState != null) {
 							Class<?> compFactory = comp.getFactory().getClass();
@@ -108,6 +123,7 @@ public class CircuitState implements InstanceData {
 								CircuitState sub = (CircuitState) compState;
 								sub.parentState = null;
 								substates.remove(sub);
+								substatesChanged();
 							}
 						}
 					}
@@ -124,13 +140,21 @@ public class CircuitState implements InstanceData {
 	private CircuitState parentState = null; // parent in tree of CircuitStates
 	private Component parentComp = null; // subcircuit component containing this state
 	private ArraySet<CircuitState> substates = new ArraySet<CircuitState>();
+	private CircuitState[] substateArray = null; // substates, or null if changed
 
 	private CircuitWires.State wireData = null;
 	private HashMap<Component,Object> componentData = new HashMap<Component,Object>();
-	private Map<Location,Value> values = new HashMap<Location,Value>();
+	// states are also requested from the GUI thread, hence the concurrent map
+	private ConcurrentHashMap<Component,InstanceState> instanceStates
+		= new ConcurrentHashMap<Component,InstanceState>();
+	private PointStore store = new PointStore(PointIndex.EMPTY); // values and causes
 	private SmallSet<Component> dirtyComponents = new SmallSet<Component>();
 	private SmallSet<Location> dirtyPoints = new SmallSet<Location>();
-	HashMap<Location,SetData> causes = new HashMap<Location,SetData>();
+	private CompiledCircuit.Frame compiled = null; // non-null if evaluated as compiled
+	// ports of parentComp whose values may have changed since it was last
+	// propagated; allPortsDirty stands for all of them
+	private BitSet dirtyPorts = new BitSet();
+	private boolean allPortsDirty = true;
 
 	private static int lastId = 0;
 	private int id = lastId++;
@@ -168,6 +192,7 @@ public class CircuitState implements InstanceData {
 		this.parentState = src.parentState;
 		HashMap<CircuitState,CircuitState> substateData = new HashMap<CircuitState,CircuitState>();
 		this.substates = new ArraySet<CircuitState>();
+		this.substateArray = null;
 		for (CircuitState oldSub : src.substates) {
 			CircuitState newSub = new CircuitState(src.proj, oldSub.circuit);
 			newSub.copyFrom(oldSub, base);
@@ -191,15 +216,11 @@ public class CircuitState implements InstanceData {
 				this.componentData.put(key, newValue);
 			}
 		}
-		for (Location key : src.causes.keySet()) {
-			Propagator.SetData oldValue = src.causes.get(key);
-			Propagator.SetData newValue = oldValue.cloneFor(this);
-			this.causes.put(key, newValue);
-		}
+		this.store = src.store.cloneFor(this);
+		if (src.compiled != null) this.compiled = src.compiled.cloneFor(this);
 		if (src.wireData != null) {
 			this.wireData = (CircuitWires.State) src.wireData.clone();
 		}
-		this.values.putAll(src.values);
 		this.dirtyComponents.addAll(src.dirtyComponents);
 		this.dirtyPoints.addAll(src.dirtyPoints);
 	}
@@ -251,12 +272,14 @@ public class CircuitState implements InstanceData {
 				if (oldState != null && oldState.parentComp == comp) {
 					// it looks like it's being removed
 					substates.remove(oldState);
+					substatesChanged();
 					oldState.parentState = null;
 					oldState.parentComp = null;
 				}
 				if (newState != null && newState.parentState != this) {
 					// this is the first time I've heard about this CircuitState
 					substates.add(newState);
+					substatesChanged();
 					newState.base = this.base;
 					newState.parentState = this;
 					newState.parentComp = comp;
@@ -268,7 +291,12 @@ public class CircuitState implements InstanceData {
 	}
 
 	public Value getValue(Location pt) {
-		Value ret = values.get(pt);
+		CompiledCircuit.Frame frame = compiled;
+		if (frame != null) {
+			Value ret = frame.getValue(pt);
+			if (ret != null) return ret;
+		}
+		Value ret = store.getValue(pt);
 		if (ret != null) return ret;
 
 		BitWidth wid = circuit.getWidth(pt);
@@ -280,39 +308,45 @@ public class CircuitState implements InstanceData {
 	}
 
 	public void markComponentAsDirty(Component comp) {
-		try {
-			dirtyComponents.add(comp);
-		} catch (RuntimeException e) {
-			SmallSet<Component> set = new SmallSet<Component>();
-			set.add(comp);
-			dirtyComponents = set;
-		}
+		addDirtyComponent(comp);
+		CircuitState substate = getSubstateOf(comp);
+		if (substate != null) substate.allPortsDirty = true;
 	}
 
 	public void markComponentsDirty(Collection<Component> comps) {
 		dirtyComponents.addAll(comps);
+		for (Component comp : comps) {
+			CircuitState substate = getSubstateOf(comp);
+			if (substate != null) substate.allPortsDirty = true;
+		}
 	}
 
 	public void markPointAsDirty(Location pt) {
 		dirtyPoints.add(pt);
 	}
 	
+	/**
+	 * Returns the state through which a component sees this circuit state.
+	 * The state is created on the first request and then kept, so that
+	 * propagation does not allocate one each time a component is
+	 * propagated.
+	 */
 	public InstanceState getInstanceState(Component comp) {
-		Object factory = comp.getFactory();
-		if (factory instanceof InstanceFactory) {
-			return ((InstanceFactory) factory).createInstanceState(this, comp);
-		} else {
-			throw new RuntimeException("getInstanceState requires instance component");
+		InstanceState ret = instanceStates.get(comp);
+		if (ret == null) {
+			Object factory = comp.getFactory();
+			if (factory instanceof InstanceFactory) {
+				ret = ((InstanceFactory) factory).createInstanceState(this, comp);
+				instanceStates.put(comp, ret);
+			} else {
+				throw new RuntimeException("getInstanceState requires instance component");
+			}
 		}
+		return ret;
 	}
 	
 	public InstanceState getInstanceState(Instance instance) {
-		Object factory = instance.getFactory();
-		if (factory instanceof InstanceFactory) {
-			return ((InstanceFactory) factory).createInstanceState(this, instance);
-		} else {
-			throw new RuntimeException("getInstanceState requires instance component");
-		}
+		return getInstanceState(Instance.getComponentFor(instance));
 	}
 
 	//
@@ -323,7 +357,10 @@ public class CircuitState implements InstanceData {
 	}
 
 	void processDirtyComponents() {
-		if (!dirtyComponents.isEmpty()) {
+		if (compiled != null) {
+			// evaluated by the subcircuit's propagation instead
+			dirtyComponents.clear();
+		} else if (!dirtyComponents.isEmpty()) {
 			// This seeming wasted copy is to avoid ConcurrentModifications
 			// if we used an iterator instead.
 			Object[] toProcess;
@@ -344,29 +381,33 @@ public class CircuitState implements InstanceData {
 			dirtyComponents.clear();
 			for (Object compObj : toProcess) {
 				if (compObj instanceof Component) {
-					Component comp = (Component) compObj;
-					comp.propagate(this);
-					if (comp.getFactory() instanceof Pin && parentState != null) {
-						// should be propagated in superstate
-						parentComp.propagate(parentState);
-					}
+					propagateComponent((Component) compObj);
 				}
 			}
 		}
 
-		CircuitState[] subs = new CircuitState[substates.size()];
-		for (CircuitState substate : substates.toArray(subs)) {
-			substate.processDirtyComponents();
+		CircuitState[] subs = getSubstateArray();
+		if (base != null && base.isParallel()) {
+			SubstateTask.process(base, subs, true);
+		} else {
+			for (CircuitState substate : subs) {
+				substate.processDirtyComponents();
+			}
 		}
 	}
 
 	void processDirtyPoints() {
-		HashSet<Location> dirty = new HashSet<Location>(dirtyPoints);
-		dirtyPoints.clear();
-		if (circuit.wires.isMapVoided()) {
+		Set<Location> dirty;
+		if (compiled != null) {
+			dirtyPoints.clear();
+			dirty = Collections.emptySet();
+		} else if (circuit.wires.isMapVoided()) {
+			HashSet<Location> all = new HashSet<Location>(dirtyPoints);
+			dirtyPoints.clear();
+			dirty = all;
 			for (int i = 3; i >= 0; i--) {
 				try {
-					dirty.addAll(circuit.wires.points.getSplitLocations());
+					all.addAll(circuit.wires.points.getSplitLocations());
 					break;
 				} catch (ConcurrentModificationException e) {
 					// try again...
@@ -374,15 +415,84 @@ public class CircuitState implements InstanceData {
 					if (i == 0) e.printStackTrace();
 				}
 			}
+		} else if (dirtyPoints.isEmpty()) {
+			// most substates are quiet in most steps; allocate nothing then
+			dirty = Collections.emptySet();
+		} else {
+			dirty = new HashSet<Location>(dirtyPoints);
+			dirtyPoints.clear();
 		}
-		if (!dirty.isEmpty()) {
+		if (!dirty.isEmpty() || (compiled == null && circuit.wires.isStale(wireData))) {
+			// a stale state brings its thread values up to date even
+			// if none of its own points changed
 			circuit.wires.propagate(this, dirty);
 		}
 
-		CircuitState[] subs = new CircuitState[substates.size()];
-		for (CircuitState substate : substates.toArray(subs)) {
-			substate.processDirtyPoints();
+		CircuitState[] subs = getSubstateArray();
+		if (base != null && base.isParallel()) {
+			SubstateTask.process(base, subs, false);
+		} else {
+			for (CircuitState substate : subs) {
+				substate.processDirtyPoints();
+			}
+		}
+	}
+
+	void propagateComponent(Component comp) {
+		comp.propagate(this);
+		if (comp.getFactory() instanceof Pin && parentState != null) {
+			// should be propagated in superstate
+			markPinDirty(comp);
+			parentComp.propagate(parentState);
+		}
+	}
+
+	/** Indicates whether propagating a component may invalidate it, as a
+	 * probe resizing to the width of its value does, or a subcircuit
+	 * creating its substate. The invalidation marks the component dirty
+	 * in every state of the circuit, so such components must be
+	 * propagated in the order of a sequential walk of the state tree. */
+	private boolean mustPropagateSerially(Component comp) {
+		if (comp.getFactory() instanceof Probe) return true;
+		if (!(comp.getFactory() instanceof SubcircuitFactory)) return false;
+		CircuitState substate = getSubstateOf(comp);
+		if (substate == null) return true;
+		CompiledCircuit.Frame frame = substate.getCompiledFrame();
+		return frame != null && frame.getProgram().mustEvaluateSerially();
+	}
+
+	/** Indicates whether a component dirty in this state or its
+	 * substates must be propagated serially. */
+	boolean hasSerialWork() {
+		if (!dirtyComponents.isEmpty()) {
+			for (Object compObj : dirtyComponents.toArray()) {
+				if (compObj instanceof Component
+						&& mustPropagateSerially((Component) compObj)) {
+					return true;
+				}
+			}
+		}
+		for (CircuitState substate : getSubstateArray()) {
+			if (substate.hasSerialWork()) return true;
+		}
+		return false;
+	}
+
+	/** Returns roughly how much work processing the dirty points or
+	 * components of this state and its substates would involve. */
+	int getPendingWork(boolean components) {
+		int ret;
+		if (components) {
+			ret = dirtyComponents.size();
+		} else if (circuit.wires.isMapVoided()) {
+			ret = dirtyPoints.size() + circuit.getNonWires().size(); // all points redone
+		} else {
+			ret = dirtyPoints.size();
+		}
+		for (CircuitState substate : getSubstateArray()) {
+			ret += substate.getPendingWork(components);
 		}
+		return ret;
 	}
 	
 	void reset() {
@@ -391,10 +501,10 @@ public class CircuitState implements InstanceData {
 			Component comp = it.next();
 			if (!(comp.getFactory() instanceof SubcircuitFactory)) it.remove();
 		}
-		values.clear();
+		store = new PointStore(circuit.wires.getPointIndex());
+		compiled = null;
 		dirtyComponents.clear();
 		dirtyPoints.clear();
-		causes.clear();
 		markAllComponentsDirty();
 		
 		for (CircuitState sub : substates) {
@@ -402,19 +512,76 @@ public class CircuitState implements InstanceData {
 		}
 	}
 
-	boolean tick(int ticks) {
-		boolean ret = false;
+	/** Adds the clocks of this state and its substates to the lists, each
+	 * with the state in which it lies, in the order of a walk of the tree. */
+	void collectClocks(List<CircuitState> states, List<Component> clocks) {
 		for (Component clock : circuit.getClocks()) {
-			ret |= Clock.tick(this, ticks, clock);
+			states.add(this);
+			clocks.add(clock);
 		}
 
-		CircuitState[] subs = new CircuitState[substates.size()];
-		for (CircuitState substate : substates.toArray(subs)) {
-			ret |= substate.tick(ticks);
+		for (CircuitState substate : getSubstateArray()) {
+			substate.collectClocks(states, clocks);
+		}
+	}
+
+	/**
+	 * Returns the frame through which this state is evaluated as a
+	 * compiled circuit, or null if it should be simulated event by event.
+	 * The frame is created or dropped here as the propagator's setting
+	 * changes and as edits make the circuit compilable or not.
+	 */
+	CompiledCircuit.Frame getCompiledFrame() {
+		CompiledCircuit program = null;
+		if (base != null && base.isCompiling()) program = circuit.getCompiled();
+		CompiledCircuit.Frame ret = compiled;
+		if (ret == null ? program != null : ret.getProgram() != program) {
+			if (ret != null) {
+				// Values and causes were left as they were when compiled
+				// evaluation began, so every component and point needs
+				// recomputing to bring them up to date.
+				wireData = null;
+				markAllComponentsDirty();
+				try {
+					dirtyPoints.addAll(circuit.wires.points.getSplitLocations());
+				} catch (ConcurrentModificationException e) {
+					// the edit voids the bundle map, so the next
+					// processDirtyPoints picks up all points anyway
+				}
+			}
+			ret = program == null ? null : program.createFrame(this);
+			compiled = ret;
+			// the new frame or the pins have yet to see the inputs
+			allPortsDirty = true;
 		}
 		return ret;
 	}
 
+	boolean isCompiled() {
+		return compiled != null;
+	}
+
+	/** Returns the next port after <code>port</code> of the subcircuit
+	 * component holding this state whose value may have changed since the
+	 * component was last propagated, or -1 if there is none. Passing -1
+	 * returns the first such port. */
+	int nextDirtyPort(int port, int portCount) {
+		int ret = allPortsDirty ? port + 1 : dirtyPorts.nextSetBit(port + 1);
+		return ret < portCount ? ret : -1;
+	}
+
+	boolean isPortDirty(int port) {
+		return allPortsDirty || dirtyPorts.get(port);
+	}
+
+	/** Notes that the subcircuit component holding this state has been
+	 * propagated, having crossed <code>crossed</code> of its ports. */
+	void clearDirtyPorts(int crossed, int portCount) {
+		dirtyPorts.clear();
+		allPortsDirty = false;
+		if (base != null) base.countPortCrossings(crossed, portCount - crossed);
+	}
+
 	CircuitWires.State getWireData() {
 		return wireData;
 	}
@@ -425,22 +592,30 @@ public class CircuitState implements InstanceData {
 
 	Value getComponentOutputAt(Location p) {
 		// for CircuitWires - to get values, ignoring wires' contributions
-		Propagator.SetData cause_list = causes.get(p);
+		Propagator.SetData cause_list = store.getCause(p);
 		return Propagator.computeValue(cause_list);
 	}
 
+	SetData getCause(Location p) {
+		return store.getCause(p);
+	}
+
+	void setCause(Location p, SetData head) {
+		getWritableStore().setCause(p, head);
+	}
+
 	Value getValueByWire(Location p) {
-		return values.get(p);
+		return store.getValue(p);
 	}
 
 	void setValueByWire(Location p, Value v) {
 		// for CircuitWires - to set value at point
 		boolean changed;
 		if (v == Value.NIL) {
-			Object old = values.remove(p);
+			Object old = getWritableStore().setValue(p, null);
 			changed = (old != null && old != Value.NIL);
 		} else {
-			Object old = values.put(p, v);
+			Object old = getWritableStore().setValue(p, v);
 			changed = !v.equals(old);
 		}
 		if (changed) {
@@ -448,7 +623,14 @@ public class CircuitState implements InstanceData {
 			for (Component comp : circuit.getComponents(p)) {
 				if (!(comp instanceof Wire) && !(comp instanceof Splitter)) {
 					found = true;
-					markComponentAsDirty(comp);
+					CircuitState substate = getSubstateOf(comp);
+					if (substate == null) {
+						markComponentAsDirty(comp);
+					} else {
+						// only the ports at p need crossing into the subcircuit
+						substate.markPortsDirty(comp, p);
+						addDirtyComponent(comp);
+					}
 				}
 			}
 			// NOTE: this will cause a double-propagation on components
@@ -461,7 +643,77 @@ public class CircuitState implements InstanceData {
 	//
 	// private methods
 	// 
+	/** Returns the substates as an array, kept from one step to the next
+	 * so that walking the tree of states does not allocate. */
+	private CircuitState[] getSubstateArray() {
+		CircuitState[] ret = substateArray;
+		if (ret == null) {
+			ret = substates.toArray(new CircuitState[substates.size()]);
+			substateArray = ret;
+		}
+		return ret;
+	}
+
+	/** Notes that the substates have changed, so the array of them and the
+	 * registry of clocks in the tree are out of date. */
+	private void substatesChanged() {
+		substateArray = null;
+		if (base != null) base.clocksChanged();
+	}
+
+	private void addDirtyComponent(Component comp) {
+		try {
+			dirtyComponents.add(comp);
+		} catch (RuntimeException e) {
+			SmallSet<Component> set = new SmallSet<Component>();
+			set.add(comp);
+			dirtyComponents = set;
+		}
+	}
+
+	/** Returns the state of a subcircuit component, or null if the
+	 * component is not a subcircuit or has not been propagated yet. */
+	private CircuitState getSubstateOf(Component comp) {
+		if (!(comp.getFactory() instanceof SubcircuitFactory)) return null;
+		Object data = componentData.get(comp);
+		return data instanceof CircuitState ? (CircuitState) data : null;
+	}
+
+	private void markPortsDirty(Component comp, Location p) {
+		List<EndData> ends = comp.getEnds();
+		for (int i = 0, n = ends.size(); i < n; i++) {
+			if (ends.get(i).getLocation().equals(p)) dirtyPorts.set(i);
+		}
+	}
+
+	/** Marks the port of parentComp that a pin of this circuit drives. */
+	private void markPinDirty(Component pin) {
+		Instance[] pins = ((CircuitAttributes) parentComp.getAttributeSet()).getPinInstances();
+		for (int i = 0; i < pins.length; i++) {
+			if (Instance.getComponentFor(pins[i]) == pin) {
+				dirtyPorts.set(i);
+				return;
+			}
+		}
+		allPortsDirty = true;
+	}
+
+	private PointStore getWritableStore() {
+		// Only the simulation thread writes, so only it moves the data
+		// over when the circuit's point index has been recompiled.
+		PointStore ret = store;
+		PointIndex index = circuit.wires.getPointIndex();
+		if (ret.getIndex() != index) {
+			ret = ret.remap(index);
+			store = ret;
+		}
+		return ret;
+	}
+
 	private void markAllComponentsDirty() {
 		dirtyComponents.addAll(circuit.getNonWires());
+		for (CircuitState substate : getSubstateArray()) {
+			substate.allPortsDirty = true;
+		}
 	}
 }
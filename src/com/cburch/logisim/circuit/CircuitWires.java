@@ -5,6 +5,7 @@ package com.cburch.logisim.circuit;
 
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.util.*;
 
 import com.cburch.logisim.comp.Component;
@@ -52,6 +53,28 @@ class CircuitWires {
 			ret.thr_values.putAll(this.thr_values);
 			return ret;
 		}
+
+		/**
+		 * Brings this state up to a map derived from its own by a series
+		 * of updates, forgetting the values of threads that no longer
+		 * exist and adding to <code>changed</code> the points whose
+		 * bundles were recomputed. Returns false, leaving the state
+		 * alone, if the map is not derived from this state's map.
+		 */
+		boolean update(BundleMap map, Set<Location> changed) {
+			ArrayList<BundleMap> chain = new ArrayList<BundleMap>();
+			for (BundleMap m = map; m != bundleMap; m = m.previous) {
+				if (m == null) return false;
+				chain.add(m);
+			}
+			for (int i = chain.size() - 1; i >= 0; i--) {
+				BundleMap m = chain.get(i);
+				for (WireThread t : m.removedThreads) thr_values.remove(t);
+				changed.addAll(m.changedPoints);
+			}
+			bundleMap = map;
+			return true;
+		}
 	}
 	
 	private class TunnelListener implements AttributeListener {
@@ -60,7 +83,8 @@ class CircuitWires {
 		public void attributeValueChanged(AttributeEvent e) {
 			Attribute<?> attr = e.getAttribute();
 			if (attr == StdAttr.LABEL || attr == PullResistor.ATTR_PULL_TYPE) {
-				voidBundleMap();
+				touchComponent(e.getSource(), tunnels);
+				touchComponent(e.getSource(), pulls);
 			}
 		}
 	}
@@ -89,7 +113,7 @@ class CircuitWires {
                         normalizing = false;
                     }
                 }
-                voidBundleMap();
+                touchComponent(e.getSource(), bitTunnels);
                 return;
             }
 
@@ -97,7 +121,7 @@ class CircuitWires {
             if (a == BitLabeledTunnel.ATTR_OUTPUT
                     || a == StdAttr.FACING
                     || a == StdAttr.WIDTH) {
-                voidBundleMap();
+                touchComponent(e.getSource(), bitTunnels);
             }
         }
 
@@ -124,6 +148,13 @@ class CircuitWires {
 		// NOTE: It would make things more efficient if we also had
 		// a set of just the first bundle in each tree.
 		HashSet<WidthIncompatibilityData> incompatibilityData = null;
+		HashSet<WireBundle> invalidBundles = new HashSet<WireBundle>();
+		// for a map derived from an earlier one by updateBundleMap: the
+		// earlier map, the points whose bundles were recomputed, and the
+		// threads of the earlier map that no longer exist
+		BundleMap previous = null;
+		Set<Location> changedPoints = Collections.emptySet();
+		Collection<WireThread> removedThreads = Collections.emptySet();
 
 		HashSet<WidthIncompatibilityData> getWidthIncompatibilityData() {
 			return incompatibilityData;
@@ -195,7 +226,20 @@ class CircuitWires {
 
 	// derived data
 	private Bounds bounds = Bounds.EMPTY_BOUNDS;
-	private BundleMap bundleMap = null;
+	private final ComponentIndex<Wire> wireIndex = new ComponentIndex<Wire>();
+	private volatile BundleMap bundleMap = null;
+	private volatile PointIndex pointIndex = PointIndex.EMPTY;
+	// points whose connections have changed since bundleMap was computed
+	private HashSet<Location> changedPoints = new HashSet<Location>();
+	private volatile boolean mapChanged = false;
+	// labels of each bit tunnel when last touched, so that a change to
+	// them also reaches the bit tunnels sharing the old labels
+	private final HashMap<Component,ArrayList<Location>> bitTunnelLabels
+		= new HashMap<Component,ArrayList<Location>>();
+
+	/** How many updated bundle maps a map remembers being derived from;
+	 * a state further behind recomputes all its thread values. */
+	private static final int MAX_MAP_HISTORY = 8;
 
 	CircuitWires() { }
 
@@ -245,6 +289,17 @@ class CircuitWires {
 		return wires;
 	}
 
+	/** Adds to <code>ret</code> the wires that may overlap a rectangle;
+	 * each must still be checked against it. */
+	void getWiresNear(Bounds bds, Collection<? super Wire> ret) {
+		wireIndex.query(bds, ret);
+	}
+
+	/** Returns the point index compiled with the most recent bundle map. */
+	PointIndex getPointIndex() {
+		return pointIndex;
+	}
+
 	Bounds getWireBounds() {
 		Bounds bds = bounds;
 		if (bds == Bounds.EMPTY_BOUNDS) {
@@ -258,6 +313,20 @@ class CircuitWires {
 		return bmap.getBundleAt(query);
 	}
 	
+	/** Returns the least point of each bundle, one point per net. */
+	List<Location> getNetLocations() {
+		ArrayList<Location> ret = new ArrayList<Location>();
+		for (WireBundle b : getBundleMap().getBundles()) {
+			Location least = null;
+			for (Location loc : b.points) {
+				if (least == null || loc.compareTo(least) < 0) least = loc;
+			}
+			if (least != null) ret.add(least);
+		}
+		Collections.sort(ret);
+		return ret;
+	}
+
 	WireSet getWireSet(Wire start) {
 		WireBundle bundle = getWireBundle(start.e0);
 		if (bundle == null) return WireSet.EMPTY;
@@ -268,11 +337,17 @@ class CircuitWires {
 		return new WireSet(wires);
 	}
 
+	/** Returns whether the state's thread values were computed for a
+	 * bundle map that has since been updated. */
+	boolean isStale(State s) {
+		return s != null && (mapChanged || s.bundleMap != bundleMap);
+	}
+
 	//
 	// action methods
 	//
-	// NOTE: this could be made much more efficient in most cases to
-	// avoid voiding the bundle map.
+	// Edits only record the points they touch; the next request for the
+	// bundle map recomputes just the bundles around those points.
 	boolean add(Component comp) {
 		boolean added = true;
 		if (comp instanceof Wire) {
@@ -294,7 +369,7 @@ class CircuitWires {
 		}
 		if (added) {
 			points.add(comp);
-			voidBundleMap();
+			touchEnds(comp);
 		}
 		return added;
 	}
@@ -318,28 +393,30 @@ class CircuitWires {
             }
 		}
 		points.remove(comp);
-		voidBundleMap();
+		touchEnds(comp);
 	}
 	
 	void add(Component comp, EndData end) {
 		points.add(comp, end);
-		voidBundleMap();
+		touch(end.getLocation());
 	}
 	
 	void remove(Component comp, EndData end) {
 		points.remove(comp, end);
-		voidBundleMap();
+		touch(end.getLocation());
 	}
 	
 	void replace(Component comp, EndData oldEnd, EndData newEnd) {
 		points.remove(comp, oldEnd);
 		points.add(comp, newEnd);
-		voidBundleMap();
+		touch(oldEnd.getLocation());
+		touch(newEnd.getLocation());
 	}
 
 	private boolean addWire(Wire w) {
 		boolean added = wires.add(w);
 		if (!added) return false;
+		wireIndex.add(w);
 
 		if (bounds != Bounds.EMPTY_BOUNDS) { // update bounds
 			bounds = bounds.add(w.e0).add(w.e1);
@@ -350,6 +427,7 @@ class CircuitWires {
 	private void removeWire(Wire w) {
 		boolean removed = wires.remove(w);
 		if (!removed) return;
+		wireIndex.remove(w);
 
 		if (bounds != Bounds.EMPTY_BOUNDS) {
 			// bounds is valid - invalidate if endpoint on border
@@ -369,7 +447,14 @@ class CircuitWires {
 
 		// get state, or create a new one if current state is outdated
 		State s = circState.getWireData();
-		if (s == null || s.bundleMap != map) {
+		HashSet<Location> changed = new HashSet<Location>();
+		if (s != null && s.bundleMap != map && s.update(map, changed)) {
+			// only the threads around the changed points are new, and
+			// their values are computed as for points marked dirty
+			for (Location p : changed) {
+				addDirtyThreads(circState, map, p, dirtyThreads);
+			}
+		} else if (s == null || s.bundleMap != map) {
 			// if it is outdated, we need to compute for all threads
 			s = new State(map);
 			for (WireBundle b : map.getBundles()) {
@@ -385,27 +470,7 @@ class CircuitWires {
 
 		// determine affected threads, and set values for unwired points
 		for (Location p : points) {
-			WireBundle pb = map.getBundleAt(p);
-			if (pb == null) { // point is not wired
-				circState.setValueByWire(p, circState.getComponentOutputAt(p));
-			} else {
-				WireThread[] th = pb.threads;
-				if (!pb.isValid() || th == null) {
-					// immediately propagate NILs across invalid bundles
-					SmallSet<Location> pbPoints = pb.points;
-					if (pbPoints == null) {
-						circState.setValueByWire(p, Value.NIL);
-					} else {
-						for (Location loc2 : pbPoints) {
-							circState.setValueByWire(loc2, Value.NIL);
-						}
-					}
-				} else {
-					for (WireThread t : th) {
-						dirtyThreads.add(t);
-					}
-				}
-			}
+			if (!changed.contains(p)) addDirtyThreads(circState, map, p, dirtyThreads);
 		}
 
 		if (dirtyThreads.isEmpty()) return;
@@ -446,6 +511,31 @@ class CircuitWires {
 		}
 	}
 
+	private void addDirtyThreads(CircuitState circState, BundleMap map,
+			Location p, SmallSet<WireThread> dirtyThreads) {
+		WireBundle pb = map.getBundleAt(p);
+		if (pb == null) { // point is not wired
+			circState.setValueByWire(p, circState.getComponentOutputAt(p));
+		} else {
+			WireThread[] th = pb.threads;
+			if (!pb.isValid() || th == null) {
+				// immediately propagate NILs across invalid bundles
+				SmallSet<Location> pbPoints = pb.points;
+				if (pbPoints == null) {
+					circState.setValueByWire(p, Value.NIL);
+				} else {
+					for (Location loc2 : pbPoints) {
+						circState.setValueByWire(loc2, Value.NIL);
+					}
+				}
+			} else {
+				for (WireThread t : th) {
+					dirtyThreads.add(t);
+				}
+			}
+		}
+	}
+
 	void draw(ComponentDrawContext context, Collection<Component> hidden) {
 		boolean showState = context.getShowState();
 		CircuitState state = context.getCircuitState();
@@ -456,8 +546,15 @@ class CircuitWires {
 
 		BundleMap bmap = getBundleMap();
 		boolean isValid = bmap.isValid();
+		// only the wires and points within the clip need drawing
+		Rectangle clip = g.getClipBounds();
+		Collection<Wire> visible = wires;
+		if (clip != null) {
+			visible = new HashSet<Wire>();
+			getWiresNear(Bounds.create(clip).expand(Wire.WIDTH), visible);
+		}
 		if (hidden == null || hidden.size() == 0) {
-            for (Wire w : wires) {
+            for (Wire w : visible) {
                 Location s = w.e0;
                 Location t = w.e1;
                 WireBundle wb = bmap.getBundleAt(s);
@@ -488,6 +585,9 @@ class CircuitWires {
             }
 
             for (Location loc : points.getSplitLocations()) {
+				if (clip != null && !clip.intersects(loc.getX() - 5, loc.getY() - 5, 10, 10)) {
+					continue;
+				}
 				if (points.getComponentCount(loc) > 2) {
 					WireBundle wb = bmap.getBundleAt(loc);
 					if (wb != null) {
@@ -508,7 +608,7 @@ class CircuitWires {
 				}
 			}
 		} else {
-			for (Wire w : wires) {
+			for (Wire w : visible) {
 				if (!hidden.contains(w)) {
 					Location s = w.e0;
 					Location t = w.e1;
@@ -535,6 +635,9 @@ class CircuitWires {
 			// the problem is minor, and hidden only exists for a short
 			// while at a time anway.
 			for (Location loc : points.getSplitLocations()) {
+				if (clip != null && !clip.intersects(loc.getX() - 5, loc.getY() - 5, 10, 10)) {
+					continue;
+				}
 				if (points.getComponentCount(loc) > 2) {
 					int icount = 0;
 					for (Component comp : points.getComponents(loc)) {
@@ -566,24 +669,93 @@ class CircuitWires {
 	//
 	// helper methods
 	//
-	private void voidBundleMap() {
+	synchronized void voidBundleMap() {
 		bundleMap = null;
 	}
 
+	private synchronized void touch(Location loc) {
+		changedPoints.add(loc);
+		mapChanged = true;
+	}
+
+	private synchronized void touchEnds(Component comp) {
+		if (comp instanceof Wire) {
+			Wire w = (Wire) comp;
+			touch(w.e0);
+			touch(w.e1);
+		} else {
+			for (EndData end : comp.getEnds()) {
+				if (end != null) touch(end.getLocation());
+			}
+			ArrayList<Location> labels = bitTunnelLabels.remove(comp);
+			if (labels != null) {
+				for (Location loc : labels) touch(loc);
+			}
+			if (bitTunnels.contains(comp)) {
+				labels = getBitTunnelLabels(comp);
+				bitTunnelLabels.put(comp, labels);
+				for (Location loc : labels) touch(loc);
+			}
+		}
+	}
+
+	/** Records a change to the attributes of the component among
+	 * <code>comps</code> having the given attribute set. */
+	private void touchComponent(AttributeSet attrs, Collection<Component> comps) {
+		for (Component comp : comps) {
+			if (comp.getAttributeSet() == attrs) touchEnds(comp);
+		}
+	}
+
 	private BundleMap getBundleMap() {
 		// Maybe we already have a valid bundle map (or maybe
 		// one is in progress).
 		BundleMap ret = bundleMap;
-		if (ret != null) {
+		if (ret != null && !mapChanged) {
 			ret.waitUntilComputed();
 			return ret;
 		}
+
+		BundleMap old;
+		HashSet<Location> changed;
+		synchronized (this) {
+			old = bundleMap;
+			changed = changedPoints;
+			changedPoints = new HashSet<Location>();
+			mapChanged = false;
+		}
+		if (old != null) {
+			old.waitUntilComputed();
+			if (changed.isEmpty()) return old;
+			if (old.isValid()) {
+				try {
+					ret = updateBundleMap(old, changed);
+					synchronized (this) {
+						if (bundleMap == old) {
+							bundleMap = ret;
+						} else if (bundleMap != null) {
+							// another thread updated the map meanwhile
+							// without knowing about these changes
+							changedPoints.addAll(changed);
+							mapChanged = true;
+						}
+					}
+					return ret;
+				} catch (RuntimeException e) {
+					// the circuit changed while we looked; start over
+				}
+			}
+		}
+
 		try {
 			// Ok, we have to create our own.
 			for (int tries = 4; tries >= 0; tries--) {
 				try {
 					ret = new BundleMap();
-					computeBundleMap(ret);
+					computeBundleMap(ret, wires, tunnels, pulls, splitters, bitTunnels);
+					addWidthIncompatibilityData(ret);
+					pointIndex = new PointIndex(points.getSplitLocations(),
+							ret.getBundlePoints());
 					bundleMap = ret;
 					break;
 				} catch (Throwable t) {
@@ -604,12 +776,128 @@ class CircuitWires {
 		return ret;
 	}
 
-	// To be called by getBundleMap only
-	private void computeBundleMap(BundleMap ret) {
+	/**
+	 * Returns a map in which the bundles around the given changed points
+	 * are recomputed, sharing every other bundle and its threads with
+	 * <code>old</code>. The recomputed region holds every bundle reachable
+	 * from a changed point through wires, tunnels with the same label,
+	 * splitters, bit-labeled tunnels, and threads, which together are all
+	 * the ways an edit at those points can affect a bundle.
+	 */
+	private BundleMap updateBundleMap(BundleMap old, Set<Location> changed) {
+		HashSet<Location> region = new HashSet<Location>();
+		HashSet<WireBundle> oldBundles = new HashSet<WireBundle>();
+		ArrayList<Location> queue = new ArrayList<Location>(changed);
+		HashMap<String,ArrayList<Location>> tunnelSets = null;
+		HashMap<Location,ArrayList<Location>> bitTunnelSets = null;
+		HashSet<Wire> scopeWires = new HashSet<Wire>();
+		HashSet<Splitter> scopeSplitters = new HashSet<Splitter>();
+		HashSet<Component> scopeTunnels = new HashSet<Component>();
+		HashSet<Component> scopePulls = new HashSet<Component>();
+		HashSet<Component> scopeBitTunnels = new HashSet<Component>();
+		while (!queue.isEmpty()) {
+			Location loc = queue.remove(queue.size() - 1);
+			if (!region.add(loc)) continue;
+
+			WireBundle b = old.getBundleAt(loc);
+			if (b != null && oldBundles.add(b)) {
+				queue.addAll(b.points);
+				if (b.threads != null) {
+					for (WireThread t : b.threads) {
+						for (ThreadBundle tb : t.getBundles()) {
+							if (!oldBundles.contains(tb.b)) queue.addAll(tb.b.points);
+						}
+					}
+				}
+			}
+
+			for (Component comp : points.getComponents(loc)) {
+				if (comp instanceof Wire) {
+					Wire w = (Wire) comp;
+					if (wires.contains(w) && scopeWires.add(w)) {
+						queue.add(w.e0);
+						queue.add(w.e1);
+					}
+				} else if (splitters.contains(comp)) {
+					if (scopeSplitters.add((Splitter) comp)) {
+						for (EndData end : comp.getEnds()) queue.add(end.getLocation());
+					}
+				} else if (tunnels.contains(comp)) {
+					if (scopeTunnels.add(comp)) {
+						if (tunnelSets == null) tunnelSets = getTunnelSets(tunnels);
+						String label = comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+						ArrayList<Location> tunnelSet = tunnelSets.get(label);
+						if (tunnelSet != null) queue.addAll(tunnelSet);
+					}
+				} else if (pulls.contains(comp)) {
+					scopePulls.add(comp);
+				} else if (bitTunnels.contains(comp)) {
+					if (scopeBitTunnels.add(comp)) {
+						for (Location pseudo : getBitTunnelLabels(comp)) queue.add(pseudo);
+					}
+				}
+			}
+
+			// a label of bit tunnels reaches every bit tunnel using it
+			if (loc.getX() < 0 && loc.getY() < 0) {
+				if (bitTunnelSets == null) bitTunnelSets = getBitTunnelSets(bitTunnels);
+				ArrayList<Location> bitTunnelSet = bitTunnelSets.get(loc);
+				if (bitTunnelSet != null) queue.addAll(bitTunnelSet);
+			}
+		}
+
+		BundleMap part = new BundleMap();
+		computeBundleMap(part, scopeWires, scopeTunnels, scopePulls,
+				scopeSplitters, scopeBitTunnels);
+
+		BundleMap ret = new BundleMap();
+		ret.pointBundles = new HashMap<Location,WireBundle>(old.pointBundles);
+		ret.pointBundles.keySet().removeAll(region);
+		ret.pointBundles.putAll(part.pointBundles);
+		ret.bundles = new HashSet<WireBundle>(old.bundles);
+		ret.bundles.removeAll(oldBundles);
+		ret.bundles.addAll(part.bundles);
+		ret.invalidBundles = new HashSet<WireBundle>(old.invalidBundles);
+		ret.invalidBundles.removeAll(oldBundles);
+		ret.invalidBundles.addAll(part.invalidBundles);
+		addWidthIncompatibilityData(ret);
+
+		ArrayList<WireThread> removed = new ArrayList<WireThread>();
+		for (WireBundle b : oldBundles) {
+			if (b.threads != null) removed.addAll(Arrays.asList(b.threads));
+		}
+		ret.previous = old;
+		ret.changedPoints = region;
+		ret.removedThreads = removed;
+		int depth = 0;
+		for (BundleMap m = ret; m.previous != null; m = m.previous) {
+			if (++depth >= MAX_MAP_HISTORY) {
+				m.previous = null;
+				break;
+			}
+		}
+
+		// extend the point index, unless it has too many dead points
+		PointIndex index = pointIndex;
+		int live = points.getSplitLocations().size() + ret.pointBundles.size();
+		if (index.size() > 2 * live + 64) {
+			pointIndex = new PointIndex(points.getSplitLocations(),
+					ret.getBundlePoints());
+		} else {
+			pointIndex = index.extend(region);
+		}
+		ret.markComputed();
+		return ret;
+	}
+
+	// To be called by getBundleMap and updateBundleMap only
+	private void computeBundleMap(BundleMap ret, Collection<Wire> wires,
+			Collection<Component> tunnels, Collection<Component> pulls,
+			Collection<Splitter> splitters, Collection<Component> bitTunnels) {
 		// create bundles corresponding to wires and tunnels
-		connectWires(ret);
-		connectTunnels(ret);
-		connectPullResistors(ret);
+		connectWires(ret, wires);
+		connectTunnels(ret, tunnels);
+		connectPullResistors(ret, pulls);
 
 		// merge any WireBundle objects united by previous steps
 		for (Iterator<WireBundle> it = ret.getBundles().iterator(); it.hasNext(); ) {
@@ -660,7 +948,7 @@ class CircuitWires {
 			}
 		}
 
-        connectBitLabeledTunnels(ret);
+        connectBitLabeledTunnels(ret, bitTunnels);
 
 		// unite threads going through splitters
 		for (Splitter spl : splitters) {
@@ -703,20 +991,25 @@ class CircuitWires {
 			}
 		}
 
-		// All threads are sewn together! Compute the exception set before leaving
+		// All threads are sewn together! Note the bundles in error before leaving
+		for (WireBundle b : ret.getBundles()) {
+			if (!b.isValid()) ret.invalidBundles.add(b);
+		}
+	}
+
+	private void addWidthIncompatibilityData(BundleMap ret) {
 		Collection<WidthIncompatibilityData> exceptions = points.getWidthIncompatibilityData();
 		if (exceptions != null && exceptions.size() > 0) {
 			for (WidthIncompatibilityData wid : exceptions) {
 				ret.addWidthIncompatibilityData(wid);
 			}
 		}
-		for (WireBundle b : ret.getBundles()) {
-			WidthIncompatibilityData e = b.getWidthIncompatibilityData();
-			if (e != null) ret.addWidthIncompatibilityData(e);
+		for (WireBundle b : ret.invalidBundles) {
+			ret.addWidthIncompatibilityData(b.getWidthIncompatibilityData());
 		}
 	}
 	
-	private void connectWires(BundleMap ret) {
+	private void connectWires(BundleMap ret, Collection<Wire> wires) {
 		// make a WireBundle object for each tree of connected wires
 		for (Wire w : wires) {
 			WireBundle b0 = ret.getBundleAt(w.e0);
@@ -734,8 +1027,8 @@ class CircuitWires {
 		}
 	}
 	
-	private void connectTunnels(BundleMap ret) {
-		// determine the sets of tunnels
+	private static HashMap<String,ArrayList<Location>> getTunnelSets(
+			Collection<Component> tunnels) {
 		HashMap<String,ArrayList<Location>> tunnelSets = new HashMap<String,ArrayList<Location>>();
 		for (Component comp : tunnels) {
 			String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
@@ -749,6 +1042,12 @@ class CircuitWires {
 				tunnelSet.add(comp.getLocation());
 			}
 		}
+		return tunnelSets;
+	}
+
+	private void connectTunnels(BundleMap ret, Collection<Component> tunnels) {
+		// determine the sets of tunnels
+		HashMap<String,ArrayList<Location>> tunnelSets = getTunnelSets(tunnels);
 		
 		// now connect the bundles that are tunnelled together
 		for (ArrayList<Location> tunnelSet : tunnelSets.values()) {
@@ -780,7 +1079,7 @@ class CircuitWires {
 		}
 	}
 	
-	private void connectPullResistors(BundleMap ret) {
+	private void connectPullResistors(BundleMap ret, Collection<Component> pulls) {
 		for (Component comp : pulls) {
 			Location loc = comp.getEnd(0).getLocation();
 			WireBundle b = ret.getBundleAt(loc);
@@ -865,7 +1164,7 @@ class CircuitWires {
 
     /** Cose por bits todos los BitLabeledTunnel: cada token no-const crea/usa un bundle de 1 bit por etiqueta
      *  y une el hilo i del bundle del BLT con el hilo 0 del bundle de etiqueta. */
-    private void connectBitLabeledTunnels(BundleMap ret) {
+    private void connectBitLabeledTunnels(BundleMap ret, Collection<Component> bitTunnels) {
         if (bitTunnels.isEmpty()) return;
 
         // Repositorios compartidos
@@ -893,15 +1192,7 @@ class CircuitWires {
             } catch (Throwable ignore) {}
 
             // === Lee/normaliza CSV → specs[i] ===
-            String csv = "";
-            try {
-                String s = comp.getAttributeSet().getValue(BitLabeledTunnel.BIT_SPECS);
-                if (s != null) csv = s;
-            } catch (Throwable ignore) {}
-            final String[] toks = csv.split(",");
-            final int usable = Math.min(width, toks.length);
-            final String[] specs = new String[width];
-            for (int i = 0; i < width; i++) specs[i] = (i < usable ? toks[i].trim() : "x");
+            final String[] specs = getBitSpecs(comp, width);
 
             WireThread[] bltTh = bltB.threads;
             if (!bltB.isValid() || bltTh == null || bltTh.length < width) continue;
@@ -954,6 +1245,56 @@ class CircuitWires {
         }
     }
 
+    /** Lee el CSV de un BitLabeledTunnel como un spec por bit ("x" si falta). */
+    private static String[] getBitSpecs(Component comp, int width) {
+        String csv = "";
+        try {
+            String s = comp.getAttributeSet().getValue(BitLabeledTunnel.BIT_SPECS);
+            if (s != null) csv = s;
+        } catch (Throwable ignore) {}
+        final String[] toks = csv.split(",");
+        final int usable = Math.min(width, toks.length);
+        final String[] specs = new String[width];
+        for (int i = 0; i < width; i++) specs[i] = (i < usable ? toks[i].trim() : "x");
+        return specs;
+    }
+
+    /** Ubicaciones de las etiquetas (pseudo-ubicaciones) que usa un BitLabeledTunnel,
+     *  incluidas las constantes C0/C1. */
+    private static ArrayList<Location> getBitTunnelLabels(Component comp) {
+        ArrayList<Location> ret = new ArrayList<>();
+        EndData end = comp.getEnd(0);
+        if (end == null || end.getWidth() == null) return ret;
+        int width = Math.max(1, end.getWidth().getWidth());
+        for (String spec : getBitSpecs(comp, width)) {
+            String token = normalizeToken(spec);
+            if (token.isEmpty() || "x".equals(token)) continue;
+            if ("0".equals(token) || "1".equals(token)) token = "C" + token;
+            Location pseudo = pseudoLocForLabel(token);
+            if (!ret.contains(pseudo)) ret.add(pseudo);
+        }
+        return ret;
+    }
+
+    /** Agrupa los BitLabeledTunnel por etiqueta: pseudo-ubicación → ubicaciones de los BLT. */
+    private static HashMap<Location, ArrayList<Location>> getBitTunnelSets(
+            Collection<Component> bitTunnels) {
+        HashMap<Location, ArrayList<Location>> ret = new HashMap<>();
+        for (Component comp : bitTunnels) {
+            EndData end = comp.getEnd(0);
+            if (end == null) continue;
+            for (Location pseudo : getBitTunnelLabels(comp)) {
+                ArrayList<Location> set = ret.get(pseudo);
+                if (set == null) {
+                    set = new ArrayList<>(3);
+                    ret.put(pseudo, set);
+                }
+                set.add(end.getLocation());
+            }
+        }
+        return ret;
+    }
+
     /** Normaliza el token del CSV:
      *  - "0","1","x"/"X" → tal cual en minúscula
      *  - "N123" → "N123" (en mayúscula la 'N')
@@ -0,0 +1,146 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.std.wiring.Clock;
+
+/**
+ * Decides which clocks of a tree of states a tick should touch. The
+ * clocks of the whole hierarchy are registered once, in the order in
+ * which a walk of the tree would meet them, and grouped into domains of
+ * equal high and low durations. A tick then looks at each domain only
+ * to see whether its clocks have an edge at that tick, and updates only
+ * the clocks of the domains that do.
+ *
+ * <p>This relies on each clock having been updated at the tick before:
+ * a clock that is not at an edge would keep its value anyway. So after
+ * any change to the tree, the clocks or their durations, the registry is
+ * built again on the next tick and that tick updates every clock.</p>
+ */
+class ClockScheduler {
+	private static class Domain {
+		int high;
+		int low;
+		int[] members = new int[4]; // indices of its clocks, ascending
+		int count = 0;
+
+		Domain(int high, int low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		void add(int index) {
+			if (count == members.length) {
+				int[] grown = new int[2 * count];
+				System.arraycopy(members, 0, grown, 0, count);
+				members = grown;
+			}
+			members[count++] = index;
+		}
+	}
+
+	private static final Domain[] NO_DOMAINS = new Domain[0];
+
+	private CircuitState root;
+	private volatile boolean stale = true;
+	private int timingRevision;
+	private CircuitState[] states = new CircuitState[0];
+	private Component[] clocks = new Component[0];
+	private Domain[] domains = NO_DOMAINS;
+	private Domain[] edges = NO_DOMAINS; // scratch: domains at an edge
+	private int[] cursors = new int[0]; // scratch: positions in edges
+
+	ClockScheduler(CircuitState root) {
+		this.root = root;
+	}
+
+	/** Notes that the clocks of the tree may have changed, so that the
+	 * next tick rebuilds the registry. */
+	void invalidate() {
+		stale = true;
+	}
+
+	/** Updates the clocks for the given tick, returning true if any of
+	 * them changed its value. */
+	boolean tick(int ticks) {
+		if (stale || timingRevision != Clock.getTimingRevision()) {
+			rebuild();
+			boolean ret = false;
+			for (int i = 0; i < clocks.length; i++) {
+				ret |= Clock.tick(states[i], ticks, clocks[i]);
+			}
+			return ret;
+		}
+
+		int numEdges = 0;
+		for (Domain d : domains) {
+			if (Clock.isEdge(ticks, d.high, d.low)) edges[numEdges++] = d;
+		}
+		if (numEdges == 0) return false;
+
+		boolean ret = false;
+		if (numEdges == 1) {
+			Domain d = edges[0];
+			for (int j = 0; j < d.count; j++) {
+				int i = d.members[j];
+				ret |= Clock.tick(states[i], ticks, clocks[i]);
+			}
+		} else {
+			// merge the domains so clocks are updated in registry order
+			for (int k = 0; k < numEdges; k++) cursors[k] = 0;
+			while (true) {
+				int best = -1;
+				int bestIndex = Integer.MAX_VALUE;
+				for (int k = 0; k < numEdges; k++) {
+					Domain d = edges[k];
+					if (cursors[k] < d.count && d.members[cursors[k]] < bestIndex) {
+						best = k;
+						bestIndex = d.members[cursors[k]];
+					}
+				}
+				if (best < 0) break;
+				cursors[best]++;
+				ret |= Clock.tick(states[bestIndex], ticks, clocks[bestIndex]);
+			}
+		}
+		for (int k = 0; k < numEdges; k++) edges[k] = null;
+		return ret;
+	}
+
+	private void rebuild() {
+		// cleared first, so that changes made meanwhile are not lost
+		stale = false;
+		timingRevision = Clock.getTimingRevision();
+
+		ArrayList<CircuitState> stateList = new ArrayList<CircuitState>();
+		ArrayList<Component> clockList = new ArrayList<Component>();
+		root.collectClocks(stateList, clockList);
+		states = stateList.toArray(new CircuitState[stateList.size()]);
+		clocks = clockList.toArray(new Component[clockList.size()]);
+
+		HashMap<Long,Domain> byDurations = new HashMap<Long,Domain>();
+		ArrayList<Domain> domainList = new ArrayList<Domain>();
+		for (int i = 0; i < clocks.length; i++) {
+			AttributeSet attrs = clocks[i].getAttributeSet();
+			int high = attrs.getValue(Clock.ATTR_HIGH).intValue();
+			int low = attrs.getValue(Clock.ATTR_LOW).intValue();
+			Long key = Long.valueOf(((long) high << 32) | (low & 0xFFFFFFFFL));
+			Domain d = byDurations.get(key);
+			if (d == null) {
+				d = new Domain(high, low);
+				byDurations.put(key, d);
+				domainList.add(d);
+			}
+			d.add(i);
+		}
+		domains = domainList.toArray(new Domain[domainList.size()]);
+		edges = new Domain[domains.length];
+		cursors = new int[domains.length];
+	}
+}
@@ -0,0 +1,24 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+public interface Combinational {
+	/** The feature of a component whose outputs are always driven. */
+	public static final Combinational NEVER_FLOATS = new Combinational() {
+		public boolean canFloat() { return false; }
+	};
+
+	/**
+	 * Indicates whether the component, as currently configured, might
+	 * leave one of its outputs floating, as a gate with a three-state
+	 * output type does.
+	 *
+	 * By providing this feature, a component promises that it keeps no
+	 * state between propagations and that its outputs depend only on the
+	 * current values of its inputs. A circuit built only from such
+	 * components, none of which can float, may be simulated by a
+	 * {@link CompiledCircuit} rather than event by event.
+	 */
+	public boolean canFloat();
+}
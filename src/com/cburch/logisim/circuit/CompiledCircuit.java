@@ -0,0 +1,487 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceData;
+import com.cburch.logisim.instance.InstanceFactory;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Probe;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+/**
+ * A purely combinational circuit levelized into a fixed evaluation order.
+ * A circuit qualifies when every component other than pins, splitters,
+ * and tunnels provides the {@link Combinational} feature without being
+ * able to float, when no thread of wire has more than one driver, and
+ * when the components form no cycle. Each component's output is then
+ * kept in a slot of a value array, and evaluating the circuit is a
+ * single pass over the components in topological order, each component
+ * reading its inputs straight from the slots of its drivers.
+ *
+ * Subcircuits that qualify are evaluated this way when the project's
+ * "simcompile" option is set (see {@link CircuitState#getCompiledFrame}).
+ * Only the settled result is computed, so the delays of the components
+ * inside collapse into the one unit of delay of the subcircuit itself.
+ */
+class CompiledCircuit {
+	/** The value at a point, computed from the slots of its drivers. */
+	private static class Net {
+		private final int[] slots; // driver of each thread, or -1; null if unwired
+		private final int[] bits; // bit of the driver's value carried by each thread
+		private final int whole; // slot whose value is the whole net's, or -1
+		private final BitWidth width; // for unwired points
+
+		Net(int[] slots, int[] bits, int whole, BitWidth width) {
+			this.slots = slots;
+			this.bits = bits;
+			this.whole = whole;
+			this.width = width;
+		}
+
+		Value get(Value[] vals) {
+			// This mirrors the way CircuitWires combines the values that
+			// components emit, given that each thread has one driver.
+			if (slots == null) {
+				Value v = whole < 0 ? null : vals[whole];
+				if (v == null || v == Value.NIL) return Value.createUnknown(width);
+				return v;
+			}
+			if (whole >= 0) {
+				Value v = vals[whole];
+				if (v != null && v.getWidth() == slots.length) return v;
+			}
+			if (slots.length == 1) return getThread(vals, 0);
+			Value[] tvs = new Value[slots.length];
+			for (int i = 0; i < tvs.length; i++) tvs[i] = getThread(vals, i);
+			return Value.create(tvs);
+		}
+
+		private Value getThread(Value[] vals, int i) {
+			int s = slots[i];
+			Value v = s < 0 ? null : vals[s];
+			if (v == null || v == Value.NIL) return Value.UNKNOWN;
+			return v.get(bits[i]);
+		}
+
+		void addDrivers(List<Integer> dest) {
+			if (slots == null) {
+				if (whole >= 0) dest.add(Integer.valueOf(whole));
+			} else {
+				for (int s : slots) {
+					if (s >= 0) dest.add(Integer.valueOf(s));
+				}
+			}
+		}
+	}
+
+	/** The evaluated values of one <code>CircuitState</code>. */
+	class Frame {
+		private final CircuitState state;
+		private final Value[] vals;
+		private final PortState[] portStates;
+		private final boolean detached;
+		private boolean evaluated = false;
+
+		private Frame(CircuitState state, boolean detached) {
+			this.state = state;
+			this.detached = detached;
+			this.vals = new Value[slotCount];
+			this.portStates = new PortState[order.length];
+			for (int i = 0; i < order.length; i++) {
+				portStates[i] = new PortState(i);
+			}
+		}
+
+		CompiledCircuit getProgram() {
+			return CompiledCircuit.this;
+		}
+
+		/** Returns the value at a point, or null if it is not compiled. */
+		Value getValue(Location loc) {
+			int id = index.get(loc);
+			return id < 0 ? null : points[id].get(vals);
+		}
+
+		/** Carries the subcircuit's changed inputs into the circuit,
+		 * evaluates it if any of them has changed, and emits its outputs.
+		 * Returns how many ports were crossed. */
+		int propagate(InstanceState superState, Instance[] pins) {
+			boolean changed = !evaluated;
+			int crossed = 0;
+			for (int i = state.nextDirtyPort(-1, pins.length); i >= 0;
+					i = state.nextDirtyPort(i, pins.length)) {
+				Instance pin = pins[i];
+				if (Pin.FACTORY.isInputPin(pin)) {
+					PortState pinState = getPortState(pin);
+					crossed++;
+					Value newVal = superState.getPort(i);
+					Value oldVal = Pin.FACTORY.getValue(pinState);
+					if (!newVal.equals(oldVal)) {
+						Pin.FACTORY.setValue(pinState, newVal);
+						changed = true;
+					}
+				}
+			}
+			if (changed) evaluate();
+			for (int i = 0; i < pins.length; i++) {
+				Instance pin = pins[i];
+				if (!Pin.FACTORY.isInputPin(pin) && (changed || state.isPortDirty(i))) {
+					Value val = getPortState(pin).getPort(0);
+					superState.setPort(i, val, 1);
+					crossed++;
+				}
+			}
+			return crossed;
+		}
+
+		/** Evaluates every component once, in order. */
+		void evaluate() {
+			for (int i = 0; i < order.length; i++) {
+				factories[i].propagate(portStates[i]);
+			}
+			evaluated = true;
+		}
+
+		/** Sets the value an input pin of the circuit drives, to be seen
+		 * by the next evaluation. */
+		void setInput(Instance pin, Value val) {
+			Pin.FACTORY.setValue(getPortState(pin), val);
+		}
+
+		/** Returns the value reaching an output pin of the circuit as of
+		 * the last evaluation. */
+		Value getOutput(Instance pin) {
+			return getPortState(pin).getPort(0);
+		}
+
+		Frame cloneFor(CircuitState newState) {
+			Frame ret = new Frame(newState, detached);
+			System.arraycopy(vals, 0, ret.vals, 0, vals.length);
+			ret.evaluated = evaluated;
+			return ret;
+		}
+
+		private PortState getPortState(Instance pin) {
+			Integer i = positions.get(Instance.getComponentFor(pin));
+			return portStates[i.intValue()];
+		}
+
+		/** The state through which one component reads and writes the
+		 * slots of this frame. */
+		private class PortState implements InstanceState {
+			private final int pos;
+
+			PortState(int pos) {
+				this.pos = pos;
+			}
+
+			public Instance getInstance() {
+				return Instance.getInstanceFor(order[pos]);
+			}
+
+			public InstanceFactory getFactory() {
+				return factories[pos];
+			}
+
+			public Project getProject() {
+				return state.getProject();
+			}
+
+			public AttributeSet getAttributeSet() {
+				return order[pos].getAttributeSet();
+			}
+
+			public <E> E getAttributeValue(Attribute<E> attr) {
+				return order[pos].getAttributeSet().getValue(attr);
+			}
+
+			public Value getPort(int portIndex) {
+				return ports[pos][portIndex].get(vals);
+			}
+
+			public boolean isPortConnected(int portIndex) {
+				return connected[pos][portIndex];
+			}
+
+			public void setPort(int portIndex, Value value, int delay) {
+				int slot = outputs[pos][portIndex];
+				if (slot >= 0) vals[slot] = value;
+			}
+
+			public InstanceData getData() {
+				return (InstanceData) state.getData(order[pos]);
+			}
+
+			public void setData(InstanceData value) {
+				state.setData(order[pos], value);
+			}
+
+			public void fireInvalidated() {
+				if (detached) return;
+				Instance instance = getInstance();
+				if (instance != null) instance.fireInvalidated();
+			}
+
+			public boolean isCircuitRoot() {
+				return !state.isSubstate();
+			}
+
+			public long getTickCount() {
+				return state.getPropagator().getTickCount();
+			}
+		}
+	}
+
+	private final PointIndex index;
+	private Component[] order = null; // null if the circuit cannot be compiled
+	private InstanceFactory[] factories;
+	private Net[][] ports; // net read by each component at each end
+	private int[][] outputs; // slot written by each component at each end, or -1
+	private boolean[][] connected;
+	private Net[] points; // net for each point of the index
+	private HashMap<Component,Integer> positions;
+	private int slotCount;
+	private boolean serial = false; // true if some component changes its instance
+
+	private CompiledCircuit(PointIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Attempts to compile a circuit. The result should be discarded once
+	 * the circuit's point index is no longer <code>index</code>, since
+	 * every edit that changes connections recompiles the index.
+	 */
+	static CompiledCircuit compile(Circuit circuit, PointIndex index) {
+		CompiledCircuit ret = new CompiledCircuit(index);
+		try {
+			ret.build(circuit);
+		} catch (ConcurrentModificationException e) {
+			// the circuit is being edited, which will also recompile
+			// the index; until then, it is simulated event by event
+			ret.order = null;
+		}
+		return ret;
+	}
+
+	PointIndex getPointIndex() {
+		return index;
+	}
+
+	boolean isCompiled() {
+		return order != null;
+	}
+
+	/** Indicates whether evaluating the program may change one of the
+	 * circuit's components itself, as a probe resizing to the width of
+	 * its value does, so that frames of the program cannot be evaluated
+	 * on several threads at once. */
+	boolean mustEvaluateSerially() {
+		return serial;
+	}
+
+	Frame createFrame(CircuitState state) {
+		return new Frame(state, false);
+	}
+
+	/**
+	 * Creates a frame that is evaluated apart from any simulation, as for
+	 * a row of a truth table. Its components do not invalidate their
+	 * instances, since that would reach every state of the circuit, so
+	 * that several such frames may be evaluated at once on different
+	 * threads.
+	 */
+	Frame createDetachedFrame(CircuitState state) {
+		return new Frame(state, true);
+	}
+
+	private void build(Circuit circuit) {
+		CircuitWires wires = circuit.wires;
+		Set<WidthIncompatibilityData> errors = wires.getWidthIncompatibilityData();
+		if (errors != null && !errors.isEmpty()) return;
+
+		// determine the components to evaluate
+		ArrayList<Component> comps = new ArrayList<Component>();
+		for (Component comp : circuit.getNonWires()) {
+			Object factory = comp.getFactory();
+			if (comp instanceof Splitter || factory instanceof Tunnel
+					|| comp.getEnds().isEmpty()) {
+				continue; // these affect only how points are connected
+			}
+			if (!(factory instanceof Pin)) {
+				Combinational feature = (Combinational) comp.getFeature(Combinational.class);
+				if (feature == null || feature.canFloat()) return;
+			}
+			comps.add(comp);
+		}
+
+		// assign a slot to each output, insisting on one driver per point
+		int n = comps.size();
+		HashMap<Location,Integer> drivers = new HashMap<Location,Integer>();
+		ArrayList<Component> slotOwners = new ArrayList<Component>();
+		HashMap<Component,Integer> pos = new HashMap<Component,Integer>();
+		int[][] outs = new int[n][];
+		for (int i = 0; i < n; i++) {
+			Component comp = comps.get(i);
+			pos.put(comp, Integer.valueOf(i));
+			List<EndData> ends = comp.getEnds();
+			outs[i] = new int[ends.size()];
+			for (int j = 0; j < outs[i].length; j++) {
+				EndData end = ends.get(j);
+				outs[i][j] = -1;
+				if (end.isOutput()) {
+					Integer slot = Integer.valueOf(slotOwners.size());
+					if (drivers.put(end.getLocation(), slot) != null) return;
+					outs[i][j] = slot.intValue();
+					slotOwners.add(comp);
+				}
+			}
+		}
+
+		// determine the net that each end reads, and the nets of all points
+		HashMap<Location,Net> nets = new HashMap<Location,Net>();
+		HashMap<WireBundle,Net> bundleNets = new HashMap<WireBundle,Net>();
+		Net[][] compPorts = new Net[n][];
+		boolean[][] compConnected = new boolean[n][];
+		for (int i = 0; i < n; i++) {
+			Component comp = comps.get(i);
+			List<EndData> ends = comp.getEnds();
+			compPorts[i] = new Net[ends.size()];
+			compConnected[i] = new boolean[ends.size()];
+			for (int j = 0; j < compPorts[i].length; j++) {
+				Location loc = ends.get(j).getLocation();
+				Net net = getNet(circuit, loc, drivers, nets, bundleNets);
+				if (net == null) return;
+				compPorts[i][j] = net;
+				compConnected[i][j] = circuit.isConnected(loc, comp);
+			}
+		}
+		Net[] pointNets = new Net[index.size()];
+		for (int id = 0; id < pointNets.length; id++) {
+			Net net = getNet(circuit, index.getLocation(id), drivers, nets, bundleNets);
+			if (net == null) return;
+			pointNets[id] = net;
+		}
+
+		// levelize the components, giving up if they contain a cycle
+		ArrayList<ArrayList<Integer>> succs = new ArrayList<ArrayList<Integer>>(n);
+		int[] preds = new int[n];
+		for (int i = 0; i < n; i++) succs.add(new ArrayList<Integer>());
+		ArrayList<Integer> found = new ArrayList<Integer>();
+		for (int i = 0; i < n; i++) {
+			List<EndData> ends = comps.get(i).getEnds();
+			for (int j = 0; j < ends.size(); j++) {
+				if (ends.get(j).isInput()) compPorts[i][j].addDrivers(found);
+			}
+			for (Integer slot : found) {
+				int src = pos.get(slotOwners.get(slot.intValue())).intValue();
+				succs.get(src).add(Integer.valueOf(i));
+				preds[i]++;
+			}
+			found.clear();
+		}
+		int[] levelized = new int[n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			if (preds[i] == 0) levelized[count++] = i;
+		}
+		for (int k = 0; k < count; k++) {
+			for (Integer dst : succs.get(levelized[k])) {
+				int d = dst.intValue();
+				preds[d]--;
+				if (preds[d] == 0) levelized[count++] = d;
+			}
+		}
+		if (count < n) return; // some component depends on itself
+
+		Component[] newOrder = new Component[n];
+		factories = new InstanceFactory[n];
+		ports = new Net[n][];
+		outputs = new int[n][];
+		connected = new boolean[n][];
+		positions = new HashMap<Component,Integer>();
+		for (int k = 0; k < n; k++) {
+			int i = levelized[k];
+			Component comp = comps.get(i);
+			newOrder[k] = comp;
+			factories[k] = (InstanceFactory) comp.getFactory();
+			if (factories[k] instanceof Probe) serial = true;
+			ports[k] = compPorts[i];
+			outputs[k] = outs[i];
+			connected[k] = compConnected[i];
+			positions.put(comp, Integer.valueOf(k));
+		}
+		points = pointNets;
+		slotCount = slotOwners.size();
+		order = newOrder;
+	}
+
+	private static Net getNet(Circuit circuit, Location loc,
+			HashMap<Location,Integer> drivers, HashMap<Location,Net> nets,
+			HashMap<WireBundle,Net> bundleNets) {
+		Net ret = nets.get(loc);
+		if (ret != null) return ret;
+
+		WireBundle b = circuit.wires.getWireBundle(loc);
+		if (b == null) { // point is not wired
+			Integer slot = drivers.get(loc);
+			ret = new Net(null, null, slot == null ? -1 : slot.intValue(),
+					circuit.getWidth(loc));
+		} else {
+			ret = bundleNets.get(b);
+			if (ret == null) {
+				ret = createBundleNet(b, drivers);
+				if (ret == null) return null;
+				bundleNets.put(b, ret);
+			}
+		}
+		nets.put(loc, ret);
+		return ret;
+	}
+
+	private static Net createBundleNet(WireBundle b,
+			HashMap<Location,Integer> drivers) {
+		WireThread[] threads = b.threads;
+		if (!b.isValid() || threads == null) return null;
+		int[] slots = new int[threads.length];
+		int[] bits = new int[threads.length];
+		int whole = -2;
+		for (int i = 0; i < threads.length; i++) {
+			int slot = -1;
+			int bit = 0;
+			for (CircuitWires.ThreadBundle tb : threads[i].getBundles()) {
+				if (tb.b.getPullValue() != Value.UNKNOWN) return null;
+				for (Location p : tb.b.points) {
+					Integer s = drivers.get(p);
+					if (s != null) {
+						if (slot >= 0) return null; // more than one driver
+						slot = s.intValue();
+						bit = tb.loc;
+					}
+				}
+			}
+			slots[i] = slot;
+			bits[i] = bit;
+			if (whole == -2) whole = slot;
+			if (slot != whole || bit != i) whole = -1;
+		}
+		return new Net(slots, bits, whole < 0 ? -1 : whole, null);
+	}
+}
@@ -0,0 +1,143 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Bounds;
+
+/**
+ * A uniform grid over components, so that those near a point or within a
+ * rectangle can be found without looking at every component of a circuit.
+ * Each component is entered in every cell its bounds overlap; components
+ * overlapping too many cells are kept in a list that every query looks
+ * at. The bounds recorded for a component may be larger than its actual
+ * bounds, so callers must check the components a query returns.
+ *
+ * The index is read while drawing and hit-testing, and updated as
+ * components are edited or invalidated by the simulator, so each method
+ * holds the index's lock.
+ */
+class ComponentIndex<T extends Component> {
+	private static final int CELL_BITS = 7;
+	private static final int MAX_CELLS = 256;
+
+	private final HashMap<Long,ArrayList<T>> cells = new HashMap<Long,ArrayList<T>>();
+	private final HashMap<T,Bounds> recorded = new HashMap<T,Bounds>();
+	private final HashMap<T,Bounds> entered = new HashMap<T,Bounds>(); // bounds when last added
+	private final ArrayList<T> large = new ArrayList<T>();
+
+	ComponentIndex() { }
+
+	/** Enters a component under its current bounds, replacing any entry
+	 * it already has unless its bounds are those it was entered under. */
+	synchronized void add(T comp) {
+		Bounds bds = comp.getBounds();
+		if (bds != null && bds.equals(entered.get(comp))) return;
+		put(comp, bds);
+		entered.put(comp, bds);
+	}
+
+	/** Enters a component already in the index again, if its bounds
+	 * have changed since it was entered. */
+	synchronized void update(T comp) {
+		if (entered.containsKey(comp)) add(comp);
+	}
+
+	synchronized void remove(T comp) {
+		entered.remove(comp);
+		clear(comp);
+	}
+
+	private void clear(T comp) {
+		Bounds bds = recorded.remove(comp);
+		if (bds == null) return;
+		if (isLarge(bds)) {
+			large.remove(comp);
+			return;
+		}
+		int x1 = cell(bds.getX() + bds.getWidth());
+		int y1 = cell(bds.getY() + bds.getHeight());
+		for (int cx = cell(bds.getX()); cx <= x1; cx++) {
+			for (int cy = cell(bds.getY()); cy <= y1; cy++) {
+				Long key = key(cx, cy);
+				ArrayList<T> list = cells.get(key);
+				if (list != null) {
+					list.remove(comp);
+					if (list.isEmpty()) cells.remove(key);
+				}
+			}
+		}
+	}
+
+	/** Widens the bounds recorded for a component in the index, if needed,
+	 * to include <code>bds</code>, as when a label drawn with a given
+	 * Graphics turns out to extend past the component's bounds. */
+	synchronized void include(T comp, Bounds bds) {
+		Bounds old = recorded.get(comp);
+		if (old == null || bds == null || bds == Bounds.EMPTY_BOUNDS
+				|| old.contains(bds)) {
+			return;
+		}
+		put(comp, old.add(bds));
+	}
+
+	/** Adds to <code>ret</code> each component whose recorded bounds
+	 * overlap the given rectangle. */
+	synchronized void query(int x, int y, int width, int height, Collection<? super T> ret) {
+		int x1 = cell(x + width);
+		int y1 = cell(y + height);
+		for (int cx = cell(x); cx <= x1; cx++) {
+			for (int cy = cell(y); cy <= y1; cy++) {
+				ArrayList<T> list = cells.get(key(cx, cy));
+				if (list != null) ret.addAll(list);
+			}
+		}
+		ret.addAll(large);
+	}
+
+	void query(Bounds bds, Collection<? super T> ret) {
+		query(bds.getX(), bds.getY(), bds.getWidth(), bds.getHeight(), ret);
+	}
+
+	private void put(T comp, Bounds bds) {
+		if (bds == null) bds = Bounds.EMPTY_BOUNDS;
+		clear(comp);
+		recorded.put(comp, bds);
+		if (isLarge(bds)) {
+			large.add(comp);
+			return;
+		}
+		int x1 = cell(bds.getX() + bds.getWidth());
+		int y1 = cell(bds.getY() + bds.getHeight());
+		for (int cx = cell(bds.getX()); cx <= x1; cx++) {
+			for (int cy = cell(bds.getY()); cy <= y1; cy++) {
+				Long key = key(cx, cy);
+				ArrayList<T> list = cells.get(key);
+				if (list == null) {
+					list = new ArrayList<T>(4);
+					cells.put(key, list);
+				}
+				list.add(comp);
+			}
+		}
+	}
+
+	private static boolean isLarge(Bounds bds) {
+		long w = cell(bds.getX() + bds.getWidth()) - cell(bds.getX()) + 1;
+		long h = cell(bds.getY() + bds.getHeight()) - cell(bds.getY()) + 1;
+		return w * h > MAX_CELLS;
+	}
+
+	private static int cell(int coord) {
+		return coord >> CELL_BITS;
+	}
+
+	private static Long key(int cx, int cy) {
+		return Long.valueOf(((long) cx << 32) | (cy & 0xFFFFFFFFL));
+	}
+}
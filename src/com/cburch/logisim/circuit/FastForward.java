@@ -0,0 +1,160 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+
+/**
+ * Runs a simulation as fast as it can, tick after tick, until one of its
+ * breakpoints holds, a number of ticks have passed, a length of time has
+ * passed or it is canceled. It may be run directly, on a propagator that
+ * no other thread uses, or handed to {@link Simulator#runUntil}, which
+ * runs it on the simulator's thread and tells its listeners only once it
+ * is done.
+ */
+public class FastForward {
+	public static final int RUNNING = -1;
+	public static final int STOP_BREAKPOINT = 0;
+	public static final int STOP_TICKS = 1;
+	public static final int STOP_TIME = 2;
+	public static final int STOP_OSCILLATION = 3;
+	public static final int STOP_CANCELED = 4;
+	public static final int STOP_ERROR = 5;
+
+	// the clock is read only this often, in ticks
+	private static final int TIME_CHECK_INTERVAL = 64;
+
+	private CircuitState root;
+	private ArrayList<Breakpoint> breakpoints = new ArrayList<Breakpoint>();
+	private long tickLimit = Long.MAX_VALUE;
+	private long timeLimit = 0; // in milliseconds, or 0 if none
+	private volatile boolean canceled = false;
+
+	private int stopReason = RUNNING;
+	private Breakpoint breakpointHit = null;
+	private long tickCount = 0;
+	private long elapsed = 0;
+
+	public FastForward(CircuitState root) {
+		this.root = root;
+	}
+
+	public CircuitState getCircuitState() {
+		return root;
+	}
+
+	public void addBreakpoint(Breakpoint value) {
+		breakpoints.add(value);
+	}
+
+	/** Sets the most ticks to run. A cycle of a clock whose high and low
+	 * durations are both one takes two ticks. */
+	public void setTickLimit(long value) {
+		tickLimit = value;
+	}
+
+	/** Sets the longest time to run, in milliseconds, or 0 for no limit. */
+	public void setTimeLimit(long value) {
+		timeLimit = value;
+	}
+
+	/** Asks the run to stop after its current tick. */
+	public void cancel() {
+		canceled = true;
+	}
+
+	/** Stops a run that will not be started after all. */
+	synchronized void abandon() {
+		canceled = true;
+		stopReason = STOP_CANCELED;
+		notifyAll();
+	}
+
+	/** Runs the simulation on this thread, returning the reason for which
+	 * it stopped. */
+	public int run() {
+		Propagator prop = root.getPropagator();
+		Breakpoint[] bps = breakpoints.toArray(new Breakpoint[breakpoints.size()]);
+		long start = System.currentTimeMillis();
+		long deadline = timeLimit > 0 ? start + timeLimit : Long.MAX_VALUE;
+		long ticks = 0;
+		int reason = STOP_ERROR;
+		Breakpoint hit = null;
+		synchronized(this) {
+			stopReason = RUNNING;
+		}
+		try {
+			while (true) {
+				if (canceled) {
+					reason = STOP_CANCELED;
+					break;
+				}
+				if (ticks >= tickLimit) {
+					reason = STOP_TICKS;
+					break;
+				}
+				if (ticks % TIME_CHECK_INTERVAL == 0
+						&& System.currentTimeMillis() >= deadline) {
+					reason = STOP_TIME;
+					break;
+				}
+
+				prop.tick();
+				prop.propagate();
+				ticks++;
+
+				if (prop.isOscillating()) {
+					reason = STOP_OSCILLATION;
+					break;
+				}
+				for (Breakpoint bp : bps) {
+					if (bp.test()) {
+						hit = bp;
+						break;
+					}
+				}
+				if (hit != null) {
+					reason = STOP_BREAKPOINT;
+					break;
+				}
+			}
+		} finally {
+			synchronized(this) {
+				tickCount = ticks;
+				elapsed = System.currentTimeMillis() - start;
+				breakpointHit = hit;
+				stopReason = reason;
+				notifyAll();
+			}
+		}
+		return reason;
+	}
+
+	/** Waits for the run to stop, returning the reason for which it did. */
+	public synchronized int waitFor() throws InterruptedException {
+		while (stopReason == RUNNING) wait();
+		return stopReason;
+	}
+
+	/** Returns the reason for which the run stopped, or RUNNING if it has
+	 * not. */
+	public synchronized int getStopReason() {
+		return stopReason;
+	}
+
+	/** Returns the breakpoint that stopped the run, if any. */
+	public synchronized Breakpoint getBreakpointHit() {
+		return breakpointHit;
+	}
+
+	/** Returns the number of ticks run. */
+	public synchronized long getTickCount() {
+		return tickCount;
+	}
+
+	/** Returns the length of the run in milliseconds. */
+	public synchronized long getElapsedMillis() {
+		return elapsed;
+	}
+}
@@ -0,0 +1,125 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import com.cburch.logisim.data.Location;
+
+/**
+ * Assigns a dense integer id to each connection point of a circuit, so
+ * that per-state data about points can be kept in arrays rather than in
+ * maps keyed by <code>Location</code>. An index is immutable; a new one
+ * is made along with the circuit's bundle map whenever the circuit is
+ * edited, usually by {@link #extend}ing the previous one so that the
+ * points already indexed keep their ids.
+ */
+class PointIndex {
+	static final PointIndex EMPTY
+		= new PointIndex(Collections.<Location>emptySet(),
+				Collections.<Location>emptySet());
+
+	private final Location[] points;
+	private final int[] table; // id + 1 for each slot, 0 if slot is empty
+	private final int mask;
+	// shared by an index and all indexes extended from it
+	private final Object lineage;
+
+	PointIndex(Collection<Location> a, Collection<Location> b) {
+		int capacity = 4;
+		while (capacity < 2 * (a.size() + b.size())) capacity *= 2;
+		Location[] pts = new Location[a.size() + b.size()];
+		int[] tab = new int[capacity];
+		int m = capacity - 1;
+		int n = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			for (Location loc : pass == 0 ? a : b) {
+				n = insert(pts, tab, m, n, loc);
+			}
+		}
+		this.points = n < pts.length ? Arrays.copyOf(pts, n) : pts;
+		this.table = tab;
+		this.mask = m;
+		this.lineage = new Object();
+	}
+
+	private PointIndex(PointIndex base, Collection<Location> added) {
+		int n = base.points.length;
+		int capacity = base.table.length;
+		while (capacity < 2 * (n + added.size())) capacity *= 2;
+		Location[] pts = Arrays.copyOf(base.points, n + added.size());
+		int[] tab;
+		int m = capacity - 1;
+		if (capacity == base.table.length) {
+			tab = base.table.clone();
+		} else {
+			tab = new int[capacity];
+			for (int id = 0; id < n; id++) {
+				int i = spread(pts[id].hashCode()) & m;
+				while (tab[i] != 0) i = (i + 1) & m;
+				tab[i] = id + 1;
+			}
+		}
+		for (Location loc : added) {
+			n = insert(pts, tab, m, n, loc);
+		}
+		this.points = n < pts.length ? Arrays.copyOf(pts, n) : pts;
+		this.table = tab;
+		this.mask = m;
+		this.lineage = base.lineage;
+	}
+
+	/**
+	 * Returns a new index in which every point of this one keeps its id
+	 * and the given points not yet indexed follow. Points are never
+	 * dropped, so the circuit compiles a fresh index once too many of
+	 * them no longer exist.
+	 */
+	PointIndex extend(Collection<Location> added) {
+		return new PointIndex(this, added);
+	}
+
+	/** Returns whether every point of <code>other</code> has the same id
+	 * in this index. */
+	boolean isExtensionOf(PointIndex other) {
+		return other.lineage == lineage && other.points.length <= points.length;
+	}
+
+	int size() {
+		return points.length;
+	}
+
+	Location getLocation(int id) {
+		return points[id];
+	}
+
+	/** Returns the id of the given point, or -1 if it is not indexed. */
+	int get(Location loc) {
+		int i = spread(loc.hashCode()) & mask;
+		while (true) {
+			int id = table[i];
+			if (id == 0) return -1;
+			if (points[id - 1].equals(loc)) return id - 1;
+			i = (i + 1) & mask;
+		}
+	}
+
+	private static int insert(Location[] pts, int[] tab, int m, int n,
+			Location loc) {
+		int i = spread(loc.hashCode()) & m;
+		while (tab[i] != 0) {
+			if (pts[tab[i] - 1].equals(loc)) return n;
+			i = (i + 1) & m;
+		}
+		pts[n] = loc;
+		tab[i] = n + 1;
+		return n + 1;
+	}
+
+	private static int spread(int h) {
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,138 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * The values and causes recorded at each point of a circuit for one
+ * <code>CircuitState</code>. Points known to the circuit's
+ * {@link PointIndex} are kept in arrays indexed by point id; any other
+ * point (for instance, one added since the index was last compiled) goes
+ * into a small overflow map.
+ *
+ * The index and arrays of a store never change. When the circuit's index
+ * is recompiled, the simulation thread creates a new store with
+ * {@link #remap}, so a reader on another thread that has fetched a store
+ * always sees a consistent one.
+ */
+class PointStore {
+	private final PointIndex index;
+	private final Value[] values;
+	private final SetData[] causes;
+	private HashMap<Location,Value> otherValues = null;
+	private HashMap<Location,SetData> otherCauses = null;
+
+	PointStore(PointIndex index) {
+		this.index = index;
+		this.values = new Value[index.size()];
+		this.causes = new SetData[index.size()];
+	}
+
+	PointIndex getIndex() {
+		return index;
+	}
+
+	Value getValue(Location loc) {
+		int id = index.get(loc);
+		if (id >= 0) return values[id];
+		HashMap<Location,Value> other = otherValues;
+		return other == null ? null : other.get(loc);
+	}
+
+	/** Sets the value at a point, or removes it if <code>val</code> is
+	 * null, returning the previous value. */
+	Value setValue(Location loc, Value val) {
+		int id = index.get(loc);
+		if (id >= 0) {
+			Value old = values[id];
+			values[id] = val;
+			return old;
+		} else if (val == null) {
+			return otherValues == null ? null : otherValues.remove(loc);
+		} else {
+			if (otherValues == null) otherValues = new HashMap<Location,Value>();
+			return otherValues.put(loc, val);
+		}
+	}
+
+	SetData getCause(Location loc) {
+		int id = index.get(loc);
+		if (id >= 0) return causes[id];
+		HashMap<Location,SetData> other = otherCauses;
+		return other == null ? null : other.get(loc);
+	}
+
+	/** Sets the head of the cause list at a point, or removes it if
+	 * <code>data</code> is null. */
+	void setCause(Location loc, SetData data) {
+		int id = index.get(loc);
+		if (id >= 0) {
+			causes[id] = data;
+		} else if (data == null) {
+			if (otherCauses != null) otherCauses.remove(loc);
+		} else {
+			if (otherCauses == null) otherCauses = new HashMap<Location,SetData>();
+			otherCauses.put(loc, data);
+		}
+	}
+
+	/** Returns a store for a different index holding the same data. */
+	PointStore remap(PointIndex newIndex) {
+		PointStore ret = new PointStore(newIndex);
+		if (newIndex.isExtensionOf(index)) {
+			// ids are unchanged, so the arrays can be copied as they are
+			System.arraycopy(values, 0, ret.values, 0, values.length);
+			System.arraycopy(causes, 0, ret.causes, 0, causes.length);
+			if (otherValues != null) {
+				for (Map.Entry<Location,Value> e : otherValues.entrySet()) {
+					ret.setValue(e.getKey(), e.getValue());
+				}
+			}
+			if (otherCauses != null) {
+				for (Map.Entry<Location,SetData> e : otherCauses.entrySet()) {
+					ret.setCause(e.getKey(), e.getValue());
+				}
+			}
+		} else {
+			ret.copyData(this, null);
+		}
+		return ret;
+	}
+
+	/** Returns a copy of this store whose causes are cloned for use in
+	 * another circuit state. */
+	PointStore cloneFor(CircuitState newState) {
+		PointStore ret = new PointStore(index);
+		ret.copyData(this, newState);
+		return ret;
+	}
+
+	private void copyData(PointStore src, CircuitState newState) {
+		for (int i = 0; i < src.values.length; i++) {
+			Location loc = src.index.getLocation(i);
+			if (src.values[i] != null) setValue(loc, src.values[i]);
+			SetData cause = src.causes[i];
+			if (cause != null) {
+				setCause(loc, newState == null ? cause : cause.cloneFor(newState));
+			}
+		}
+		if (src.otherValues != null) {
+			for (Map.Entry<Location,Value> e : src.otherValues.entrySet()) {
+				setValue(e.getKey(), e.getValue());
+			}
+		}
+		if (src.otherCauses != null) {
+			for (Map.Entry<Location,SetData> e : src.otherCauses.entrySet()) {
+				SetData cause = e.getValue();
+				setCause(e.getKey(), newState == null ? cause : cause.cloneFor(newState));
+			}
+		}
+	}
+}
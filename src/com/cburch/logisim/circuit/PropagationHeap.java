@@ -0,0 +1,68 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.PriorityQueue;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * The original propagation queue: every event is a <code>SetData</code>
+ * held in a binary heap, and that same record later becomes the cause
+ * linked into the circuit state.
+ */
+class PropagationHeap extends PropagationQueue {
+	private PriorityQueue<SetData> queue = new PriorityQueue<SetData>();
+	private SetData current = null;
+
+	@Override
+	boolean isEmpty() {
+		return queue.isEmpty();
+	}
+
+	@Override
+	int size() {
+		return queue.size();
+	}
+
+	@Override
+	int peekTime() {
+		return queue.peek().time;
+	}
+
+	@Override
+	boolean poll(int time) {
+		SetData data = queue.peek();
+		if (data == null || data.time != time) return false;
+		queue.remove();
+		current = data;
+		this.time = data.time;
+		this.serialNumber = data.serialNumber;
+		this.state = data.state;
+		this.loc = data.loc;
+		this.cause = data.cause;
+		this.val = data.val;
+		return true;
+	}
+
+	@Override
+	void add(int time, int serialNumber, CircuitState state,
+			Location loc, Component cause, Value val) {
+		queue.add(new SetData(time, serialNumber, state, loc, cause, val));
+	}
+
+	@Override
+	void clear() {
+		queue.clear();
+		current = null;
+	}
+
+	@Override
+	SetData createCause() {
+		return current;
+	}
+}
@@ -0,0 +1,62 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * The queue of pending value changes used by a {@link Propagator}. Events
+ * are delivered in (time, serialNumber) order. After a successful call to
+ * {@link #poll(int)}, the fields of this object describe the event that
+ * was just removed; they remain valid until the next call to
+ * <code>poll</code>.
+ */
+abstract class PropagationQueue {
+	int time;
+	int serialNumber;
+	CircuitState state;
+	Location loc;
+	Component cause;
+	Value val;
+
+	abstract boolean isEmpty();
+
+	abstract int size();
+
+	/** Returns the time of the earliest pending event. The queue must not
+	 * be empty. */
+	abstract int peekTime();
+
+	/** Removes the earliest pending event if it is scheduled at the given
+	 * time, loading its description into this object's fields. */
+	abstract boolean poll(int time);
+
+	abstract void add(int time, int serialNumber, CircuitState state,
+			Location loc, Component cause, Value val);
+
+	abstract void clear();
+
+	/** Returns a cause record for the event most recently polled, to be
+	 * linked into the causes of its location. */
+	SetData createCause() {
+		return new SetData(time, serialNumber, state, loc, cause, val);
+	}
+
+	/** Moves all pending events into another queue, preserving order. */
+	void transferTo(PropagationQueue dest) {
+		while (!isEmpty()) {
+			int t = peekTime();
+			while (poll(t)) {
+				dest.add(time, serialNumber, state, loc, cause, val);
+			}
+		}
+		state = null;
+		loc = null;
+		cause = null;
+		val = null;
+	}
+}
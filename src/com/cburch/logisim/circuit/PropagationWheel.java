@@ -0,0 +1,216 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.PriorityQueue;
+
+import com.cburch.logisim.circuit.Propagator.SetData;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * A timing wheel for propagation events. Delays are small integers, so
+ * events within <code>SLOTS</code> time units of the current time are
+ * kept in a circular array of FIFO buckets, one bucket per time; events
+ * further out wait in an overflow heap until the wheel reaches them.
+ * Because serial numbers increase as events are added, appending to a
+ * bucket keeps each bucket in serial order, which gives the same
+ * (time, serialNumber) ordering as {@link PropagationHeap}.
+ *
+ * The event records themselves are pooled in parallel arrays, so adding
+ * and polling events allocates nothing once the pool has grown large
+ * enough.
+ */
+class PropagationWheel extends PropagationQueue {
+	private static final int SLOTS = 1024; // must be a power of 2
+	private static final int MASK = SLOTS - 1;
+	private static final int WORDS = SLOTS / 64;
+
+	private int now;
+	private int count = 0; // number of events in the wheel (not overflow)
+	private int[] head = new int[SLOTS];
+	private int[] tail = new int[SLOTS];
+	private long[] occupied = new long[WORDS];
+	private PriorityQueue<SetData> overflow = new PriorityQueue<SetData>();
+
+	// pooled event records, linked through next[]
+	private int[] times = new int[256];
+	private int[] serials = new int[256];
+	private int[] next = new int[256];
+	private CircuitState[] states = new CircuitState[256];
+	private Location[] locs = new Location[256];
+	private Component[] causes = new Component[256];
+	private Value[] vals = new Value[256];
+	private int free = -1;
+	private int used = 0; // records ever handed out from the arrays
+
+	public PropagationWheel(int now) {
+		this.now = now;
+		for (int i = 0; i < SLOTS; i++) {
+			head[i] = -1;
+			tail[i] = -1;
+		}
+	}
+
+	@Override
+	boolean isEmpty() {
+		return count == 0 && overflow.isEmpty();
+	}
+
+	@Override
+	int size() {
+		return count + overflow.size();
+	}
+
+	@Override
+	int peekTime() {
+		if (count == 0) {
+			advanceTo(overflow.peek().time);
+			return now;
+		}
+		int start = now & MASK;
+		int w = start >>> 6;
+		long bits = occupied[w] & (-1L << (start & 63));
+		for (int i = 0; i <= WORDS; i++) {
+			if (bits != 0) {
+				int slot = (w << 6) + Long.numberOfTrailingZeros(bits);
+				advanceTo(now + ((slot - start) & MASK));
+				return now;
+			}
+			w = (w + 1) & (WORDS - 1);
+			bits = occupied[w];
+		}
+		throw new IllegalStateException("wheel count out of sync");
+	}
+
+	@Override
+	boolean poll(int time) {
+		int slot = time & MASK;
+		int idx = head[slot];
+		if (idx < 0 || times[idx] != time) return false;
+
+		this.time = time;
+		this.serialNumber = serials[idx];
+		this.state = states[idx];
+		this.loc = locs[idx];
+		this.cause = causes[idx];
+		this.val = vals[idx];
+
+		int nxt = next[idx];
+		head[slot] = nxt;
+		if (nxt < 0) {
+			tail[slot] = -1;
+			occupied[slot >>> 6] &= ~(1L << (slot & 63));
+		}
+		count--;
+		release(idx);
+		return true;
+	}
+
+	@Override
+	void add(int time, int serialNumber, CircuitState state,
+			Location loc, Component cause, Value val) {
+		if (time - now >= SLOTS) {
+			overflow.add(new SetData(time, serialNumber, state, loc, cause, val));
+		} else {
+			append(time, serialNumber, state, loc, cause, val);
+		}
+	}
+
+	@Override
+	void clear() {
+		for (int i = 0; i < SLOTS; i++) {
+			for (int idx = head[i]; idx >= 0; ) {
+				int nxt = next[idx];
+				release(idx);
+				idx = nxt;
+			}
+			head[i] = -1;
+			tail[i] = -1;
+		}
+		for (int i = 0; i < WORDS; i++) occupied[i] = 0;
+		count = 0;
+		overflow.clear();
+	}
+
+	private void advanceTo(int time) {
+		now = time;
+		// Pull in overflow events that now fall within the wheel. This
+		// happens before any event for those times can be added directly,
+		// so they land ahead of them in their buckets.
+		while (!overflow.isEmpty() && overflow.peek().time - now < SLOTS) {
+			SetData data = overflow.remove();
+			append(data.time, data.serialNumber, data.state, data.loc,
+					data.cause, data.val);
+		}
+	}
+
+	private void append(int time, int serialNumber, CircuitState state,
+			Location loc, Component cause, Value val) {
+		int idx = allocate();
+		times[idx] = time;
+		serials[idx] = serialNumber;
+		states[idx] = state;
+		locs[idx] = loc;
+		causes[idx] = cause;
+		vals[idx] = val;
+		next[idx] = -1;
+
+		int slot = time & MASK;
+		int last = tail[slot];
+		if (last < 0) {
+			head[slot] = idx;
+			occupied[slot >>> 6] |= 1L << (slot & 63);
+		} else {
+			next[last] = idx;
+		}
+		tail[slot] = idx;
+		count++;
+	}
+
+	private int allocate() {
+		if (free >= 0) {
+			int idx = free;
+			free = next[idx];
+			return idx;
+		}
+		if (used == times.length) grow();
+		return used++;
+	}
+
+	private void release(int idx) {
+		states[idx] = null;
+		locs[idx] = null;
+		causes[idx] = null;
+		vals[idx] = null;
+		next[idx] = free;
+		free = idx;
+	}
+
+	private void grow() {
+		int n = 2 * times.length;
+		int[] newTimes = new int[n];
+		int[] newSerials = new int[n];
+		int[] newNext = new int[n];
+		CircuitState[] newStates = new CircuitState[n];
+		Location[] newLocs = new Location[n];
+		Component[] newCauses = new Component[n];
+		Value[] newVals = new Value[n];
+		System.arraycopy(times, 0, newTimes, 0, used);
+		System.arraycopy(serials, 0, newSerials, 0, used);
+		System.arraycopy(next, 0, newNext, 0, used);
+		System.arraycopy(states, 0, newStates, 0, used);
+		System.arraycopy(locs, 0, newLocs, 0, used);
+		System.arraycopy(causes, 0, newCauses, 0, used);
+		System.arraycopy(vals, 0, newVals, 0, used);
+		times = newTimes;
+		serials = newSerials;
+		next = newNext;
+		states = newStates;
+		locs = newLocs;
+		causes = newCauses;
+		vals = newVals;
+	}
+}
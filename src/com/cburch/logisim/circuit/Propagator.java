@@ -4,10 +4,9 @@
 package com.cburch.logisim.circuit;
 
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
 
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
@@ -28,7 +27,7 @@ public class Propagator {
 		Value val;          // value being emitted
 		SetData next = null;
 
-		private SetData(int time, int serialNumber, CircuitState state,
+		SetData(int time, int serialNumber, CircuitState state,
 				Location loc, Component cause, Value val) {
 			this.time = time;
 			this.serialNumber = serialNumber;
@@ -62,28 +61,13 @@ public class Propagator {
 		}
 	}
 
-	private static class ComponentPoint {
-		Component cause;
-		Location loc;
-
-		public ComponentPoint(Component cause, Location loc) {
-			this.cause = cause;
-			this.loc = loc;
-		}
-
-		@Override
-		public int hashCode() {
-			return 31 * cause.hashCode() + loc.hashCode();
-		}
-
-		@Override
-		public boolean equals(Object other) {
-			if (!(other instanceof ComponentPoint)) return false;
-			ComponentPoint o = (ComponentPoint) other;
-			return this.cause.equals(o.cause) && this.loc.equals(o.loc);
-		}
+	/** Watches the events a propagator processes, in the order it
+	 * processes them, as when checking one engine against another. */
+	public static interface EventObserver {
+		public void eventProcessed(int time, int serialNumber,
+				CircuitState state, Location loc, Component cause, Value val);
 	}
-	
+
 	private static class Listener implements AttributeListener {
 		WeakReference<Propagator> prop;
 		
@@ -99,6 +83,12 @@ public class Propagator {
 				e.getSource().removeAttributeListener(this);
 			} else if (e.getAttribute().equals(Options.sim_rand_attr)) {
 				p.updateRandomness();
+			} else if (e.getAttribute().equals(Options.sim_engine_attr)) {
+				p.updateEngine();
+			} else if (e.getAttribute().equals(Options.sim_compile_attr)) {
+				p.updateCompiling();
+			} else if (e.getAttribute().equals(Options.sim_parallel_attr)) {
+				p.updateParallel();
 			}
 		}
 	}
@@ -117,24 +107,53 @@ public class Propagator {
 	 * practice). */
 	private volatile int simRandomShift;
 
-	private PriorityQueue<SetData> toProcess = new PriorityQueue<SetData>();
+	/** Whether pending events should be kept in a {@link PropagationWheel}
+	 * rather than a {@link PropagationHeap}. The queue itself is swapped
+	 * over by the simulation thread at the start of the next propagation. */
+	private volatile boolean simUseWheel;
+
+	/** Whether purely combinational subcircuits should be evaluated as
+	 * {@link CompiledCircuit}s rather than event by event. */
+	private volatile boolean simCompile;
+
+	/** Whether the dirty points and components of sibling substates
+	 * should be processed in parallel, as {@link SubstateTask}s. The
+	 * setting is read into <code>parallel</code> by the simulation thread
+	 * at the start of the next propagation. */
+	private volatile boolean simParallel;
+	private boolean parallel = false;
+
+	private PropagationQueue toProcess = new PropagationHeap();
+	private VisitedPoints visited = new VisitedPoints();
 	private int clock = 0;
 	private boolean isOscillating = false;
 	private boolean oscAdding = false;
 	private PropagationPoints oscPoints = new PropagationPoints(); 
 	private int  ticks = 0;
+	private ClockScheduler clockScheduler;
 	private Random noiseSource = new Random();
 	private int noiseCount = 0;
 	private int setDataSerialNumber = 0;
+	private EventObserver observer = null;
+	private long eventCount = 0; // statistics since last resetStatistics
+	private int queueHighWater = 0;
+	private int oscillationCount = 0;
+	// counted from the threads of parallel substates too
+	private final LongAdder portCrossings = new LongAdder();
+	private final LongAdder portCrossingsAvoided = new LongAdder();
 	
 	static int lastId = 0;
 	int id = lastId++;
 
 	public Propagator(CircuitState root) {
 		this.root = root;
+		this.clockScheduler = new ClockScheduler(root);
 		Listener l = new Listener(this);
 		root.getProject().getOptions().getAttributeSet().addAttributeListener(l);
 		updateRandomness();
+		updateEngine();
+		updateCompiling();
+		updateParallel();
 	}
 	
 	private void updateRandomness() {
@@ -145,6 +164,44 @@ public class Propagator {
 		while ((1 << logVal) < val) logVal++;
 		simRandomShift = logVal;
 	}
+	
+	private void updateEngine() {
+		Options opts = root.getProject().getOptions();
+		Object engine = opts.getAttributeSet().getValue(Options.sim_engine_attr);
+		simUseWheel = engine == Options.SIM_ENGINE_WHEEL;
+	}
+	
+	private void checkEngine() {
+		parallel = simParallel;
+		boolean useWheel = simUseWheel;
+		if (useWheel != (toProcess instanceof PropagationWheel)) {
+			PropagationQueue newQueue;
+			if (useWheel) newQueue = new PropagationWheel(clock);
+			else newQueue = new PropagationHeap();
+			toProcess.transferTo(newQueue);
+			toProcess = newQueue;
+		}
+	}
+
+	private void updateCompiling() {
+		Options opts = root.getProject().getOptions();
+		Boolean compile = opts.getAttributeSet().getValue(Options.sim_compile_attr);
+		simCompile = compile.booleanValue();
+	}
+	
+	boolean isCompiling() {
+		return simCompile;
+	}
+
+	private void updateParallel() {
+		Options opts = root.getProject().getOptions();
+		Boolean par = opts.getAttributeSet().getValue(Options.sim_parallel_attr);
+		simParallel = par.booleanValue();
+	}
+	
+	boolean isParallel() {
+		return parallel;
+	}
 
 	public boolean isOscillating() {
 		return isOscillating;
@@ -169,10 +226,12 @@ public class Propagator {
 	void reset() {
 		toProcess.clear();
 		root.reset();
+		clockScheduler.invalidate(); // the clocks' states are gone
 		isOscillating = false;
 	}
 	
 	public void propagate() {
+		checkEngine();
 		oscPoints.clear();
 		clearDirtyPoints();
 		clearDirtyComponents();
@@ -191,6 +250,7 @@ public class Propagator {
 			} else {
 				isOscillating = true;
 				oscAdding = false;
+				oscillationCount++;
 				return;
 			}
 		}
@@ -200,6 +260,7 @@ public class Propagator {
 	}
 	
 	void step(PropagationPoints changedPoints) {
+		checkEngine();
 		oscPoints.clear();
 		clearDirtyPoints();
 		clearDirtyComponents();
@@ -216,43 +277,42 @@ public class Propagator {
 		if (toProcess.isEmpty()) return;
 		
 		// update clock
-		clock = toProcess.peek().time;
+		clock = toProcess.peekTime();
+		int pending = toProcess.size();
+		if (pending > queueHighWater) queueHighWater = pending;
 
 		// propagate all values for this clock tick
-		HashMap<CircuitState,HashSet<ComponentPoint>> visited
-			= new HashMap<CircuitState,HashSet<ComponentPoint>>();
-		while (true) {
-			SetData data = toProcess.peek();
-			if (data == null || data.time != clock) break;
-			toProcess.remove();
-			CircuitState state = data.state;
+		VisitedPoints handled = visited;
+		handled.clear();
+		PropagationQueue queue = toProcess;
+		while (queue.poll(clock)) {
+			CircuitState state = queue.state;
+			Location loc = queue.loc;
+			eventCount++;
+			if (observer != null) {
+				observer.eventProcessed(queue.time, queue.serialNumber,
+						state, loc, queue.cause, queue.val);
+			}
 
 			// if it's already handled for this clock tick, continue
-			HashSet<ComponentPoint> handled = visited.get(state);
-			if (handled != null) {
-				if (!handled.add(new ComponentPoint(data.cause, data.loc))) continue;
-			} else {
-				handled = new HashSet<ComponentPoint>();
-				visited.put(state, handled);
-				handled.add(new ComponentPoint(data.cause, data.loc));
-			}
+			if (!handled.add(state, queue.cause, loc)) continue;
 			
 			/*DEBUGGING - comment out
-			Simulator.log(data.time + ": proc " + data.loc + " in "
-					+ data.state + " to " + data.val
-					+ " by " + data.cause); // */
+			Simulator.log(queue.time + ": proc " + loc + " in "
+					+ state + " to " + queue.val
+					+ " by " + queue.cause); // */
 			
-			if (changedPoints != null) changedPoints.add(state, data.loc);
+			if (changedPoints != null) changedPoints.add(state, loc);
 
 			// change the information about value
-			SetData oldHead = state.causes.get(data.loc);
+			SetData oldHead = state.getCause(loc);
 			Value   oldVal  = computeValue(oldHead);
-			SetData newHead = addCause(state, oldHead, data);
+			SetData newHead = addCause(state, oldHead, queue);
 			Value   newVal  = computeValue(newHead);
 
 			// if the value at point has changed, propagate it
 			if (!newVal.equals(oldVal)) {
-				state.markPointAsDirty(data.loc);
+				state.markPointAsDirty(loc);
 			}
 		}
 
@@ -306,7 +366,12 @@ public class Propagator {
 	} */
 	
 	void locationTouched(CircuitState state, Location loc) {
-		if (oscAdding) oscPoints.add(state, loc);
+		if (oscAdding) {
+			PropagationPoints points = oscPoints;
+			synchronized (points) { // substates may be processed in parallel
+				points.add(state, loc);
+			}
+		}
 	}
 
 	//
@@ -315,6 +380,14 @@ public class Propagator {
 	void setValue(CircuitState state, Location pt, Value val,
 			Component cause, int delay) {
 		if (cause instanceof Wire || cause instanceof Splitter) return;
+		if (parallel) {
+			SubstateTask task = SubstateTask.getCurrent();
+			if (task != null) {
+				// scheduled once the parallel tasks are all done
+				task.deferValue(state, pt, val, cause, delay);
+				return;
+			}
+		}
 		if (delay <= 0) {
 			delay = 1;
 		}
@@ -332,8 +405,7 @@ public class Propagator {
 				}
 			}
 		}
-		toProcess.add(new SetData(clock + delay, setDataSerialNumber,
-				state, pt, cause, val));
+		toProcess.add(clock + delay, setDataSerialNumber, state, pt, cause, val);
 		/*DEBUGGING - comment out
 		Simulator.log(clock + ": set " + pt + " in "
 				+ state + " to " + val
@@ -343,22 +415,101 @@ public class Propagator {
 		setDataSerialNumber++;
 	}
 
+	/** Sets the observer told of every event processed, or removes it if
+	 * <code>value</code> is null. */
+	public void setEventObserver(EventObserver value) {
+		observer = value;
+	}
+
 	public boolean tick() {
 		ticks++;
-		return root.tick(ticks);
+		return clockScheduler.tick(ticks);
 	}
 	
 	public int getTickCount() {
 		return ticks;
 	}
+	
+	/** Returns how many events have been processed since the statistics
+	 * were last reset. */
+	public long getEventCount() {
+		return eventCount;
+	}
+	
+	/** Returns the largest number of events that have been pending at the
+	 * start of a step since the statistics were last reset. */
+	public int getQueueHighWater() {
+		return queueHighWater;
+	}
+	
+	/** Returns how many propagations have been abandoned as oscillating
+	 * since the statistics were last reset. */
+	public int getOscillationCount() {
+		return oscillationCount;
+	}
+	
+	/** Returns how many values have been carried across the ports of
+	 * subcircuit components since the statistics were last reset. */
+	public long getPortCrossingCount() {
+		return portCrossings.sum();
+	}
+	
+	/** Returns how many ports of subcircuit components were left alone
+	 * when propagating them, their values being unchanged, since the
+	 * statistics were last reset. */
+	public long getAvoidedPortCrossingCount() {
+		return portCrossingsAvoided.sum();
+	}
+	
+	public void resetStatistics() {
+		eventCount = 0;
+		queueHighWater = 0;
+		oscillationCount = 0;
+		portCrossings.reset();
+		portCrossingsAvoided.reset();
+	}
+	
+	/** Returns how many distinct circuits are simulated as subcircuits. */
+	public int getSubcircuitCount() {
+		HashSet<Circuit> circuits = new HashSet<Circuit>();
+		collectSubcircuits(root, circuits, false);
+		return circuits.size();
+	}
+	
+	/** Returns how many distinct circuits are currently simulated as
+	 * compiled subcircuits. */
+	public int getCompiledSubcircuitCount() {
+		HashSet<Circuit> circuits = new HashSet<Circuit>();
+		collectSubcircuits(root, circuits, true);
+		return circuits.size();
+	}
+	
+	private static void collectSubcircuits(CircuitState state,
+			HashSet<Circuit> circuits, boolean compiledOnly) {
+		for (CircuitState sub : state.getSubstates()) {
+			if (!compiledOnly || sub.isCompiled()) circuits.add(sub.getCircuit());
+			collectSubcircuits(sub, circuits, compiledOnly);
+		}
+	}
 
 	//
 	// private methods
 	//
+	void countPortCrossings(int crossed, int avoided) {
+		portCrossings.add(crossed);
+		portCrossingsAvoided.add(avoided);
+	}
+
+	/** Called when clocks or substates are added to or removed from the
+	 * tree, so that the next tick registers its clocks again. */
+	void clocksChanged() {
+		clockScheduler.invalidate();
+	}
+
 	void checkComponentEnds(CircuitState state, Component comp) {
 		for (EndData end : comp.getEnds()) {
 			Location loc    = end.getLocation();
-			SetData oldHead = state.causes.get(loc);
+			SetData oldHead = state.getCause(loc);
 			Value   oldVal  = computeValue(oldHead);
 			SetData newHead = removeCause(state, oldHead, loc, comp);
 			Value   newVal  = computeValue(newHead);
@@ -380,32 +531,27 @@ public class Propagator {
 	}
 
 	private SetData addCause(CircuitState state, SetData head,
-			SetData data) {
-		if (data.val == null) { // actually, it should be removed
-			return removeCause(state, head, data.loc, data.cause);
+			PropagationQueue queue) {
+		if (queue.val == null) { // actually, it should be removed
+			return removeCause(state, head, queue.loc, queue.cause);
 		}
 
-		HashMap<Location,SetData> causes = state.causes;
-
 		// first check whether this is change of previous info.
-		boolean replaced = false;
 		for (SetData n = head; n != null; n = n.next) {
-			if (n.cause == data.cause) {
-				n.val = data.val;
-				replaced = true;
-				break;
+			if (n.cause == queue.cause) {
+				n.val = queue.val;
+				return head;
 			}
 		}
 
 		// otherwise, insert to list of causes
-		if (!replaced) {
-			if (head == null) {
-				causes.put(data.loc, data);
-				head = data;
-			} else {
-				data.next = head.next;
-				head.next = data;
-			}
+		SetData data = queue.createCause();
+		if (head == null) {
+			state.setCause(data.loc, data);
+			head = data;
+		} else {
+			data.next = head.next;
+			head.next = data;
 		}
 
 		return head;
@@ -413,13 +559,11 @@ public class Propagator {
 
 	private SetData removeCause(CircuitState state, SetData head,
 			Location loc, Component cause) {
-		HashMap<Location,SetData> causes = state.causes;
 		if (head == null) {
 			;
 		} else if (head.cause == cause) {
 			head = head.next;
-			if (head == null) causes.remove(loc);
-			else causes.put(loc, head);
+			state.setCause(loc, head);
 		} else {
 			SetData prev = head;
 			SetData cur = head.next;
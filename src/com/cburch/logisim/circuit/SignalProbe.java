@@ -0,0 +1,160 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.gui.log.Loggable;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+/**
+ * Reads a named value of a simulation, such as the value of a labeled
+ * pin, register or tunnel, from the state in which it lies. The name is a
+ * path: each part but the last names a subcircuit, by its label or, if it
+ * has none, by the name of its circuit, and the last part is either the
+ * name under which the value would be logged or the label of a tunnel.
+ * For instance, <code>cpu/alu/result</code>.
+ *
+ * <p>The path is resolved once, when the probe is found, so reading the
+ * value involves no searching. A probe should be found again after the
+ * circuits are edited.</p>
+ */
+public abstract class SignalProbe {
+	private static class LoggedProbe extends SignalProbe {
+		private CircuitState state;
+		private Loggable log;
+		private Object option;
+
+		LoggedProbe(String name, CircuitState state, Loggable log, Object option) {
+			super(name);
+			this.state = state;
+			this.log = log;
+			this.option = option;
+		}
+
+		@Override
+		public Value getValue() {
+			return log.getLogValue(state, option);
+		}
+	}
+
+	private static class NetProbe extends SignalProbe {
+		private CircuitState state;
+		private Location loc;
+
+		NetProbe(String name, CircuitState state, Location loc) {
+			super(name);
+			this.state = state;
+			this.loc = loc;
+		}
+
+		@Override
+		public Value getValue() {
+			return state.getValue(loc);
+		}
+	}
+
+	/** Finds the value named by a path, starting from a state, which
+	 * should have been propagated so that its substates exist.
+	 * @throws CircuitException if the path names no value, or more than
+	 * one.
+	 */
+	public static SignalProbe find(CircuitState root, String path) {
+		String[] parts = path.trim().split("/");
+		CircuitState state = root;
+		for (int i = 0; i < parts.length - 1; i++) {
+			Component found = null;
+			for (Component comp : state.getCircuit().getNonWires()) {
+				if (comp.getFactory() instanceof SubcircuitFactory
+						&& parts[i].equals(getSubcircuitName(comp))) {
+					if (found != null) {
+						throw new CircuitException(Strings.get("probeAmbiguousError", path));
+					}
+					found = comp;
+				}
+			}
+			Object sub = found == null ? null : state.getData(found);
+			if (!(sub instanceof CircuitState)) {
+				throw new CircuitException(Strings.get("probeNotFoundError", path));
+			}
+			state = (CircuitState) sub;
+		}
+
+		String leaf = parts[parts.length - 1];
+		SignalProbe ret = null;
+		for (Component comp : state.getCircuit().getNonWires()) {
+			SignalProbe probe = null;
+			Loggable log = (Loggable) comp.getFeature(Loggable.class);
+			if (log != null) {
+				if (leaf.equals(log.getLogName(null))) {
+					probe = new LoggedProbe(path, state, log, null);
+				} else {
+					Object[] opts = log.getLogOptions(state);
+					if (opts != null) {
+						for (Object opt : opts) {
+							if (leaf.equals(log.getLogName(opt))) {
+								probe = new LoggedProbe(path, state, log, opt);
+								break;
+							}
+						}
+					}
+				}
+			} else if (comp.getFactory() instanceof Tunnel
+					&& leaf.equals(comp.getAttributeSet().getValue(StdAttr.LABEL))) {
+				probe = new NetProbe(path, state, comp.getLocation());
+			}
+			if (probe != null) {
+				// tunnels of the same label are the same net
+				if (ret != null && !(ret instanceof NetProbe && probe instanceof NetProbe)) {
+					throw new CircuitException(Strings.get("probeAmbiguousError", path));
+				}
+				ret = probe;
+			}
+		}
+		if (ret == null) {
+			throw new CircuitException(Strings.get("probeNotFoundError", path));
+		}
+		return ret;
+	}
+
+	/** Returns a probe of the value logged by a component of a state, such
+	 * as a pin, under the given name.
+	 * @throws CircuitException if the component logs no value.
+	 */
+	public static SignalProbe forComponent(CircuitState state, Component comp,
+			String name) {
+		Loggable log = (Loggable) comp.getFeature(Loggable.class);
+		if (log == null) {
+			throw new CircuitException(Strings.get("probeNotFoundError", name));
+		}
+		return new LoggedProbe(name, state, log, null);
+	}
+
+	private static String getSubcircuitName(Component comp) {
+		String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
+		if (label != null && !label.equals("")) return label;
+		return ((SubcircuitFactory) comp.getFactory()).getSubcircuit().getName();
+	}
+
+	private String name;
+
+	private SignalProbe(String name) {
+		this.name = name;
+	}
+
+	/** Returns the path by which the probe was found. */
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the current value. */
+	public abstract Value getValue();
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -3,7 +3,7 @@
 
 package com.cburch.logisim.circuit;
 
-import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.prefs.AppPreferences;
@@ -36,6 +36,7 @@ public class Simulator {
 		private volatile int stepsRequested = 0;
 		private volatile boolean resetRequested = false;
 		private volatile boolean propagateRequested = false;
+		private volatile FastForward fastForwardRequested = null;
 		private volatile boolean complete = false;
 
 		// These variables apply only if PRINT_TICK_RATE is set
@@ -71,6 +72,13 @@ public class Simulator {
 			notifyAll();
 		}
 		
+		public synchronized void requestFastForward(FastForward value) {
+			FastForward old = fastForwardRequested;
+			if (old != null) old.abandon();
+			fastForwardRequested = value;
+			notifyAll();
+		}
+		
 		public synchronized void shutDown() {
 			complete = true;
 			notifyAll();
@@ -82,7 +90,7 @@ public class Simulator {
 				synchronized(this) {
 					while (!complete && !propagateRequested
 							&& !resetRequested && ticksRequested == 0
-							&& stepsRequested == 0) {
+							&& stepsRequested == 0 && fastForwardRequested == null) {
 						try {
 							wait();
 						} catch (InterruptedException e) { }
@@ -96,6 +104,13 @@ public class Simulator {
 					propagateRequested |= isRunning;
 				}
 				
+				FastForward fastForward;
+				synchronized(this) {
+					fastForward = fastForwardRequested;
+					fastForwardRequested = null;
+				}
+				if (fastForward != null) doFastForward(fastForward);
+				
 				if (propagateRequested || ticksRequested > 0 || stepsRequested > 0) {
 					boolean ticked = false;
 					propagateRequested = false;
@@ -144,12 +159,28 @@ public class Simulator {
 							}
 						}
 					}
-					if (ticked) fireTickCompleted();
+					if (ticked) fireTickCompleted(1);
 					firePropagationCompleted();
 				}
 			}
 		}
 		
+		private void doFastForward(FastForward fastForward) {
+			// listeners hear of the burst only once it is over, so that
+			// the canvas is not repainted after each tick
+			exceptionEncountered = false;
+			try {
+				fastForward.run();
+			} catch (Throwable thr) {
+				thr.printStackTrace();
+				exceptionEncountered = true;
+				setIsRunning(false);
+			}
+			if (isOscillating()) setIsRunning(false);
+			fireTickCompleted(fastForward.getTickCount());
+			firePropagationCompleted();
+		}
+		
 		private void doTick() {
 			synchronized(this) {
 				ticksRequested--;
@@ -165,12 +196,17 @@ public class Simulator {
 
 	private PropagationManager manager;
 	private SimulatorTicker ticker;
-	private ArrayList<SimulatorListener> listeners
-		= new ArrayList<SimulatorListener>();
+	private SimulatorDispatcher dispatcher;
+	private CopyOnWriteArrayList<SimulatorListener> listeners
+		= new CopyOnWriteArrayList<SimulatorListener>();
+	// counts of events since creation, written only by the manager
+	private volatile long tickSequence = 0;
+	private volatile long propagationSequence = 0;
 
 	public Simulator() {
 		manager = new PropagationManager();
 		ticker = new SimulatorTicker(manager);
+		dispatcher = new SimulatorDispatcher(this);
 		try {
 			manager.setPriority(manager.getPriority() - 1);
 			ticker.setPriority(ticker.getPriority() - 1);
@@ -178,6 +214,7 @@ public class Simulator {
 		} catch (IllegalArgumentException e) { }
 		manager.start();
 		ticker.start();
+		dispatcher.start();
 		
 		tickFrequency = 0.0;
 		setTickFrequency(AppPreferences.TICK_FREQUENCY.get().doubleValue());
@@ -186,6 +223,7 @@ public class Simulator {
 	public void shutDown() {
 		ticker.shutDown();
 		manager.shutDown();
+		dispatcher.shutDown();
 	}
 
 	public void setCircuitState(CircuitState state) {
@@ -206,6 +244,13 @@ public class Simulator {
 		ticker.tickOnce();
 	}
 	
+	/** Runs the simulation on its thread, as fast as it can, until the
+	 * given run stops. Listeners are told of the ticks only once it is
+	 * over. A run that is still waiting to start is canceled. */
+	public void runUntil(FastForward fastForward) {
+		manager.requestFastForward(fastForward);
+	}
+	
 	public void step() {
 		synchronized(manager) {
 			manager.stepsRequested++;
@@ -282,23 +327,53 @@ public class Simulator {
 		return prop != null && prop.isOscillating();
 	}
 
+	/** Returns the number of ticks completed so far. It only grows, so a
+	 * listener told of ticks only now and then can tell how many passed. */
+	public long getTickSequence() {
+		return tickSequence;
+	}
+
+	/** Returns the number of propagations completed so far. */
+	public long getPropagationSequence() {
+		return propagationSequence;
+	}
+
+	/** Adds a listener told of each tick and propagation on the
+	 * simulator's thread, which waits for it. */
 	public void addSimulatorListener(SimulatorListener l) { listeners.add(l); }
 	public void removeSimulatorListener(SimulatorListener l) { listeners.remove(l); }
+
+	/** Adds a listener told of ticks and propagations on a thread of its
+	 * own, at most once per short interval, however many happened since it
+	 * was last told; see {@link #getTickSequence}. Changes of state are
+	 * still told to it at once. */
+	public void addCoalescedListener(SimulatorListener l) { dispatcher.addListener(l); }
+	public void removeCoalescedListener(SimulatorListener l) { dispatcher.removeListener(l); }
+
 	void firePropagationCompleted() {
+		propagationSequence++;
+		dispatcher.publish();
+		if (listeners.isEmpty()) return;
 		SimulatorEvent e = new SimulatorEvent(this);
-		for (SimulatorListener l : new ArrayList<SimulatorListener>(listeners)) {
+		for (SimulatorListener l : listeners) {
 			l.propagationCompleted(e);
 		}
 	}
-	void fireTickCompleted() {
+	void fireTickCompleted(long ticks) {
+		tickSequence += ticks;
+		dispatcher.publish();
+		if (listeners.isEmpty()) return;
 		SimulatorEvent e = new SimulatorEvent(this);
-		for (SimulatorListener l : new ArrayList<SimulatorListener>(listeners)) {
+		for (SimulatorListener l : listeners) {
 			l.tickCompleted(e);
 		}
 	}
 	void fireSimulatorStateChanged() {
 		SimulatorEvent e = new SimulatorEvent(this);
-		for (SimulatorListener l : new ArrayList<SimulatorListener>(listeners)) {
+		for (SimulatorListener l : listeners) {
+			l.simulatorStateChanged(e);
+		}
+		for (SimulatorListener l : dispatcher.getListeners()) {
 			l.simulatorStateChanged(e);
 		}
 	}
@@ -0,0 +1,85 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells coalesced listeners of a simulator's ticks and propagations on a
+ * thread of its own, so the simulation never waits for them. The
+ * simulation only notes that something happened; the dispatcher then
+ * compares the simulator's counts of ticks and propagations with those it
+ * last delivered, and sends at most one event of each kind for however
+ * many happened meanwhile. Deliveries are at least MIN_INTERVAL apart.
+ */
+class SimulatorDispatcher extends Thread {
+	private static final int MIN_INTERVAL = 10; // in milliseconds
+
+	private Simulator sim;
+	private CopyOnWriteArrayList<SimulatorListener> listeners
+		= new CopyOnWriteArrayList<SimulatorListener>();
+	private volatile boolean pending = false;
+	private boolean complete = false;
+	private long lastTicks = 0;
+	private long lastPropagations = 0;
+
+	public SimulatorDispatcher(Simulator sim) {
+		super("SimulatorDispatcher");
+		this.sim = sim;
+		setDaemon(true);
+	}
+
+	void addListener(SimulatorListener l) { listeners.add(l); }
+	void removeListener(SimulatorListener l) { listeners.remove(l); }
+
+	CopyOnWriteArrayList<SimulatorListener> getListeners() {
+		return listeners;
+	}
+
+	/** Notes that the simulator's counts have changed. This is called on
+	 * the simulator's thread, and locks only when nothing is pending. */
+	void publish() {
+		if (pending) return;
+		synchronized(this) {
+			pending = true;
+			notifyAll();
+		}
+	}
+
+	public synchronized void shutDown() {
+		complete = true;
+		notifyAll();
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			synchronized(this) {
+				while (!pending && !complete) {
+					try {
+						wait();
+					} catch (InterruptedException e) { }
+				}
+				if (complete) return;
+				pending = false;
+			}
+
+			long ticks = sim.getTickSequence();
+			long propagations = sim.getPropagationSequence();
+			SimulatorEvent e = new SimulatorEvent(sim);
+			if (ticks != lastTicks) {
+				lastTicks = ticks;
+				for (SimulatorListener l : listeners) l.tickCompleted(e);
+			}
+			if (propagations != lastPropagations) {
+				lastPropagations = propagations;
+				for (SimulatorListener l : listeners) l.propagationCompleted(e);
+			}
+
+			try {
+				Thread.sleep(MIN_INTERVAL);
+			} catch (InterruptedException ex) { }
+		}
+	}
+}
@@ -208,11 +208,11 @@ public class SubcircuitFactory extends InstanceFactory {
 	// propagation-oriented methods
 	//
 	public CircuitState getSubstate(CircuitState superState, Instance instance) {
-		return getSubstate(createInstanceState(superState, instance));
+		return getSubstate(superState.getInstanceState(instance));
 	}
 	
 	public CircuitState getSubstate(CircuitState superState, Component comp) {
-		return getSubstate(createInstanceState(superState, comp));
+		return getSubstate(superState.getInstanceState(comp));
 	}
 	
 	private CircuitState getSubstate(InstanceState instanceState) {
@@ -231,8 +231,19 @@ public class SubcircuitFactory extends InstanceFactory {
 
 		CircuitAttributes attrs = (CircuitAttributes) superState.getAttributeSet();
 		Instance[] pins = attrs.getPinInstances();
-		for (int i = 0; i < pins.length; i++) {
+		CompiledCircuit.Frame frame = subState.getCompiledFrame();
+		if (frame != null) {
+			int crossed = frame.propagate(superState, pins);
+			subState.clearDirtyPorts(crossed, pins.length);
+			return;
+		}
+		// Only the ports whose values have changed on either side since
+		// the last propagation are carried across.
+		int crossed = 0;
+		for (int i = subState.nextDirtyPort(-1, pins.length); i >= 0;
+				i = subState.nextDirtyPort(i, pins.length)) {
 			Instance pin = pins[i];
+			crossed++;
 			InstanceState pinState = subState.getInstanceState(pin);
 			if (Pin.FACTORY.isInputPin(pin)) {
 				Value newVal = superState.getPort(i);
@@ -246,6 +257,7 @@ public class SubcircuitFactory extends InstanceFactory {
 				superState.setPort(i, val, 1);
 			}
 		}
+		subState.clearDirtyPorts(crossed, pins.length);
 	}
 	
 	//
@@ -0,0 +1,182 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * Processes the dirty points or the dirty components of a substate and
+ * of all the states beneath it, as one of several such tasks run side by
+ * side on a fork/join pool when a {@link Propagator} propagates in
+ * parallel.
+ *
+ * The order in which events are scheduled fixes their serial numbers,
+ * and so the order in which simultaneous events are later handled. A
+ * task processing components therefore does not schedule its events
+ * itself: it records them, and once all tasks are done the records are
+ * replayed in the order a sequential walk of the state tree would have
+ * produced them.
+ *
+ * Components are shared by every state of their circuit. A component
+ * that invalidates itself while propagating, as a probe resizing to the
+ * width of its value or a subcircuit creating its substate does, is
+ * marked dirty in every state of the circuit, and in a sequential walk
+ * the states walked later propagate it in the same step. So while such a component is
+ * dirty anywhere among the substates, they are walked one after another
+ * instead. The events are then exactly those of the sequential walk,
+ * step by step, as {@link com.cburch.logisim.bench.ParallelBenchmark}
+ * checks. Should any other component invalidate itself while a task
+ * propagates it, which none of the standard libraries does, the
+ * invalidation is delivered once the tasks are done, and so reaches the
+ * other states a step later than in a sequential walk.
+ *
+ * Parallel propagation is off by default: the benefit has yet to be
+ * measured on a machine with more than one processor.
+ */
+class SubstateTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	/** Below this many dirty points or components in all, substates are
+	 * processed one after another, since forking would cost more than it
+	 * could save. */
+	private static final int MIN_PARALLEL_WORK = 16;
+
+	private static final ThreadLocal<SubstateTask> current
+		= new ThreadLocal<SubstateTask>();
+
+	private static final int DEFER_VALUE = 0;
+	private static final int DEFER_INVALIDATED = 1;
+
+	private static class Deferred {
+		int kind;
+		CircuitState state; // null for DEFER_INVALIDATED
+		Circuit circuit; // only for DEFER_INVALIDATED
+		Location loc;
+		Value val;
+		Component cause;
+		int delay;
+	}
+
+	/** Returns the task recording the events of the current thread, or
+	 * null if events should be scheduled directly. */
+	static SubstateTask getCurrent() {
+		return current.get();
+	}
+
+	/**
+	 * Processes the dirty points or components of the given substates
+	 * and of their own substates, in parallel if there is enough work
+	 * spread over more than one of them.
+	 */
+	static void process(Propagator prop, CircuitState[] subs,
+			boolean components) {
+		int total = 0;
+		int busy = 0;
+		int[] work = new int[subs.length];
+		for (int i = 0; i < subs.length; i++) {
+			work[i] = subs[i].getPendingWork(components);
+			total += work[i];
+			if (work[i] > 0) busy++;
+		}
+
+		if (busy < 2 || total < MIN_PARALLEL_WORK
+				|| (components && hasSerialWork(subs))) {
+			for (CircuitState sub : subs) {
+				if (components) sub.processDirtyComponents();
+				else sub.processDirtyPoints();
+			}
+			return;
+		}
+
+		ArrayList<SubstateTask> tasks = new ArrayList<SubstateTask>(busy);
+		for (int i = 0; i < subs.length; i++) {
+			if (work[i] > 0) tasks.add(new SubstateTask(subs[i], components));
+		}
+		SubstateTask parent = components ? current.get() : null;
+		if (parent != null) {
+			// the enclosing task replays these along with its own records
+			for (SubstateTask task : tasks) parent.getLog().add(task);
+		}
+		ForkJoinTask.invokeAll(tasks);
+		if (components && parent == null) {
+			for (SubstateTask task : tasks) task.replay(prop);
+		}
+	}
+
+	private static boolean hasSerialWork(CircuitState[] subs) {
+		for (CircuitState sub : subs) {
+			if (sub.hasSerialWork()) return true;
+		}
+		return false;
+	}
+
+	private CircuitState state;
+	private boolean components;
+	private ArrayList<Object> log = null; // Deferreds and nested SubstateTasks
+
+	private SubstateTask(CircuitState state, boolean components) {
+		this.state = state;
+		this.components = components;
+	}
+
+	@Override
+	protected void compute() {
+		SubstateTask prev = current.get();
+		current.set(components ? this : null);
+		try {
+			if (components) state.processDirtyComponents();
+			else state.processDirtyPoints();
+		} finally {
+			current.set(prev);
+		}
+	}
+
+	void deferValue(CircuitState state, Location pt, Value val,
+			Component cause, int delay) {
+		Deferred d = new Deferred();
+		d.kind = DEFER_VALUE;
+		d.state = state;
+		d.loc = pt;
+		d.val = val;
+		d.cause = cause;
+		d.delay = delay;
+		getLog().add(d);
+	}
+
+	void deferInvalidated(Circuit circuit, Component comp) {
+		Deferred d = new Deferred();
+		d.kind = DEFER_INVALIDATED;
+		d.circuit = circuit;
+		d.cause = comp;
+		getLog().add(d);
+	}
+
+	private ArrayList<Object> getLog() {
+		if (log == null) log = new ArrayList<Object>();
+		return log;
+	}
+
+	private void replay(Propagator prop) {
+		if (log == null) return;
+		for (Object o : log) {
+			if (o instanceof SubstateTask) {
+				((SubstateTask) o).replay(prop);
+			} else {
+				Deferred d = (Deferred) o;
+				if (d.kind == DEFER_INVALIDATED) {
+					d.circuit.componentInvalidated(d.cause);
+				} else {
+					prop.setValue(d.state, d.loc, d.val, d.cause, d.delay);
+				}
+			}
+		}
+		log = null;
+	}
+}
@@ -0,0 +1,89 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+
+/**
+ * The set of (state, cause, location) triples already handled during
+ * the current propagation step. Entries are stamped with the step's
+ * epoch, so starting a new step just increments the epoch instead of
+ * clearing or reallocating the table; the table is open-addressed and
+ * reused across steps, so in steady state a step allocates nothing.
+ */
+class VisitedPoints {
+	private int epoch = 1;
+	private int size = 0; // entries stamped with the current epoch
+	private int mask;
+	private int[] stamps;
+	private CircuitState[] states;
+	private Component[] causes;
+	private Location[] locs;
+
+	public VisitedPoints() {
+		allocate(256);
+	}
+
+	/** Forgets all entries, in preparation for a new step. */
+	void clear() {
+		epoch++;
+		size = 0;
+		if (epoch == 0) { // wrapped around: stale stamps might match
+			for (int i = 0; i < stamps.length; i++) stamps[i] = 0;
+			epoch = 1;
+		}
+	}
+
+	/** Adds the triple, returning false if it was already present. */
+	boolean add(CircuitState state, Component cause, Location loc) {
+		int i = hash(state, cause, loc) & mask;
+		while (stamps[i] == epoch) {
+			if (states[i] == state && locs[i].equals(loc)
+					&& (causes[i] == cause || causes[i].equals(cause))) {
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		stamps[i] = epoch;
+		states[i] = state;
+		causes[i] = cause;
+		locs[i] = loc;
+		size++;
+		if (2 * size > stamps.length) grow();
+		return true;
+	}
+
+	private void grow() {
+		int[] oldStamps = stamps;
+		CircuitState[] oldStates = states;
+		Component[] oldCauses = causes;
+		Location[] oldLocs = locs;
+		allocate(2 * oldStamps.length);
+		for (int j = 0; j < oldStamps.length; j++) {
+			if (oldStamps[j] != epoch) continue;
+			int i = hash(oldStates[j], oldCauses[j], oldLocs[j]) & mask;
+			while (stamps[i] == epoch) i = (i + 1) & mask;
+			stamps[i] = epoch;
+			states[i] = oldStates[j];
+			causes[i] = oldCauses[j];
+			locs[i] = oldLocs[j];
+		}
+	}
+
+	private void allocate(int capacity) {
+		mask = capacity - 1;
+		stamps = new int[capacity];
+		states = new CircuitState[capacity];
+		causes = new Component[capacity];
+		locs = new Location[capacity];
+	}
+
+	private static int hash(CircuitState state, Component cause,
+			Location loc) {
+		int h = (state.hashCode() * 31 + cause.hashCode()) * 31
+			+ loc.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
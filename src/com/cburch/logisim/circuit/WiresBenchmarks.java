@@ -0,0 +1,83 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.circuit;
+
+import java.util.HashSet;
+
+import com.cburch.logisim.bench.Benchmark;
+import com.cburch.logisim.data.Location;
+
+/**
+ * Benchmarks of the wire handling of a circuit, which is not accessible
+ * from outside this package.
+ */
+public class WiresBenchmarks {
+	private WiresBenchmarks() { }
+
+	/**
+	 * Returns a benchmark that recomputes the values on every wire bundle
+	 * of the circuit simulated by a state, as happens after an edit.
+	 */
+	public static Benchmark createPropagate(String name, final CircuitState state) {
+		return new Benchmark(name) {
+			private CircuitWires wires = state.getCircuit().wires;
+			private HashSet<Location> points;
+
+			@Override
+			public void setUp() {
+				wires.ensureComputed();
+				points = new HashSet<Location>(wires.points.getSplitLocations());
+			}
+
+			@Override
+			public Object run() {
+				wires.propagate(state, points);
+				return state.getWireData();
+			}
+		};
+	}
+
+	/**
+	 * Returns a benchmark that recomputes the whole bundle map of a
+	 * circuit, as happens when it is first simulated.
+	 */
+	public static Benchmark createBundleMap(String name, Circuit circuit) {
+		final CircuitWires wires = circuit.wires;
+		return new Benchmark(name) {
+			@Override
+			public Object run() {
+				wires.voidBundleMap();
+				wires.ensureComputed();
+				return wires.getPointIndex();
+			}
+		};
+	}
+
+	/**
+	 * Returns a benchmark that removes a wire of a circuit and adds it
+	 * back, updating the bundle map after each edit as happens when the
+	 * user drags a wire.
+	 */
+	public static Benchmark createBundleUpdate(String name, Circuit circuit) {
+		final CircuitWires wires = circuit.wires;
+		return new Benchmark(name) {
+			private Wire wire;
+
+			@Override
+			public void setUp() {
+				wires.ensureComputed();
+				wire = wires.getWires().iterator().next();
+			}
+
+			@Override
+			public Object run() {
+				wires.remove(wire);
+				wires.ensureComputed();
+				wires.add(wire);
+				wires.ensureComputed();
+				return wires.getPointIndex();
+			}
+		};
+	}
+}
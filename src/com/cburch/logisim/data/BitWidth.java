@@ -60,9 +60,11 @@ public class BitWidth implements Comparable<BitWidth> {
 		return width;
 	}
 	
+	/** Returns a mask of the low bits of an <code>int</code> that a value
+	 * of this width occupies; all bits for widths of 32 or more. */
 	public int getMask() {
 		if (width == 0)       return 0;
-		else if (width == 32) return -1;
+		else if (width >= 32) return -1;
 		else                 return (1 << width) - 1;
 	}
 
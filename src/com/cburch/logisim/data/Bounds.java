@@ -15,14 +15,20 @@ import com.cburch.logisim.util.Cache;
 public class Bounds {
 	public static Bounds EMPTY_BOUNDS = new Bounds(0, 0, 0, 0);
 	private static final Cache cache = new Cache();
+	private static final Cache.Matcher matcher = new Cache.Matcher() {
+		public boolean matches(Object cached, long key0, long key1) {
+			Bounds bds = (Bounds) cached;
+			return bds.x == (int) (key0 >>> 32) && bds.y == (int) key0
+				&& bds.wid == (int) (key1 >>> 32) && bds.ht == (int) key1;
+		}
+	};
 
 	public static Bounds create(int x, int y, int wid, int ht) {
 		int hashCode = 13 * (31 * (31 * x + y) + wid) + ht;
-		Object cached = cache.get(hashCode);
-		if (cached != null) {
-			Bounds bds = (Bounds) cached;
-			if (bds.x == x && bds.y == y && bds.wid == wid && bds.ht == ht) return bds;
-		}
+		long key0 = ((long) x << 32) | (y & 0xFFFFFFFFL);
+		long key1 = ((long) wid << 32) | (ht & 0xFFFFFFFFL);
+		Object cached = cache.get(hashCode, key0, key1, matcher);
+		if (cached != null) return (Bounds) cached;
 		Bounds ret = new Bounds(x, y, wid, ht);
 		cache.put(hashCode, ret);
 		return ret;
@@ -11,7 +11,13 @@ import com.cburch.logisim.util.Cache;
  * are immutable.
  */
 public class Location implements Comparable<Location> {
-	private static final Cache cache = new Cache();
+	private static final Cache cache = new Cache(12);
+	private static final Cache.Matcher matcher = new Cache.Matcher() {
+		public boolean matches(Object cached, long key0, long key1) {
+			Location loc = (Location) cached;
+			return loc.x == (int) key0 && loc.y == (int) key1;
+		}
+	};
 	
 	private final int hashCode;
 	private final int x;
@@ -99,13 +105,22 @@ public class Location implements Comparable<Location> {
 		return "(" + x + "," + y + ")";
 	}
 
+	/** Returns how many locations were found in the cache shared by all
+	 * threads, rather than created. */
+	public static long getCacheHitCount() {
+		return cache.getHitCount();
+	}
+
+	/** Returns how many locations had to be created for lack of a cached
+	 * copy. */
+	public static long getCacheMissCount() {
+		return cache.getMissCount();
+	}
+
 	public static Location create(int x, int y) {
 		int hashCode = 31 * x + y;
-		Object ret = cache.get(hashCode);
-		if (ret != null) {
-			Location loc = (Location) ret;
-			if (loc.x == x && loc.y == y) return loc;
-		}
+		Object ret = cache.get(hashCode, x, y, matcher);
+		if (ret != null) return (Location) ret;
 		Location loc = new Location(hashCode, x, y);
 		cache.put(hashCode, loc);
 		return loc;
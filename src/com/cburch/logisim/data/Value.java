@@ -4,10 +4,19 @@
 package com.cburch.logisim.data;
 
 import java.awt.Color;
+import java.math.BigInteger;
 import java.util.Arrays;
 
 import com.cburch.logisim.util.Cache;
 
+/**
+ * A value carried by a wire: for each of its bits, whether the bit is
+ * an error, unknown, true, or false. Values of up to 32 bits are kept in
+ * three <code>int</code> masks and are shared through a cache; wider
+ * values, as produced by imported designs, additionally keep the same
+ * three masks as packed <code>long</code> words, so that the bitwise
+ * operations stay word-at-a-time whatever the width.
+ */
 public class Value {
 	public static final Value FALSE   = new Value(1, 0, 0, 0);
 	public static final Value TRUE    = new Value(1, 0, 0, 1);
@@ -15,6 +24,11 @@ public class Value {
 	public static final Value ERROR   = new Value(1, 1, 0, 0);
 	public static final Value NIL     = new Value(0, 0, 0, 0);
 
+	/** The widest value that fits in an <code>int</code>, and so the
+	 * widest that components working through {@link #toIntValue} and
+	 * the width configurators support. Wires, gates, multiplexers and
+	 * splitters work through the bitwise operations and are not limited
+	 * by it. */
 	public static final int MAX_WIDTH = 32;
 
 	public static final Color NIL_COLOR = Color.GRAY;
@@ -25,13 +39,53 @@ public class Value {
 	public static final Color WIDTH_ERROR_COLOR = new Color(255, 123, 0);
 	public static final Color MULTI_COLOR = Color.BLACK;
 	
-	private static final Cache cache = new Cache();
+	// values of up to SMALL_WIDTH bits with no unknown or error bits, and
+	// values entirely unknown or entirely error, are all built up front;
+	// other values up to 32 bits wide are shared through the cache
+	private static final int SMALL_WIDTH = 8;
+	private static final Value[][] SMALL_KNOWN = new Value[SMALL_WIDTH + 1][];
+	private static final Value[] ALL_UNKNOWN = new Value[33];
+	private static final Value[] ALL_ERROR = new Value[33];
+	static {
+		for (int width = 2; width <= SMALL_WIDTH; width++) {
+			Value[] known = new Value[1 << width];
+			for (int i = 0; i < known.length; i++) {
+				known[i] = new Value(width, 0, 0, i);
+			}
+			SMALL_KNOWN[width] = known;
+		}
+		for (int width = 2; width <= 32; width++) {
+			int mask = (width == 32 ? -1 : ~(-1 << width));
+			ALL_UNKNOWN[width] = new Value(width, 0, mask, 0);
+			ALL_ERROR[width] = new Value(width, mask, 0, 0);
+		}
+	}
+
+	private static final Cache cache = new Cache(12);
+	private static final Cache.Matcher matcher = new Cache.Matcher() {
+		public boolean matches(Object cached, long key0, long key1) {
+			Value val = (Value) cached;
+			return val.error == (int) (key0 >>> 32) && val.unknown == (int) key0
+				&& val.width == (int) (key1 >>> 32) && val.value == (int) key1;
+		}
+	};
+
+	/** Returns how many values of 2 to 32 bits were found in the cache
+	 * shared by all threads, rather than created. */
+	public static long getCacheHitCount() {
+		return cache.getHitCount();
+	}
+
+	/** Returns how many values of 2 to 32 bits had to be created for
+	 * lack of a cached copy. */
+	public static long getCacheMissCount() {
+		return cache.getMissCount();
+	}
 
 	public static Value create(Value[] values) {
 		if (values.length == 0) return NIL;
 		if (values.length == 1) return values[0];
-		if (values.length > MAX_WIDTH) throw new RuntimeException(
-			"Cannot have more than " + MAX_WIDTH + " bits in a value");
+		if (values.length > 32) return createWide(values);
 
 		int width = values.length;
 		int value = 0;
@@ -52,15 +106,36 @@ public class Value {
 	}
 
 	public static Value createKnown(BitWidth bits, int value) {
-		return Value.create(bits.getWidth(), 0, 0, value);
+		int width = bits.getWidth();
+		if (width <= 32) return Value.create(width, 0, 0, value);
+		return createKnown(bits, (long) value & 0xFFFFFFFFL);
+	}
+
+	public static Value createKnown(BitWidth bits, long value) {
+		int width = bits.getWidth();
+		if (width <= 32) return Value.create(width, 0, 0, (int) value);
+		int n = words(width);
+		long[] w = new long[3 * n];
+		w[2 * n] = value;
+		return createWide(width, w);
 	}
 
 	public static Value createUnknown(BitWidth bits) {
-		return Value.create(bits.getWidth(), 0, -1, 0);
+		int width = bits.getWidth();
+		if (width <= 32) return Value.create(width, 0, -1, 0);
+		int n = words(width);
+		long[] w = new long[3 * n];
+		Arrays.fill(w, n, 2 * n, -1L);
+		return createWide(width, w);
 	}
 
 	public static Value createError(BitWidth bits) {
-		return Value.create(bits.getWidth(), -1, 0, 0);
+		int width = bits.getWidth();
+		if (width <= 32) return Value.create(width, -1, 0, 0);
+		int n = words(width);
+		long[] w = new long[3 * n];
+		Arrays.fill(w, 0, n, -1L);
+		return createWide(width, w);
 	}
 
 	private static Value create(int width, int error, int unknown, int value) {
@@ -77,18 +152,72 @@ public class Value {
 			unknown = unknown & mask & ~error;
 			value = value & mask & ~unknown & ~error;
 
-			int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-			Object cached = cache.get(hashCode);
-			if (cached != null) {
-				Value val = (Value) cached;
-				if (val.value == value && val.width == width && val.error == error
-						&& val.unknown == unknown) return val;
+			if ((error | unknown) == 0) {
+				if (width <= SMALL_WIDTH) return SMALL_KNOWN[width][value];
+			} else if (error == mask) {
+				return ALL_ERROR[width];
+			} else if (unknown == mask) {
+				return ALL_UNKNOWN[width];
 			}
-			Value ret= new Value(width, error, unknown, value);
+
+			int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
+			long key0 = ((long) error << 32) | (unknown & 0xFFFFFFFFL);
+			long key1 = ((long) width << 32) | (value & 0xFFFFFFFFL);
+			Object cached = cache.get(hashCode, key0, key1, matcher);
+			if (cached != null) return (Value) cached;
+			Value ret = new Value(width, error, unknown, value);
 			cache.put(hashCode, ret);
 			return ret;
 		}
 	}
+
+	/** Returns how many <code>long</code> words hold each mask of a
+	 * wide value. */
+	private static int words(int width) {
+		return (width + 63) >>> 6;
+	}
+
+	private static Value createWide(Value[] values) {
+		int width = values.length;
+		int n = words(width);
+		long[] w = new long[3 * n];
+		for (int i = 0; i < width; i++) {
+			long mask = 1L << i;
+			int k = i >>> 6;
+			if (values[i] == TRUE)         w[2 * n + k] |= mask;
+			else if (values[i] == FALSE)   /* do nothing */;
+			else if (values[i] == UNKNOWN) w[n + k] |= mask;
+			else if (values[i] == ERROR)   w[k] |= mask;
+			else {
+				throw new RuntimeException("unrecognized value "
+					+ values[i]);
+			}
+		}
+		return createWide(width, w);
+	}
+
+	/**
+	 * Creates a value from packed masks: the error words, then the unknown
+	 * words, then the value words, each <code>words(width)</code> long.
+	 * The array is normalized in place and kept by the new value, so it
+	 * must not be used afterwards.
+	 */
+	private static Value createWide(int width, long[] w) {
+		if (width <= 32) {
+			int n = w.length / 3;
+			return Value.create(width, (int) w[0], (int) w[n], (int) w[2 * n]);
+		}
+		int n = words(width);
+		for (int i = 0; i < n; i++) {
+			long mask = i < n - 1 || (width & 63) == 0 ? -1L : ~(-1L << width);
+			long error = w[i] & mask;
+			long unknown = w[n + i] & mask & ~error;
+			w[i] = error;
+			w[n + i] = unknown;
+			w[2 * n + i] &= mask & ~unknown & ~error;
+		}
+		return new Value(width, w);
+	}
 	
 	public static Value repeat(Value base, int bits) {
 		if (base.getWidth() != 1) {
@@ -107,6 +236,9 @@ public class Value {
 	private final int error;
 	private final int unknown;
 	private final int value;
+	// for values wider than 32 bits, the packed masks, of which the int
+	// fields above hold the low 32 bits; otherwise null
+	private final long[] wide;
 
 	private Value(int width, int error, int unknown, int value) {
 		// To ensure that the one-bit values are unique, this should be called only
@@ -115,14 +247,67 @@ public class Value {
 		this.error = error;
 		this.unknown = unknown;
 		this.value = value;
+		this.wide = null;
+	}
+
+	private Value(int width, long[] wide) {
+		int n = wide.length / 3;
+		this.width = width;
+		this.error = (int) wide[0];
+		this.unknown = (int) wide[n];
+		this.value = (int) wide[2 * n];
+		this.wide = wide;
+	}
+
+	/** Returns word <code>i</code> of a mask (0 for error, 1 for unknown,
+	 * 2 for value), whether or not this value is wide. */
+	private long word(int plane, int i) {
+		if (wide != null) {
+			int n = wide.length / 3;
+			return i < n ? wide[plane * n + i] : 0L;
+		} else if (i != 0) {
+			return 0L;
+		} else if (plane == 0) {
+			return (long) error & 0xFFFFFFFFL;
+		} else if (plane == 1) {
+			return (long) unknown & 0xFFFFFFFFL;
+		} else {
+			return (long) value & 0xFFFFFFFFL;
+		}
+	}
+
+	/** Returns the bits of word <code>i</code> at or beyond bit
+	 * <code>width</code>. */
+	private static long maskAbove(int i, int width) {
+		int lo = i << 6;
+		if (lo >= width) return -1L;
+		if (width - lo >= 64) return 0L;
+		return -1L << (width - lo);
 	}
 
 	public boolean isErrorValue() {
-		return error != 0;
+		if (wide == null) return error != 0;
+		int n = wide.length / 3;
+		for (int i = 0; i < n; i++) {
+			if (wide[i] != 0) return true;
+		}
+		return false;
 	}
 
 	public Value extendWidth(int newWidth, Value others) {
 		if (width == newWidth) return this;
+		if (newWidth > 32 || wide != null) {
+			int n = words(newWidth);
+			long[] w = new long[3 * n];
+			for (int i = 0; i < n; i++) {
+				long above = maskAbove(i, width);
+				w[i] = word(0, i) | (others == Value.ERROR ? above : 0L);
+				w[n + i] = word(1, i) | (others != Value.ERROR
+						&& others != Value.FALSE && others != Value.TRUE ? above : 0L);
+				w[2 * n + i] = word(2, i) | (others == Value.TRUE ? above : 0L);
+			}
+			return createWide(newWidth, w);
+		}
 		int maskInverse = (width == 32 ? 0 : (-1 << width));
 		if (others == Value.ERROR) {
 			return Value.create(newWidth, error | maskInverse, unknown, value);
@@ -136,7 +321,15 @@ public class Value {
 	}
 
 	public boolean isUnknown() {
-		if (width == 32) {
+		if (wide != null) {
+			int n = wide.length / 3;
+			for (int i = 0; i < n; i++) {
+				if (wide[i] != 0 || (wide[n + i] | maskAbove(i, width)) != -1L) {
+					return false;
+				}
+			}
+			return true;
+		} else if (width == 32) {
 			return error == 0 && unknown == -1;
 		} else {
 			return error == 0 && unknown == ((1 << width) - 1);
@@ -144,6 +337,13 @@ public class Value {
 	}
 
 	public boolean isFullyDefined() {
+		if (wide != null) {
+			int n = wide.length / 3;
+			for (int i = 0; i < 2 * n; i++) {
+				if (wide[i] != 0) return false;
+			}
+			return true;
+		}
 		return width > 0 && error == 0 && unknown == 0;
 	}
 
@@ -154,6 +354,18 @@ public class Value {
 			throw new RuntimeException("Attempt to set outside value's width");
 		} else if (width == 1) {
 			return val;
+		} else if (wide != null) {
+			int n = wide.length / 3;
+			int k = which >>> 6;
+			long mask = 1L << which;
+			long[] w = wide.clone();
+			w[k] &= ~mask;
+			w[n + k] &= ~mask;
+			w[2 * n + k] &= ~mask;
+			if (val == ERROR)        w[k] |= mask;
+			else if (val == UNKNOWN) w[n + k] |= mask;
+			else if (val == TRUE)    w[2 * n + k] |= mask;
+			return new Value(width, w);
 		} else {
 			int mask = ~(1 << which);
 			return Value.create(this.width,
@@ -173,6 +385,15 @@ public class Value {
 
 	public Value get(int which) {
 		if (which < 0 || which >= width) return ERROR;
+		if (wide != null) {
+			int n = wide.length / 3;
+			int k = which >>> 6;
+			long mask = 1L << which;
+			if ((wide[k] & mask) != 0) return ERROR;
+			else if ((wide[n + k] & mask) != 0) return UNKNOWN;
+			else if ((wide[2 * n + k] & mask) != 0) return TRUE;
+			else return FALSE;
+		}
 		int mask = 1 << which;
 		if ((error & mask) != 0) return ERROR;
 		else if ((unknown & mask) != 0) return UNKNOWN;
@@ -195,7 +416,8 @@ public class Value {
 		boolean ret = this.width == other.width
 			&& this.error == other.error
 			&& this.unknown == other.unknown
-			&& this.value == other.value;
+			&& this.value == other.value
+			&& (this.wide == null || Arrays.equals(this.wide, other.wide));
 		return ret;
 	}
 	
@@ -205,15 +427,40 @@ public class Value {
 		ret = 31 * ret + error;
 		ret = 31 * ret + unknown;
 		ret = 31 * ret + value;
+		if (wide != null) ret = 31 * ret + Arrays.hashCode(wide);
 		return ret;
 	}
 
+	/** Returns the low 32 bits of the value, or -1 if any bit is an
+	 * error or unknown. */
 	public int toIntValue() {
+		if (wide != null) return isFullyDefined() ? value : -1;
 		if (error != 0) return -1;
 		if (unknown != 0) return -1;
 		return value;
 	}
 
+	/** Returns the low 64 bits of the value, zero-extended, or -1 if any
+	 * bit is an error or unknown. */
+	public long toLongValue() {
+		if (!isFullyDefined()) return -1L;
+		if (wide == null) return width == 32 ? (long) value & 0xFFFFFFFFL : value;
+		return wide[2 * (wide.length / 3)];
+	}
+
+	private BigInteger toBigInteger(boolean signed) {
+		BigInteger ret = BigInteger.ZERO;
+		for (int i = words(width) - 1; i >= 0; i--) {
+			long w = word(2, i);
+			ret = ret.shiftLeft(64).or(BigInteger.valueOf(w >>> 1).shiftLeft(1))
+				.or(BigInteger.valueOf(w & 1));
+		}
+		if (signed && ret.testBit(width - 1)) {
+			ret = ret.subtract(BigInteger.ONE.shiftLeft(width));
+		}
+		return ret;
+	}
+
 	@Override
 	public String toString() {
 		switch (width) {
@@ -285,6 +532,7 @@ public class Value {
 		if (width == 0) return "-";
 		if (isErrorValue()) return Strings.get("valueError");
 		if (!isFullyDefined()) return Strings.get("valueUnknown");
+		if (wide != null) return toBigInteger(signed).toString();
 		
 		int value = toIntValue();
 		if (signed) {
@@ -306,6 +554,7 @@ public class Value {
 			if (width == 0) return "-";
 			if (isErrorValue()) return Strings.get("valueError");
 			if (!isFullyDefined()) return Strings.get("valueUnknown");
+			if (wide != null) return toBigInteger(false).toString(radix);
 			return Integer.toString(toIntValue(), radix);
 		}
 	}
@@ -337,6 +586,20 @@ public class Value {
 			if (this == UNKNOWN) return other;
 			if (other == UNKNOWN) return this;
 			return ERROR;
+		} else if (this.wide != null || other.wide != null) {
+			int width = Math.max(this.width, other.width);
+			int n = words(width);
+			long[] w = new long[3 * n];
+			for (int i = 0; i < n; i++) {
+				long u0 = this.word(1, i);
+				long u1 = other.word(1, i);
+				long v0 = this.word(2, i);
+				long v1 = other.word(2, i);
+				w[i] = this.word(0, i) | other.word(0, i) | ((v0 ^ v1) & ~(u0 | u1));
+				w[n + i] = u0 & u1;
+				w[2 * n + i] = (v0 & ~u0) | (v1 & ~u1);
+			}
+			return createWide(width, w);
 		} else {
 			int disagree = (this.value ^ other.value)
 				& ~(this.unknown | other.unknown);
@@ -353,6 +616,20 @@ public class Value {
 			if (this == FALSE || other == FALSE) return FALSE;
 			if (this == TRUE  && other == TRUE ) return TRUE;
 			return ERROR;
+		} else if (this.wide != null || other.wide != null) {
+			int width = Math.max(this.width, other.width);
+			int n = words(width);
+			long[] w = new long[3 * n];
+			for (int i = 0; i < n; i++) {
+				long e0 = this.word(0, i) | this.word(1, i);
+				long e1 = other.word(0, i) | other.word(1, i);
+				long v0 = this.word(2, i);
+				long v1 = other.word(2, i);
+				long falses = (~v0 & ~e0) | (~v1 & ~e1);
+				w[i] = (e0 | e1) & ~falses;
+				w[2 * n + i] = v0 & v1;
+			}
+			return createWide(width, w);
 		} else {
 			int false0 = ~this.value & ~this.error & ~this.unknown;
 			int false1 = ~other.value & ~other.error & ~other.unknown;
@@ -370,6 +647,20 @@ public class Value {
 			if (this == TRUE  || other == TRUE ) return TRUE;
 			if (this == FALSE && other == FALSE) return FALSE;
 			return ERROR;
+		} else if (this.wide != null || other.wide != null) {
+			int width = Math.max(this.width, other.width);
+			int n = words(width);
+			long[] w = new long[3 * n];
+			for (int i = 0; i < n; i++) {
+				long e0 = this.word(0, i) | this.word(1, i);
+				long e1 = other.word(0, i) | other.word(1, i);
+				long v0 = this.word(2, i);
+				long v1 = other.word(2, i);
+				long trues = (v0 & ~e0) | (v1 & ~e1);
+				w[i] = (e0 | e1) & ~trues;
+				w[2 * n + i] = v0 | v1;
+			}
+			return createWide(width, w);
 		} else {
 			int true0 = this.value & ~this.error & ~this.unknown;
 			int true1 = other.value & ~other.error & ~other.unknown;
@@ -389,6 +680,16 @@ public class Value {
 			if (this == NIL || other == NIL) return ERROR;
 			if ((this == TRUE) == (other == TRUE)) return FALSE;
 			return TRUE;
+		} else if (this.wide != null || other.wide != null) {
+			int width = Math.max(this.width, other.width);
+			int n = words(width);
+			long[] w = new long[3 * n];
+			for (int i = 0; i < n; i++) {
+				w[i] = this.word(0, i) | other.word(0, i)
+					| this.word(1, i) | other.word(1, i);
+				w[2 * n + i] = this.word(2, i) ^ other.word(2, i);
+			}
+			return createWide(width, w);
 		} else {
 			return Value.create(Math.max(this.width, other.width),
 				this.error | other.error | this.unknown | other.unknown,
@@ -402,6 +703,14 @@ public class Value {
 			if (this == TRUE) return FALSE;
 			if (this == FALSE) return TRUE;
 			return ERROR;
+		} else if (wide != null) {
+			int n = wide.length / 3;
+			long[] w = new long[3 * n];
+			for (int i = 0; i < n; i++) {
+				w[i] = wide[i] | wide[n + i];
+				w[2 * n + i] = ~wide[2 * n + i];
+			}
+			return createWide(width, w);
 		} else {
 			return Value.create(this.width,
 				this.error | this.unknown,
@@ -411,7 +720,7 @@ public class Value {
 	}
 
 	public Color getColor() {
-		if (error != 0) {
+		if (isErrorValue()) {
 			return ERROR_COLOR;
 		} else if (width == 0) {
 			return NIL_COLOR;
@@ -74,6 +74,35 @@ public class Loader implements LibraryLoader {
 			return Strings.get("jarFileFilter");
 		}
 	}
+
+	// the directory of the circuit file this thread is reading or writing
+	private static final ThreadLocal<File> directoryInUse = new ThreadLocal<File>();
+
+	/**
+	 * Returns the name under which a file is referred to from the circuit
+	 * file this thread is reading or writing: relative to its directory, if
+	 * there is one, and otherwise the absolute path.
+	 */
+	public static String toPathInUse(File file) {
+		File dir = directoryInUse.get();
+		File abs = file.getAbsoluteFile();
+		if (dir != null) {
+			try {
+				Path rel = dir.toPath().relativize(abs.toPath());
+				return rel.toString().replace(File.separatorChar, '/');
+			} catch (IllegalArgumentException e) { } // on another root
+		}
+		return abs.getPath();
+	}
+
+	/** Returns the file referred to by a name from the circuit file this
+	 * thread is reading or writing, as written by {@link #toPathInUse}. */
+	public static File fromPathInUse(String name) {
+		File file = new File(name);
+		File dir = directoryInUse.get();
+		if (file.isAbsolute() || dir == null) return file;
+		return dir.toPath().resolve(name).normalize().toFile();
+	}
 	
 	// fixed
 	private Component parent;
@@ -207,7 +236,13 @@ public class Loader implements LibraryLoader {
 				MacCompatibility.setFileCreatorAndType(dest, "LGSM", "circ");
 			} catch (IOException e) { }
 			fwrite = new FileOutputStream(dest);
-			file.write(fwrite, this);
+			File oldDirectory = directoryInUse.get();
+			directoryInUse.set(dest.getAbsoluteFile().getParentFile());
+			try {
+				file.write(fwrite, this);
+			} finally {
+				directoryInUse.set(oldDirectory);
+			}
 			file.setName(toProjectName(dest));
 
 			File oldFile = getMainFile();
@@ -293,12 +328,15 @@ public class Loader implements LibraryLoader {
 
 		LogisimFile ret = null;
 		filesOpening.push(actual);
+		File oldDirectory = directoryInUse.get();
+		directoryInUse.set(actual.getAbsoluteFile().getParentFile());
 		try {
 			ret = LogisimFile.load(actual, this);
 		} catch (IOException e) {
 			throw new LoadFailedException(StringUtil.format(Strings.get("logisimLoadError"),
 					toProjectName(actual), e.toString()));
 		} finally {
+			directoryInUse.set(oldDirectory);
 			filesOpening.pop();
 		}
 		ret.setName(toProjectName(actual));
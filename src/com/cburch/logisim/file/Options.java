@@ -14,11 +14,22 @@ public class Options {
 	= new AttributeOption("ignore", Strings.getter("gateUndefinedIgnore"));
 	public static final AttributeOption GATE_UNDEFINED_ERROR
 		= new AttributeOption("error", Strings.getter("gateUndefinedError"));
+	public static final AttributeOption SIM_ENGINE_QUEUE
+		= new AttributeOption("queue", Strings.getter("simEngineQueue"));
+	public static final AttributeOption SIM_ENGINE_WHEEL
+		= new AttributeOption("wheel", Strings.getter("simEngineWheel"));
 		
 	public static final Attribute<Integer> sim_limit_attr
 		= Attributes.forInteger("simlimit", Strings.getter("simLimitOption"));
 	public static final Attribute<Integer> sim_rand_attr
 		= Attributes.forInteger("simrand", Strings.getter("simRandomOption"));
+	public static final Attribute<AttributeOption> sim_engine_attr
+		= Attributes.forOption("simengine", Strings.getter("simEngineOption"),
+				new AttributeOption[] { SIM_ENGINE_QUEUE, SIM_ENGINE_WHEEL });
+	public static final Attribute<Boolean> sim_compile_attr
+		= Attributes.forBoolean("simcompile", Strings.getter("simCompileOption"));
+	public static final Attribute<Boolean> sim_parallel_attr
+		= Attributes.forBoolean("simparallel", Strings.getter("simParallelOption"));
 	public static final Attribute<AttributeOption> ATTR_GATE_UNDEFINED
 		= Attributes.forOption("gateUndefined", Strings.getter("gateUndefinedOption"),
 				new AttributeOption[] { GATE_UNDEFINED_IGNORE, GATE_UNDEFINED_ERROR });
@@ -26,10 +37,12 @@ public class Options {
 	public static final Integer sim_rand_dflt = Integer.valueOf(32);
 
 	private static final Attribute<?>[] ATTRIBUTES = {
-			ATTR_GATE_UNDEFINED, sim_limit_attr, sim_rand_attr,
+			ATTR_GATE_UNDEFINED, sim_limit_attr, sim_rand_attr, sim_engine_attr,
+			sim_compile_attr, sim_parallel_attr,
 	};
 	private static final Object[] DEFAULTS = {
 			GATE_UNDEFINED_IGNORE, Integer.valueOf(1000), Integer.valueOf(0),
+			SIM_ENGINE_QUEUE, Boolean.FALSE, Boolean.FALSE,
 	};
 	
 	private AttributeSet attrs;
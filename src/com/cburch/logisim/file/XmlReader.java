@@ -336,6 +336,10 @@ class XmlReader {
 						messages.add(StringUtil.format(
 							Strings.get("attrValueInvalidError"),
 							attrVal, attrName));
+					} catch (IllegalArgumentException e) {
+						// the value refers to something that cannot be read:
+						// the attribute keeps its default, with an error
+						addError(e.getMessage(), attrName);
 					}
 				}
 			}
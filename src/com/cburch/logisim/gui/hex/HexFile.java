@@ -147,6 +147,30 @@ public class HexFile {
 		if (tokens > 0) out.write('\n');
 	}
 	
+	/** Writes words in the form read back by {@link #parse}. */
+	public static void save(Writer out, int[] values) throws IOException {
+		int last = values.length - 1;
+		while (last >= 0 && values[last] == 0) last--;
+		int tokens = 0;
+		int cur = 0;
+		while (cur <= last) {
+			int val = values[cur];
+			int start = cur;
+			cur++;
+			while (cur <= last && values[cur] == val) cur++;
+			if (cur - start < 4) cur = start + 1;
+			try {
+				if (tokens > 0) out.write(tokens % 8 == 0 ? '\n' : ' ');
+				if (cur != start + 1) out.write((cur - start) + "*");
+				out.write(Integer.toHexString(val));
+			} catch (IOException e) {
+				throw new IOException(Strings.get("hexFileWriteError"));
+			}
+			tokens++;
+		}
+		if (tokens > 0) out.write('\n');
+	}
+	
 	public static void open(HexModel dst, Reader in) throws IOException {
 		HexReader reader = new HexReader(new BufferedReader(in));
 		long offs = dst.getFirstOffset();
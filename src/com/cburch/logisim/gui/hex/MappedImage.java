@@ -0,0 +1,207 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.hex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory image kept in a binary file rather than in the heap. Each word
+ * takes one, two or four bytes, depending on its width, stored little
+ * endian from the start of the file; words past the end of the file are
+ * zero. The file is mapped lazily in windows of 64MB, so only the parts
+ * actually read are brought into memory, and a sparse file holds a 32-bit
+ * address space in the space of its nonzero parts.
+ *
+ * <p>Writes go straight to the file, at the position of their words, and
+ * are seen by later reads. An image opened on an existing file keeps that
+ * file open, so it goes on reading the same contents even after another
+ * file is moved over it under the same name.</p>
+ */
+public class MappedImage {
+	private static final int WINDOW_BITS = 26;
+	private static final long WINDOW_SIZE = 1L << WINDOW_BITS;
+	private static final String IMAGE_EXTENSION = ".bin";
+
+	/** Returns whether a file is named as a binary image rather than as a
+	 * hex file. */
+	public static boolean isImageFile(File file) {
+		return file.getName().toLowerCase().endsWith(IMAGE_EXTENSION);
+	}
+
+	/** Maps an existing image, holding words of the given width. */
+	public static MappedImage open(File file, int width) throws IOException {
+		if (!file.isFile()) {
+			throw new IOException(Strings.get("hexFileOpenError"));
+		}
+		MappedImage ret = new MappedImage(file, width);
+		ret.getChannel();
+		return ret;
+	}
+
+	/** Creates an empty image, replacing any file of the same name. */
+	public static MappedImage create(File file, int width) throws IOException {
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			out.setLength(0);
+		} finally {
+			out.close();
+		}
+		return new MappedImage(file, width);
+	}
+
+	private final File file;
+	private final int width;
+	private final int shift; // log2 of the bytes per word
+	private volatile long length; // in bytes
+	private volatile MappedByteBuffer[] windows;
+	private FileChannel channel = null; // for reading, once opened
+
+	private MappedImage(File file, int width) {
+		this.file = file;
+		this.width = width;
+		this.shift = width <= 8 ? 0 : width <= 16 ? 1 : 2;
+		this.length = file.length();
+		this.windows = new MappedByteBuffer[0];
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/** Returns the number of words stored in the file. */
+	public long getWordCount() {
+		return length >>> shift;
+	}
+
+	public int get(long addr) {
+		long pos = addr << shift;
+		if (addr < 0 || pos >= length) return 0;
+		MappedByteBuffer window = getWindow((int) (pos >>> WINDOW_BITS));
+		if (window == null) return 0;
+		int offs = (int) (pos & (WINDOW_SIZE - 1));
+		if (offs >= window.limit()) return 0;
+		switch (shift) {
+		case 0:  return window.get(offs) & 0xff;
+		case 1:  return window.getShort(offs) & 0xffff;
+		default: return window.getInt(offs);
+		}
+	}
+
+	/** Reads the words starting at an address into an array, which is
+	 * returned. */
+	public int[] read(long start, int[] dest) {
+		for (int i = 0; i < dest.length; i++) dest[i] = get(start + i);
+		return dest;
+	}
+
+	/** Returns whether all the words of a range are zero. This looks only
+	 * at the part of the range within the file. */
+	public boolean isClear(long start, long len) {
+		long pos = Math.max(start, 0) << shift;
+		long end = Math.min((start + len) << shift, length);
+		while (pos < end) {
+			MappedByteBuffer window = getWindow((int) (pos >>> WINDOW_BITS));
+			if (window == null) return true;
+			int offs = (int) (pos & (WINDOW_SIZE - 1));
+			int stop = (int) Math.min(window.limit(), offs + (end - pos));
+			if (offs >= stop) return true;
+			int i = offs;
+			for (; i + 8 <= stop; i += 8) {
+				if (window.getLong(i) != 0) return false;
+			}
+			for (; i < stop; i++) {
+				if (window.get(i) != 0) return false;
+			}
+			pos += stop - offs;
+		}
+		return true;
+	}
+
+	/** Writes words to the file, starting at an address. The file grows
+	 * as needed, leaving any gap unwritten. */
+	public void write(long start, int[] values) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(values.length << shift);
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		for (int value : values) {
+			switch (shift) {
+			case 0:  buf.put((byte) value); break;
+			case 1:  buf.putShort((short) value); break;
+			default: buf.putInt(value); break;
+			}
+		}
+		buf.flip();
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = out.getChannel();
+			long pos = start << shift;
+			while (buf.hasRemaining()) {
+				pos += channel.write(buf, pos);
+			}
+			if (pos > length) grow(pos);
+		} finally {
+			out.close();
+		}
+	}
+
+	private synchronized void grow(long newLength) {
+		// windows mapped short of a full window may miss the new end
+		MappedByteBuffer[] ws = windows.clone();
+		for (int i = 0; i < ws.length; i++) {
+			if (ws[i] != null && ws[i].limit() < WINDOW_SIZE) ws[i] = null;
+		}
+		length = newLength;
+		windows = ws;
+	}
+
+	private MappedByteBuffer getWindow(int index) {
+		MappedByteBuffer[] ws = windows;
+		if (index < ws.length && ws[index] != null) return ws[index];
+		return mapWindow(index);
+	}
+
+	private synchronized MappedByteBuffer mapWindow(int index) {
+		MappedByteBuffer[] ws = windows;
+		if (index < ws.length && ws[index] != null) return ws[index];
+
+		long start = (long) index << WINDOW_BITS;
+		long size = Math.min(WINDOW_SIZE, length - start);
+		if (size <= 0) return null;
+		MappedByteBuffer ret;
+		try {
+			ret = getChannel().map(FileChannel.MapMode.READ_ONLY, start, size);
+		} catch (IOException e) {
+			return null;
+		}
+		ret.order(ByteOrder.LITTLE_ENDIAN);
+
+		if (index >= ws.length) {
+			MappedByteBuffer[] grown = new MappedByteBuffer[index + 1];
+			System.arraycopy(ws, 0, grown, 0, ws.length);
+			ws = grown;
+		} else {
+			ws = ws.clone();
+		}
+		ws[index] = ret;
+		windows = ws;
+		return ret;
+	}
+
+	private synchronized FileChannel getChannel() throws IOException {
+		if (channel == null) {
+			channel = new RandomAccessFile(file, "r").getChannel();
+		}
+		return channel;
+	}
+}
@@ -39,6 +39,7 @@ class FilePanel extends LogPanel {
 			enableButton.setEnabled(file != null);
 			
 			headerCheckBox.setSelected(model.getFileHeader());
+			netsCheckBox.setSelected(model.getFileNets());
 		}
 		
 		private void computeEnableItems(Model model) {
@@ -91,6 +92,8 @@ class FilePanel extends LogPanel {
 				getModel().setFile(file);
 			} else if (src == headerCheckBox) {
 				getModel().setFileHeader(headerCheckBox.isSelected());
+			} else if (src == netsCheckBox) {
+				getModel().setFileNets(netsCheckBox.isSelected());
 			}
 		}
 	}
@@ -102,6 +105,7 @@ class FilePanel extends LogPanel {
 	private JTextField fileField = new JTextField();
 	private JButton selectButton = new JButton();
 	private JCheckBox headerCheckBox = new JCheckBox();
+	private JCheckBox netsCheckBox = new JCheckBox();
 	private JFileChooser chooser = JFileChoosers.create();
 	
 	public FilePanel(LogFrame frame) {
@@ -138,11 +142,13 @@ class FilePanel extends LogPanel {
 		  gc.fill = GridBagConstraints.NONE;
 		glue = new JPanel(); gc.weighty = 1.0; gb.setConstraints(glue, gc); add(glue); gc.weighty = 0.0;
 		gb.setConstraints(headerCheckBox, gc); add(headerCheckBox);
+		gb.setConstraints(netsCheckBox, gc);   add(netsCheckBox);
 		glue = new JPanel(); gc.weighty = 1.0; gb.setConstraints(glue, gc); add(glue); gc.weighty = 0.0;
 		
 		enableButton.addActionListener(listener);
 		selectButton.addActionListener(listener);
 		headerCheckBox.addActionListener(listener);
+		netsCheckBox.addActionListener(listener);
 		modelChanged(null, getModel());
 		localeChanged();
 	}
@@ -163,6 +169,7 @@ class FilePanel extends LogPanel {
 		fileLabel.setText(Strings.get("fileLabel") + " ");
 		selectButton.setText(Strings.get("fileSelectButton"));
 		headerCheckBox.setText(Strings.get("fileHeaderCheck"));
+		netsCheckBox.setText(Strings.get("fileNetsCheck"));
 	}
 
 	@Override
@@ -0,0 +1,251 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.Timer;
+
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.util.GraphicsUtil;
+
+/**
+ * Pages through the waveform being recorded to a file, so that the values
+ * of any propagation since the recording started can be seen, not only
+ * those of the last few hundred changes that the table keeps. Only a page
+ * of propagations is held at a time; it is read back from the file
+ * through the recorder's index as the scroll bar moves.
+ */
+class HistoryPanel extends LogPanel {
+	private static final Font HEAD_FONT = new Font("Serif", Font.BOLD, 14);
+	private static final Font BODY_FONT = new Font("Serif", Font.PLAIN, 14);
+	private static final int COLUMN_SEP = 8;
+	private static final int HEADER_SEP = 4;
+
+	// how often the recording is checked for more propagations
+	private static final int REFRESH_DELAY = 500;
+
+	private class MyListener implements ModelListener, ActionListener,
+			AdjustmentListener, MouseWheelListener {
+		public void selectionChanged(ModelEvent event) { }
+
+		public void entryAdded(ModelEvent event, Value[] values) { }
+
+		public void filePropertyChanged(ModelEvent event) {
+			refresh();
+		}
+
+		public void actionPerformed(ActionEvent event) {
+			if (isShowing()) refresh();
+		}
+
+		public void adjustmentValueChanged(AdjustmentEvent event) {
+			if (!adjusting) loadRows();
+		}
+
+		public void mouseWheelMoved(MouseWheelEvent event) {
+			scrollBar.setValue(scrollBar.getValue()
+					+ event.getWheelRotation() * scrollBar.getUnitIncrement());
+		}
+	}
+
+	private class Body extends JPanel {
+		@Override
+		public void paintComponent(Graphics g) {
+			super.paintComponent(g);
+			paintRows(g, getSize());
+		}
+	}
+
+	private MyListener myListener = new MyListener();
+	private Body body = new Body();
+	private JScrollBar scrollBar = new JScrollBar(JScrollBar.VERTICAL);
+	private Timer timer = new Timer(REFRESH_DELAY, myListener);
+	private boolean adjusting = false;
+
+	// the recording shown, and the page of it read back
+	private WaveformRecorder recorder = null;
+	private SelectionItem[] items = new SelectionItem[0];
+	private long lastTime = -1;
+	private long scale = 1; // propagations per unit of the scroll bar
+	private List<WaveformRecorder.Row> rows = new ArrayList<WaveformRecorder.Row>();
+	private int cellHeight = 16;
+
+	public HistoryPanel(LogFrame frame) {
+		super(frame, new BorderLayout());
+		add(body, BorderLayout.CENTER);
+		add(scrollBar, BorderLayout.EAST);
+		scrollBar.addAdjustmentListener(myListener);
+		body.addMouseWheelListener(myListener);
+		body.addComponentListener(new ComponentAdapter() {
+			@Override
+			public void componentResized(ComponentEvent event) {
+				loadRows();
+			}
+		});
+		modelChanged(null, getModel());
+	}
+
+	@Override
+	public String getTitle() {
+		return Strings.get("historyTab");
+	}
+
+	@Override
+	public String getHelpText() {
+		return Strings.get("historyHelp");
+	}
+
+	@Override
+	public void localeChanged() {
+		body.repaint();
+	}
+
+	@Override
+	public void modelChanged(Model oldModel, Model newModel) {
+		if (oldModel != null) oldModel.removeModelListener(myListener);
+		if (newModel != null) newModel.addModelListener(myListener);
+		refresh();
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		timer.start();
+	}
+
+	@Override
+	public void removeNotify() {
+		timer.stop();
+		super.removeNotify();
+	}
+
+	// Follows the recording: a new one starts at its end, and a page at
+	// the end of one moves on as more is written.
+	private void refresh() {
+		Model model = getModel();
+		WaveformRecorder rec = model == null ? null : model.getRecorder();
+		boolean atEnd = scrollBar.getValue() >= scrollBar.getMaximum() - 1;
+		if (rec != recorder) {
+			recorder = rec;
+			items = rec == null ? new SelectionItem[0] : rec.getItems();
+			lastTime = -2; // so that it is different
+			atEnd = true;
+		}
+		long last = rec == null ? -1 : rec.getLastTime();
+		if (last == lastTime) return;
+
+		lastTime = last;
+		scale = 1 + Math.max(0, last) / Integer.MAX_VALUE;
+		int max = (int) (Math.max(0, last) / scale) + 1;
+		adjusting = true;
+		scrollBar.setValues(atEnd ? max - 1 : Math.min(scrollBar.getValue(), max - 1),
+				1, 0, max);
+		adjusting = false;
+		loadRows();
+	}
+
+	private void loadRows() {
+		rows = new ArrayList<WaveformRecorder.Row>();
+		if (recorder != null && lastTime >= 0) {
+			long until = Math.min(lastTime, scrollBar.getValue() * scale);
+			try {
+				rows = recorder.getRows(until, getPageSize());
+			} catch (IOException e) {
+				// the file is gone; the page stays empty
+			}
+		}
+		// a unit moves by about a row, and a block by about a page
+		long span = rows.size() < 2 ? 1
+			: rows.get(rows.size() - 1).getTime() - rows.get(0).getTime();
+		scrollBar.setUnitIncrement((int) Math.max(1, span / scale / Math.max(1, rows.size() - 1)));
+		scrollBar.setBlockIncrement((int) Math.max(1, span / scale));
+		body.repaint();
+	}
+
+	private int getPageSize() {
+		int height = body.getHeight();
+		if (height <= 0) height = body.getPreferredSize().height;
+		return Math.max(1, (height - HEADER_SEP) / cellHeight - 1);
+	}
+
+	private void paintRows(Graphics g, Dimension sz) {
+		if (recorder == null || items.length == 0) {
+			g.setFont(BODY_FONT);
+			GraphicsUtil.drawCenteredText(g, Strings.get("historyEmptyMessage"),
+					sz.width / 2, sz.height / 2);
+			return;
+		}
+
+		g.setFont(HEAD_FONT);
+		FontMetrics headerMetric = g.getFontMetrics();
+		int oldHeight = cellHeight;
+		cellHeight = headerMetric.getHeight();
+		int[] widths = new int[items.length + 1];
+		String[] headers = new String[widths.length];
+		headers[0] = Strings.get("historyTimeHeader");
+		for (int i = 0; i < items.length; i++) headers[i + 1] = items[i].toShortString();
+		String lastLabel = Long.toString(Math.max(0, lastTime));
+		widths[0] = Math.max(headerMetric.stringWidth(headers[0]),
+				headerMetric.stringWidth(lastLabel));
+		for (int i = 1; i < widths.length; i++) {
+			widths[i] = Math.max(24, headerMetric.stringWidth(headers[i]));
+		}
+
+		int x = COLUMN_SEP;
+		int y = headerMetric.getAscent() + 1;
+		g.setColor(Color.BLACK);
+		for (int i = 0; i < headers.length; i++) {
+			int width = headerMetric.stringWidth(headers[i]);
+			g.drawString(headers[i], x + (widths[i] - width) / 2, y);
+			x += widths[i] + COLUMN_SEP;
+		}
+		g.setColor(Color.GRAY);
+		int lineY = cellHeight + HEADER_SEP / 2;
+		g.drawLine(0, lineY, x, lineY);
+
+		g.setColor(Color.BLACK);
+		g.setFont(BODY_FONT);
+		FontMetrics bodyMetric = g.getFontMetrics();
+		y = cellHeight + HEADER_SEP;
+		for (WaveformRecorder.Row row : rows) {
+			x = COLUMN_SEP;
+			for (int i = 0; i < widths.length; i++) {
+				String label;
+				if (i == 0) {
+					label = Long.toString(row.getTime());
+				} else {
+					Value val = row.getValue(i - 1);
+					label = val == null ? "-" : val.toDisplayString(items[i - 1].getRadix());
+				}
+				int width = bodyMetric.stringWidth(label);
+				g.drawString(label, x + (widths[i] - width) / 2,
+						y + bodyMetric.getAscent());
+				x += widths[i] + COLUMN_SEP;
+			}
+			y += cellHeight;
+		}
+
+		// the page size depends on the height of a row
+		if (oldHeight != cellHeight) loadRows();
+	}
+}
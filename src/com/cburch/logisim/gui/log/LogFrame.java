@@ -139,6 +139,7 @@ public class LogFrame extends LFrame {
 		panels = new LogPanel[] {
 				new SelectionPanel(this),
 				new ScrollPanel(this),
+				new HistoryPanel(this),
 				new FilePanel(this),
 		};
 		tabbedPane = new JTabbedPane();
@@ -97,7 +97,7 @@ class LogThread extends Thread implements ModelListener {
 	
 	private boolean isFileEnabled() {
 		return !canceled && model.isSelected() && model.isFileEnabled()
-			&& model.getFile() != null;
+			&& model.getFile() != null && !model.isWaveformFile();
 	}
 	
 	// Should hold lock and have verified that isFileEnabled() before
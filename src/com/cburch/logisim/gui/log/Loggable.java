@@ -4,10 +4,12 @@
 package com.cburch.logisim.gui.log;
 
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 
 public interface Loggable {
 	public Object[] getLogOptions(CircuitState state);
 	public String getLogName(Object option);
 	public Value getLogValue(CircuitState state, Object option);
+	public BitWidth getLogBitWidth(CircuitState state, Object option);
 }
@@ -20,8 +20,10 @@ class Model {
 	private boolean fileEnabled = false;
 	private File file = null;
 	private boolean fileHeader = true;
+	private boolean fileNets = false;
 	private boolean selected = false;
 	private LogThread logger = null;
+	private volatile WaveformRecorder recorder = null;
 	
 	public Model(CircuitState circuitState) {
 		listeners = new EventSourceWeakSupport<ModelListener>();
@@ -65,9 +67,26 @@ class Model {
 		return fileHeader;
 	}
 	
+	public boolean getFileNets() {
+		return fileNets;
+	}
+	
+	/** Returns the recorder of the waveform file, or null if no waveform
+	 * is being recorded. */
+	public WaveformRecorder getRecorder() {
+		return recorder;
+	}
+
+	/** Returns whether the file is to hold a waveform dump rather than a
+	 * table of values. */
+	public boolean isWaveformFile() {
+		return file != null && file.getName().toLowerCase().endsWith(".vcd");
+	}
+	
 	public void setFileEnabled(boolean value) {
 		if (fileEnabled == value) return;
 		fileEnabled = value;
+		updateRecorder();
 		fireFilePropertyChanged(new ModelEvent());
 	}
 	
@@ -75,6 +94,7 @@ class Model {
 		if (file == null ? value == null : file.equals(value)) return;
 		file = value;
 		fileEnabled = file != null;
+		updateRecorder();
 		fireFilePropertyChanged(new ModelEvent());
 	}
 	
@@ -84,6 +104,13 @@ class Model {
 		fireFilePropertyChanged(new ModelEvent());
 	}
 	
+	public void setFileNets(boolean value) {
+		if (fileNets == value) return;
+		fileNets = value;
+		updateRecorder();
+		fireFilePropertyChanged(new ModelEvent());
+	}
+	
 	public void propagationCompleted() {
 		CircuitState circuitState = getCircuitState();
 		Value[] vals = new Value[selection.size()];
@@ -103,6 +130,8 @@ class Model {
 			}
 			fireEntryAdded(new ModelEvent(), vals);
 		}
+		WaveformRecorder rec = recorder;
+		if (rec != null) rec.propagationCompleted(circuitState);
 	}
 	
 	public void setSelected(JFrame frame, boolean value) {
@@ -116,9 +145,23 @@ class Model {
 			logger = null;
 			fileEnabled = false;
 		}
+		updateRecorder();
 		fireFilePropertyChanged(new ModelEvent());
 	}
 
+	// Restarts the waveform recording, if any, or stops it if it is no
+	// longer wanted; the file is replaced each time.
+	private void updateRecorder() {
+		WaveformRecorder old = recorder;
+		recorder = null;
+		if (old != null) old.close();
+		if (selected && fileEnabled && isWaveformFile()) {
+			WaveformRecorder rec = new WaveformRecorder(this, file, fileNets);
+			rec.start();
+			recorder = rec;
+		}
+	}
+
 	void fireSelectionChanged(ModelEvent e) {
 		for (Iterator<SelectionItem> it = log.keySet().iterator(); it.hasNext(); ) {
 			SelectionItem i = it.next();
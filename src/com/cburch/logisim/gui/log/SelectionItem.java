@@ -11,6 +11,7 @@ import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.AttributeEvent;
 import com.cburch.logisim.data.AttributeListener;
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.StdAttr;
 
@@ -111,13 +112,24 @@ class SelectionItem implements AttributeListener, CircuitListener {
 	}
 	
 	public Value fetchValue(CircuitState root) {
+		CircuitState cur = getState(root);
+		Loggable log = (Loggable) comp.getFeature(Loggable.class);
+		return log == null ? Value.NIL : log.getLogValue(cur, option);
+	}
+
+	public BitWidth fetchBitWidth(CircuitState root) {
+		CircuitState cur = getState(root);
+		Loggable log = (Loggable) comp.getFeature(Loggable.class);
+		return log == null ? BitWidth.ONE : log.getLogBitWidth(cur, option);
+	}
+
+	private CircuitState getState(CircuitState root) {
 		CircuitState cur = root;
 		for (int i = 0; i < path.length; i++) {
 			SubcircuitFactory circFact = (SubcircuitFactory) path[i].getFactory();
 			cur = circFact.getSubstate(cur, path[i]);
 		}
-		Loggable log = (Loggable) comp.getFeature(Loggable.class);
-		return log == null ? Value.NIL : log.getLogValue(cur, option);
+		return cur;
 	}
 
 	public void attributeListChanged(AttributeEvent e) { }
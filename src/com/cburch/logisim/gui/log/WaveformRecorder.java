@@ -0,0 +1,565 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+/**
+ * Records the logged values into a file in the Value Change Dump format,
+ * as waveform viewers read. Only the values that changed since the last
+ * propagation are recorded. The simulation thread just compares values
+ * and queues those that changed; a thread of the recorder's own encodes
+ * and writes them, through a buffer and a file channel. The queue is
+ * bounded, and propagations arriving while it is full are dropped, with
+ * a comment in the file saying how many.
+ *
+ * <p>Time in the file counts propagations. Every so many propagations,
+ * the values of all signals are dumped again, so that a viewer can find
+ * the values as of any time without reading the file from the start.
+ * Each signal is declared with the width its component logs, or the
+ * width of its net.</p>
+ *
+ * <p>The positions of some of those dumps are kept in an index, through
+ * which {@link #getRows} reads back the propagations around any time.
+ * The index holds at most a fixed number of dumps: once full, every
+ * other one is dropped, and only half as many dumps are indexed from
+ * then on. So the memory it takes stays the same however long the
+ * recording, while a read starts at most a few thousand propagations
+ * before the time sought.</p>
+ */
+class WaveformRecorder implements Runnable {
+	// propagations that may be waiting to be written
+	private static final int QUEUE_CAPACITY = 4096;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// buffer will be written out with at least this frequency
+	private static final int FLUSH_FREQUENCY = 500;
+
+	// propagations written between dumps of every value
+	private static final int DUMP_INTERVAL = 1024;
+
+	// dumps that the index may hold
+	private static final int INDEX_CAPACITY = 4096;
+
+	/** A propagation read back from the file, with the values of the
+	 * selected items as of then. */
+	static class Row {
+		private final long time;
+		private final Value[] values;
+
+		Row(long time, Value[] values) {
+			this.time = time;
+			this.values = values;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public Value getValue(int item) {
+			return values[item];
+		}
+	}
+
+	private static class Sample {
+		final long time;
+		final int dropped;
+		final int[] signals;
+		final Value[] values;
+
+		Sample(long time, int dropped, int[] signals, Value[] values) {
+			this.time = time;
+			this.dropped = dropped;
+			this.signals = signals;
+			this.values = values;
+		}
+	}
+
+	private static final Sample END = new Sample(-1, 0, null, null);
+
+	private final Model model;
+	private final File file;
+	private final String scope;
+	private final String[] names;
+	private final int[] widths;
+	private final SelectionItem[] items;
+	private final Location[] nets;
+	private final ArrayBlockingQueue<Sample> queue;
+	private final Thread thread;
+
+	// used only by the simulation thread
+	private final Value[] queued;
+	private long time = 0;
+	private int dropped = 0;
+
+	// used only by the writing thread
+	private FileChannel channel = null;
+	private ByteBuffer buffer = null;
+	private Value[] written = null;
+	private long samplesWritten = 0;
+	private long dumpsWritten = 0;
+
+	// the index of dumps, guarded by itself
+	private final Object indexLock = new Object();
+	private final long[] indexTimes = new long[INDEX_CAPACITY];
+	private final long[] indexPositions = new long[INDEX_CAPACITY];
+	private int indexSize = 0;
+	private int indexStride = 1; // dumps per index entry
+	private long flushedTime = -1;
+	private long flushedPosition = 0;
+
+	/**
+	 * Creates a recorder of the items selected in a model, and also of
+	 * every net of the logged circuit if <code>recordNets</code> is set.
+	 * The signals recorded stay those at creation, as a dump cannot
+	 * declare signals after it starts. Nothing is written until
+	 * {@link #start} is called; the file is then replaced.
+	 */
+	public WaveformRecorder(Model model, File file, boolean recordNets) {
+		this.model = model;
+		this.file = file;
+		CircuitState circState = model.getCircuitState();
+		this.scope = toIdentifier(circState.getCircuit().getName());
+
+		Selection sel = model.getSelection();
+		List<Location> netList;
+		if (recordNets) {
+			netList = circState.getCircuit().getNetLocations();
+		} else {
+			netList = new ArrayList<Location>();
+		}
+		this.items = new SelectionItem[sel.size()];
+		this.nets = netList.toArray(new Location[netList.size()]);
+		this.names = new String[items.length + nets.length];
+		this.widths = new int[names.length];
+		for (int i = 0; i < items.length; i++) {
+			items[i] = sel.get(i);
+			names[i] = toIdentifier(items[i].toString());
+			widths[i] = toWidth(items[i].fetchBitWidth(circState));
+		}
+		for (int i = 0; i < nets.length; i++) {
+			Location loc = nets[i];
+			names[items.length + i] = "net_" + loc.getX() + "_" + loc.getY();
+			widths[items.length + i] = toWidth(circState.getCircuit().getWidth(loc));
+		}
+
+		this.queued = new Value[names.length];
+		this.queue = new ArrayBlockingQueue<Sample>(QUEUE_CAPACITY);
+		this.thread = new Thread(this, "WaveformRecorder");
+		this.thread.setDaemon(true);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/** Returns the items recorded, which are those selected when the
+	 * recording started. */
+	public SelectionItem[] getItems() {
+		return items.clone();
+	}
+
+	public void start() {
+		thread.start();
+	}
+
+	/** Stops the recording, returning once what is queued has been
+	 * written. */
+	public void close() {
+		if (Thread.currentThread() == thread) return; // it is stopping anyway
+		boolean ended = false;
+		while (thread.isAlive()) {
+			try {
+				if (!ended) {
+					ended = queue.offer(END, FLUSH_FREQUENCY, TimeUnit.MILLISECONDS);
+				} else {
+					thread.join();
+				}
+			} catch (InterruptedException e) { }
+		}
+	}
+
+	/**
+	 * Records the values as of a propagation. To be called on the
+	 * simulation thread, which it never blocks.
+	 */
+	public void propagationCompleted(CircuitState circState) {
+		int changed = 0;
+		int[] signals = null;
+		Value[] values = null;
+		for (int i = 0; i < queued.length; i++) {
+			Value v = i < items.length ? items[i].fetchValue(circState)
+				: circState.getValue(nets[i - items.length]);
+			Value old = queued[i];
+			if (old == null ? v != null : !old.equals(v)) {
+				if (signals == null) {
+					signals = new int[queued.length - i];
+					values = new Value[signals.length];
+				}
+				signals[changed] = i;
+				values[changed] = v;
+				changed++;
+			}
+		}
+		long now = time++;
+		if (changed == 0) return;
+
+		Sample sample = new Sample(now, dropped,
+				Arrays.copyOf(signals, changed), Arrays.copyOf(values, changed));
+		if (queue.offer(sample)) {
+			for (int k = 0; k < changed; k++) queued[signals[k]] = values[k];
+			dropped = 0;
+		} else {
+			// the values queued still describe what the file will hold,
+			// so the next change is found relative to them
+			dropped++;
+		}
+	}
+
+	//
+	// reading back
+	//
+	/** Returns the time of the latest propagation written out to the
+	 * file, or -1 if none has been. */
+	public long getLastTime() {
+		synchronized(indexLock) {
+			return flushedTime;
+		}
+	}
+
+	/**
+	 * Returns up to <code>count</code> propagations read back from the
+	 * file, oldest first: the last of them is the latest at or before
+	 * <code>until</code>, unless fewer than <code>count</code> precede it,
+	 * in which case the first of them are returned. Propagations not yet
+	 * written out are not seen.
+	 */
+	public List<Row> getRows(long until, int count) throws IOException {
+		long[] times;
+		long[] positions;
+		long limit;
+		synchronized(indexLock) {
+			if (indexSize == 0 || count <= 0) return new ArrayList<Row>();
+			times = Arrays.copyOf(indexTimes, indexSize);
+			positions = Arrays.copyOf(indexPositions, indexSize);
+			limit = flushedPosition;
+		}
+		int i = Arrays.binarySearch(times, until);
+		if (i < 0) i = Math.max(0, -i - 2);
+		while (true) {
+			ArrayDeque<Row> rows = readRows(positions[i], limit, until, count, i == 0);
+			// a dump holds more propagations than a page, so going back
+			// one is almost always enough
+			if (rows.size() >= count || i == 0) return new ArrayList<Row>(rows);
+			i--;
+		}
+	}
+
+	// Reads the file from a dump, keeping the last propagations at or
+	// before a time, and also those after it if filling is requested.
+	private ArrayDeque<Row> readRows(long position, long limit, long until,
+			int count, boolean fill) throws IOException {
+		ArrayDeque<Row> ret = new ArrayDeque<Row>();
+		Value[] values = new Value[names.length];
+		long rowTime = -1;
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel readChannel = in.getChannel();
+			readChannel.position(position);
+			ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+			StringBuilder line = new StringBuilder();
+			long remaining = limit - position;
+			while (remaining > 0) {
+				buf.limit((int) Math.min(buf.capacity(), remaining));
+				int n = readChannel.read(buf);
+				if (n <= 0) break;
+				remaining -= n;
+				buf.flip();
+				while (buf.hasRemaining()) {
+					char c = (char) (buf.get() & 0xFF);
+					if (c != '\n') {
+						line.append(c);
+						continue;
+					}
+					if (line.length() > 1 && line.charAt(0) == '#') {
+						if (rowTime >= 0 && !addRow(ret, rowTime, values, until, count, fill)) {
+							return ret;
+						}
+						rowTime = Long.parseLong(line.substring(1));
+					} else {
+						readValue(line, values);
+					}
+					line.setLength(0);
+				}
+				buf.clear();
+			}
+			// the data flushed ends with a whole propagation
+			if (rowTime >= 0) addRow(ret, rowTime, values, until, count, fill);
+			return ret;
+		} finally {
+			in.close();
+		}
+	}
+
+	// Adds a propagation to those read, returning false once no more are
+	// wanted.
+	private boolean addRow(ArrayDeque<Row> rows, long rowTime, Value[] values,
+			long until, int count, boolean fill) {
+		if (rowTime > until && (!fill || rows.size() >= count)) return false;
+		rows.addLast(new Row(rowTime, Arrays.copyOf(values, items.length)));
+		if (rowTime <= until && rows.size() > count) rows.removeFirst();
+		return true;
+	}
+
+	// Applies a line giving the value of a signal.
+	private static void readValue(CharSequence line, Value[] values) {
+		int len = line.length();
+		if (len == 0) return;
+		char first = line.charAt(0);
+		if (first == 'b') {
+			int space = 1;
+			while (space < len && line.charAt(space) != ' ') space++;
+			int signal = fromIdentifierCode(line, space + 1, len);
+			if (signal >= 0 && signal < values.length && space > 1) {
+				Value[] bits = new Value[space - 1];
+				for (int i = 0; i < bits.length; i++) {
+					bits[i] = fromVcdBit(line.charAt(space - 1 - i));
+				}
+				values[signal] = Value.create(bits);
+			}
+		} else if (first == '0' || first == '1' || first == 'x' || first == 'z') {
+			int signal = fromIdentifierCode(line, 1, len);
+			if (signal >= 0 && signal < values.length) {
+				values[signal] = fromVcdBit(first);
+			}
+		}
+	}
+
+	//
+	// writing
+	//
+	public void run() {
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			channel = out.getChannel();
+			buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			written = new Value[names.length];
+			writeHeader();
+			long lastTime = -1;
+			long lastFlush = System.currentTimeMillis();
+			while (true) {
+				Sample sample;
+				try {
+					sample = queue.poll(FLUSH_FREQUENCY, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					continue;
+				}
+				if (sample == null) {
+					flush(lastTime);
+					lastFlush = System.currentTimeMillis();
+				} else if (sample == END) {
+					break;
+				} else {
+					writeSample(sample);
+					lastTime = sample.time;
+					long now = System.currentTimeMillis();
+					if (now - lastFlush > FLUSH_FREQUENCY) {
+						flush(lastTime);
+						lastFlush = now;
+					}
+				}
+			}
+			flush(lastTime);
+		} catch (IOException e) {
+			queue.clear();
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					// unless the recording has moved on to another file
+					if (file.equals(model.getFile())) model.setFile(null);
+				}
+			});
+		} finally {
+			if (out != null) {
+				try { out.close(); } catch (IOException e) { }
+			}
+		}
+	}
+
+	private void writeHeader() throws IOException {
+		append("$comment time counts propagations of the simulation $end\n");
+		append("$timescale 1ns $end\n");
+		append("$scope module ").append(scope).append(" $end\n");
+		for (int i = 0; i < names.length; i++) {
+			append("$var wire ").append(Integer.toString(widths[i]))
+				.append(' ').append(toIdentifierCode(i))
+				.append(' ').append(names[i]).append(" $end\n");
+		}
+		append("$upscope $end\n");
+		append("$enddefinitions $end\n");
+	}
+
+	private void writeSample(Sample sample) throws IOException {
+		for (int k = 0; k < sample.signals.length; k++) {
+			written[sample.signals[k]] = sample.values[k];
+		}
+		if (sample.dropped > 0) {
+			append("$comment ").append(Integer.toString(sample.dropped))
+				.append(" propagations dropped $end\n");
+		}
+		boolean dump = samplesWritten % DUMP_INTERVAL == 0;
+		if (dump) addToIndex(sample.time, channel.position() + buffer.position());
+		append('#').append(Long.toString(sample.time)).append('\n');
+		if (dump) {
+			append(samplesWritten == 0 ? "$dumpvars\n" : "$dumpall\n");
+			for (int i = 0; i < written.length; i++) appendValue(i, written[i]);
+			append("$end\n");
+		} else {
+			for (int k = 0; k < sample.signals.length; k++) {
+				appendValue(sample.signals[k], sample.values[k]);
+			}
+		}
+		samplesWritten++;
+	}
+
+	// writes a value in the form its signal was declared with, whatever
+	// the width of the value itself
+	private void appendValue(int signal, Value v) throws IOException {
+		int width = v == null ? 0 : v.getWidth();
+		if (widths[signal] == 1) {
+			append(width == 0 ? 'x' : toVcdBit(v.get(0)));
+		} else {
+			append('b');
+			if (width == 0) {
+				append('x'); // extends to every bit
+			} else {
+				for (int i = Math.min(width, widths[signal]) - 1; i >= 0; i--) {
+					append(toVcdBit(v.get(i)));
+				}
+			}
+			append(' ');
+		}
+		append(toIdentifierCode(signal)).append('\n');
+	}
+
+	private void addToIndex(long when, long position) {
+		long dump = dumpsWritten++;
+		synchronized(indexLock) {
+			if (dump % indexStride != 0) return;
+			if (indexSize == INDEX_CAPACITY) {
+				// keep every other dump, and index half as many from now
+				for (int i = 0; i < INDEX_CAPACITY / 2; i++) {
+					indexTimes[i] = indexTimes[2 * i];
+					indexPositions[i] = indexPositions[2 * i];
+				}
+				indexSize = INDEX_CAPACITY / 2;
+				indexStride *= 2;
+				if (dump % indexStride != 0) return;
+			}
+			indexTimes[indexSize] = when;
+			indexPositions[indexSize] = position;
+			indexSize++;
+		}
+	}
+
+	// writes out the buffer, after which what was written up to the
+	// given time can be read back
+	private void flush(long lastTime) throws IOException {
+		drain();
+		synchronized(indexLock) {
+			flushedTime = lastTime;
+			flushedPosition = channel.position();
+		}
+	}
+
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+
+	private WaveformRecorder append(char c) throws IOException {
+		if (!buffer.hasRemaining()) drain();
+		buffer.put((byte) c);
+		return this;
+	}
+
+	private WaveformRecorder append(String s) throws IOException {
+		for (int i = 0, n = s.length(); i < n; i++) append(s.charAt(i));
+		return this;
+	}
+
+	//
+	// encoding
+	//
+	private static char toVcdBit(Value bit) {
+		if (bit == Value.TRUE) return '1';
+		else if (bit == Value.FALSE) return '0';
+		else if (bit == Value.UNKNOWN) return 'z';
+		else return 'x';
+	}
+
+	private static Value fromVcdBit(char c) {
+		if (c == '1') return Value.TRUE;
+		else if (c == '0') return Value.FALSE;
+		else if (c == 'z') return Value.UNKNOWN;
+		else return Value.ERROR;
+	}
+
+	// identifier codes are numbers written in base 94, with the
+	// printable characters from '!' to '~' as digits
+	private static String toIdentifierCode(int signal) {
+		StringBuilder ret = new StringBuilder();
+		int n = signal;
+		do {
+			ret.append((char) ('!' + n % 94));
+			n = n / 94;
+		} while (n > 0);
+		return ret.toString();
+	}
+
+	private static int fromIdentifierCode(CharSequence s, int start, int end) {
+		int ret = 0;
+		int scale = 1;
+		for (int i = start; i < end; i++) {
+			int digit = s.charAt(i) - '!';
+			if (digit < 0 || digit >= 94) return -1;
+			ret += digit * scale;
+			scale *= 94;
+		}
+		return end > start ? ret : -1;
+	}
+
+	private static int toWidth(BitWidth width) {
+		return width == null ? 1 : Math.max(1, width.getWidth());
+	}
+
+	private static String toIdentifier(String name) {
+		StringBuilder ret = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			ret.append(c > ' ' && c < 127 ? c : '_');
+		}
+		return ret.length() == 0 ? "_" : ret.toString();
+	}
+}
@@ -22,6 +22,7 @@ import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.Simulator;
 import com.cburch.logisim.circuit.SimulatorEvent;
 import com.cburch.logisim.circuit.SimulatorListener;
 import com.cburch.logisim.circuit.SubcircuitFactory;
@@ -206,6 +207,8 @@ public class Canvas extends JPanel
 			} else if (AppPreferences.COMPONENT_TIPS.isSource(event)) {
 				boolean showTips = AppPreferences.COMPONENT_TIPS.getBoolean();
 				setToolTipText(showTips ? "" : null);
+			} else if (AppPreferences.DECOUPLED_RENDERING.isSource(event)) {
+				attachToSimulator();
 			}
 		}
 	}
@@ -540,7 +543,7 @@ public class Canvas extends JPanel
 		proj.addProjectListener(myProjectListener);
 		proj.addLibraryListener(myProjectListener);
 		proj.addCircuitListener(myProjectListener);
-		proj.getSimulator().addSimulatorListener(tickCounter);
+		proj.getSimulator().addCoalescedListener(tickCounter);
 		selection.addListener(myProjectListener);
 		LocaleManager.addLocaleListener(this);
 
@@ -549,6 +552,7 @@ public class Canvas extends JPanel
 		AppPreferences.COMPONENT_TIPS.addPropertyChangeListener(myListener);
 		AppPreferences.GATE_SHAPE.addPropertyChangeListener(myListener);
 		AppPreferences.SHOW_TICK_RATE.addPropertyChangeListener(myListener);
+		AppPreferences.DECOUPLED_RENDERING.addPropertyChangeListener(myListener);
 		loadOptions(options);
 		paintThread.start();
 	}
@@ -561,8 +565,20 @@ public class Canvas extends JPanel
 		boolean showTips = AppPreferences.COMPONENT_TIPS.getBoolean();
 		setToolTipText(showTips ? "" : null);
 
-		proj.getSimulator().removeSimulatorListener(myProjectListener);
-		proj.getSimulator().addSimulatorListener(myProjectListener);
+		attachToSimulator();
+	}
+
+	// when rendering is decoupled, the simulation does not wait for the
+	// canvas, which repaints at its own rate whatever the tick frequency
+	private void attachToSimulator() {
+		Simulator sim = proj.getSimulator();
+		sim.removeSimulatorListener(myProjectListener);
+		sim.removeCoalescedListener(myProjectListener);
+		if (AppPreferences.DECOUPLED_RENDERING.getBoolean()) {
+			sim.addCoalescedListener(myProjectListener);
+		} else {
+			sim.addSimulatorListener(myProjectListener);
+		}
 	}
 
 	@Override
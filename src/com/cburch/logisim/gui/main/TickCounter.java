@@ -7,10 +7,15 @@ import com.cburch.logisim.circuit.Simulator;
 import com.cburch.logisim.circuit.SimulatorEvent;
 import com.cburch.logisim.circuit.SimulatorListener;
 
+/**
+ * Measures the rate of ticks. It is told of ticks now and then, not of
+ * each, and so counts them by the simulator's tick sequence.
+ */
 class TickCounter implements SimulatorListener {
 	private static final int QUEUE_LENGTH = 1000;
 	
 	private long[] queueTimes;
+	private long[] queueTicks;
 	private double[] queueRates;
 	private int queueStart;
 	private int queueSize;
@@ -18,6 +23,7 @@ class TickCounter implements SimulatorListener {
 	
 	public TickCounter() {
 		queueTimes = new long[QUEUE_LENGTH];
+		queueTicks = new long[QUEUE_LENGTH];
 		queueRates = new double[QUEUE_LENGTH];
 		queueSize = 0;
 	}
@@ -68,14 +74,17 @@ class TickCounter implements SimulatorListener {
 				}
 			}
 			long startTime = queueTimes[start];
+			long startTicks = queueTicks[start];
 			long endTime = System.currentTimeMillis();
+			long endTicks = sim.getTickSequence();
 			double rate;
 			if (startTime == endTime || curSize <= 1) {
 				rate = Double.MAX_VALUE;
 			} else {
-				rate = 1000.0 * (curSize - 1) / (endTime - startTime);
+				rate = 1000.0 * (endTicks - startTicks) / (endTime - startTime);
 			}
 			queueTimes[end] = endTime;
+			queueTicks[end] = endTicks;
 			queueRates[end] = rate; 
 		}
 	}
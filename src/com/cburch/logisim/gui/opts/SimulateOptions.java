@@ -36,6 +36,14 @@ class SimulateOptions extends OptionsPanel {
 						: Integer.valueOf(0);
 				getProject().doAction(OptionsActions.setAttribute(attrs,
 						Options.sim_rand_attr, val));
+			} else if (source == simCompile) {
+				AttributeSet attrs = getOptions().getAttributeSet();
+				getProject().doAction(OptionsActions.setAttribute(attrs,
+						Options.sim_compile_attr, Boolean.valueOf(simCompile.isSelected())));
+			} else if (source == simParallel) {
+				AttributeSet attrs = getOptions().getAttributeSet();
+				getProject().doAction(OptionsActions.setAttribute(attrs,
+						Options.sim_parallel_attr, Boolean.valueOf(simParallel.isSelected())));
 			} else if (source == gateUndefined) {
 				ComboOption opt = (ComboOption) gateUndefined.getSelectedItem();
 				if (opt != null) {
@@ -43,6 +51,13 @@ class SimulateOptions extends OptionsPanel {
 					getProject().doAction(OptionsActions.setAttribute(attrs,
 							Options.ATTR_GATE_UNDEFINED, opt.getValue()));
 				}
+			} else if (source == simEngine) {
+				ComboOption opt = (ComboOption) simEngine.getSelectedItem();
+				if (opt != null) {
+					AttributeSet attrs = getOptions().getAttributeSet();
+					getProject().doAction(OptionsActions.setAttribute(attrs,
+							Options.sim_engine_attr, opt.getValue()));
+				}
 			}
 		}
 		
@@ -54,6 +69,12 @@ class SimulateOptions extends OptionsPanel {
 				loadSimLimit((Integer) val);
 			} else if (attr == Options.sim_rand_attr) {
 				loadSimRandomness((Integer) val);
+			} else if (attr == Options.sim_engine_attr) {
+				loadSimEngine(val);
+			} else if (attr == Options.sim_compile_attr) {
+				loadSimCompile((Boolean) val);
+			} else if (attr == Options.sim_parallel_attr) {
+				loadSimParallel((Boolean) val);
 			}
 		}
 
@@ -75,6 +96,18 @@ class SimulateOptions extends OptionsPanel {
 		private void loadSimRandomness(Integer val) {
 			simRandomness.setSelected(val.intValue() > 0);
 		}
+		
+		private void loadSimEngine(Object val) {
+			ComboOption.setSelected(simEngine, val);
+		}
+		
+		private void loadSimCompile(Boolean val) {
+			simCompile.setSelected(val.booleanValue());
+		}
+		
+		private void loadSimParallel(Boolean val) {
+			simParallel.setSelected(val.booleanValue());
+		}
 	}
 	
 	private MyListener myListener = new MyListener();
@@ -96,6 +129,13 @@ class SimulateOptions extends OptionsPanel {
 			new ComboOption(Options.GATE_UNDEFINED_IGNORE),
 			new ComboOption(Options.GATE_UNDEFINED_ERROR)
 		});
+	private JLabel simEngineLabel = new JLabel();
+	private JComboBox<Object> simEngine = new JComboBox<Object>(new Object[] {
+			new ComboOption(Options.SIM_ENGINE_QUEUE),
+			new ComboOption(Options.SIM_ENGINE_WHEEL)
+		});
+	private JCheckBox simCompile = new JCheckBox();
+	private JCheckBox simParallel = new JCheckBox();
 
 	public SimulateOptions(OptionsFrame window) {
 		super(window);
@@ -110,18 +150,31 @@ class SimulateOptions extends OptionsPanel {
 		gateUndefinedPanel.add(gateUndefined);
 		gateUndefined.addActionListener(myListener);
 		
+		JPanel simEnginePanel = new JPanel();
+		simEnginePanel.add(simEngineLabel);
+		simEnginePanel.add(simEngine);
+		simEngine.addActionListener(myListener);
+		
 		simRandomness.addActionListener(myListener);
+		simCompile.addActionListener(myListener);
+		simParallel.addActionListener(myListener);
 
 		setLayout(new TableLayout(1));
 		add(simLimitPanel);
 		add(gateUndefinedPanel);
+		add(simEnginePanel);
 		add(simRandomness);
+		add(simCompile);
+		add(simParallel);
 		
 		window.getOptions().getAttributeSet().addAttributeListener(myListener);
 		AttributeSet attrs = getOptions().getAttributeSet();
 		myListener.loadSimLimit(attrs.getValue(Options.sim_limit_attr));
 		myListener.loadGateUndefined(attrs.getValue(Options.ATTR_GATE_UNDEFINED));
 		myListener.loadSimRandomness(attrs.getValue(Options.sim_rand_attr));
+		myListener.loadSimEngine(attrs.getValue(Options.sim_engine_attr));
+		myListener.loadSimCompile(attrs.getValue(Options.sim_compile_attr));
+		myListener.loadSimParallel(attrs.getValue(Options.sim_parallel_attr));
 	}
 
 	@Override
@@ -138,6 +191,9 @@ class SimulateOptions extends OptionsPanel {
 	public void localeChanged() {
 		simLimitLabel.setText(Strings.get("simulateLimit"));
 		gateUndefinedLabel.setText(Strings.get("gateUndefined"));
+		simEngineLabel.setText(Strings.get("simulateEngine"));
 		simRandomness.setText(Strings.get("simulateRandomness"));
+		simCompile.setText(Strings.get("simulateCompile"));
+		simParallel.setText(Strings.get("simulateParallel"));
 	}
 }
@@ -19,6 +19,8 @@ class WindowOptions extends OptionsPanel {
 		checks = new PrefBoolean[] {
 				new PrefBoolean(AppPreferences.SHOW_TICK_RATE,
 						Strings.getter("windowTickRate")),
+				new PrefBoolean(AppPreferences.DECOUPLED_RENDERING,
+						Strings.getter("windowDecoupledRendering")),
 			};
 
 		toolbarPlacement = new PrefOptionList(AppPreferences.TOOLBAR_PLACEMENT,
@@ -0,0 +1,195 @@
+/* Copyright (c) 2010, Carl Burch. License information is located in the
+ * com.cburch.logisim.Main source code and at www.cburch.com/logisim/. */
+
+package com.cburch.logisim.gui.start;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LoadFailedException;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.wiring.Pin;
+
+/**
+ * Runs a circuit without any graphical interface for a fixed number of
+ * ticks or until its "halt" pin goes high, reporting throughput metrics
+ * as JSON lines or CSV rows. The exit code tells whether the run ended
+ * as expected, so that the runner can be used for regression checks.
+ */
+public class BatchInterface {
+	public static final int FORMAT_JSON = 1;
+	public static final int FORMAT_CSV = 2;
+
+	/** Exit code when the halt pin went high or the requested ticks ran. */
+	public static final int EXIT_OK = 0;
+	/** Exit code when a propagation was abandoned as oscillating. */
+	public static final int EXIT_OSCILLATION = 1;
+	/** Exit code when the circuit has a halt pin that did not go high
+	 * within the requested ticks. */
+	public static final int EXIT_NOT_HALTED = 2;
+
+	private static final String STATUS_HALTED = "halted";
+	private static final String STATUS_LIMIT = "limit";
+	private static final String STATUS_OSCILLATION = "oscillation";
+
+	private static final String[] COLUMNS = {
+		"ticks", "elapsedMs", "ticksPerSec", "events", "eventsPerSec",
+		"eventsPerTick", "queueHighWater", "oscillations", "heapUsed", "status",
+	};
+
+	public static void run(Startup args) {
+		File fileToOpen = args.getFilesToOpen().get(0);
+		Loader loader = new Loader(null);
+		LogisimFile file;
+		try {
+			file = loader.openLogisimFile(fileToOpen, args.getSubstitutions());
+		} catch (LoadFailedException e) {
+			System.err.println(Strings.get("ttyLoadError", fileToOpen.getName())); //OK
+			System.exit(-1);
+			return;
+		}
+
+		Project proj = new Project(file);
+		Circuit circuit = file.getMainCircuit();
+		Instance haltPin = null;
+		for (Map.Entry<Instance, String> entry : Analyze.getPinLabels(circuit).entrySet()) {
+			Instance pin = entry.getKey();
+			if (!Pin.FACTORY.isInputPin(pin) && entry.getValue().equals("halt")) {
+				haltPin = pin;
+			}
+		}
+		if (haltPin == null && args.getTickLimit() < 0) {
+			System.err.println(Strings.get("batchNeedsLimitError")); //OK
+			System.exit(-1);
+		}
+
+		CircuitState circState = new CircuitState(proj, circuit);
+		// as in TtyInterface, the initial propagation creates the substates
+		circState.getPropagator().propagate();
+		if (args.getLoadFile() != null) {
+			try {
+				boolean loaded = TtyInterface.loadRam(circState, args.getLoadFile());
+				if (!loaded) {
+					System.err.println(Strings.get("loadNoRamError")); //OK
+					System.exit(-1);
+				}
+			} catch (IOException e) {
+				System.err.println(Strings.get("loadIoError") + ": " + e.toString()); //OK
+				System.exit(-1);
+			}
+		}
+		int simCode = runSimulation(circState, haltPin, args);
+		System.exit(simCode);
+	}
+
+	private static int runSimulation(CircuitState circState, Instance haltPin,
+			Startup args) {
+		int format = args.getBatchFormat();
+		long limit = args.getTickLimit();
+		long interval = args.getBatchInterval();
+		Propagator prop = circState.getPropagator();
+
+		String status = null;
+		for (long i = 0; i < args.getBatchWarmup() && status == null; i++) {
+			prop.tick();
+			prop.propagate();
+			status = getStatus(circState, haltPin, -1, 0);
+		}
+
+		if (format == FORMAT_CSV) printCsvHeader();
+		prop.resetStatistics();
+		long tickCount = 0;
+		long start = System.nanoTime();
+		while (status == null) {
+			status = getStatus(circState, haltPin, limit, tickCount);
+			if (status != null) break;
+			prop.tick();
+			prop.propagate();
+			tickCount++;
+			if (interval > 0 && tickCount % interval == 0) {
+				printMetrics(format, prop, tickCount, System.nanoTime() - start, null);
+			}
+		}
+		printMetrics(format, prop, tickCount, System.nanoTime() - start, status);
+
+		if (status == STATUS_OSCILLATION) return EXIT_OSCILLATION;
+		if (status == STATUS_LIMIT && haltPin != null) return EXIT_NOT_HALTED;
+		return EXIT_OK;
+	}
+
+	/** Returns why the simulation should stop, or null if it should go on. */
+	private static String getStatus(CircuitState circState, Instance haltPin,
+			long limit, long tickCount) {
+		if (haltPin != null) {
+			Value val = Pin.FACTORY.getValue(circState.getInstanceState(haltPin));
+			if (val.equals(Value.TRUE)) return STATUS_HALTED;
+		}
+		if (circState.getPropagator().isOscillating()) return STATUS_OSCILLATION;
+		if (limit >= 0 && tickCount >= limit) return STATUS_LIMIT;
+		return null;
+	}
+
+	private static void printCsvHeader() {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (i > 0) line.append(',');
+			line.append(COLUMNS[i]);
+		}
+		System.out.println(line); //OK
+	}
+
+	private static void printMetrics(int format, Propagator prop,
+			long tickCount, long elapsedNanos, String status) {
+		double secs = Math.max(elapsedNanos, 1) / 1e9;
+		long events = prop.getEventCount();
+		Runtime rt = Runtime.getRuntime();
+		Object[] values = {
+			Long.valueOf(tickCount),
+			Long.valueOf(elapsedNanos / 1000000),
+			format(tickCount / secs),
+			Long.valueOf(events),
+			format(events / secs),
+			format(tickCount == 0 ? 0.0 : (double) events / tickCount),
+			Integer.valueOf(prop.getQueueHighWater()),
+			Integer.valueOf(prop.getOscillationCount()),
+			Long.valueOf(rt.totalMemory() - rt.freeMemory()),
+			status,
+		};
+
+		StringBuilder line = new StringBuilder();
+		if (format == FORMAT_CSV) {
+			for (int i = 0; i < values.length; i++) {
+				if (i > 0) line.append(',');
+				if (values[i] != null) line.append(values[i]);
+			}
+		} else {
+			line.append('{');
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == null) continue;
+				if (i > 0) line.append(", ");
+				line.append('"').append(COLUMNS[i]).append("\": ");
+				if (values[i] == status) {
+					line.append('"').append(values[i]).append('"');
+				} else {
+					line.append(values[i]);
+				}
+			}
+			line.append('}');
+		}
+		System.out.println(line); //OK
+	}
+
+	private static String format(double value) {
+		return String.format(Locale.ROOT, "%.2f", Double.valueOf(value));
+	}
+}
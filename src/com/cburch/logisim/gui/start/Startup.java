@@ -74,14 +74,21 @@ public class Startup {
 	
 	// based on command line
 	boolean isTty;
+	private boolean isBatch = false;
 	private File templFile = null;
 	private boolean templEmpty = false;
 	private boolean templPlain = false;
 	private ArrayList<File> filesToOpen = new ArrayList<File>();
 	private boolean showSplash;
 	private File loadFile;
+	private ArrayList<String> untilConditions = new ArrayList<String>();
 	private HashMap<File,File> substitutions = new HashMap<File,File>();
 	private int ttyFormat = 0;
+	private int batchFormat = 0;
+	private long tickLimit = -1;
+	private long batchWarmup = 0;
+	private long batchInterval = 0;
+	private long untilTimeout = 0; // in seconds, or 0 for none
 	
 	// from other sources
 	private boolean initialized = false;
@@ -101,10 +108,34 @@ public class Startup {
 		return loadFile;
 	}
 	
+	List<String> getUntilConditions() {
+		return untilConditions;
+	}
+	
 	int getTtyFormat() {
 		return ttyFormat;
 	}
 	
+	int getBatchFormat() {
+		return batchFormat;
+	}
+	
+	long getTickLimit() {
+		return tickLimit;
+	}
+	
+	long getBatchWarmup() {
+		return batchWarmup;
+	}
+	
+	long getBatchInterval() {
+		return batchInterval;
+	}
+	
+	long getUntilTimeout() {
+		return untilTimeout;
+	}
+	
 	Map<File,File> getSubstitutions() {
 		return Collections.unmodifiableMap(substitutions);
 	}
@@ -112,7 +143,8 @@ public class Startup {
 	public void run() {
 		if (isTty) {
 			try {
-				TtyInterface.run(this);
+				if (isBatch) BatchInterface.run(this);
+				else TtyInterface.run(this);
 				return;
 			} catch (Throwable t) {
 				t.printStackTrace();
@@ -226,7 +258,7 @@ public class Startup {
 		boolean isTty = false;
 		boolean isClearPreferences = false;
 		for (int i = 0; i < args.length; i++) {
-			if (args[i].equals("-tty")) {
+			if (args[i].equals("-tty") || args[i].equals("-batch")) {
 				isTty = true;
 			} else if (args[i].equals("-clearprefs") || args[i].equals("-clearprops")) {
 				isClearPreferences = true;
@@ -242,6 +274,9 @@ public class Startup {
 	
 			// Initialize graphics acceleration if appropriate
 			AppPreferences.handleGraphicsAcceleration();
+		} else {
+			// nothing will be displayed, so don't let AWT look for a screen
+			System.setProperty("java.awt.headless", "true");
 		}
 		
 		Startup ret = new Startup(isTty);
@@ -254,9 +289,11 @@ public class Startup {
 			AppPreferences.clear();
 		}
 
-		try {
-			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-		} catch (Exception ex) { }
+		if (!isTty) {
+			try {
+				UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+			} catch (Exception ex) { }
+		}
 
 		// parse arguments
 		for (int i = 0; i < args.length; i++) {
@@ -288,6 +325,41 @@ public class Startup {
 					System.err.println(Strings.get("ttyFormatError")); //OK
 					return null;
 				}
+			} else if (arg.equals("-batch")) {
+				if (i + 1 < args.length) {
+					i++;
+					String fmt = args[i].trim();
+					if (fmt.equals("json")) {
+						ret.batchFormat = BatchInterface.FORMAT_JSON;
+					} else if (fmt.equals("csv")) {
+						ret.batchFormat = BatchInterface.FORMAT_CSV;
+					} else {
+						System.err.println(Strings.get("batchFormatError")); //OK
+						return null;
+					}
+					ret.isBatch = true;
+				} else {
+					System.err.println(Strings.get("batchFormatError")); //OK
+					return null;
+				}
+			} else if (arg.equals("-ticks") || arg.equals("-warmup")
+					|| arg.equals("-every") || arg.equals("-timeout")) {
+				long count = -1;
+				if (i + 1 < args.length) {
+					i++;
+					try {
+						count = Long.parseLong(args[i]);
+					} catch (NumberFormatException e) { }
+				}
+				if (count < 0) {
+					System.err.println(StringUtil.format( //OK
+							Strings.get("batchCountError"), arg));
+					return null;
+				}
+				if (arg.equals("-ticks")) ret.tickLimit = count;
+				else if (arg.equals("-warmup")) ret.batchWarmup = count;
+				else if (arg.equals("-every")) ret.batchInterval = count;
+				else ret.untilTimeout = count;
 			} else if (arg.equals("-sub")) {
 				if (i + 2 < args.length) {
 					File a = new File(args[i + 1]);
@@ -315,6 +387,14 @@ public class Startup {
 					System.err.println(Strings.get("loadNeedsFileError")); //OK
 					return null;
 				}
+			} else if (arg.equals("-until")) {
+				if (i + 1 < args.length) {
+					i++;
+					ret.untilConditions.add(args[i]);
+				} else {
+					System.err.println(Strings.get("untilNeedsConditionError")); //OK
+					return null;
+				}
 			} else if (arg.equals("-empty")) {
 				if (ret.templFile != null || ret.templEmpty || ret.templPlain) {
 					System.err.println(Strings.get("argOneTemplateError")); //OK
@@ -384,6 +464,19 @@ public class Startup {
 				ret.filesToOpen.add(new File(arg));
 			}
 		}
+		if (ret.isBatch && ret.ttyFormat != 0) {
+			System.err.println(Strings.get("batchTtyError")); //OK
+			return null;
+		}
+		if (!ret.isBatch && (ret.batchWarmup > 0 || ret.batchInterval > 0
+				|| (ret.tickLimit >= 0 && ret.untilConditions.isEmpty()))) {
+			System.err.println(Strings.get("batchOptionError")); //OK
+			return null;
+		}
+		if (ret.untilTimeout > 0 && ret.untilConditions.isEmpty()) {
+			System.err.println(Strings.get("timeoutNeedsUntilError")); //OK
+			return null;
+		}
 		if (ret.isTty && ret.filesToOpen.isEmpty()) {
 			System.err.println(Strings.get("ttyNeedsFileError")); //OK
 			return null;
@@ -392,6 +485,10 @@ public class Startup {
 			System.err.println(Strings.get("loadNeedsTtyError")); //OK
 			return null;
 		}
+		if (!ret.untilConditions.isEmpty() && (!ret.isTty || ret.isBatch)) {
+			System.err.println(Strings.get("untilNeedsTtyError")); //OK
+			return null;
+		}
 		return ret;
 	}
 
@@ -400,6 +497,7 @@ public class Startup {
 		System.err.println(); //OK
 		System.err.println(Strings.get("argOptionHeader")); //OK
 		System.err.println("   " + Strings.get("argAccentsOption")); //OK
+		System.err.println("   " + Strings.get("argBatchOption")); //OK
 		System.err.println("   " + Strings.get("argClearOption")); //OK
 		System.err.println("   " + Strings.get("argEmptyOption")); //OK
 		System.err.println("   " + Strings.get("argGatesOption")); //OK
@@ -410,7 +508,10 @@ public class Startup {
 		System.err.println("   " + Strings.get("argPlainOption")); //OK
 		System.err.println("   " + Strings.get("argSubOption")); //OK
 		System.err.println("   " + Strings.get("argTemplateOption")); //OK
+		System.err.println("   " + Strings.get("argTicksOption")); //OK
+		System.err.println("   " + Strings.get("argTimeoutOption")); //OK
 		System.err.println("   " + Strings.get("argTtyOption")); //OK
+		System.err.println("   " + Strings.get("argUntilOption")); //OK
 		System.err.println("   " + Strings.get("argVersionOption")); //OK
 		System.exit(-1);
 	}
@@ -8,18 +8,24 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Breakpoint;
 import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitException;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.FastForward;
 import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.SignalProbe;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.LoadFailedException;
 import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.file.LogisimFile;
 import com.cburch.logisim.file.FileStatistics;
+import com.cburch.logisim.file.Options;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.proj.Project;
@@ -105,10 +111,55 @@ public class TtyInterface {
 			}
 		}
 		int ttyFormat = args.getTtyFormat();
+		if (!args.getUntilConditions().isEmpty()) {
+			fastForward(circState, args.getUntilConditions(), haltPin,
+					args.getTickLimit(), args.getUntilTimeout(), ttyFormat);
+		}
 		int simCode = runSimulation(circState, outputPins, haltPin, ttyFormat);
 		System.exit(simCode);
 	}
 	
+	/** Runs fast until a condition holds, the halt pin is set or a limit
+	 * is reached; a negative tick limit or a zero timeout is no limit. */
+	private static void fastForward(CircuitState circState,
+			List<String> conditions, Instance haltPin, long tickLimit,
+			long timeout, int format) {
+		FastForward run = new FastForward(circState);
+		for (String cond : conditions) {
+			try {
+				run.addBreakpoint(Breakpoint.parse(circState, cond));
+			} catch (CircuitException e) {
+				System.err.println(Strings.get("ttyUntilError", e.getMessage())); //OK
+				System.exit(-1);
+			}
+		}
+		Breakpoint halt = null;
+		if (haltPin != null) {
+			// the regular simulation that follows reports the halt
+			halt = new Breakpoint(SignalProbe.forComponent(circState,
+					Instance.getComponentFor(haltPin), "halt"), Breakpoint.EQUAL, 1);
+			if (halt.test()) return;
+			run.addBreakpoint(halt);
+		}
+		if (tickLimit >= 0) run.setTickLimit(tickLimit);
+		if (timeout > 0) run.setTimeLimit(timeout * 1000);
+
+		int reason = run.run();
+		if (reason == FastForward.STOP_OSCILLATION) {
+			System.out.println(Strings.get("ttyHaltReasonOscillation")); //OK
+			System.exit(1);
+		}
+		if (reason == FastForward.STOP_TICKS || reason == FastForward.STOP_TIME) {
+			System.out.println(StringUtil.format(Strings.get("ttyUntilLimitMsg"), //OK
+					"" + run.getTickCount()));
+			System.exit(1);
+		}
+		if (run.getBreakpointHit() != halt && (format & FORMAT_HALT) != 0) {
+			System.out.println(StringUtil.format(Strings.get("ttyUntilMsg"), //OK
+					run.getBreakpointHit().toString(), "" + run.getTickCount()));
+		}
+	}
+	
 	private static void displayStatistics(LogisimFile file) {
 		FileStatistics stats = FileStatistics.compute(file, file.getMainCircuit());
 		FileStatistics.Count total = stats.getTotalWithSubcircuits();
@@ -149,7 +200,7 @@ public class TtyInterface {
 		return digits;
 	}
 	
-	private static boolean loadRam(CircuitState circState, File loadFile)
+	static boolean loadRam(CircuitState circState, File loadFile)
 			throws IOException {
 		if (loadFile == null) return false;
 		
@@ -268,6 +319,20 @@ public class TtyInterface {
 		}
 		if (showSpeed) {
 			displaySpeed(tickCount, elapse);
+			Options opts = circState.getProject().getOptions();
+			if (opts.getAttributeSet().getValue(Options.sim_compile_attr).booleanValue()) {
+				System.out.println(StringUtil.format(Strings.get("ttyCompiledMsg"), //OK
+						"" + prop.getCompiledSubcircuitCount(),
+						"" + prop.getSubcircuitCount()));
+			}
+			if (prop.getSubcircuitCount() > 0) {
+				System.out.println(StringUtil.format(Strings.get("ttyCrossingsMsg"), //OK
+						"" + prop.getPortCrossingCount(),
+						"" + prop.getAvoidedPortCrossingCount()));
+			}
+			System.out.println(StringUtil.format(Strings.get("ttyValueCacheMsg"), //OK
+					"" + Value.getCacheHitCount(),
+					"" + Value.getCacheMissCount()));
 		}
 		return retCode;
 	}
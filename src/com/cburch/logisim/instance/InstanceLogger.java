@@ -3,10 +3,21 @@
 
 package com.cburch.logisim.instance;
 
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 
 public abstract class InstanceLogger {
 	public Object[] getLogOptions(InstanceState state) { return null; }
 	public abstract String getLogName(InstanceState state, Object option);
 	public abstract Value getLogValue(InstanceState state, Object option);
+
+	/** Returns the width of the values logged for an option; by default,
+	 * the component's width attribute, or one bit if it has none. */
+	public BitWidth getLogBitWidth(InstanceState state, Object option) {
+		if (state.getAttributeSet().containsAttribute(StdAttr.WIDTH)) {
+			return state.getAttributeValue(StdAttr.WIDTH);
+		} else {
+			return BitWidth.ONE;
+		}
+	}
 }
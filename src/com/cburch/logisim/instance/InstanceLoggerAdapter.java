@@ -4,6 +4,7 @@
 package com.cburch.logisim.instance;
 
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.gui.log.Loggable;
 
@@ -56,6 +57,15 @@ class InstanceLoggerAdapter implements Loggable {
 			return Value.UNKNOWN;
 		}
 	}
+
+	public BitWidth getLogBitWidth(CircuitState circuitState, Object option) {
+		if (logger != null) {
+			updateState(circuitState);
+			return logger.getLogBitWidth(state, option);
+		} else {
+			return BitWidth.ONE;
+		}
+	}
 	
 	private void updateState(CircuitState circuitState) {
 		if (state.getCircuitState() != circuitState) {
@@ -71,6 +71,8 @@ public class AppPreferences {
 	
 	public static final PrefMonitor<Boolean> SHOW_TICK_RATE
 		= create(new PrefMonitorBoolean("showTickRate", false));
+	public static final PrefMonitor<Boolean> DECOUPLED_RENDERING
+		= create(new PrefMonitorBoolean("decoupledRendering", false));
 	public static final PrefMonitor<String> TOOLBAR_PLACEMENT
 		= create(new PrefMonitorStringOpts("toolbarPlacement", new String[] {
 					Direction.NORTH.toString(), Direction.SOUTH.toString(),
@@ -5,6 +5,7 @@ package com.cburch.logisim.std.arith;
 
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
@@ -98,6 +99,14 @@ public class BitFinder extends InstanceFactory {
 		return outWidth;
 	}
 
+	@Override
+	protected Object getInstanceFeature(Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return Combinational.NEVER_FLOATS;
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void propagate(InstanceState state) {
 		int width = state.getAttributeValue(StdAttr.WIDTH).getWidth();
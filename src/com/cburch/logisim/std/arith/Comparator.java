@@ -3,6 +3,7 @@
 
 package com.cburch.logisim.std.arith;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Attributes;
@@ -59,6 +60,14 @@ public class Comparator extends InstanceFactory {
         setPorts(ps);
     }
 
+    @Override
+    protected Object getInstanceFeature(Instance instance, Object key) {
+        if (key == Combinational.class) {
+            return Combinational.NEVER_FLOATS;
+        }
+        return super.getInstanceFeature(instance, key);
+    }
+
     @Override
     public void propagate(InstanceState state) {
         // get attributes
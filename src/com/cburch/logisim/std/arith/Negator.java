@@ -3,6 +3,7 @@
 
 package com.cburch.logisim.std.arith;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.*;
 import com.cburch.logisim.instance.*;
 import com.cburch.logisim.tools.key.BitWidthConfigurator;
@@ -76,6 +77,14 @@ public class Negator extends InstanceFactory {
         }
     }
 
+    @Override
+    protected Object getInstanceFeature(Instance instance, Object key) {
+        if (key == Combinational.class) {
+            return Combinational.NEVER_FLOATS;
+        }
+        return super.getInstanceFeature(instance, key);
+    }
+
     @Override
     public void propagate(InstanceState state) {
         BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
@@ -7,6 +7,7 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.util.Arrays;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Attributes;
@@ -83,6 +84,14 @@ public class Shifter extends InstanceFactory {
 		instance.setPorts(ps);
 	}
 
+	@Override
+	protected Object getInstanceFeature(Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return Combinational.NEVER_FLOATS;
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void propagate(InstanceState state) {
 		// compute output
@@ -13,6 +13,7 @@ import javax.swing.Icon;
 import com.cburch.logisim.LogisimVersion;
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -477,6 +478,14 @@ abstract class AbstractGate extends InstanceFactory {
 	
 	@Override
 	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return new Combinational() {
+				public boolean canFloat() {
+					GateAttributes attrs = (GateAttributes) instance.getAttributeSet();
+					return attrs.out != GateAttributes.OUTPUT_01;
+				}
+			};
+		}
 		if (key == WireRepair.class) {
 			return new WireRepair() {
 				public boolean shouldRepairWire(WireRepairData data) {
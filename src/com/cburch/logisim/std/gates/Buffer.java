@@ -9,6 +9,7 @@ import java.awt.Graphics2D;
 import java.util.Map;
 
 import com.cburch.logisim.analyze.model.Expression;
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -93,6 +94,14 @@ class Buffer extends InstanceFactory {
 
 	@Override
 	public Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return new Combinational() {
+				public boolean canFloat() {
+					Object outType = instance.getAttributeValue(GateAttributes.ATTR_OUTPUT);
+					return outType != GateAttributes.OUTPUT_01;
+				}
+			};
+		}
 		if (key == ExpressionComputer.class) {
 			return new ExpressionComputer() {
 				public void computeExpression(Map<Location,Expression> expressionMap) {
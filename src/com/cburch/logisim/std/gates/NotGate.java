@@ -12,6 +12,7 @@ import javax.swing.Icon;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -128,6 +129,14 @@ class NotGate extends InstanceFactory {
 	
 	@Override
 	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return new Combinational() {
+				public boolean canFloat() {
+					Object outType = instance.getAttributeValue(GateAttributes.ATTR_OUTPUT);
+					return outType != GateAttributes.OUTPUT_01;
+				}
+			};
+		}
 		if (key == ExpressionComputer.class) {
 			return new ExpressionComputer() {
 				public void computeExpression(Map<Location,Expression> expressionMap) {
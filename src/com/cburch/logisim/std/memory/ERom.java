@@ -36,10 +36,9 @@ public class ERom extends Rom {
             Value addrValue = state.getPort(ADDR);
             Value dataValue = state.getPort(DATA);
             MemState myState = getState(state);
-            int addr = addrValue.toIntValue();
+            long addr = addrValue.toIntValue() & 0xFFFFFFFFL;
             if (!dataValue.isFullyDefined()
-                    || !addrValue.isFullyDefined()
-                    || addr < 0)
+                    || !addrValue.isFullyDefined())
                 return;
             if (addr != myState.getCurrent()) {
                 myState.setCurrent(addr);
@@ -20,6 +20,7 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Direction;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
+import com.cburch.logisim.gui.hex.MappedImage;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceFactory;
 import com.cburch.logisim.instance.InstancePainter;
@@ -34,15 +35,11 @@ import com.cburch.logisim.util.StringGetter;
 import com.cburch.logisim.util.StringUtil;
 
 abstract class Mem extends InstanceFactory {
-	// Note: The code is meant to be able to handle up to 32-bit addresses, but it
-	// hasn't been debugged thoroughly. There are two definite changes I would
-	// make if I were to extend the address bits: First, there would need to be some
-	// modification to the memory's graphical representation, because there isn't
-	// room in the box to include such long memory addresses with the current font
-	// size. And second, I'd alter the MemContents class's PAGE_SIZE_BITS constant
-	// to 14 so that its "page table" isn't quite so big.
+	// Note: Addresses go up to 32 bits. Contents that large are best kept in a
+	// binary image (see MappedImage), which is mapped rather than read into the
+	// heap; the page table of MemContents then holds a million references.
 	public static final Attribute<BitWidth> ADDR_ATTR = Attributes.forBitWidth(
-			"addrWidth", Strings.getter("ramAddrWidthAttr"), 2, 24);
+			"addrWidth", Strings.getter("ramAddrWidthAttr"), 2, 32);
 	public static final Attribute<BitWidth> DATA_ATTR = Attributes.forBitWidth(
 			"dataWidth", Strings.getter("ramDataWidthAttr"));
 	
@@ -62,7 +59,7 @@ abstract class Mem extends InstanceFactory {
 		currentInstanceFiles = new WeakHashMap<Instance,File>();
 		setInstancePoker(MemPoker.class);
 		setKeyConfigurator(JoinedConfigurator.create(
-				new BitWidthConfigurator(ADDR_ATTR, 2, 24, 0),
+				new BitWidthConfigurator(ADDR_ATTR, 2, 32, 0),
 				new BitWidthConfigurator(DATA_ATTR)));
 
 		setOffsetBounds(Bounds.create(-140, -40, 140, 80));
@@ -108,7 +105,7 @@ abstract class Mem extends InstanceFactory {
 		} else {
 			BitWidth addr = painter.getAttributeValue(ADDR_ATTR);
 			int addrBits = addr.getWidth();
-			int bytes = 1 << addrBits;
+			long bytes = 1L << addrBits;
 			String label;
 			if (this instanceof Rom) {
 				if (addrBits >= 30) {
@@ -161,7 +158,12 @@ abstract class Mem extends InstanceFactory {
 	public void loadImage(InstanceState instanceState, File imageFile)
 			throws IOException { 
 		MemState s = this.getState(instanceState);
-		HexFile.open(s.getContents(), imageFile);
+		if (MappedImage.isImageFile(imageFile)) {
+			MemContents contents = s.getContents();
+			contents.setImage(MappedImage.open(imageFile, contents.getWidth()));
+		} else {
+			HexFile.open(s.getContents(), imageFile);
+		}
 		this.setCurrentImage(instanceState.getInstance(), imageFile);
 	}
 
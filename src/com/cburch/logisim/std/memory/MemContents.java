@@ -3,26 +3,47 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
+import java.util.BitSet;
 
 import com.cburch.hex.HexModel;
 import com.cburch.hex.HexModelListener;
+import com.cburch.logisim.gui.hex.HexFile;
+import com.cburch.logisim.gui.hex.MappedImage;
 import com.cburch.logisim.util.EventSourceWeakSupport;
 
 class MemContents implements Cloneable, HexModel {
 	private static final int PAGE_SIZE_BITS = 12;
 	private static final int PAGE_SIZE = 1 << PAGE_SIZE_BITS;
 	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final String PAGE_HEADER = "page:";
 	
 	static MemContents create(int addrBits, int width) {
 		return new MemContents(addrBits, width);
 	}
 	
+	static MemContents create(int addrBits, int width, MappedImage image) {
+		MemContents ret = new MemContents(addrBits, width);
+		ret.image = image;
+		ret.copied = new BitSet();
+		return ret;
+	}
+	
 	private EventSourceWeakSupport<HexModelListener> listeners = null;
 	private int width;
 	private int addrBits;
 	private int mask;
 	private MemContentsSub.ContentsInterface[] pages;
+	// Contents backed by an image read each page from it until the page is
+	// first changed, when it is copied into pages; copied marks those pages.
+	private MappedImage image = null;
+	private BitSet copied = null;
 	
 	private MemContents(int addrBits, int width) {
 		listeners = null;
@@ -78,6 +99,7 @@ class MemContents implements Cloneable, HexModel {
 					ret.pages[i] = this.pages[i].clone();
 				}
 			}
+			if (copied != null) ret.copied = (BitSet) copied.clone();
 			return ret;
 		} catch (CloneNotSupportedException ex) { return this; }
 	}
@@ -88,7 +110,11 @@ class MemContents implements Cloneable, HexModel {
 	public int get(long addr) {
 		int page = (int) (addr >>> PAGE_SIZE_BITS);
 		int offs = (int) (addr & PAGE_MASK);
-		if (page < 0 || page >= pages.length || pages[page] == null) return 0;
+		if (page < 0 || page >= pages.length) return 0;
+		if (pages[page] == null) {
+			if (image == null || copied.get(page)) return 0;
+			return image.get(addr) & mask;
+		}
 		return pages[page].get(offs) & mask;
 	}
 	
@@ -101,12 +127,20 @@ class MemContents implements Cloneable, HexModel {
 				}
 			}
 		}
+		if (image != null) {
+			long imagePages = (image.getWordCount() + PAGE_MASK) >>> PAGE_SIZE_BITS;
+			int n = (int) Math.min(pages.length, imagePages);
+			for (int i = copied.nextClearBit(0); i < n; i = copied.nextClearBit(i + 1)) {
+				if (!image.isClear((long) i << PAGE_SIZE_BITS, getPageLength())) return false;
+			}
+		}
 		return true;
 	}
 	
 	public void set(long addr, int value) {
 		int page = (int) (addr >>> PAGE_SIZE_BITS);
 		int offs = (int) (addr & PAGE_MASK);
+		loadPage(page);
 		int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
 		int val = value & mask;
 		if (old != val) {
@@ -125,6 +159,7 @@ class MemContents implements Cloneable, HexModel {
 		int startOffs = (int) (start & PAGE_MASK);
 		int pageEnd = (int) ((start + values.length - 1) >>> PAGE_SIZE_BITS);
 		int endOffs = (int) ((start + values.length - 1) & PAGE_MASK);
+		loadPages(pageStart, pageEnd);
 
 		if (pageStart == pageEnd) {
 			ensurePage(pageStart);
@@ -199,6 +234,7 @@ class MemContents implements Cloneable, HexModel {
 		int startOffs = (int) (start & PAGE_MASK);
 		int pageEnd = (int) ((start + len - 1) >>> PAGE_SIZE_BITS);
 		int endOffs = (int) ((start + len - 1) & PAGE_MASK);
+		loadPages(pageStart, pageEnd);
 		value &= mask;
 		
 		if (pageStart == pageEnd) {
@@ -269,6 +305,7 @@ class MemContents implements Cloneable, HexModel {
 	
 	public void clear() {
 		for (int i = 0; i < pages.length; i++) {
+			loadPage(i);
 			if (pages[i] != null) {
 				if (pages[i] != null) clearPage(i);
 			}
@@ -292,6 +329,19 @@ class MemContents implements Cloneable, HexModel {
 	
 	public void setDimensions(int addrBits, int width) {
 		if (addrBits == this.addrBits && width == this.width) return;
+		if (image != null) {
+			if (width != this.width) {
+				// the image holds words of the old width, so copy it all
+				loadPages(0, pages.length - 1);
+				image = null;
+				copied = null;
+			} else {
+				// the image stays hidden beyond the old address space
+				int oldCount = pages.length;
+				int newCount = addrBits < PAGE_SIZE_BITS ? 1 : 1 << (addrBits - PAGE_SIZE_BITS);
+				if (newCount > oldCount) copied.set(oldCount, newCount);
+			}
+		}
 		this.addrBits = addrBits;
 		this.width = width;
 		this.mask = width == 32 ? 0xffffffff : ((1 << width) - 1);
@@ -332,6 +382,125 @@ class MemContents implements Cloneable, HexModel {
 		return width;
 	}
 	
+	//
+	// methods for contents backed by an image
+	//
+	/** Returns the image backing these contents, or null if they are held
+	 * only in the heap. */
+	MappedImage getImage() {
+		return image;
+	}
+	
+	/** Makes these contents those of an image, dropping the current ones. */
+	void setImage(MappedImage value) {
+		Arrays.fill(pages, null);
+		image = value;
+		copied = new BitSet();
+		fireMetainfoChanged();
+		fireBytesChanged(0, getLastOffset() + 1, null);
+	}
+	
+	/**
+	 * Replaces the file of the image with these contents and maps it in
+	 * place of the old image. The new file is written aside and then moved
+	 * over the old one, so other contents mapping the old image keep
+	 * reading it unchanged.
+	 */
+	void saveImage() throws IOException {
+		File file = image.getFile().getAbsoluteFile();
+		File temp = File.createTempFile("image", ".tmp", file.getParentFile());
+		try {
+			writeImage(MappedImage.create(temp, width));
+			Files.move(temp.toPath(), file.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+		image = MappedImage.open(file, width);
+		Arrays.fill(pages, null);
+		copied.clear();
+	}
+	
+	/** Writes the pages changed since the image was mapped, each under a
+	 * line giving its index, in the form read back by {@link #readChanges}. */
+	void writeChanges(Writer out) throws IOException {
+		int[] vals = new int[getPageLength()];
+		for (int i = copied.nextSetBit(0); i >= 0 && i < pages.length; i = copied.nextSetBit(i + 1)) {
+			long start = (long) i << PAGE_SIZE_BITS;
+			if (pages[i] == null) {
+				// a cleared page need not be written where the image is clear
+				if (image.isClear(start, vals.length)) continue;
+				Arrays.fill(vals, 0);
+			} else {
+				System.arraycopy(pages[i].get(0, vals.length), 0, vals, 0, vals.length);
+			}
+			out.write(PAGE_HEADER + " " + i + "\n");
+			HexFile.save(out, vals);
+		}
+	}
+	
+	/** Replaces pages of the image with those written by
+	 * {@link #writeChanges}. */
+	void readChanges(String text) throws IOException {
+		int pos = text.indexOf(PAGE_HEADER);
+		while (pos >= 0) {
+			int lineEnd = text.indexOf('\n', pos);
+			if (lineEnd < 0) lineEnd = text.length();
+			int next = text.indexOf(PAGE_HEADER, lineEnd);
+			int page = Integer.parseInt(text.substring(pos + PAGE_HEADER.length(), lineEnd).trim());
+			int[] vals = HexFile.parse(new StringReader(text.substring(lineEnd,
+				next < 0 ? text.length() : next)));
+			int len = getPageLength();
+			if (page < 0 || page >= pages.length || vals.length > len) {
+				throw new IOException(Strings.get("memImagePageError", "" + page));
+			}
+			loadPage(page);
+			set((long) page << PAGE_SIZE_BITS, Arrays.copyOf(vals, len));
+			pos = next;
+		}
+	}
+	
+	/** Writes all the nonzero pages into another image. */
+	void writeImage(MappedImage dest) throws IOException {
+		int[] vals = new int[getPageLength()];
+		for (int i = 0; i < pages.length; i++) {
+			if (pages[i] != null) {
+				dest.write((long) i << PAGE_SIZE_BITS, pages[i].get(0, vals.length));
+			} else if (image != null && !copied.get(i)) {
+				long start = (long) i << PAGE_SIZE_BITS;
+				if (!image.isClear(start, vals.length)) {
+					dest.write(start, image.read(start, vals));
+				}
+			}
+		}
+	}
+	
+	private int getPageLength() {
+		return addrBits < PAGE_SIZE_BITS ? 1 << addrBits : PAGE_SIZE;
+	}
+	
+	private void loadPages(int first, int last) {
+		if (image == null) return;
+		for (int i = first; i <= last; i++) loadPage(i);
+	}
+	
+	/** Copies a page from the image before it is first changed. */
+	private void loadPage(int index) {
+		if (image == null || index < 0 || index >= pages.length
+				|| copied.get(index)) {
+			return;
+		}
+		copied.set(index);
+		long start = (long) index << PAGE_SIZE_BITS;
+		int len = getPageLength();
+		if (!image.isClear(start, len)) {
+			MemContentsSub.ContentsInterface page
+				= MemContentsSub.createContents(PAGE_SIZE, width);
+			page.load(0, image.read(start, new int[len]), mask);
+			pages[index] = page;
+		}
+	}
+	
 	private void ensurePage(int index) {
 		if (pages[index] == null) {
 			pages[index] = MemContentsSub.createContents(PAGE_SIZE, width);
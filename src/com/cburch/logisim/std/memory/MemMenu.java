@@ -17,6 +17,7 @@ import javax.swing.JPopupMenu;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
+import com.cburch.logisim.gui.hex.MappedImage;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.tools.MenuExtender;
@@ -125,7 +126,16 @@ class MemMenu implements ActionListener, MenuExtender {
 		if (choice == JFileChooser.APPROVE_OPTION) {
 			File f = chooser.getSelectedFile();
 			try {
-				HexFile.save(f, s.getContents());
+				MemContents contents = s.getContents();
+				MappedImage image = contents.getImage();
+				if (image != null && image.getFile().equals(f)) {
+					// replaced aside, as other copies may still be reading it
+					contents.saveImage();
+				} else if (MappedImage.isImageFile(f)) {
+					contents.writeImage(MappedImage.create(f, contents.getWidth()));
+				} else {
+					HexFile.save(f, s.getContents());
+				}
 				factory.setCurrentImage(instance, f);
 			} catch (IOException e) {
 				JOptionPane.showMessageDialog(frame, e.getMessage(),
@@ -230,8 +230,8 @@ public class Ram extends Mem {
             return;
         }
 
-        int addr = addrValue.toIntValue();
-        if (!addrValue.isFullyDefined() || addr < 0) return;
+        long addr = addrValue.toIntValue() & 0xFFFFFFFFL;
+        if (!addrValue.isFullyDefined()) return;
 
         if (addr != myState.getCurrent()) {
             myState.setCurrent(addr);
@@ -388,5 +388,10 @@ public class Ram extends Mem {
 				return Value.NIL;
 			}
 		}
+
+		@Override
+		public BitWidth getLogBitWidth(InstanceState state, Object option) {
+			return state.getAttributeValue(DATA_ATTR);
+		}
 	}
 }
@@ -6,6 +6,7 @@ package com.cburch.logisim.std.memory;
 import java.awt.Window;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -20,8 +21,10 @@ import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
+import com.cburch.logisim.gui.hex.MappedImage;
 import com.cburch.logisim.gui.main.Frame;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
@@ -103,8 +106,8 @@ public class Rom extends Mem {
 			return;
 		}
 
-		int addr = addrValue.toIntValue();
-		if (!addrValue.isFullyDefined() || addr < 0)
+		long addr = addrValue.toIntValue() & 0xFFFFFFFFL;
+		if (!addrValue.isFullyDefined())
 			return;
 		if (addr != myState.getCurrent()) {
 			myState.setCurrent(addr);
@@ -125,6 +128,8 @@ public class Rom extends Mem {
 	}
 	
 	private static class ContentsAttribute extends Attribute<MemContents> {
+		private static final String IMAGE_HEADER = "image:";
+
 		public ContentsAttribute() {
 			super("contents", Strings.getter("romContentsAttr"));
 		}
@@ -151,6 +156,15 @@ public class Rom extends Mem {
 			int data = state.getWidth();
 			StringWriter ret = new StringWriter();
 			ret.write("addr/data: " + addr + " " + data + "\n");
+			MappedImage image = state.getImage();
+			if (image != null) {
+				// refer to the image, keeping the changes made to it here
+				ret.write(IMAGE_HEADER + " " + Loader.toPathInUse(image.getFile()) + "\n");
+				try {
+					state.writeChanges(ret);
+				} catch (IOException e) { }
+				return ret.toString();
+			}
 			try {
 				HexFile.save(ret, state);
 			} catch (IOException e) { }
@@ -168,6 +182,20 @@ public class Rom extends Mem {
 				if (!header.equals("addr/data:")) return null;
 				int addr = Integer.parseInt(toks.nextToken());
 				int data = Integer.parseInt(toks.nextToken());
+				if (rest.startsWith(IMAGE_HEADER)) {
+					int imageEnd = rest.indexOf('\n');
+					if (imageEnd < 0) imageEnd = rest.length();
+					File file = Loader.fromPathInUse(rest.substring(IMAGE_HEADER.length(), imageEnd).trim());
+					try {
+						MemContents ret = MemContents.create(addr, data, MappedImage.open(file, data));
+						ret.readChanges(rest.substring(imageEnd));
+						return ret;
+					} catch (IOException e) {
+						// reported while loading; the attribute keeps its empty default
+						throw new IllegalArgumentException(Strings.get("memImageError",
+								file.getPath(), e.getMessage()));
+					}
+				}
 				MemContents ret = MemContents.create(addr, data);
 				HexFile.open(ret, new StringReader(rest));
 				return ret;
@@ -6,6 +6,7 @@ package com.cburch.logisim.std.plexers;
 import java.awt.Color;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Attributes;
@@ -103,6 +104,14 @@ public class BitSelector extends InstanceFactory {
 		instance.setPorts(ps);
 	}
 
+	@Override
+	protected Object getInstanceFeature(Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return Combinational.NEVER_FLOATS;
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void propagate(InstanceState state) {
 		Value data = state.getPort(1);
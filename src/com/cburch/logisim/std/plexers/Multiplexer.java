@@ -7,6 +7,7 @@ import java.awt.Color;
 import java.awt.Graphics;
 
 import com.cburch.logisim.LogisimVersion;
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -166,6 +167,20 @@ public class Multiplexer extends InstanceFactory {
 		instance.setPorts(ps);
 	}
 
+	@Override
+	protected Object getInstanceFeature(final Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return new Combinational() {
+				public boolean canFloat() {
+					boolean enable = instance.getAttributeValue(Plexers.ATTR_ENABLE).booleanValue();
+					Object disabled = instance.getAttributeValue(Plexers.ATTR_DISABLED);
+					return enable && disabled == Plexers.DISABLED_FLOATING;
+				}
+			};
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void propagate(InstanceState state) {
 		BitWidth data = state.getAttributeValue(StdAttr.WIDTH);
@@ -2,6 +2,8 @@ package com.cburch.logisim.std.riscv;
 
 import com.cburch.logisim.data.Value;
 
+/** A decoded instruction. Instances are shared by the decoded instruction
+ *  cache of ProcessorData, so they never change once created. */
 public class Instruction {
     int instruction;
     int opcode,d,s1,s2,func3;
@@ -2,8 +2,10 @@ package com.cburch.logisim.std.riscv;
 
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.data.*;
+import com.cburch.logisim.file.Loader;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.hex.HexFrame;
+import com.cburch.logisim.gui.hex.MappedImage;
 import com.cburch.logisim.gui.main.Frame;
 import com.cburch.logisim.instance.*;
 import com.cburch.logisim.proj.Project;
@@ -13,11 +15,11 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.NoSuchElementException;
-import java.util.Objects;
 import java.util.StringTokenizer;
 
 abstract class Processor extends InstanceFactory {
@@ -37,7 +39,7 @@ abstract class Processor extends InstanceFactory {
     static final Attribute<Integer> INTR_ADDR = Attributes.forHexInteger(
             "intrAddress",Strings.getter("processorIntrAddress"));
     static final Attribute<BitWidth> ADDR_ATTR = Attributes.forBitWidth(
-            "addrWidth", Strings.getter("processorAddrWidthAttr"), 2, 24);
+            "addrWidth", Strings.getter("processorAddrWidthAttr"), 2, 30);
     static final Attribute<Integer> MULTIPLIER =Attributes.forIntegerMultiplierRange(
             "multiplier", Strings.getter("processorMultiplierAttr"), 0, 12);
     static Attribute<DataContents> CONTENTS_ATTR = new ContentsAttribute();
@@ -58,6 +60,7 @@ abstract class Processor extends InstanceFactory {
         super(name, Strings.getter(keyName));
         setIconName(gif);
         setOffsetBounds(Bounds.create(-150, -150, 300, 300));
+        setInstanceLogger(ProcessorLogger.class);
     }
 
     void configurePorts(Instance instance) {
@@ -105,6 +108,17 @@ abstract class Processor extends InstanceFactory {
     void clearContentAttributes(Instance instance) {
         instance.getAttributeValue(CONTENTS_ATTR).clear();
     }
+    void loadImage(Instance instance, ProcessorData data, File imageFile) throws IOException {
+        DataContents contents = instance.getAttributeValue(CONTENTS_ATTR);
+        if (MappedImage.isImageFile(imageFile)) {
+            MappedImage image = MappedImage.open(imageFile, contents.getWidth());
+            contents.setImage(image);
+            data.getContents().setImage(image);
+        } else {
+            HexFile.open(contents, imageFile);
+            HexFile.open(data.getContents(), imageFile);
+        }
+    }
     @Override
     public void propagate(InstanceState state) {
         ProcessorData data =(ProcessorData) state.getData();
@@ -121,6 +135,7 @@ abstract class Processor extends InstanceFactory {
         if(data.lastClock.equals(last)
                 || !data.lastClock.isFullyDefined()
                 || !last.isFullyDefined()) {return;}
+        data.updateRate();
         Value intr=state.getPort(INTR);
         //interruption handler
         if(intr==Value.TRUE && data.intr_enable && !(data.low & data.opcode!=0b0)){
@@ -136,16 +151,17 @@ abstract class Processor extends InstanceFactory {
             propagateLow(state,data,last);
             return;
         }
-        for(int i=0;i<(data.ls_PC ? 1 : state.getAttributeValue(MULTIPLIER));i++){
+        int multiplier = state.getAttributeValue(MULTIPLIER);
+        int offset = state.getAttributeValue(FIRST_ADDR);
+        for(int i=0;i<(data.ls_PC ? 1 : multiplier);i++){
             //get instruction
             if( addressInProcessor(state,data.programCount>>2)) {
-                int offset = state.getAttributeValue(FIRST_ADDR);
-                int res = data.contents.get((data.programCount - offset) >>> 2);
+                int index = (data.programCount - offset) >>> 2;
                 if (data.ls_PC) {
-                    data.loadPC(res);
+                    data.loadPC(data.contents.get(index));
                     return;
                 } else {
-                    data.setInstruction(data.contents.get((data.programCount - offset) >>> 2));
+                    data.instruction = data.getInstructionAt(index);
                 }
             }
             else{
@@ -238,6 +254,7 @@ abstract class Processor extends InstanceFactory {
     }
 
     private void execute(InstanceState state, ProcessorData data){
+        data.countInstruction();
         data.opcode=data.instruction.opcode;
         switch (data.opcode){
             case 0b0110011: // ADD / SUB / SLL / SLT / SLTU / XOR / SRL / SRA / OR / AND / MUL / DIV
@@ -520,10 +537,10 @@ abstract class Processor extends InstanceFactory {
         int Imm = data.instruction.getImm();
         switch(data.instruction.func3){
             case 0b000: // BEQ
-                data.stepPC((Objects.equals(data.getS1(), data.getS2()))? Imm : 4);
+                data.stepPC((data.getS1() == data.getS2())? Imm : 4);
                 break;
             case 0b001: // BNE
-                data.stepPC((Objects.equals(data.getS1(), data.getS2()))? 4 : Imm);
+                data.stepPC((data.getS1() == data.getS2())? 4 : Imm);
                 break;
             case 0b100: // BLT
                 data.stepPC((data.getS1()< data.getS2())? Imm : 4);
@@ -548,8 +565,8 @@ abstract class Processor extends InstanceFactory {
         if(state.getAttributeValue(ENABLE_MEMORY)==DISABLE){
             return false;
         }
-        int size=(1<<state.getAttributeValue(ADDR_ATTR).getWidth());
-        int start=state.getAttributeValue(FIRST_ADDR);
+        long size=(1L<<state.getAttributeValue(ADDR_ATTR).getWidth());
+        long start=state.getAttributeValue(FIRST_ADDR);
         return(address >=start & address<start+size);
     }
     public String memorySizeToString(int size){
@@ -566,6 +583,8 @@ abstract class Processor extends InstanceFactory {
         return text;
     }
     private static class ContentsAttribute extends Attribute<DataContents> {
+        private static final String IMAGE_HEADER = "image:";
+
         public ContentsAttribute() {
             super("contents", Strings.getter("processorContentsAttr"));
         }
@@ -593,6 +612,15 @@ abstract class Processor extends InstanceFactory {
             int data = state.getWidth();
             StringWriter ret = new StringWriter();
             ret.write("addr/data: " + addr + " " + data + "\n");
+            MappedImage image = state.getImage();
+            if (image != null) {
+                // refer to the image, keeping the changes made to it here
+                ret.write(IMAGE_HEADER + " " + Loader.toPathInUse(image.getFile()) + "\n");
+                try {
+                    state.writeChanges(ret);
+                } catch (IOException ignored) { }
+                return ret.toString();
+            }
             try {
                 HexFile.save(ret, state);
             } catch (IOException ignored) { }
@@ -610,6 +638,20 @@ abstract class Processor extends InstanceFactory {
                 if (!header.equals("addr/data:")) return null;
                 int addr = Integer.parseInt(toks.nextToken());
                 int data = Integer.parseInt(toks.nextToken());
+                if (rest.startsWith(IMAGE_HEADER)) {
+                    int imageEnd = rest.indexOf('\n');
+                    if (imageEnd < 0) imageEnd = rest.length();
+                    File file = Loader.fromPathInUse(rest.substring(IMAGE_HEADER.length(), imageEnd).trim());
+                    try {
+                        DataContents ret = DataContents.create(addr, data, MappedImage.open(file, data));
+                        ret.readChanges(rest.substring(imageEnd));
+                        return ret;
+                    } catch (IOException e) {
+                        // reported while loading; the attribute keeps its empty default
+                        throw new IllegalArgumentException(Strings.get("memImageError",
+                                file.getPath(), e.getMessage()));
+                    }
+                }
                 DataContents ret = DataContents.create(addr, data);
                 HexFile.open(ret, new StringReader(rest));
                 return ret;
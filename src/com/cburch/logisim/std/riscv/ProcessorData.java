@@ -9,29 +9,44 @@ import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringUtil;
 
 import java.awt.*;
+import java.util.Arrays;
 
 public class ProcessorData implements InstanceData,Cloneable, HexModelListener {
-    public Integer programCount;
-    public Integer intrProgramCount;
+    //instructions stored by intrPC and retPC, shared like the cached ones
+    private static final Instruction SAVE_PC = new Instruction(0x00012023);
+    private static final Instruction RESTORE_PC = new Instruction(0xffc12003);
+    //slots in the decoded instruction cache, which is direct mapped by word address
+    private static final int CACHE_SIZE = 4096;
+    //interval over which the instructions per second are measured
+    private static final long RATE_INTERVAL = 1000000000L;
+
+    public int programCount;
+    public int intrProgramCount;
     public Instruction instruction;
     public RegisterMem register;
-    public Integer opcode;
+    public int opcode;
     public Value lastClock;
-    public Boolean low;
-    public Boolean intr_enable;
-    public Boolean ls_PC;
+    public boolean low;
+    public boolean intr_enable;
+    public boolean ls_PC;
     DataContents contents;
     BitWidth BITWIDTH=BitWidth.create(32);
     private long curScroll = 0;
     private long cursorLoc = -1;
     private long curAddr = -1;
     private static final int ROWS = 4;
+    private Instruction[] decoded = new Instruction[CACHE_SIZE];
+    private int[] decodedAddr = new int[CACHE_SIZE];
+    private long executed = 0;
+    private long rateCount = 0;
+    private long rateStart = System.nanoTime();
+    private double rate = 0.0;
 
 
     ProcessorData(DataContents contents,int boot) {
         this.contents = contents.clone();
         setBits(contents.getLogLength(), contents.getWidth());
-        contents.addHexModelListener(this);
+        this.contents.addHexModelListener(this);
         programCount = boot;
         instruction = new Instruction(Value.createKnown(BITWIDTH, 0));
         register = new RegisterMem();
@@ -47,22 +62,49 @@ public class ProcessorData implements InstanceData,Cloneable, HexModelListener {
     public void setInstruction(Value inst) {
         instruction=new Instruction(inst);
     }
-    public void stepPC(Integer offset){
+    /** Returns the decoded instruction at a word of the contents, decoding it
+     *  only if it is not cached. Changes to the contents reach the cache
+     *  through bytesChanged. */
+    Instruction getInstructionAt(int index) {
+        int slot = index & (CACHE_SIZE - 1);
+        Instruction ret = decoded[slot];
+        if (ret == null || decodedAddr[slot] != index) {
+            ret = new Instruction(contents.get(index));
+            decoded[slot] = ret;
+            decodedAddr[slot] = index;
+        }
+        return ret;
+    }
+    public void stepPC(int offset){
         programCount+=offset;
     }
-    public void stepPCS1(Integer offset){
+    public void stepPCS1(int offset){
         programCount=(getS1()+offset)&0xFFFFFFFE;
     }
-    public Integer getS1() {return register.getValue(instruction.s1);}
-    public Integer getS2() {return register.getValue(instruction.s2);}
+    public int getS1() {return register.getValue(instruction.s1);}
+    public int getS2() {return register.getValue(instruction.s2);}
     public DataContents getContents() {return contents;}
+    void countInstruction() {executed++;}
+    /** Measures the instructions per second again if the last measure is
+     *  older than RATE_INTERVAL; called once per clock edge. */
+    void updateRate() {
+        long now = System.nanoTime();
+        long elapsed = now - rateStart;
+        if (elapsed >= RATE_INTERVAL) {
+            rate = (executed - rateCount) * 1e9 / elapsed;
+            rateCount = executed;
+            rateStart = now;
+        }
+    }
+    public long getExecutedCount() {return executed;}
+    public double getInstructionsPerSecond() {return rate;}
     @Override
     public ProcessorData clone() {
         try {
             ProcessorData ret= (ProcessorData) super.clone();
             ret.programCount=programCount;
             ret.intrProgramCount=intrProgramCount;
-            ret.instruction=new Instruction(instruction.instruction);
+            ret.instruction=instruction;
             ret.register=register.clone();
             ret.opcode=opcode;
             ret.lastClock=lastClock;
@@ -71,6 +113,8 @@ public class ProcessorData implements InstanceData,Cloneable, HexModelListener {
             ret.ls_PC=ls_PC;
             ret.contents=contents.clone();
             ret.contents.addHexModelListener(ret);
+            ret.decoded=decoded.clone();
+            ret.decodedAddr=decodedAddr.clone();
             return ret;
         } catch (CloneNotSupportedException e) { return null; }
     }
@@ -143,6 +187,11 @@ public class ProcessorData implements InstanceData,Cloneable, HexModelListener {
         GraphicsUtil.drawText(g, StringUtil.toHexString(32, instruction.instruction),
                 boxX+boxW/6+14, boxY+ENTRY_HEIGHT/2,
                 GraphicsUtil.H_CENTER, GraphicsUtil.V_CENTER);
+        g.setColor(Color.GRAY);
+        GraphicsUtil.drawText(g, ("IPS " + Math.round(rate)),
+                leftX+boxW/2+4, boxY+ENTRY_HEIGHT/2,
+                GraphicsUtil.H_CENTER, GraphicsUtil.V_CENTER);
+        g.setColor(Color.BLACK);
         boxX=leftX+2*boxW/3;
         g.drawRect(boxX, boxY, boxW/3, boxH/8);
         g.drawLine(boxX+28, boxY,boxX+28, boxY+boxH/8);
@@ -158,16 +207,23 @@ public class ProcessorData implements InstanceData,Cloneable, HexModelListener {
 
     @Override
     public void metainfoChanged(HexModel source) {
-
+        Arrays.fill(decoded, null);
     }
 
     @Override
     public void bytesChanged(HexModel source, long start, long numBytes, int[] oldValues) {
-
+        if (numBytes >= CACHE_SIZE) {
+            Arrays.fill(decoded, null);
+            return;
+        }
+        for (long addr = start; addr < start + numBytes; addr++) {
+            int slot = (int) addr & (CACHE_SIZE - 1);
+            if (decodedAddr[slot] == addr) decoded[slot] = null;
+        }
     }
     public void intrPC(int intrAddr){
         register.setValue(2,register.getValue(2)-4);
-        setInstruction(0x00012023); //SW modified store PC
+        instruction=SAVE_PC; //SW modified store PC
         ls_PC=true;
         intr_enable=false;
         intrProgramCount=programCount;
@@ -179,7 +235,7 @@ public class ProcessorData implements InstanceData,Cloneable, HexModelListener {
     }
     public void retPC(){
         register.setValue(2,register.getValue(2)+4);
-        setInstruction(0xffc12003);
+        instruction=RESTORE_PC;
         ls_PC=true;
         //System.out.println(register.getValue(2));
     }
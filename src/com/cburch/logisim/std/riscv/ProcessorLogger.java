@@ -0,0 +1,41 @@
+package com.cburch.logisim.std.riscv;
+
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.InstanceLogger;
+import com.cburch.logisim.instance.InstanceState;
+
+//logs the program counter, as "pc", and the registers, as "x1" to "x31"
+public class ProcessorLogger extends InstanceLogger {
+    private static final String PC = "pc";
+    private static final Object[] OPTIONS = new Object[32];
+    static {
+        OPTIONS[0] = PC;
+        for (int i = 1; i < OPTIONS.length; i++) OPTIONS[i] = "x" + i;
+    }
+    private static final BitWidth b32 = BitWidth.create(32);
+
+    @Override
+    public Object[] getLogOptions(InstanceState state) {
+        return OPTIONS;
+    }
+
+    @Override
+    public String getLogName(InstanceState state, Object option) {
+        return option instanceof String ? (String) option : null;
+    }
+
+    @Override
+    public Value getLogValue(InstanceState state, Object option) {
+        ProcessorData data = (ProcessorData) state.getData();
+        if (data == null || !(option instanceof String)) return Value.createUnknown(b32);
+        if (option.equals(PC)) return Value.createKnown(b32, data.programCount);
+        int index = Integer.parseInt(((String) option).substring(1));
+        return Value.createKnown(b32, data.register.getValue(index));
+    }
+
+    @Override
+    public BitWidth getLogBitWidth(InstanceState state, Object option) {
+        return b32;
+    }
+}
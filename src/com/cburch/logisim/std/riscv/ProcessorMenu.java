@@ -10,6 +10,8 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 
 class ProcessorMenu implements ActionListener, MenuExtender {
     private final Processor factory;
@@ -19,6 +21,7 @@ class ProcessorMenu implements ActionListener, MenuExtender {
     private CircuitState circState;
     private JMenuItem edit;
     private JMenuItem clear;
+    private JMenuItem load;
     ProcessorMenu(Processor factory, Instance instance) {
         this.factory = factory;
         this.instance = instance;
@@ -35,10 +38,12 @@ class ProcessorMenu implements ActionListener, MenuExtender {
         boolean enabled= circState!=null;
         edit = createItem(enabled, Strings.get("processorEditMenuItem"));
         clear = createItem(enabled,Strings.get("processorClearMenuItem"));
+        load = createItem(enabled,Strings.get("processorLoadMenuItem"));
 
         menu.addSeparator();
         menu.add(edit);
         menu.add(clear);
+        menu.add(load);
     }
 
     private JMenuItem createItem(boolean enabled, String label) {
@@ -51,6 +56,7 @@ class ProcessorMenu implements ActionListener, MenuExtender {
         Object src = evt.getSource();
         if (src == edit) doEdit();
         else if (src == clear) doClear();
+        else if (src == load) doLoad();
     }
 
     private void doEdit() {
@@ -75,4 +81,19 @@ class ProcessorMenu implements ActionListener, MenuExtender {
             factory.clearContentAttributes(instance);
         }
     }
+
+    private void doLoad() {
+        JFileChooser chooser = proj.createChooser();
+        chooser.setDialogTitle(Strings.get("processorLoadDialogTitle"));
+        int choice = chooser.showOpenDialog(frame);
+        if (choice == JFileChooser.APPROVE_OPTION) {
+            File f = chooser.getSelectedFile();
+            try {
+                factory.loadImage(instance, factory.getData(instance, circState), f);
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(frame, e.getMessage(),
+                        Strings.get("ramLoadErrorTitle"), JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
 }
@@ -6,6 +6,7 @@ package com.cburch.logisim.std.wiring;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.AttributeSet;
@@ -120,6 +121,14 @@ public class BitExtender extends InstanceFactory {
 		}
 	}
 
+	@Override
+	protected Object getInstanceFeature(Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return Combinational.NEVER_FLOATS;
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void propagate(InstanceState state) {
 		Value in = state.getPort(1);
@@ -6,6 +6,7 @@ package com.cburch.logisim.std.wiring;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.event.MouseEvent;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.swing.Icon;
 
@@ -42,6 +43,10 @@ public class Clock extends InstanceFactory {
 	public static final Clock FACTORY = new Clock();
 
 	private static final Icon toolIcon = Icons.getIcon("clock.gif");
+
+	// counts changes to the durations of any clock, for the simulator's
+	// schedule of clock edges to notice them
+	private static final AtomicInteger timingRevision = new AtomicInteger();
 	
 	private static class ClockState implements InstanceData, Cloneable {
 		Value sending = Value.FALSE;
@@ -191,6 +196,8 @@ public class Clock extends InstanceFactory {
 		} else if (attr == StdAttr.FACING) {
 			instance.recomputeBounds();
 			configureLabel(instance);
+		} else if (attr == ATTR_HIGH || attr == ATTR_LOW) {
+			timingRevision.incrementAndGet();
 		}
 	}
 
@@ -215,7 +222,7 @@ public class Clock extends InstanceFactory {
 			state = new ClockState();
 			circState.setData(comp, state);
 		}
-		boolean curValue = ticks % (durationHigh + durationLow) < durationLow;
+		boolean curValue = isLow(ticks, durationHigh, durationLow);
 		if (state.clicks % 2 == 1) curValue = !curValue;
 		Value desired = (curValue ? Value.FALSE : Value.TRUE);
 		if (!state.sending.equals(desired)) {
@@ -227,9 +234,27 @@ public class Clock extends InstanceFactory {
 		}
 	}
 
+	/** Returns whether a clock of the given durations changes its value at
+	 * the given tick, that is, whether a clock last updated at the tick
+	 * before needs to be updated at this one. */
+	public static boolean isEdge(int ticks, int durationHigh, int durationLow) {
+		return isLow(ticks, durationHigh, durationLow)
+			!= isLow(ticks - 1, durationHigh, durationLow);
+	}
+
+	/** Returns a number that changes whenever the durations of a clock
+	 * change. */
+	public static int getTimingRevision() {
+		return timingRevision.get();
+	}
+
 	//
 	// private methods
 	//
+	private static boolean isLow(int ticks, int durationHigh, int durationLow) {
+		return ticks % (durationHigh + durationLow) < durationLow;
+	}
+
 	private void configureLabel(Instance instance) {
 		Direction facing = instance.getAttributeValue(StdAttr.FACING);
 		Direction labelLoc = instance.getAttributeValue(Pin.ATTR_LABEL_LOC);
@@ -11,6 +11,7 @@ import java.util.Map;
 
 import com.cburch.logisim.analyze.model.Expression;
 import com.cburch.logisim.analyze.model.Expressions;
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.circuit.ExpressionComputer;
 import com.cburch.logisim.data.AbstractAttributeSet;
 import com.cburch.logisim.data.Attribute;
@@ -144,6 +145,9 @@ public class Constant extends InstanceFactory {
 	@Override
 	protected Object getInstanceFeature(Instance instance, Object key) {
 		if (key == ExpressionComputer.class) return new ConstantExpression(instance);
+		if (key == Combinational.class) {
+			return Combinational.NEVER_FLOATS;
+		}
 		return super.getInstanceFeature(instance, key);
 	}
 
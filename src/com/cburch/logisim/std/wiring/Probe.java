@@ -6,6 +6,7 @@ package com.cburch.logisim.std.wiring;
 import java.awt.Color;
 import java.awt.Graphics;
 
+import com.cburch.logisim.circuit.Combinational;
 import com.cburch.logisim.circuit.RadixOption;
 import com.cburch.logisim.comp.TextField;
 import com.cburch.logisim.data.Attribute;
@@ -53,6 +54,11 @@ public class Probe extends InstanceFactory {
 		public Value getLogValue(InstanceState state, Object option) {
 			return getValue(state);
 		}
+
+		@Override
+		public BitWidth getLogBitWidth(InstanceState state, Object option) {
+			return state.getPort(0).getBitWidth(); // that of the wire probed
+		}
 	}
 
 	public Probe() {
@@ -182,6 +188,14 @@ public class Probe extends InstanceFactory {
 		}
 	}
 
+	@Override
+	protected Object getInstanceFeature(Instance instance, Object key) {
+		if (key == Combinational.class) {
+			return Combinational.NEVER_FLOATS;
+		}
+		return super.getInstanceFeature(instance, key);
+	}
+
 	@Override
 	public void propagate(InstanceState state) {
 		StateData oldData = (StateData) state.getData();
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 
 import com.cburch.logisim.circuit.Wire;
@@ -16,24 +17,60 @@ import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 
 class AvoidanceMap {
+	// marks a location as removed from an overlay while its parent has it
+	private static final String REMOVED = new String("removed");
+
 	static AvoidanceMap create(Collection<Component> elements, int dx, int dy) {
-		AvoidanceMap ret = new AvoidanceMap(new HashMap<Location,String>());
+		AvoidanceMap ret = new AvoidanceMap(new HashMap<Location,String>(), null);
 		ret.markAll(elements, dx, dy);
 		return ret;
 	}
 
 	private final HashMap<Location,String> avoid;
+	private final AvoidanceMap parent;
 	
-	private AvoidanceMap(HashMap<Location,String> map) {
+	private AvoidanceMap(HashMap<Location,String> map, AvoidanceMap parent) {
 		avoid = map;
+		this.parent = parent;
 	}
 	
-	public AvoidanceMap cloneMap() {
-		return new AvoidanceMap(new HashMap<Location,String>(avoid));
+	/** Returns a map that starts out the same as this one but holds only
+	 * its own changes, reading everything else through this map. Creating
+	 * one costs nothing however large this map is, and several overlays
+	 * may be used at once by different threads, as long as this map is not
+	 * changed meanwhile. */
+	public AvoidanceMap overlay() {
+		return new AvoidanceMap(new HashMap<Location,String>(), this);
 	}
 	
 	public Object get(Location loc) {
-		return avoid.get(loc);
+		return lookup(loc);
+	}
+	
+	private String lookup(Location loc) {
+		for (AvoidanceMap map = this; map != null; map = map.parent) {
+			String ret = map.avoid.get(loc);
+			if (ret != null) return ret == REMOVED ? null : ret;
+		}
+		return null;
+	}
+	
+	private String put(Location loc, String value) {
+		if (parent == null) return avoid.put(loc, value);
+		String prev = lookup(loc);
+		avoid.put(loc, value);
+		return prev;
+	}
+	
+	private String remove(Location loc) {
+		if (parent == null) return avoid.remove(loc);
+		String prev = lookup(loc);
+		if (parent.lookup(loc) == null) {
+			avoid.remove(loc);
+		} else {
+			avoid.put(loc, REMOVED);
+		}
+		return prev;
 	}
 	
 	public void markAll(Collection<Component> elements, int dx, int dy) {
@@ -49,7 +86,6 @@ class AvoidanceMap {
 	}
 	
 	public void markComponent(Component comp, int dx, int dy) {
-		HashMap<Location,String> avoid = this.avoid;
 		boolean translated = dx != 0 || dy != 0;
 		Bounds bds = comp.getBounds();
 		int x0 = bds.getX() + dx;
@@ -64,14 +100,14 @@ class AvoidanceMap {
 				// loc is most likely in the component, so go ahead and
 				// put it into the map as if it is - and in the rare event
 				// that loc isn't in the component, we can remove it.
-				String prev = avoid.put(loc, Connector.ALLOW_NEITHER);
+				String prev = put(loc, Connector.ALLOW_NEITHER);
 				if (prev != Connector.ALLOW_NEITHER) {
 					Location baseLoc = translated ? loc.translate(-dx, -dy) : loc;
 					if (!comp.contains(baseLoc)) {
 						if (prev == null) {
-							avoid.remove(loc);
+							remove(loc);
 						} else {
-							avoid.put(loc, prev);
+							put(loc, prev);
 						}
 					}
 				}
@@ -80,7 +116,6 @@ class AvoidanceMap {
 	}
 	
 	public void markWire(Wire w, int dx, int dy) {
-		HashMap<Location,String> avoid = this.avoid;
 		boolean translated = dx != 0 || dy != 0;
 		Location loc0 = w.getEnd0();
 		Location loc1 = w.getEnd1();
@@ -88,24 +123,24 @@ class AvoidanceMap {
 			loc0 = loc0.translate(dx, dy);
 			loc1 = loc1.translate(dx, dy);
 		}
-		avoid.put(loc0, Connector.ALLOW_NEITHER);
-		avoid.put(loc1, Connector.ALLOW_NEITHER);
+		put(loc0, Connector.ALLOW_NEITHER);
+		put(loc1, Connector.ALLOW_NEITHER);
 		int x0 = loc0.getX();
 		int y0 = loc0.getY();
 		int x1 = loc1.getX();
 		int y1 = loc1.getY();
 		if (x0 == x1) { // vertical wire
 			for (Location loc : Wire.create(loc0, loc1)) {
-				Object prev = avoid.put(loc, Connector.ALLOW_HORIZONTAL);
+				Object prev = put(loc, Connector.ALLOW_HORIZONTAL);
 				if (prev == Connector.ALLOW_NEITHER || prev == Connector.ALLOW_VERTICAL) {
-					avoid.put(loc, Connector.ALLOW_NEITHER);
+					put(loc, Connector.ALLOW_NEITHER);
 				}
 			}
 		} else if (y0 == y1) { // horizontal wire
 			for (Location loc : Wire.create(loc0, loc1)) {
-				Object prev = avoid.put(loc, Connector.ALLOW_VERTICAL);
+				Object prev = put(loc, Connector.ALLOW_VERTICAL);
 				if (prev == Connector.ALLOW_NEITHER || prev == Connector.ALLOW_HORIZONTAL) {
-					avoid.put(loc, Connector.ALLOW_NEITHER);
+					put(loc, Connector.ALLOW_NEITHER);
 				}
 			}
 		} else { // diagonal - shouldn't happen
@@ -114,14 +149,14 @@ class AvoidanceMap {
 	}
 	
 	public void unmarkLocation(Location loc) {
-		avoid.remove(loc);
+		remove(loc);
 	}
 	
 	public void unmarkWire(Wire w, Location deletedEnd, Set<Location> unmarkable) {
 		Location loc0 = w.getEnd0();
 		Location loc1 = w.getEnd1();
 		if (unmarkable == null || unmarkable.contains(deletedEnd)) {
-			avoid.remove(deletedEnd);
+			remove(deletedEnd);
 		}
 		int x0 = loc0.getX();
 		int y0 = loc0.getY();
@@ -130,18 +165,18 @@ class AvoidanceMap {
 		if (x0 == x1) { // vertical wire
 			for (Location loc : w) {
 				if (unmarkable == null || unmarkable.contains(deletedEnd)) {
-					Object prev = avoid.remove(loc);
+					Object prev = remove(loc);
 					if (prev != Connector.ALLOW_HORIZONTAL && prev != null) {
-						avoid.put(loc, Connector.ALLOW_VERTICAL);
+						put(loc, Connector.ALLOW_VERTICAL);
 					}
 				}
 			}
 		} else if (y0 == y1) { // horizontal wire
 			for (Location loc : w) {
 				if (unmarkable == null || unmarkable.contains(deletedEnd)) {
-					Object prev = avoid.remove(loc);
+					Object prev = remove(loc);
 					if (prev != Connector.ALLOW_VERTICAL && prev != null) {
-						avoid.put(loc, Connector.ALLOW_HORIZONTAL);
+						put(loc, Connector.ALLOW_HORIZONTAL);
 					}
 				}
 			}
@@ -151,10 +186,17 @@ class AvoidanceMap {
 	}
 	
 	public void print(PrintStream stream) {
-		ArrayList<Location> list = new ArrayList<Location>(avoid.keySet());
+		HashSet<Location> locs = new HashSet<Location>();
+		for (AvoidanceMap map = this; map != null; map = map.parent) {
+			locs.addAll(map.avoid.keySet());
+		}
+		ArrayList<Location> list = new ArrayList<Location>();
+		for (Location loc : locs) {
+			if (lookup(loc) != null) list.add(loc);
+		}
 		Collections.sort(list);
 		for (int i = 0, n = list.size(); i < n; i++) {
-			stream.println(list.get(i) + ": " + avoid.get(list.get(i)));
+			stream.println(list.get(i) + ": " + lookup(list.get(i)));
 		}
 	}
 }
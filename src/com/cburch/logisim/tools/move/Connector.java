@@ -12,6 +12,14 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.cburch.logisim.circuit.ReplacementMap;
 import com.cburch.logisim.circuit.Wire;
@@ -22,6 +30,12 @@ class Connector {
 	private static final int MAX_SECONDS = 10;
 	private static final int MAX_ORDERING_TRIES = 10;
 	private static final int MAX_SEARCH_ITERATIONS = 20000;
+	// threads running the tries of a request, while the ConnectorThread
+	// waits for their results
+	private static final int WORKERS = Math.min(MAX_ORDERING_TRIES,
+			Runtime.getRuntime().availableProcessors());
+	
+	private static ExecutorService workers = null;
 	
 	private Connector() { }
 	
@@ -52,7 +66,6 @@ class Connector {
 		}
 
 		
-		MoveResult bestResult = null;
 		int tries;
 		switch (baseConnects.size()) {
 		case 0: tries = 0; break;
@@ -61,11 +74,9 @@ class Connector {
 		case 3: tries = 8; break;
 		default: tries = MAX_ORDERING_TRIES;
 		}
-		long stopTime = System.currentTimeMillis() + MAX_SECONDS * 1000;
-		for (int tryNum = 0; tryNum < tries && stopTime - System.currentTimeMillis() > 0; tryNum++) {
-			if (ConnectorThread.isOverrideRequested()) {
-				return null;
-			}
+		ArrayList<ArrayList<ConnectionData>> orderings;
+		orderings = new ArrayList<ArrayList<ConnectionData>>();
+		for (int tryNum = 0; tryNum < tries; tryNum++) {
 			ArrayList<ConnectionData> connects;
 			connects = new ArrayList<ConnectionData>(baseConnects);
 			if (tryNum < 2) {
@@ -76,34 +87,171 @@ class Connector {
 			} else {
 				Collections.shuffle(connects);
 			}
-			
-			MoveResult candidate = tryList(req, gesture, connects, dx, dy,
-				pathLocs, initNodes, stopTime);
+			orderings.add(connects);
+		}
+
+		// the selection is marked at its new place once, and each try
+		// works on an overlay of that map
+		AvoidanceMap avoid = gesture.getFixedAvoidanceMap().overlay();
+		avoid.markAll(gesture.getSelected(), dx, dy);
+		int bound = getLowerBound(baseConnects, initNodes);
+		long stopTime = System.currentTimeMillis() + MAX_SECONDS * 1000;
+
+		MoveResult bestResult;
+		if (tries <= 1 || WORKERS <= 1) {
+			bestResult = trySequentially(req, orderings, avoid, pathLocs,
+				initNodes, stopTime, bound);
+		} else {
+			bestResult = tryConcurrently(req, orderings, avoid, pathLocs,
+				initNodes, stopTime, bound);
+		}
+		if (bestResult == null && ConnectorThread.isOverrideRequested()) {
+			return null;
+		}
+		if (bestResult == null) { // should only happen for no connections
+			bestResult = new MoveResult(req, new ReplacementMap(), impossible, 0);
+		} else {
+			bestResult.addUnsatisfiedConnections(impossible);
+		}
+		return bestResult;
+	}
+	
+	private static MoveResult trySequentially(MoveRequest req,
+			ArrayList<ArrayList<ConnectionData>> orderings, AvoidanceMap avoid,
+			HashMap<ConnectionData,Set<Location>> pathLocs,
+			HashMap<ConnectionData,List<SearchNode>> initNodes, long stopTime,
+			int bound) {
+		AtomicBoolean stop = new AtomicBoolean(false);
+		MoveResult bestResult = null;
+		for (int tryNum = 0; tryNum < orderings.size()
+				&& stopTime - System.currentTimeMillis() > 0; tryNum++) {
+			if (ConnectorThread.isOverrideRequested()) {
+				return null;
+			}
+			MoveResult candidate = tryList(req, orderings.get(tryNum), avoid,
+				pathLocs, initNodes, stopTime, stop);
 			if (candidate == null) {
 				return null;
-			} else if (bestResult == null) {
-				bestResult = candidate;
-			} else {
-				int unsatisfied1 = bestResult.getUnsatisifiedConnections().size();
-				int unsatisfied2 = candidate.getUnsatisifiedConnections().size();
-				if (unsatisfied2 < unsatisfied1) {
-					bestResult = candidate;
-				} else if (unsatisfied2 == unsatisfied1) {
-					int dist1 = bestResult.getTotalDistance();
-					int dist2 = candidate.getTotalDistance();
-					if (dist2 < dist1) {
-						bestResult = candidate;
+			}
+			bestResult = chooseBetter(bestResult, candidate);
+			if (isOptimal(bestResult, bound)) break;
+		}
+		return bestResult;
+	}
+
+	/** Runs every try on the workers at once. The results are compared in
+	 * the order of the tries, as if they had run one after another: the
+	 * search ends early only at the first try to reach the lower bound,
+	 * once every try before it is done. */
+	private static MoveResult tryConcurrently(final MoveRequest req,
+			ArrayList<ArrayList<ConnectionData>> orderings,
+			final AvoidanceMap avoid,
+			final HashMap<ConnectionData,Set<Location>> pathLocs,
+			final HashMap<ConnectionData,List<SearchNode>> initNodes,
+			final long stopTime, int bound) {
+		final AtomicBoolean stop = new AtomicBoolean(false);
+		final MoveResult[] results = new MoveResult[orderings.size()];
+		CompletionService<Integer> done;
+		done = new ExecutorCompletionService<Integer>(getWorkers());
+		for (int i = 0; i < orderings.size(); i++) {
+			final int tryNum = i;
+			final ArrayList<ConnectionData> connects = orderings.get(i);
+			done.submit(new Callable<Integer>() {
+				public Integer call() {
+					results[tryNum] = tryList(req, connects, avoid,
+						pathLocs, initNodes, stopTime, stop);
+					return Integer.valueOf(tryNum);
+				}
+			});
+		}
+
+		boolean[] finished = new boolean[orderings.size()];
+		int firstUnfinished = 0;
+		try {
+			for (int i = 0; i < orderings.size(); i++) {
+				int tryNum = done.take().get().intValue();
+				finished[tryNum] = true;
+				if (results[tryNum] == null
+						&& ConnectorThread.isOverrideRequested()) {
+					return null;
+				}
+				for (; firstUnfinished < finished.length
+						&& finished[firstUnfinished]; firstUnfinished++) {
+					MoveResult candidate = results[firstUnfinished];
+					if (candidate != null && isOptimal(candidate, bound)) {
+						return candidate;
 					}
 				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		} finally {
+			stop.set(true);
 		}
-		if (bestResult == null) { // should only happen for no connections
-			bestResult = new MoveResult(req, new ReplacementMap(), impossible, 0);
-		} else {
-			bestResult.addUnsatisfiedConnections(impossible);
+
+		MoveResult bestResult = null;
+		for (MoveResult candidate : results) {
+			if (candidate != null) bestResult = chooseBetter(bestResult, candidate);
+		}
+		return bestResult;
+	}
+
+	private static MoveResult chooseBetter(MoveResult bestResult,
+			MoveResult candidate) {
+		if (bestResult == null) return candidate;
+		int unsatisfied1 = bestResult.getUnsatisifiedConnections().size();
+		int unsatisfied2 = candidate.getUnsatisifiedConnections().size();
+		if (unsatisfied2 < unsatisfied1) {
+			return candidate;
+		} else if (unsatisfied2 == unsatisfied1) {
+			int dist1 = bestResult.getTotalDistance();
+			int dist2 = candidate.getTotalDistance();
+			if (dist2 < dist1) {
+				return candidate;
+			}
 		}
 		return bestResult;
 	}
+
+	/** Returns a bound under which no try can connect everything: the sum,
+	 * over the connections, of the smallest distance bound of any of their
+	 * starting points. */
+	private static int getLowerBound(ArrayList<ConnectionData> connects,
+			HashMap<ConnectionData,List<SearchNode>> initNodes) {
+		long ret = 0;
+		for (ConnectionData conn : connects) {
+			int best = Integer.MAX_VALUE;
+			for (SearchNode n : initNodes.get(conn)) {
+				best = Math.min(best, n.getDistanceBound());
+			}
+			ret += best;
+		}
+		return (int) Math.min(ret, Integer.MAX_VALUE);
+	}
+
+	private static boolean isOptimal(MoveResult result, int bound) {
+		return result.getUnsatisifiedConnections().isEmpty()
+			&& result.getTotalDistance() <= bound;
+	}
+
+	private static synchronized ExecutorService getWorkers() {
+		if (workers == null) {
+			workers = Executors.newFixedThreadPool(WORKERS, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread ret = new Thread(r, "Connector worker");
+					ret.setDaemon(true);
+					return ret;
+				}
+			});
+		}
+		return workers;
+	}
 	
 	private static ArrayList<ConnectionData> pruneImpossible(
 			ArrayList<ConnectionData> connects, AvoidanceMap avoid, int dx, int dy) {
@@ -199,17 +347,17 @@ class Connector {
 	}
 	
 	private static MoveResult tryList(MoveRequest req,
-			MoveGesture gesture, ArrayList<ConnectionData> connects,
-			int dx, int dy, HashMap<ConnectionData,Set<Location>> pathLocs,
-			HashMap<ConnectionData,List<SearchNode>> initNodes, long stopTime) {
-		AvoidanceMap avoid = gesture.getFixedAvoidanceMap().cloneMap();
-		avoid.markAll(gesture.getSelected(), dx, dy);
+			ArrayList<ConnectionData> connects, AvoidanceMap baseAvoid,
+			HashMap<ConnectionData,Set<Location>> pathLocs,
+			HashMap<ConnectionData,List<SearchNode>> initNodes, long stopTime,
+			AtomicBoolean stop) {
+		AvoidanceMap avoid = baseAvoid.overlay();
 
 		ReplacementMap replacements = new ReplacementMap();
 		ArrayList<ConnectionData> unconnected = new ArrayList<ConnectionData>();
 		int totalDistance = 0;
 		for (ConnectionData conn : connects) {
-			if (ConnectorThread.isOverrideRequested()) {
+			if (isAborted(stop)) {
 				return null;
 			}
 			if (System.currentTimeMillis() - stopTime > 0) {
@@ -218,12 +366,12 @@ class Connector {
 			}
 			List<SearchNode> connNodes = initNodes.get(conn);
 			Set<Location> connPathLocs = pathLocs.get(conn);
-			SearchNode n = findShortestPath(connNodes, connPathLocs, avoid);
+			SearchNode n = findShortestPath(connNodes, connPathLocs, avoid, stop);
 			if (n != null) { // normal case - a path was found
 				totalDistance += n.getDistance();
 				ArrayList<Location> path = convertToPath(n);
 				processPath(path, conn, avoid, replacements, connPathLocs);
-			} else if (ConnectorThread.isOverrideRequested()) {
+			} else if (isAborted(stop)) {
 				return null; // search was aborted: return null to indicate this
 			} else {
 				unconnected.add(conn);
@@ -232,15 +380,19 @@ class Connector {
 		return new MoveResult(req, replacements, unconnected, totalDistance);
 	}
 	
+	private static boolean isAborted(AtomicBoolean stop) {
+		return ConnectorThread.isOverrideRequested() || stop.get();
+	}
+	
 	private static SearchNode findShortestPath(List<SearchNode> nodes,
-			Set<Location> pathLocs, AvoidanceMap avoid) {
+			Set<Location> pathLocs, AvoidanceMap avoid, AtomicBoolean stop) {
 		PriorityQueue<SearchNode> q = new PriorityQueue<SearchNode>(nodes);
 		HashSet<SearchNode> visited = new HashSet<SearchNode>();
 		int iters = 0;
 		while (!q.isEmpty() && iters < MAX_SEARCH_ITERATIONS) {
 			iters++;
 			SearchNode n = q.remove();
-			if (iters % 64 == 0 && ConnectorThread.isOverrideRequested()
+			if (iters % 64 == 0 && isAborted(stop)
 					|| n == null) {
 				return null;
 			}
@@ -27,7 +27,7 @@ class ConnectorThread extends Thread {
 	}
 	
 	private Object lock;
-	private transient boolean overrideRequest;
+	private volatile boolean overrideRequest; // read by the Connector workers
 	private MoveRequest nextRequest;
 	private MoveRequest processingRequest;
 	
@@ -32,8 +32,8 @@ class SearchNode implements Comparable<SearchNode> {
 		this.conn = conn;
 		this.dest = dest;
 		this.dist = dist;
-		this.heur = dist + this.getHeuristic();
 		this.extendsWire = extendsWire;
+		this.heur = dist + this.getHeuristic();
 		this.prev = prev;
 	}
 	
@@ -59,6 +59,30 @@ class SearchNode implements Comparable<SearchNode> {
 		if (ret < 0) {
 			ret = Math.abs(dx) + Math.abs(dy);
 		}
+		return ret + getTurnPenalty(dx, dy);
+	}
+	
+	/** Returns a distance that any path from this node to its destination
+	 * reaches at least. Unlike the heuristic, it allows for every step
+	 * along the connection's direction extending the wire. */
+	public int getDistanceBound() {
+		int dx = dest.getX() - loc.getX();
+		int dy = dest.getY() - loc.getY();
+		Direction connDir = conn.getDirection();
+		int ret;
+		if (!extendsWire || connDir == null) {
+			ret = Math.abs(dx) + Math.abs(dy);
+		} else if (connDir == Direction.EAST || connDir == Direction.WEST) {
+			ret = Math.abs(dx) / 10 * 9 + Math.abs(dy);
+		} else {
+			ret = Math.abs(dx) + Math.abs(dy) / 10 * 9;
+		}
+		return ret + getTurnPenalty(dx, dy);
+	}
+	
+	private int getTurnPenalty(int dx, int dy) {
+		Direction curDir = dir;
+		int ret = 0;
 		boolean penalizeDoubleTurn = false;
 		if (curDir == Direction.EAST) {
 			penalizeDoubleTurn = dx < 0;
@@ -3,43 +3,106 @@
 
 package com.cburch.logisim.util;
 
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * Allows immutable objects to be cached in memory in order to reduce
  * the creation of duplicate objects.
+ *
+ * <p>The cache is set-associative: a hash code selects a set of four
+ * slots, any of which may hold the object, and a new object pushes the
+ * oldest of its set out. It may be shared by any number of threads
+ * without locking, as each slot is read and written atomically and the
+ * objects cached are immutable; a lookup racing with an insertion may
+ * only miss, and so create a duplicate.</p>
  */
 public class Cache {
-	private int mask;
-	private Object[] data;
-	
+	/** Tells whether a cached object is the one described by a key, so
+	 * that an object can be looked up without creating it first. */
+	public static interface Matcher {
+		public boolean matches(Object cached, long key0, long key1);
+	}
+
+	private static final int WAYS = 4;
+
+	private final int shift;
+	private final AtomicReferenceArray<Object> data;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
 	public Cache() {
 		this(8);
 	}
+
+	/** Creates a cache of <code>2^logSize</code> sets. */
 	public Cache(int logSize) {
-		if (logSize > 12) logSize = 12;
-		
-		data = new Object[1 << logSize];
-		mask = data.length - 1;
+		if (logSize < 1) logSize = 1;
+		if (logSize > 16) logSize = 16;
+
+		data = new AtomicReferenceArray<Object>(WAYS << logSize);
+		shift = 32 - logSize;
 	}
-	
-	public Object get(int hashCode) {
-		return data[hashCode & mask];
+
+	private int setOf(int hashCode) {
+		return ((hashCode * 0x9E3779B9) >>> shift) * WAYS;
 	}
-	
+
+	/** Returns the cached object matching a key, or null if there is none.
+	 * @param hashCode the hash code of the object sought
+	 * @param key0 passed to the matcher
+	 * @param key1 passed to the matcher
+	 * @param matcher compares the cached objects of the set to the key
+	 */
+	public Object get(int hashCode, long key0, long key1, Matcher matcher) {
+		int base = setOf(hashCode);
+		for (int i = 0; i < WAYS; i++) {
+			Object ret = data.get(base + i);
+			if (ret == null) break; // sets fill from their first slot
+			if (matcher.matches(ret, key0, key1)) {
+				hits.increment();
+				return ret;
+			}
+		}
+		misses.increment();
+		return null;
+	}
+
 	public void put(int hashCode, Object value) {
 		if (value != null) {
-			data[hashCode & mask] = value;
+			int base = setOf(hashCode);
+			for (int i = WAYS - 1; i > 0; i--) {
+				data.lazySet(base + i, data.get(base + i - 1));
+			}
+			data.lazySet(base, value);
 		}
 	}
-	
+
 	public Object get(Object value) {
 		if (value == null) return null;
-		int code = value.hashCode() & mask;
-		Object ret = data[code];
-		if (ret != null && ret.equals(value)) {
-			return ret;
-		} else {
-			data[code] = value;
-			return value;
+		int code = value.hashCode();
+		int base = setOf(code);
+		for (int i = 0; i < WAYS; i++) {
+			Object ret = data.get(base + i);
+			if (ret == null) break;
+			if (ret.equals(value)) {
+				hits.increment();
+				return ret;
+			}
 		}
+		misses.increment();
+		put(code, value);
+		return value;
+	}
+
+	/** Returns how many lookups found their object in the cache. */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/** Returns how many lookups did not find their object, each of them
+	 * typically followed by the creation of a new object. */
+	public long getMissCount() {
+		return misses.sum();
 	}
 }
@@ -11,8 +11,12 @@ import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.wiring.BitLabeledTunnel;
 import com.cburch.logisim.std.wiring.Tunnel;
 import com.cburch.logisim.verilog.file.importer.routing.GridRouter;
+import com.cburch.logisim.verilog.file.importer.routing.LongIntMap;
 import com.cburch.logisim.verilog.file.importer.routing.MstPlanner;
+import com.cburch.logisim.verilog.file.importer.routing.ObstacleIndex;
+import com.cburch.logisim.verilog.file.importer.routing.RouteStats;
 import com.cburch.logisim.verilog.file.importer.routing.RouterUtils;
+import com.cburch.logisim.verilog.file.importer.routing.RoutingContext;
 import com.cburch.logisim.verilog.std.Strings;
 
 import java.awt.*;
@@ -27,61 +31,140 @@ import static com.cburch.logisim.verilog.file.importer.VerilogJsonImporter.GRID;
  * - Check isolation of relevant tokens (N..., names).
  * - Plan MST and route each edge with A* Manhattan avoiding components.
  * - If whole group routes, add wires and remove group's tunnels.
+ * Obstacles are indexed once per circuit in a {@link RoutingContext} and kept up to date
+ * as groups are rewritten.
  */
 public final class BitLabeledTunnelRewriter {
 
     private BitLabeledTunnelRewriter() {}
 
+    // margen alrededor de los wires para que no toquen
+    private static final int WIRE_MARGIN = 1;
+
     /** Rewrite BitLabeledTunnels in the given circuit.
      * @param proj Project (for actions).
      * @param circ Circuit to rewrite.
      * @param g Graphics context (for measuring components).
+     * @return Counters of the A* routes attempted.
      */
-    public static void rewrite(Project proj, Circuit circ, Graphics g) {
-        if (proj == null || circ == null) return;
+    public static RouteStats rewrite(Project proj, Circuit circ, Graphics g) {
+        if (proj == null || circ == null) return new RouteStats();
+        Rewrite rw = prepare(circ, g);
+        rw.plan(g);
+        rw.apply(proj);
+        return rw.stats();
+    }
 
+    /** Reads from the circuit what rewriting it needs: the groups to rewrite and the obstacles.
+     * The returned rewrite may then be planned on another thread, while other circuits are
+     * edited, and applied later on the thread that edits the project.
+     * @param circ Circuit to rewrite.
+     * @param g Graphics context (for measuring components).
+     */
+    public static Rewrite prepare(Circuit circ, Graphics g) {
         // 1) Recolectar túneles
         List<TunnelInfo> all = collectBlt(circ);
-        if (all.isEmpty()) return;
+        if (all.isEmpty()) return new Rewrite(circ, List.of(), null);
 
         // 2) Agrupar por (labelNorm, tokensNorm)
         Map<GroupKey, List<TunnelInfo>> groups = groupByLabelAndSpecs(all);
 
         // 3) Filtrar grupos aislados y con 2 o más miembros
-        List<Map.Entry<GroupKey, List<TunnelInfo>>> rewriteEntries = new ArrayList<>();
+        List<List<TunnelInfo>> rewriteGroups = new ArrayList<>();
         for (Map.Entry<GroupKey, List<TunnelInfo>> e : groups.entrySet()) {
             if (e.getValue().size() < 2) continue;
-            if (isGroupIsolated(e.getKey(), groups)) rewriteEntries.add(e);
+            if (isGroupIsolated(e.getKey(), groups)) rewriteGroups.add(e.getValue());
         }
-        if (rewriteEntries.isEmpty()) return;
+        if (rewriteGroups.isEmpty()) return new Rewrite(circ, List.of(), null);
 
-        // 4) Intentar reescribir cada grupo de forma independiente
-        for (Map.Entry<GroupKey, List<TunnelInfo>> entry : rewriteEntries) {
-            try {
-                replaceGroupWith(proj, circ, g, entry.getValue());
-            } catch (Throwable t) {
-                // No abortar proceso completo por un grupo
-                t.printStackTrace();
+        // 4) Obstáculos (componentes + wires existentes), indexados una sola vez
+        return new Rewrite(circ, rewriteGroups, RoutingContext.build(circ, g, WIRE_MARGIN));
+    }
+
+    /** The rewriting of one circuit, split in a planning step that only computes the
+     * mutations and an apply step that performs them. */
+    public static final class Rewrite {
+        private final Circuit circ;
+        private final List<List<TunnelInfo>> groups;
+        private final RoutingContext ctx;
+        private final List<CircuitMutation> mutations = new ArrayList<>();
+        private final RouteStats stats;
+
+        private Rewrite(Circuit circ, List<List<TunnelInfo>> groups, RoutingContext ctx) {
+            this.circ = circ;
+            this.groups = groups;
+            this.ctx = ctx;
+            this.stats = (ctx != null) ? ctx.stats() : new RouteStats();
+        }
+
+        public Circuit circuit() { return circ; }
+
+        public RouteStats stats() { return stats; }
+
+        /** Routes every group, collecting the mutations; the circuit is left untouched.
+         * @param g Graphics context (for measuring components), not shared with other threads.
+         */
+        public void plan(Graphics g) {
+            if (groups.isEmpty()) return;
+
+            // índice de “reservas” (celdas) para penalizar rutas posteriores del mismo grupo
+            LongIntMap reserved = new LongIntMap();
+
+            GridRouter router = new GridRouter(
+                    GRID,
+                    /*soft*/3, /*hard*/5,
+                    /*costNear*/12, /*costReserved*/6,
+                    ctx, reserved
+            )
+                    .withMaxExpansions(40_000)   // límite duro de nodos expandidos
+                    .withMaxQueue(50_000)        // límite duro de tamaño cola
+                    .withMaxMillis(1200);        // watchdog por ruta (ms)
+
+            // 5) Intentar reescribir cada grupo de forma independiente
+            for (List<TunnelInfo> grp : groups) {
+                reserved.clear();
+                try {
+                    CircuitMutation mut = replaceGroupWith(circ, g, grp, ctx, router, reserved);
+                    if (mut != null) mutations.add(mut);
+                } catch (Throwable t) {
+                    // No abortar proceso completo por un grupo
+                    t.printStackTrace();
+                }
+            }
+        }
+
+        /** Performs the planned mutations, one action per group.
+         * @param proj Project (for actions).
+         */
+        public void apply(Project proj) {
+            for (CircuitMutation mut : mutations) {
+                proj.doAction(mut.toAction(Strings.getter("rewriteBitTunnelsAction")));
             }
+            mutations.clear();
         }
     }
 
-    /** Replaces the given group of tunnels with routed wires using GridRouter.
-     * If routing any edge fails, no changes are applied.
-     * @param proj Project (for actions).
+    /** Plans the replacement of the given group of tunnels with routed wires using GridRouter.
+     * If routing any edge fails, the group's tunnels become plain Tunnels instead.
      * @param circ Circuit to modify.
      * @param g Graphics context (for measuring components).
      * @param grp List of TunnelInfo in the same group.
+     * @param ctx Routing context of the circuit; left matching the circuit afterwards.
+     * @param router Router over the context's obstacles.
+     * @param reserved Cells reserved by the group's routes so far.
+     * @return The mutation to apply, or null if there is nothing to change.
      */
-    private static void replaceGroupWith(Project proj,
-                                         Circuit circ,
+    private static CircuitMutation replaceGroupWith(Circuit circ,
                                          Graphics g,
-                                         List<TunnelInfo> grp) {
-        if (grp == null || grp.size() < 2) return;
+                                         List<TunnelInfo> grp,
+                                         RoutingContext ctx,
+                                         GridRouter router,
+                                         LongIntMap reserved) {
+        if (grp == null || grp.size() < 2) return null;
 
         // Evitar grupos gigantes que disparan combinatoria
         final int MAX_GROUP_SIZE = 24;
-        if (grp.size() > MAX_GROUP_SIZE) return;
+        if (grp.size() > MAX_GROUP_SIZE) return null;
 
         // 1) Preparar bocas y facings
         List<Location> mouths = new ArrayList<>(grp.size());
@@ -99,71 +182,38 @@ public final class BitLabeledTunnelRewriter {
 
         // 2) MST por Manhattan
         List<int[]> edges = MstPlanner.buildMstEdges(mouths);
-        if (edges.isEmpty()) return;
-
-        // 3) Obstáculos: componentes + wires existentes
-        final int WIRE_MARGIN = 1; // margen alrededor de los wires para que no toquen
-        List<Bounds> obstacles = RouterUtils.collectComponentBounds(circ, g, grp);
-        obstacles.addAll(RouterUtils.collectWireBounds(circ, WIRE_MARGIN));
-
-        // índice de “reservas” (celdas) para penalizar rutas posteriores
-        Set<Long> reserved = new HashSet<>();
-
-        GridRouter router = new GridRouter(
-                GRID,
-                /*soft*/3, /*hard*/5,
-                /*costNear*/12, /*costReserved*/6,
-                obstacles, reserved
-        )
-                .withMaxExpansions(40_000)   // límite duro de nodos expandidos
-                .withMaxQueue(50_000)        // límite duro de tamaño cola
-                .withMaxMillis(1200);        // watchdog por ruta (ms)
+        if (edges.isEmpty()) return null;
 
-        // 4) Planificación (agregamos obstáculos dinámicos por cada ruta ya trazada)
-        List<Wire> planned = new ArrayList<>(edges.size() * 4);
-        boolean ok = true;
-
-        for (int[] e : edges) {
-            int i = e[0], j = e[1];
-            Location mi = mouths.get(i);
-            Location mj = mouths.get(j);
-
-            Location si = RouterUtils.launchPad(mi, facings.get(i), GRID, 1);
-            Location tj = RouterUtils.launchPad(mj, facings.get(j), GRID, 1);
-
-            // Fallback rápido: intenta HV y VH recto evitando OBSTÁCULOS (incluyen wires)
-            List<Location> poly = RouterUtils.tryManhattanClear(si, tj, obstacles, /*clearHard*/5);
-            if (poly == null) {
-                // A* acotado con bbox alrededor de si–tj y obstáculos actuales (incl. wires)
-                poly = router.route(si, tj);
-            }
-            if (poly == null || poly.size() < 2) { ok = false; break; }
-
-            // Reservar la ruta para penalizar futuras y añadir obstáculos dinámicos
-            poly = RouterUtils.simplifyPolyline(poly, obstacles, /*clearHard*/5);
-            RouterUtils.markReservedPath(reserved, poly, GRID);
-            obstacles.addAll(RouterUtils.polylineAsWireBounds(poly, WIRE_MARGIN));
+        // 3) Obstáculos: los del contexto, sin los túneles del propio grupo
+        List<Component> grpComps = new ArrayList<>(grp.size());
+        for (TunnelInfo ti : grp) grpComps.add(ti.comp());
+        ObstacleIndex obstacles = ctx.obstacles();
+        int mark = obstacles.size();
+        ctx.hide(grpComps);
 
-            // También los “puentes” desde la boca hasta el pad
-            obstacles.addAll(RouterUtils.segmentAsWireBounds(mi, si, WIRE_MARGIN));
-            obstacles.addAll(RouterUtils.segmentAsWireBounds(tj, mj, WIRE_MARGIN));
-
-            // Conectar: boca->pad, polyline, pad->boca
-            planned.add(Wire.create(mi, si));
-            for (int k = 0; k + 1 < poly.size(); k++) {
-                planned.add(Wire.create(poly.get(k), poly.get(k + 1)));
-            }
-            planned.add(Wire.create(tj, mj));
+        // 4) Planificación (agregamos obstáculos dinámicos por cada ruta ya trazada)
+        List<Wire> planned;
+        try {
+            planned = planGroup(mouths, facings, edges, obstacles, router, reserved);
+        } catch (RuntimeException ex) {
+            obstacles.removeSince(mark);
+            ctx.show(grpComps);
+            throw ex;
         }
 
-        if (ok) {
+        if (planned != null) {
             CircuitMutation mut = new CircuitMutation(circ);
             for (Wire w : planned) mut.add(w);
             for (TunnelInfo ti : grp) mut.remove(ti.comp());
-            proj.doAction(mut.toAction(Strings.getter("rewriteBitTunnelsAction")));
+            return mut;
         } else {
+            // las rutas parciales no se agregan al circuito
+            obstacles.removeSince(mark);
+
             // Fallback: convertir BLTs del grupo a Tunnel "plain" cuando no se pudo rutear como wires
             CircuitMutation mut = new CircuitMutation(circ);
+            List<Component> kept = new ArrayList<>(grpComps);
+            List<Component> added = new ArrayList<>(grp.size());
 
             for (TunnelInfo ti : grp) {
                 try {
@@ -203,18 +253,68 @@ public final class BitLabeledTunnelRewriter {
                     Location place = Location.create(mouth.getX() - offX, mouth.getY() - offY);
 
                     // Encolar: quitar BLT y añadir Tunnel
+                    Component tunnel = tunnelF.createComponent(place, a);
                     mut.remove(old);
-                    mut.add(tunnelF.createComponent(place, a));
+                    mut.add(tunnel);
+                    kept.remove(old);
+                    added.add(tunnel);
                 } catch (Throwable t) {
                     // falla local: continuamos con el resto
                     t.printStackTrace();
                 }
             }
 
-            if (!mut.isEmpty()) {
-                proj.doAction(mut.toAction(Strings.getter("rewriteBitTunnelsAction")));
+            // el contexto sigue al circuito: vuelven los BLT que quedaron y entran los Tunnel
+            ctx.show(kept);
+            for (Component c : added) ctx.addComponent(c, g);
+            return mut.isEmpty() ? null : mut;
+        }
+    }
+
+
+    /** Routes every MST edge of a group, adding each route to the obstacles as it goes.
+     * @return The wires to add, or null if some edge could not be routed.
+     */
+    private static List<Wire> planGroup(List<Location> mouths,
+                                        List<Direction> facings,
+                                        List<int[]> edges,
+                                        ObstacleIndex obstacles,
+                                        GridRouter router,
+                                        LongIntMap reserved) {
+        List<Wire> planned = new ArrayList<>(edges.size() * 4);
+        for (int[] e : edges) {
+            int i = e[0], j = e[1];
+            Location mi = mouths.get(i);
+            Location mj = mouths.get(j);
+
+            Location si = RouterUtils.launchPad(mi, facings.get(i), GRID, 1);
+            Location tj = RouterUtils.launchPad(mj, facings.get(j), GRID, 1);
+
+            // Fallback rápido: intenta HV y VH recto evitando OBSTÁCULOS (incluyen wires)
+            List<Location> poly = RouterUtils.tryManhattanClear(si, tj, obstacles, /*clearHard*/5);
+            if (poly == null) {
+                // A* acotado con bbox alrededor de si–tj y obstáculos actuales (incl. wires)
+                poly = router.route(si, tj);
             }
+            if (poly == null || poly.size() < 2) return null;
+
+            // Reservar la ruta para penalizar futuras y añadir obstáculos dinámicos
+            poly = RouterUtils.simplifyPolyline(poly, obstacles, /*clearHard*/5);
+            RouterUtils.markReservedPath(reserved, poly, GRID);
+            obstacles.addAll(RouterUtils.polylineAsWireBounds(poly, WIRE_MARGIN));
+
+            // También los “puentes” desde la boca hasta el pad
+            obstacles.addAll(RouterUtils.segmentAsWireBounds(mi, si, WIRE_MARGIN));
+            obstacles.addAll(RouterUtils.segmentAsWireBounds(tj, mj, WIRE_MARGIN));
+
+            // Conectar: boca->pad, polyline, pad->boca
+            planned.add(Wire.create(mi, si));
+            for (int k = 0; k + 1 < poly.size(); k++) {
+                planned.add(Wire.create(poly.get(k), poly.get(k + 1)));
+            }
+            planned.add(Wire.create(tj, mj));
         }
+        return planned;
     }
 
     // === Data model ============================================================
@@ -10,6 +10,7 @@ import com.cburch.logisim.verilog.comp.impl.VerilogCell;
 import com.cburch.logisim.verilog.comp.impl.VerilogModuleBuilder;
 import com.cburch.logisim.verilog.comp.impl.VerilogModuleImpl;
 import com.cburch.logisim.verilog.file.Strings;
+import com.cburch.logisim.verilog.file.importer.routing.RouteStats;
 import com.cburch.logisim.verilog.file.jsonhdlr.YosysJsonNetlist;
 import com.cburch.logisim.verilog.file.jsonhdlr.YosysModuleDTO;
 import com.cburch.logisim.verilog.file.ui.ImportProgress;
@@ -27,10 +28,16 @@ import org.eclipse.elk.graph.ElkNode;
 
 import java.awt.Graphics;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.cburch.logisim.verilog.std.adapters.ModuleBlackBoxAdapter.circuitHasAnyComponent;
 
 final class ImportPipeline {
+    // a partir de cuántos endpoints se informa el tamaño del índice de nets
+    private static final int BIG_MODULE_REFS = 20_000;
 
     private final Project proj;
     private final VerilogModuleBuilder builder;
@@ -44,6 +51,7 @@ final class ImportPipeline {
     private final ConstantPlacer constants;
     private final SpecBuilder specs;
     private final ImportProgress progress;
+    private int threads = 1;
 
     /**
      * Creates a new import pipeline.
@@ -90,6 +98,17 @@ final class ImportPipeline {
         };
     }
 
+    /** Sets how many threads run the CPU-heavy phases of the import (building the module
+     * representation and indexes, ELK layout, routing plan) for several modules at once.
+     * With 1, the default, modules are imported strictly one after another.
+     * @param n Number of threads.
+     * @return This pipeline.
+     */
+    ImportPipeline withThreads(int n) {
+        this.threads = Math.max(1, n);
+        return this;
+    }
+
     /** Runs the import pipeline on the given netlist, importing all modules.
      * @return The main module's circuit.
      */
@@ -97,7 +116,6 @@ final class ImportPipeline {
         Graphics g = ImporterUtils.Geom.makeScratchGraphics();
 
         // Prepare module circuits
-        Circuit main = null;
         Map<String, Circuit> byModule = new HashMap<>();
 
         // recollect modules first
@@ -113,89 +131,254 @@ final class ImportPipeline {
         for (YosysModuleDTO dto : modules) {
             byModule.put(dto.name(), ImporterUtils.Components.ensureCircuit(proj, dto.name()));
         }
+        Circuit main = modules.isEmpty() ? null : byModule.get(modules.get(0).name());
 
         // Import modules
+        if (threads > 1 && modules.size() > 1) {
+            runConcurrently(modules, byModule, g);
+        } else {
+            runSequentially(modules, byModule, g);
+        }
+
+        g.dispose();
+        progress.onDone();
+        return main;
+    }
+
+    /** Imports the modules one after another, each through all the phases. */
+    private void runSequentially(List<YosysModuleDTO> modules, Map<String, Circuit> byModule, Graphics g) {
         for (YosysModuleDTO dto : modules) {
             // "Importando módulo: X"
             progress.onPhase(Strings.get("import.pipeline.phase.module", dto.name()));
 
-            if (main == null) {
-                main = byModule.get(dto.name());
-            }
-
             try {
-                // 1) build representation
-                progress.onPhase(Strings.get("import.pipeline.phase.build", dto.name()));
-                VerilogModuleImpl mod = builder.buildModule(dto);
-                ModuleNetIndex netIndex = builder.buildNetIndex(mod);
-                MemoryIndex memIndex = builder.buildMemoryIndex(mod);
-                memoryAdapter.beginModule(memIndex, mod);
-
-                // memory alias map
-                Map<VerilogCell, VerilogCell> alias = ImporterUtils.MemoryAlias.build(mod, memIndex);
-
-                // 2) layout
-                progress.onPhase(Strings.get("import.pipeline.phase.layout", dto.name()));
-                LayoutBuilder.Result elk = LayoutBuilder.build(proj, mod, netIndex, sizer, alias);
+                // 1-2) build representation + layout
+                Prepared p = prepare(dto, true);
                 try {
-                    LayoutRunner.run(elk.root);
-                    LayoutUtils.applyLayoutAndClamp(elk.root, layout.minX(), layout.minY());
-
                     Circuit target = byModule.get(dto.name());
-                    Map<VerilogCell, InstanceHandle> cellHandles = new HashMap<>();
-                    Map<ModulePort, LayoutServices.PortAnchor> topAnchors = new HashMap<>();
 
-                    // 3) pins
-                    progress.onPhase(Strings.get("import.pipeline.phase.pins", dto.name()));
-                    layout.addModulePins(proj, target, mod, elk, g, topAnchors);
-
-                    // 4) cells
-                    progress.onPhase(Strings.get("import.pipeline.phase.cells", dto.name()));
-                    for (VerilogCell cell : mod.cells()) {
-                        if (alias.containsKey(cell)) continue;
-                        ElkNode n = elk.cellNode.get(cell);
-                        int x = (n == null) ? layout.minX() : ImporterUtils.Geom.snap((int) Math.round(n.getX()));
-                        int y = (n == null) ? layout.minY() : ImporterUtils.Geom.snap((int) Math.round(n.getY()));
-                        InstanceHandle h = adapter.create(proj, target, g, cell,
-                                Location.create(x + layout.separationInputCells(), y + 10)
-                        );
-                        cellHandles.put(cell, h);
-                    }
-
-                    // 5) tunnels + constants
-                    progress.onPhase(Strings.get("import.pipeline.phase.tunnels", dto.name()));
-                    ImportBatch batch = new ImportBatch(target);
-                    tunnels.place(batch, mod, cellHandles, topAnchors, g, specs);
-                    constants.place(batch, proj, mod, cellHandles, topAnchors, g, specs);
-                    batch.commit(proj, "addComponentsFromImportAction");
+                    // 3-5) pins, cells, tunnels + constants
+                    place(dto, p, target, g);
 
                     // 6) rewrite tunnels
                     progress.onPhase(Strings.get("import.pipeline.phase.rewrite", dto.name()));
                     try {
-                        BitLabeledTunnelRewriter.rewrite(proj, target, g);
+                        reportRoutes(dto.name(), BitLabeledTunnelRewriter.rewrite(proj, target, g));
                     } catch (Throwable t) {
                         t.printStackTrace();
                         progress.onError(Strings.get("import.pipeline.error.rewrite", dto.name()), t);
                     }
-
-                    alias.clear();
-                    cellHandles.clear();
-                    topAnchors.clear();
                 } finally {
-                    try { org.eclipse.emf.ecore.util.EcoreUtil.delete(elk.root, true); } catch (Exception ignored) {}
-                    elk.cellNode.clear();
-                    elk.portNode.clear();
-                    elk.root = null;
+                    release(p.elk());
                 }
             } catch (Throwable t) {
                 t.printStackTrace();
                 progress.onError(Strings.get("import.pipeline.error.module", dto.name()), t);
             }
         }
+    }
 
-        g.dispose();
-        progress.onDone();
-        return main;
+    /**
+     * Imports the modules with the CPU-heavy phases running on a pool of {@link #threads}:
+     * - Los módulos se construyen y se layoutean (ELK) en el pool, a lo sumo tantos por delante
+     *   de la colocación como hilos hay, para acotar los grafos ELK vivos a la vez.
+     * - La colocación (pins, celdas, túneles) sigue en orden de módulo en este hilo, a medida
+     *   que terminan los layouts, y es lo único que modifica los circuitos.
+     * - El plan de ruteo de cada módulo corre en el pool apenas se coloca; las mutaciones
+     *   resultantes se aplican al final, también en orden y en este hilo.
+     * Progress is only reported from this thread, in module order.
+     */
+    private void runConcurrently(List<YosysModuleDTO> modules, Map<String, Circuit> byModule, Graphics g) {
+        int ahead = Math.min(threads, modules.size());
+        ExecutorService pool = Executors.newFixedThreadPool(ahead, r -> {
+            Thread t = new Thread(r, "verilog-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            // 1-2) build representation + layout, for the first modules; each placed module
+            // makes room for the next one
+            List<Future<Prepared>> prepared = new ArrayList<>(modules.size());
+            for (int i = 0; i < ahead; i++) {
+                YosysModuleDTO dto = modules.get(i);
+                prepared.add(pool.submit(() -> prepare(dto, false)));
+            }
+
+            // 3-5) placement in module order; the routing plan is queued right after
+            List<Future<BitLabeledTunnelRewriter.Rewrite>> rewrites = new ArrayList<>(modules.size());
+            for (int i = 0; i < modules.size(); i++) {
+                YosysModuleDTO dto = modules.get(i);
+                progress.onPhase(Strings.get("import.pipeline.phase.module", dto.name()));
+                progress.onPhase(Strings.get("import.pipeline.phase.build", dto.name()));
+
+                Future<BitLabeledTunnelRewriter.Rewrite> rewrite = null;
+                try {
+                    Prepared p = await(prepared.get(i));
+                    reportIndex(dto.name(), p.mod(), p.netIndex(), p.indexMillis());
+                    progress.onPhase(Strings.get("import.pipeline.phase.layout", dto.name()));
+                    try {
+                        Circuit target = byModule.get(dto.name());
+                        place(dto, p, target, g);
+
+                        // 6) routing plan, off this thread
+                        progress.onPhase(Strings.get("import.pipeline.phase.rewrite", dto.name()));
+                        try {
+                            BitLabeledTunnelRewriter.Rewrite rw = BitLabeledTunnelRewriter.prepare(target, g);
+                            rewrite = pool.submit(() -> plan(rw));
+                        } catch (Throwable t) {
+                            t.printStackTrace();
+                            progress.onError(Strings.get("import.pipeline.error.rewrite", dto.name()), t);
+                        }
+                    } finally {
+                        release(p.elk());
+                    }
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                    progress.onError(Strings.get("import.pipeline.error.module", dto.name()), t);
+                }
+                rewrites.add(rewrite);
+
+                if (i + ahead < modules.size()) {
+                    YosysModuleDTO next = modules.get(i + ahead);
+                    prepared.add(pool.submit(() -> prepare(next, false)));
+                }
+            }
+
+            // 6) apply the planned rewrites, in module order
+            for (int i = 0; i < modules.size(); i++) {
+                Future<BitLabeledTunnelRewriter.Rewrite> rewrite = rewrites.get(i);
+                if (rewrite == null) continue;
+                String name = modules.get(i).name();
+                try {
+                    BitLabeledTunnelRewriter.Rewrite rw = await(rewrite);
+                    rw.apply(proj);
+                    reportRoutes(name, rw.stats());
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                    progress.onError(Strings.get("import.pipeline.error.rewrite", name), t);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** What phases 1-2 produce for a module: its representation and its layout. */
+    private record Prepared(VerilogModuleImpl mod,
+                            ModuleNetIndex netIndex,
+                            long indexMillis,
+                            MemoryIndex memIndex,
+                            Map<VerilogCell, VerilogCell> alias,
+                            LayoutBuilder.Result elk) { }
+
+    /** Phases 1-2: builds the module representation and its indexes, and lays it out with ELK.
+     * No circuit is touched, so several modules can be prepared at once.
+     * @param dto Module to prepare.
+     * @param report Whether to report the phases (only from the importing thread).
+     */
+    private Prepared prepare(YosysModuleDTO dto, boolean report) {
+        // 1) build representation
+        if (report) progress.onPhase(Strings.get("import.pipeline.phase.build", dto.name()));
+        long start = System.nanoTime();
+        VerilogModuleImpl mod = builder.buildModule(dto);
+        ModuleNetIndex netIndex = builder.buildNetIndex(mod);
+        MemoryIndex memIndex = builder.buildMemoryIndex(mod);
+        long indexMillis = (System.nanoTime() - start) / 1_000_000;
+        if (report) reportIndex(dto.name(), mod, netIndex, indexMillis);
+
+        // memory alias map
+        Map<VerilogCell, VerilogCell> alias = ImporterUtils.MemoryAlias.build(mod, memIndex);
+
+        // 2) layout
+        if (report) progress.onPhase(Strings.get("import.pipeline.phase.layout", dto.name()));
+        LayoutBuilder.Result elk = LayoutBuilder.build(proj, mod, netIndex, sizer, alias);
+        try {
+            LayoutRunner.run(elk.root);
+            LayoutUtils.applyLayoutAndClamp(elk.root, layout.minX(), layout.minY());
+        } catch (RuntimeException | Error e) {
+            release(elk);
+            throw e;
+        }
+        return new Prepared(mod, netIndex, indexMillis, memIndex, alias, elk);
+    }
+
+    /** Phases 3-5: adds the pins, cells, tunnels and constants of a prepared module to its circuit. */
+    private void place(YosysModuleDTO dto, Prepared p, Circuit target, Graphics g) {
+        VerilogModuleImpl mod = p.mod();
+        LayoutBuilder.Result elk = p.elk();
+        memoryAdapter.beginModule(p.memIndex(), mod);
+
+        Map<VerilogCell, InstanceHandle> cellHandles = new HashMap<>();
+        Map<ModulePort, LayoutServices.PortAnchor> topAnchors = new HashMap<>();
+
+        // 3) pins
+        progress.onPhase(Strings.get("import.pipeline.phase.pins", dto.name()));
+        layout.addModulePins(proj, target, mod, elk, g, topAnchors);
+
+        // 4) cells
+        progress.onPhase(Strings.get("import.pipeline.phase.cells", dto.name()));
+        for (VerilogCell cell : mod.cells()) {
+            if (p.alias().containsKey(cell)) continue;
+            ElkNode n = elk.cellNode.get(cell);
+            int x = (n == null) ? layout.minX() : ImporterUtils.Geom.snap((int) Math.round(n.getX()));
+            int y = (n == null) ? layout.minY() : ImporterUtils.Geom.snap((int) Math.round(n.getY()));
+            InstanceHandle h = adapter.create(proj, target, g, cell,
+                    Location.create(x + layout.separationInputCells(), y + 10)
+            );
+            cellHandles.put(cell, h);
+        }
+
+        // 5) tunnels + constants
+        progress.onPhase(Strings.get("import.pipeline.phase.tunnels", dto.name()));
+        ImportBatch batch = new ImportBatch(target);
+        tunnels.place(batch, mod, cellHandles, topAnchors, g, specs);
+        constants.place(batch, proj, mod, cellHandles, topAnchors, g, specs);
+        batch.commit(proj, "addComponentsFromImportAction");
+    }
+
+    /** Plans a rewrite on a pool thread, with a Graphics of its own. */
+    private static BitLabeledTunnelRewriter.Rewrite plan(BitLabeledTunnelRewriter.Rewrite rw) {
+        Graphics g = ImporterUtils.Geom.makeScratchGraphics();
+        try {
+            rw.plan(g);
+        } finally {
+            g.dispose();
+        }
+        return rw;
+    }
+
+    private void reportRoutes(String module, RouteStats routes) {
+        if (routes.attempted() > 0) {
+            progress.onPhase(Strings.get("import.pipeline.rewrite.stats", module,
+                    "" + routes.attempted(), "" + routes.routed(), "" + routes.timedOut()));
+        }
+    }
+
+    /** Reports the size of a big module's net index and how long building it took. */
+    private void reportIndex(String module, VerilogModuleImpl mod, ModuleNetIndex netIndex, long millis) {
+        if (netIndex.refCount() < BIG_MODULE_REFS) return;
+        progress.onPhase(Strings.get("import.pipeline.index.stats", module,
+                "" + mod.cells().size(), "" + netIndex.netCount(), "" + netIndex.refCount(),
+                "" + millis, "" + (netIndex.estimatedBytes() + 1023) / 1024));
+    }
+
+    private static void release(LayoutBuilder.Result elk) {
+        try { org.eclipse.emf.ecore.util.EcoreUtil.delete(elk.root, true); } catch (Exception ignored) {}
+        elk.cellNode.clear();
+        elk.portNode.clear();
+        elk.root = null;
+    }
+
+    /** Waits for a task, rethrowing what it threw. */
+    private static <T> T await(Future<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            if (cause instanceof Error err) throw err;
+            throw e;
+        }
     }
 
     /** Materializes a single module by name, if it exists in the netlist and its circuit is empty.
@@ -211,9 +394,11 @@ final class ImportPipeline {
 
             try {
                 progress.onPhase(Strings.get("import.pipeline.phase.build", moduleName));
+                long start = System.nanoTime();
                 VerilogModuleImpl mod = builder.buildModule(dto);
                 ModuleNetIndex netIndex = builder.buildNetIndex(mod);
                 MemoryIndex memIndex = builder.buildMemoryIndex(mod);
+                reportIndex(moduleName, mod, netIndex, (System.nanoTime() - start) / 1_000_000);
                 memoryAdapter.beginModule(memIndex, mod);
                 Map<VerilogCell, VerilogCell> alias = ImporterUtils.MemoryAlias.build(mod, memIndex);
 
@@ -254,7 +439,11 @@ final class ImportPipeline {
 
                     progress.onPhase(Strings.get("import.pipeline.phase.rewrite", moduleName));
                     try {
-                        BitLabeledTunnelRewriter.rewrite(proj, target, g);
+                        RouteStats routes = BitLabeledTunnelRewriter.rewrite(proj, target, g);
+                        if (routes.attempted() > 0) {
+                            progress.onPhase(Strings.get("import.pipeline.rewrite.stats", moduleName,
+                                    "" + routes.attempted(), "" + routes.routed(), "" + routes.timedOut()));
+                        }
                     } catch (Throwable t) {
                         t.printStackTrace();
                         progress.onError(Strings.get("import.pipeline.error.rewrite", moduleName), t);
@@ -516,12 +516,12 @@ public class ImporterUtils {
     static void printNets(VerilogModuleImpl mod, ModuleNetIndex idx) {
         System.out.println("  Nets:");
         for (int netId : idx.netIds()) {
-            int[] refs = idx.endpointsOf(netId).stream().mapToInt(i -> i).toArray();
+            long[] refs = idx.endpointsOf(netId);
 
             var topStrs  = new ArrayList<String>();
             var cellStrs = new ArrayList<String>();
 
-            for (int ref : refs) {
+            for (long ref : refs) {
                 int bit = ModuleNetIndex.bitIdx(ref);
                 if (ModuleNetIndex.isTop(ref)) {
                     int portIdx = ModuleNetIndex.ownerIdx(ref);
@@ -83,11 +83,7 @@ final class TunnelPlacer {
             K key = new K(finalLoc.getX(), finalLoc.getY(), csvKey, w, facing, attrOutput);
             if (!placed.add(key)) continue;
 
-            if (w <= 32) {
-                createBitLabeledTunnel(batch, anc.loc(), w, bitSpecs, label, facing, attrOutput, finalLoc);
-            } else {
-                placeOverflowTunnels(batch, anc.loc(), w, bitSpecs, facing, attrOutput, finalLoc);
-            }
+            createBitLabeledTunnel(batch, anc.loc(), w, bitSpecs, label, facing, attrOutput, finalLoc);
         }
 
         /* ===== Celdas ===== */
@@ -128,11 +124,7 @@ final class TunnelPlacer {
                 K key = new K(finalLoc.getX(), finalLoc.getY(), csvKey, w, facing, attrOutput);
                 if (!placed.add(key)) continue;
 
-                if (w <= 32) {
-                    createBitLabeledTunnel(batch, pin, w, bitSpecs, label, facing, attrOutput, finalLoc);
-                } else {
-                    placeOverflowTunnels(batch, pin, w, bitSpecs, facing, attrOutput, finalLoc);
-                }
+                createBitLabeledTunnel(batch, pin, w, bitSpecs, label, facing, attrOutput, finalLoc);
             }
         }
     }
@@ -276,78 +268,4 @@ final class TunnelPlacer {
             batch.add(bltFactory.createComponent(tunLoc, a));
         } catch (Exception ignored) { }
     }
-
-    /* ===================== Overflow helpers ===================== */
-
-    private void placeOverflowTunnels(ImportBatch batch,
-                                      Location mouth,
-                                      int width,
-                                      List<String> specs,
-                                      Direction facing,
-                                      boolean attrOutput,
-                                      Location tunnelPinLoc) {
-        final int LOW = 32;
-        final int wEff = Math.max(1, width);
-        final int lowCount = Math.min(LOW, wEff);
-        final int rest = Math.max(0, wEff - lowCount);
-
-        List<String> safe = new ArrayList<>(wEff);
-        for (int i = 0; i < wEff; i++) {
-            safe.add(i < specs.size() ? nonNullTrim(specs.get(i)) : "x");
-        }
-
-        // bloque principal
-        List<String> lowSpecs = safe.subList(0, lowCount);
-        String lblLow = SpecBuilder.makePrettyLabel(lowSpecs);
-        createBitLabeledTunnel(batch, mouth, lowCount, lowSpecs, lblLow, facing, attrOutput, tunnelPinLoc);
-
-        if (rest > 0) {
-            // lo tiramos más atrás
-            Location side = ImporterUtils.Geom.stepFrom(tunnelPinLoc, facing, -3 * grid);
-            List<String> restSpecs = new ArrayList<>(rest);
-            for (int i = 0; i < rest; i++) {
-                restSpecs.add(safe.get(lowCount + i));
-            }
-            String lblRest = SpecBuilder.makePrettyLabel(restSpecs);
-            createBltDecorated(batch, side, rest, restSpecs, lblRest, facing, attrOutput, ">32 bits");
-        }
-    }
-
-    private void createBltDecorated(ImportBatch batch,
-                                    Location where,
-                                    int width,
-                                    List<String> bitSpecs,
-                                    String label,
-                                    Direction facing,
-                                    boolean attrOutput,
-                                    String suffixNote) {
-        try {
-            BitLabeledTunnel bltFactory = BitLabeledTunnel.FACTORY;
-            AttributeSet a = bltFactory.createAttributeSet();
-            a.setValue(StdAttr.WIDTH, BitWidth.create(Math.max(1, width)));
-            a.setValue(BitLabeledTunnel.BIT_SPECS, String.join(",", bitSpecs));
-            a.setValue(BitLabeledTunnel.ATTR_OUTPUT, attrOutput);
-            a.setValue(StdAttr.FACING, facing);
-
-            String lbl = (label == null ? "" : label.trim());
-            if (!lbl.isEmpty() && suffixNote != null && !suffixNote.isBlank()) {
-                lbl = lbl + " " + suffixNote;
-            } else if (lbl.isEmpty() && suffixNote != null && !suffixNote.isBlank()) {
-                lbl = suffixNote;
-            }
-            if (!lbl.isBlank()) a.setValue(StdAttr.LABEL, lbl);
-
-            Component probe = bltFactory.createComponent(Location.create(0, 0), a);
-            EndData end0 = probe.getEnd(0);
-            int offX = end0.getLocation().getX() - probe.getLocation().getX();
-            int offY = end0.getLocation().getY() - probe.getLocation().getY();
-            Location tunLoc = Location.create(where.getX() - offX, where.getY() - offY);
-
-            batch.add(bltFactory.createComponent(tunLoc, a));
-        } catch (Exception ignored) { }
-    }
-
-    private static String nonNullTrim(String s) {
-        return (s == null) ? "x" : s.trim();
-    }
 }
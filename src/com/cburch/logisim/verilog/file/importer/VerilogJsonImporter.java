@@ -38,6 +38,8 @@ public final class VerilogJsonImporter {
     public static final int MIN_Y = 80;
     static final int SEPARATION_INPUT_CELLS = 150;
     static final int PAD_X = SEPARATION_INPUT_CELLS + 100;
+    // hilos para construir y layoutear módulos a la vez
+    static final int IMPORT_THREADS = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
 
     private final CellFactoryRegistry registry;
     private final VerilogModuleBuilder builder;
@@ -123,7 +125,7 @@ public final class VerilogJsonImporter {
                         new ConstantPlacer(GRID),
                         new SpecBuilder(xWarnings),
                         dlg
-                );
+                ).withThreads(IMPORT_THREADS);
 
                 // import main module and related modules
                 dlg.onPhase(Strings.get("import.json.importing.modules"));
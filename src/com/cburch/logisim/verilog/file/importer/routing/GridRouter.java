@@ -1,10 +1,8 @@
 package com.cburch.logisim.verilog.file.importer.routing;
 
-import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.verilog.file.importer.ImporterUtils;
 
-import java.awt.*;
 import java.util.*;
 import java.util.List;
 
@@ -14,11 +12,18 @@ import java.util.List;
  * - Permite cruzar otros wires (no se consideran obstáculos duros).
  * - Evita componentes (obstáculos) con clearance “duro” y penaliza cercanía con clearance “blando”.
  * - Soporta “reservas” (celdas caras) para desincentivar rutar por encima de rutas previas.
+ * - Consulta los obstáculos en el {@link ObstacleIndex} del {@link RoutingContext}, y reutiliza
+ *   sus mapas de búsqueda (sin boxing) de una ruta a la siguiente.
  */
 public final class GridRouter {
     private final int grid, clearSoft, clearHard, costNear, costReserved;
-    private final List<Bounds> obstacles;
-    private final Set<Long> reserved;
+    private final ObstacleIndex obstacles;
+    private final LongIntMap reserved;
+    private final RouteStats stats;
+
+    // estado de la búsqueda, reutilizado entre rutas
+    private final LongIntMap dist = new LongIntMap(1 << 12);
+    private final LongIntMap via = new LongIntMap(1 << 12); // dirección con la que se llegó a cada celda
 
     // límites
     private int maxExpansions = 40000;
@@ -26,14 +31,15 @@ public final class GridRouter {
     private long maxMillis = 1200;
 
     public GridRouter(int grid, int clearSoft, int clearHard, int costNear, int costReserved,
-                      List<Bounds> obstacles, Set<Long> reserved) {
+                      RoutingContext ctx, LongIntMap reserved) {
         this.grid = Math.max(1, grid);
         this.clearSoft = Math.max(0, clearSoft);
         this.clearHard = Math.max(this.clearSoft, clearHard);
         this.costNear = Math.max(0, costNear);
         this.costReserved = Math.max(0, costReserved);
-        this.obstacles = (obstacles == null) ? List.of() : obstacles;
-        this.reserved = (reserved == null) ? new HashSet<>() : reserved;
+        this.obstacles = ctx.obstacles();
+        this.stats = ctx.stats();
+        this.reserved = (reserved == null) ? new LongIntMap() : reserved;
     }
 
     public GridRouter withMaxExpansions(int v) { this.maxExpansions = Math.max(1000, v); return this; }
@@ -41,111 +47,108 @@ public final class GridRouter {
     public GridRouter withMaxMillis(long v)    { this.maxMillis = Math.max(100, v); return this; }
 
     public List<Location> route(Location s, Location t) {
+        stats.countAttempt();
         Location src = snap(s);
         Location dst = snap(t);
 
         // Bounding box de búsqueda con margen
-        Rectangle bbox = makeBBox(src, dst, /*pad*/ 120); // 120 px ~ 12 celdas a grid 10
+        final int pad = 120; // 120 px ~ 12 celdas a grid 10
+        int bx0 = Math.min(src.getX(), dst.getX()) - pad;
+        int bx1 = Math.max(src.getX(), dst.getX()) + pad;
+        int by0 = Math.min(src.getY(), dst.getY()) - pad;
+        int by1 = Math.max(src.getY(), dst.getY()) + pad;
 
         PriorityQueue<Node> pq = new PriorityQueue<>(Comparator.comparingInt(n -> n.f));
-        Map<Long, Integer> dist = new HashMap<>();
-        Map<Long, Long> parent = new HashMap<>();
+        dist.clear();
+        via.clear();
 
+        int tx = dst.getX(), ty = dst.getY();
         long keyS = key(src), keyT = key(dst);
-        pq.add(new Node(src, 0, h(src, dst), -1));
+        pq.add(new Node(src.getX(), src.getY(), 0, h(src.getX(), src.getY(), tx, ty), -1));
         dist.put(keyS, 0);
-        parent.put(keyS, -1L);
-
-        int[] dx = { grid, -grid, 0, 0 };
-        int[] dy = { 0, 0, grid, -grid };
+        via.put(keyS, -1);
 
         int expansions = 0;
         long deadline = System.currentTimeMillis() + maxMillis;
 
-        while (!pq.isEmpty()) {
-            if (expansions > maxExpansions) return null;
-            if (pq.size() > maxQueue) return null;
-            if (System.currentTimeMillis() > deadline) return null;
+        try {
+            while (!pq.isEmpty()) {
+                if (expansions > maxExpansions || pq.size() > maxQueue) {
+                    stats.countExhausted();
+                    return null;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    stats.countTimedOut();
+                    return null;
+                }
 
-            Node cur = pq.poll();
-            assert cur != null;
-            if (cur.p.equals(dst)) break;
+                Node cur = pq.poll();
+                assert cur != null;
+                if (cur.x == tx && cur.y == ty) break;
 
-            expansions++;
+                expansions++;
 
-            for (int dir = 0; dir < 4; dir++) {
-                Location np = Location.create(cur.p.getX() + dx[dir], cur.p.getY() + dy[dir]);
-                if (!bbox.contains(np.getX(), np.getY())) continue;
-                if (blocked(np)) continue;
+                for (int dir = 0; dir < 4; dir++) {
+                    int nx = cur.x + DX[dir] * grid;
+                    int ny = cur.y + DY[dir] * grid;
+                    if (nx < bx0 || nx > bx1 || ny < by0 || ny > by1) continue;
+                    if (blocked(nx, ny)) continue;
 
-                int stepCost = 10 + nearPenalty(np) + reservedPenalty(np);
+                    long kn = key(nx, ny);
+                    int stepCost = 10 + nearPenalty(nx, ny) + reservedPenalty(kn);
 
-                // penaliza cambios de dirección para evitar zigzag
-                int turn = (cur.dir != -1 && cur.dir != dir) ? TURN_COST : 0;
-                int straight = (cur.dir == dir && cur.dir != -1) ? STRAIGHT_BONUS : 0;
+                    // penaliza cambios de dirección para evitar zigzag
+                    int turn = (cur.dir != -1 && cur.dir != dir) ? TURN_COST : 0;
+                    int straight = (cur.dir == dir && cur.dir != -1) ? STRAIGHT_BONUS : 0;
 
-                int nd = cur.g + stepCost + turn + straight;
-                long kn = key(np);
-                Integer old = dist.get(kn);
-                if (old == null || nd < old) {
-                    dist.put(kn, nd);
-                    parent.put(kn, key(cur.p));
-                    // f = g + h (admisible). Usamos nd para g, más heurística h
-                    pq.add(new Node(np, nd, nd + h(np, dst), dir));
+                    int nd = cur.g + stepCost + turn + straight;
+                    if (nd < dist.get(kn, Integer.MAX_VALUE)) {
+                        dist.put(kn, nd);
+                        via.put(kn, dir);
+                        // f = g + h (admisible). Usamos nd para g, más heurística h
+                        pq.add(new Node(nx, ny, nd, nd + h(nx, ny, tx, ty), dir));
+                    }
                 }
             }
-
+        } finally {
+            stats.countExpansions(expansions);
         }
 
-        if (!parent.containsKey(keyT)) return null;
+        if (!via.containsKey(keyT)) return null;
         List<Location> rev = new ArrayList<>();
-        for (long k = keyT; k != -1L; k = parent.getOrDefault(k, -1L)) {
-            rev.add(fromKey(k));
+        int x = tx, y = ty;
+        while (true) {
+            rev.add(Location.create(x, y));
+            int dir = via.get(key(x, y), -1);
+            if (dir < 0) break;
+            x -= DX[dir] * grid;
+            y -= DY[dir] * grid;
         }
         Collections.reverse(rev);
+        stats.countRouted();
         return compress(rev);
     }
 
-    private Rectangle makeBBox(Location a, Location b, int pad) {
-        int x0 = Math.min(a.getX(), b.getX()) - pad;
-        int x1 = Math.max(a.getX(), b.getX()) + pad;
-        int y0 = Math.min(a.getY(), b.getY()) - pad;
-        int y1 = Math.max(a.getY(), b.getY()) + pad;
-        return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
-    }
-
     private Location snap(Location p) {
         int x = ImporterUtils.Geom.snap(p.getX() + grid/2);
         int y = ImporterUtils.Geom.snap(p.getY() + grid/2);
         return Location.create(x, y);
     }
 
-    private int h(Location a, Location b) {
-        return Math.abs(a.getX() - b.getX()) + Math.abs(a.getY() - b.getY());
-    }
-
-    private boolean blocked(Location p) {
-        Rectangle r = new Rectangle(p.getX() - clearHard, p.getY() - clearHard, 2*clearHard+1, 2*clearHard+1);
-        for (Bounds b : obstacles) {
-            if (rectIntersects(b, r)) return true;
-        }
-        return false;
+    private static int h(int ax, int ay, int bx, int by) {
+        return Math.abs(ax - bx) + Math.abs(ay - by);
     }
 
-    private int nearPenalty(Location p) {
-        Rectangle r = new Rectangle(p.getX() - clearSoft, p.getY() - clearSoft, 2*clearSoft+1, 2*clearSoft+1);
-        for (Bounds b : obstacles) {
-            if (rectIntersects(b, r)) return costNear;
-        }
-        return 0;
+    private boolean blocked(int x, int y) {
+        return obstacles.intersects(x - clearHard, y - clearHard, 2*clearHard+1, 2*clearHard+1);
     }
 
-    private int reservedPenalty(Location p) {
-        return reserved.contains(key(p)) ? costReserved : 0;
+    private int nearPenalty(int x, int y) {
+        return obstacles.intersects(x - clearSoft, y - clearSoft, 2*clearSoft+1, 2*clearSoft+1) ? costNear : 0;
     }
 
-    private static boolean rectIntersects(Bounds b, Rectangle r) {
-        return r.intersects(b.getX(), b.getY(), b.getWidth(), b.getHeight());
+    private int reservedPenalty(long k) {
+        return reserved.containsKey(k) ? costReserved : 0;
     }
 
     private static List<Location> compress(List<Location> pts) {
@@ -163,22 +166,20 @@ public final class GridRouter {
     }
 
     public static long key(Location p) {
-        long x = p.getX() & 0xffffffffL;
-        long y = p.getY() & 0xffffffffL;
-        return (x << 32) | y;
+        return key(p.getX(), p.getY());
     }
-    private static Location fromKey(long k) {
-        int x = (int)(k >>> 32);
-        int y = (int)(k & 0xffffffffL);
-        return Location.create(x, y);
+    private static long key(int x, int y) {
+        return ((x & 0xffffffffL) << 32) | (y & 0xffffffffL);
     }
 
     // dentro de GridRouter
     private static final int TURN_COST = 30;   // súbelo si quieres aún menos giros
     private static final int STRAIGHT_BONUS = -2; // pequeño "descuento" si sigues recto
+    private static final int[] DX = { 1, -1, 0, 0 };
+    private static final int[] DY = { 0, 0, 1, -1 };
 
     /**
      * @param dir 0:+x, 1:-x, 2:+y, 3:-y, -1 inicio
      */
-    private record Node(Location p, int g, int f, int dir) { }
+    private record Node(int x, int y, int g, int f, int dir) { }
 }
@@ -0,0 +1,81 @@
+package com.cburch.logisim.verilog.file.importer.routing;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed map from long keys (grid cells, see {@link GridRouter#key}) to ints,
+ * with linear probing and no boxing. Meant to be cleared and reused between searches.
+ */
+public final class LongIntMap {
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] vals;
+    private int size;
+
+    public LongIntMap() { this(16); }
+
+    public LongIntMap(int expected) {
+        int cap = 16;
+        while (cap < expected * 2) cap <<= 1;
+        keys = new long[cap];
+        vals = new int[cap];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    public int size() { return size; }
+
+    public boolean containsKey(long k) {
+        return keys[slot(k)] != EMPTY;
+    }
+
+    /** Returns the value of a key, or {@code missing} if it has none. */
+    public int get(long k, int missing) {
+        int i = slot(k);
+        return keys[i] == EMPTY ? missing : vals[i];
+    }
+
+    public void put(long k, int v) {
+        if (k == EMPTY) throw new IllegalArgumentException("reserved key");
+        int i = slot(k);
+        if (keys[i] == EMPTY) {
+            keys[i] = k;
+            size++;
+            if (2 * size > keys.length) {
+                vals[i] = v;
+                grow();
+                return;
+            }
+        }
+        vals[i] = v;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // slot de la clave, o el vacío donde iría
+    private int slot(long k) {
+        int mask = keys.length - 1;
+        long h = k * 0x9E3779B97F4A7C15L;
+        int i = (int) (h ^ (h >>> 32)) & mask;
+        while (keys[i] != EMPTY && keys[i] != k) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldVals = vals;
+        keys = new long[oldKeys.length * 2];
+        vals = new int[oldVals.length * 2];
+        Arrays.fill(keys, EMPTY);
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] == EMPTY) continue;
+            int i = slot(oldKeys[j]);
+            keys[i] = oldKeys[j];
+            vals[i] = oldVals[j];
+        }
+    }
+}
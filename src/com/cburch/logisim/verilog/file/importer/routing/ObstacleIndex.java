@@ -0,0 +1,111 @@
+package com.cburch.logisim.verilog.file.importer.routing;
+
+import com.cburch.logisim.data.Bounds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Obstacle rectangles bucketed on a uniform grid of 64 px cells, so that asking whether a
+ * box touches any obstacle only looks at the obstacles of the cells it covers.
+ * Obstacles get sequential ids and can be removed, which lets a caller undo everything
+ * added since a {@link #size() mark}.
+ */
+public final class ObstacleIndex {
+    private static final int CELL_BITS = 6;
+
+    private final List<Bounds> items = new ArrayList<>();
+    private final BitSet removed = new BitSet();
+    private final LongIntMap cellBucket = new LongIntMap(256);
+    private int[][] buckets = new int[64][];
+    private int[] bucketSizes = new int[64];
+    private int bucketCount = 0;
+
+    /** Adds an obstacle and returns its id. */
+    public int add(Bounds b) {
+        int id = items.size();
+        items.add(b);
+        // como Rectangle.intersects: un rectángulo vacío nunca choca
+        if (b.getWidth() <= 0 || b.getHeight() <= 0) return id;
+        int cx0 = b.getX() >> CELL_BITS, cx1 = (b.getX() + b.getWidth() - 1) >> CELL_BITS;
+        int cy0 = b.getY() >> CELL_BITS, cy1 = (b.getY() + b.getHeight() - 1) >> CELL_BITS;
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                addToBucket(bucketFor(cellKey(cx, cy)), id);
+            }
+        }
+        return id;
+    }
+
+    public void addAll(Collection<Bounds> bs) {
+        for (Bounds b : bs) add(b);
+    }
+
+    public void remove(int id) {
+        removed.set(id);
+    }
+
+    /** Removes every obstacle added since {@code size()} returned {@code mark}. */
+    public void removeSince(int mark) {
+        if (mark < items.size()) removed.set(mark, items.size());
+    }
+
+    /** Returns the number of ids handed out so far, removed obstacles included. */
+    public int size() {
+        return items.size();
+    }
+
+    /** Returns whether the box at (x, y) of the given size intersects any obstacle,
+     * with the same open-edge rule as {@link java.awt.Rectangle#intersects}. */
+    public boolean intersects(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) return false;
+        int cx0 = x >> CELL_BITS, cx1 = (x + w - 1) >> CELL_BITS;
+        int cy0 = y >> CELL_BITS, cy1 = (y + h - 1) >> CELL_BITS;
+        for (int cy = cy0; cy <= cy1; cy++) {
+            for (int cx = cx0; cx <= cx1; cx++) {
+                int bucket = cellBucket.get(cellKey(cx, cy), -1);
+                if (bucket < 0) continue;
+                int[] ids = buckets[bucket];
+                for (int i = 0, n = bucketSizes[bucket]; i < n; i++) {
+                    int id = ids[i];
+                    if (removed.get(id)) continue;
+                    Bounds b = items.get(id);
+                    if (b.getX() < x + w && x < b.getX() + b.getWidth()
+                            && b.getY() < y + h && y < b.getY() + b.getHeight()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private int bucketFor(long cell) {
+        int bucket = cellBucket.get(cell, -1);
+        if (bucket >= 0) return bucket;
+        bucket = bucketCount++;
+        if (bucket == buckets.length) {
+            buckets = Arrays.copyOf(buckets, bucket * 2);
+            bucketSizes = Arrays.copyOf(bucketSizes, bucket * 2);
+        }
+        buckets[bucket] = new int[4];
+        cellBucket.put(cell, bucket);
+        return bucket;
+    }
+
+    private void addToBucket(int bucket, int id) {
+        int n = bucketSizes[bucket];
+        if (n == buckets[bucket].length) {
+            buckets[bucket] = Arrays.copyOf(buckets[bucket], n * 2);
+        }
+        buckets[bucket][n] = id;
+        bucketSizes[bucket] = n + 1;
+    }
+}
@@ -0,0 +1,31 @@
+package com.cburch.logisim.verilog.file.importer.routing;
+
+/**
+ * Counters of the A* searches run by the {@link GridRouter}s of a {@link RoutingContext}:
+ * how many were attempted, found a route, hit the time limit, or hit the node/queue
+ * limits. The rest found no route inside their bounding box.
+ */
+public final class RouteStats {
+    private int attempted, routed, timedOut, exhausted;
+    private long expansions;
+
+    public int attempted()   { return attempted; }
+    public int routed()      { return routed; }
+    public int timedOut()    { return timedOut; }
+    public int exhausted()   { return exhausted; }
+    public int unreachable() { return attempted - routed - timedOut - exhausted; }
+    /** Total nodes expanded by all the searches. */
+    public long expansions() { return expansions; }
+
+    void countAttempt()  { attempted++; }
+    void countRouted()   { routed++; }
+    void countTimedOut() { timedOut++; }
+    void countExhausted(){ exhausted++; }
+    void countExpansions(int n) { expansions += n; }
+
+    @Override
+    public String toString() {
+        return "attempted=" + attempted + " routed=" + routed + " timedOut=" + timedOut
+                + " exhausted=" + exhausted + " expansions=" + expansions;
+    }
+}
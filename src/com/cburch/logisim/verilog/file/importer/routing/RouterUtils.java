@@ -20,7 +20,7 @@ import java.util.List;
 public final class RouterUtils {
 
     /** Simplifies a polyline path by removing unnecessary points, trying to make longer HV/VH shortcuts while avoiding obstacles. */
-    public static List<Location> simplifyPolyline(List<Location> poly, List<Bounds> obstacles, int clearHard) {
+    public static List<Location> simplifyPolyline(List<Location> poly, ObstacleIndex obstacles, int clearHard) {
         if (poly == null || poly.size() < 3) return poly;
         List<Location> pts = new ArrayList<>(poly);
         boolean changed;
@@ -109,59 +109,66 @@ public final class RouterUtils {
         List<Bounds> obs = new ArrayList<>();
         for (Component c : circ.getNonWires()) {
             if (ignore.contains(c)) continue;
+            obs.addAll(componentBounds(c, g));
+        }
+        return obs;
+    }
 
-            // === túneles (normales o bit-labeled) ===
-            if (c.getFactory() instanceof Tunnel
-                    || c.getFactory() instanceof BitLabeledTunnel) {
-
-                AttributeSet as = c.getAttributeSet();
-                Direction facing = Direction.EAST;
-                if (as != null) {
-                    try {
-                        Direction d = as.getValue(StdAttr.FACING);
-                        if (d != null) facing = d;
-                    } catch (Throwable ignore2) { /* default EAST */ }
-                }
-
-                Bounds b = c.getBounds(g);
-                if (b != null) {
-                    // grosor mínimo
-                    final int THICK = 6; // ajusta a gusto
-                    Bounds slim;
+    /** Returns the obstacle Bounds of one component: a slim box plus the mouth for tunnels,
+     * the slightly expanded bounds for the rest. */
+    public static List<Bounds> componentBounds(Component c, Graphics g) {
+        List<Bounds> obs = new ArrayList<>(2);
+        // === túneles (normales o bit-labeled) ===
+        if (c.getFactory() instanceof Tunnel
+                || c.getFactory() instanceof BitLabeledTunnel) {
 
-                    if (facing == Direction.EAST || facing == Direction.WEST) {
-                        // túnel horizontal: respetar largo (width), achicar alto
-                        int cx = b.getX();
-                        int cy = b.getY() + b.getHeight() / 2 - THICK / 2;
-                        slim = Bounds.create(cx, cy, b.getWidth(), THICK);
-                    } else {
-                        // túnel vertical: respetar largo (height), achicar ancho
-                        int cx = b.getX() + b.getWidth() / 2 - THICK / 2;
-                        int cy = b.getY();
-                        slim = Bounds.create(cx, cy, THICK, b.getHeight());
-                    }
+            AttributeSet as = c.getAttributeSet();
+            Direction facing = Direction.EAST;
+            if (as != null) {
+                try {
+                    Direction d = as.getValue(StdAttr.FACING);
+                    if (d != null) facing = d;
+                } catch (Throwable ignore2) { /* default EAST */ }
+            }
 
-                    obs.add(slim);
-                }
+            Bounds b = c.getBounds(g);
+            if (b != null) {
+                // grosor mínimo
+                final int THICK = 6; // ajusta a gusto
+                Bounds slim;
 
-                // blindar siempre la boquita
-                EndData end0 = c.getEnd(0);
-                if (end0 != null) {
-                    Location pin = end0.getLocation();
-                    int m = 3; // un poquito más chico que el túnel mismo
-                    Bounds pinBox = Bounds.create(pin.getX() - m, pin.getY() - m,
-                            2 * m + 1, 2 * m + 1);
-                    obs.add(pinBox);
+                if (facing == Direction.EAST || facing == Direction.WEST) {
+                    // túnel horizontal: respetar largo (width), achicar alto
+                    int cx = b.getX();
+                    int cy = b.getY() + b.getHeight() / 2 - THICK / 2;
+                    slim = Bounds.create(cx, cy, b.getWidth(), THICK);
+                } else {
+                    // túnel vertical: respetar largo (height), achicar ancho
+                    int cx = b.getX() + b.getWidth() / 2 - THICK / 2;
+                    int cy = b.getY();
+                    slim = Bounds.create(cx, cy, THICK, b.getHeight());
                 }
 
-                continue;
+                obs.add(slim);
             }
 
-            // === resto de componentes ===
-            Bounds b = c.getBounds(g);
-            if (b != null && b.getWidth() > 0 && b.getHeight() > 0) {
-                obs.add(b.expand(2));
+            // blindar siempre la boquita
+            EndData end0 = c.getEnd(0);
+            if (end0 != null) {
+                Location pin = end0.getLocation();
+                int m = 3; // un poquito más chico que el túnel mismo
+                Bounds pinBox = Bounds.create(pin.getX() - m, pin.getY() - m,
+                        2 * m + 1, 2 * m + 1);
+                obs.add(pinBox);
             }
+
+            return obs;
+        }
+
+        // === resto de componentes ===
+        Bounds b = c.getBounds(g);
+        if (b != null && b.getWidth() > 0 && b.getHeight() > 0) {
+            obs.add(b.expand(2));
         }
         return obs;
     }
@@ -211,9 +218,9 @@ public final class RouterUtils {
     }
 
     /** Reserve all the cells of a polyline for future penalties. */
-    public static void markReservedPath(Set<Long> reserved, List<Location> poly, int grid) {
+    public static void markReservedPath(LongIntMap reserved, List<Location> poly, int grid) {
         if (reserved == null || poly == null || poly.size() < 2) return;
-        for (Location p : poly) reserved.add(GridRouter.key(p));
+        for (Location p : poly) reserved.put(GridRouter.key(p), 1);
         // densificar en pasos de grid para segmentos largos
         for (int i = 0; i + 1 < poly.size(); i++) {
             Location a = poly.get(i), b = poly.get(i + 1);
@@ -222,21 +229,21 @@ public final class RouterUtils {
                 int y0 = Math.min(a.getY(), b.getY());
                 int y1 = Math.max(a.getY(), b.getY());
                 for (int y = y0; y <= y1; y += grid) {
-                    reserved.add(GridRouter.key(Location.create(x, y)));
+                    reserved.put(GridRouter.key(Location.create(x, y)), 1);
                 }
             } else if (a.getY() == b.getY()) {
                 int y = a.getY();
                 int x0 = Math.min(a.getX(), b.getX());
                 int x1 = Math.max(a.getX(), b.getX());
                 for (int x = x0; x <= x1; x += grid) {
-                    reserved.add(GridRouter.key(Location.create(x, y)));
+                    reserved.put(GridRouter.key(Location.create(x, y)), 1);
                 }
             }
         }
     }
 
     /** Direct Manhattan path (HV or VH) avoiding obstacle rectangles. */
-    public static List<Location> tryManhattanClear(Location a, Location b, List<Bounds> obstacles, int clearHard) {
+    public static List<Location> tryManhattanClear(Location a, Location b, ObstacleIndex obstacles, int clearHard) {
         // HV: a→(bx,ay)→b
         Location midH = Location.create(b.getX(), a.getY());
         if (pathClear(a, midH, obstacles, clearHard) && pathClear(midH, b, obstacles, clearHard)) {
@@ -250,12 +257,9 @@ public final class RouterUtils {
         return null;
     }
 
-    private static boolean pathClear(Location p, Location q, List<Bounds> obstacles, int clearHard) {
+    private static boolean pathClear(Location p, Location q, ObstacleIndex obstacles, int clearHard) {
         java.awt.Rectangle segBox = segAabb(p, q).grow(clearHard);
-        for (Bounds b : obstacles) {
-            if (rectIntersects(b, segBox)) return false;
-        }
-        return true;
+        return !obstacles.intersects(segBox.x, segBox.y, segBox.width, segBox.height);
     }
 
     // AABB de un segmento manhattan
@@ -272,8 +276,4 @@ public final class RouterUtils {
         Rectangle(int x, int y, int w, int h) { super(x, y, w, h); }
         Rectangle grow(int m) { return new Rectangle(x - m, y - m, width + 2*m, height + 2*m); }
     }
-
-    private static boolean rectIntersects(Bounds b, java.awt.Rectangle r) {
-        return r.intersects(b.getX(), b.getY(), b.getWidth(), b.getHeight());
-    }
 }
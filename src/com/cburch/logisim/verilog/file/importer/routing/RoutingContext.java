@@ -0,0 +1,72 @@
+package com.cburch.logisim.verilog.file.importer.routing;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Bounds;
+
+import java.awt.*;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Routing state of one circuit, built once and shared by all the routes drawn in it:
+ * the obstacles (components and existing wires) in an {@link ObstacleIndex}, and the
+ * {@link RouteStats} of the searches.
+ * - Los obstáculos de un componente se pueden ocultar (p.ej. los túneles del grupo que se
+ *   está ruteando) y volver a mostrar.
+ * - Las rutas trazadas se agregan al índice como obstáculos nuevos.
+ */
+public final class RoutingContext {
+    private final ObstacleIndex obstacles = new ObstacleIndex();
+    private final Map<Component, List<Bounds>> componentBounds = new HashMap<>();
+    private final Map<Component, int[]> componentIds = new HashMap<>();
+    private final RouteStats stats = new RouteStats();
+
+    private RoutingContext() {}
+
+    /** Indexes the components and the wires of a circuit.
+     * @param circ Circuit to index.
+     * @param g Graphics context (for measuring components).
+     * @param wireMargin Margin around existing wires.
+     */
+    public static RoutingContext build(Circuit circ, Graphics g, int wireMargin) {
+        RoutingContext ctx = new RoutingContext();
+        for (Component c : circ.getNonWires()) ctx.addComponent(c, g);
+        ctx.obstacles.addAll(RouterUtils.collectWireBounds(circ, wireMargin));
+        return ctx;
+    }
+
+    public ObstacleIndex obstacles() { return obstacles; }
+
+    public RouteStats stats() { return stats; }
+
+    /** Adds the obstacles of a component placed after the context was built. */
+    public void addComponent(Component c, Graphics g) {
+        List<Bounds> bs = RouterUtils.componentBounds(c, g);
+        componentBounds.put(c, bs);
+        componentIds.put(c, addBounds(bs));
+    }
+
+    /** Removes the obstacles of the given components until {@link #show} is called. */
+    public void hide(Collection<Component> comps) {
+        for (Component c : comps) {
+            int[] ids = componentIds.put(c, new int[0]);
+            if (ids != null) for (int id : ids) obstacles.remove(id);
+        }
+    }
+
+    /** Restores the obstacles of components hidden with {@link #hide}. */
+    public void show(Collection<Component> comps) {
+        for (Component c : comps) {
+            List<Bounds> bs = componentBounds.get(c);
+            int[] ids = componentIds.get(c);
+            if (bs != null && ids != null && ids.length == 0) componentIds.put(c, addBounds(bs));
+        }
+    }
+
+    private int[] addBounds(List<Bounds> bs) {
+        int[] ids = new int[bs.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = obstacles.add(bs.get(i));
+        return ids;
+    }
+}
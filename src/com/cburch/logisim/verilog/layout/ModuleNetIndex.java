@@ -7,123 +7,236 @@ import com.cburch.logisim.verilog.comp.auxiliary.PortEndpoint;
 import com.cburch.logisim.verilog.comp.auxiliary.netconn.NetBit;
 
 import java.util.*;
-import java.util.function.Function;
 
+/**
+ * Índice net → endpoints de un módulo, en formato CSR (columnar):
+ * los refs de la net {@code i} (en orden de aparición) ocupan {@code refs[offsets[i] .. offsets[i+1])}.
+ * Todo se guarda en arreglos primitivos; no hay un objeto por net ni por endpoint.
+ *
+ * <p>Un ref es un {@code long} que identifica al endpoint (top o celda, dueño, puerto, bit).
+ * Si un módulo excede los límites de la codificación se lanza {@link IllegalArgumentException}
+ * en lugar de mezclar refs.</p>
+ */
 public final class ModuleNetIndex {
-    // netId -> lista de refs compactos (int)
-    private final Map<Integer, List<Integer>> byNet = new LinkedHashMap<>();
-
     // Guardamos referencias al modelo para poder resolver nombres/puertos
     private final List<VerilogCell> cells;
     private final List<ModulePort> modulePorts;
 
-    // ---- Codificación del ref (32 bits) ----
-    // bit31..30 = kind (0=cell, 1=top)
-    // bit29..16 = ownerIdx (hasta 16383)
-    // bit15.. 8 = portOrd (sólo para celdas; 0..255) / 0 para top
-    // bit 7.. 0 = bitIdx (0..255)
-    private static int encCell(int cellIdx, int portOrd, int bitIdx) {
-        return (0 << 30) | (cellIdx << 16) | ((portOrd & 0xFF) << 8) | (bitIdx & 0xFF);
+    // ---- Codificación del ref (64 bits) ----
+    // bit63      = kind (0=cell, 1=top)
+    // bit62..32  = ownerIdx (hasta 2^31-1)
+    // bit31..20  = portOrd (sólo para celdas; 0..4095) / 0 para top
+    // bit19.. 0  = bitIdx (0..2^20-1)
+    public static final int MAX_PORT_ORD = (1 << 12) - 1;
+    public static final int MAX_BIT_IDX  = (1 << 20) - 1;
+
+    private static long encCell(int cellIdx, int portOrd, int bitIdx) {
+        checkLimits(cellIdx, portOrd, bitIdx);
+        return ((long) cellIdx << 32) | ((long) portOrd << 20) | bitIdx;
     }
-    private static int encTop (int portIdx, int bitIdx) {
-        return (1 << 30) | (portIdx << 16) | (bitIdx & 0xFF);
+    private static long encTop (int portIdx, int bitIdx) {
+        checkLimits(portIdx, 0, bitIdx);
+        return Long.MIN_VALUE | ((long) portIdx << 32) | bitIdx;
+    }
+    private static void checkLimits(int owner, int portOrd, int bitIdx) {
+        if (owner < 0 || portOrd < 0 || portOrd > MAX_PORT_ORD || bitIdx < 0 || bitIdx > MAX_BIT_IDX) {
+            throw new IllegalArgumentException("Endpoint fuera de rango para el índice de nets: owner="
+                    + owner + " port=" + portOrd + " bit=" + bitIdx);
+        }
     }
 
-    public static boolean isTop  (int ref){ return ((ref >>> 30) & 0b11) == 1; }
-    public static int ownerIdx   (int ref){ return (ref >>> 16) & 0x3FFF; }
-    public static int portOrd    (int ref){ return (ref >>> 8)  & 0xFF; }   // válido para celdas
-    public static int bitIdx     (int ref){ return ref & 0xFF; }
+    public static boolean isTop  (long ref){ return ref < 0; }
+    public static int ownerIdx   (long ref){ return (int) ((ref >>> 32) & 0x7FFFFFFFL); }
+    public static int portOrd    (long ref){ return (int) ((ref >>> 20) & MAX_PORT_ORD); }   // válido para celdas
+    public static int bitIdx     (long ref){ return (int) (ref & MAX_BIT_IDX); }
 
-    // ---- LUTs por celda ----
-    // nombre de puerto -> ordinal (estable por celda)
-    private final List<Map<String,Integer>> cellPortOrd = new ArrayList<>();
-    // ordinal -> nombre de puerto
-    private final List<List<String>> cellOrdToName = new ArrayList<>();
-    // key (ord<<8 | bit) -> PortEndpoint
-    private final List<Map<Integer,PortEndpoint>> cellEpByKey = new ArrayList<>();
+    // ---- CSR: net (densa, en orden de aparición) -> refs ----
+    private final int[] netIds;     // net densa -> netId
+    private final int[] offsets;    // net densa -> inicio en refs (netCount + 1)
+    private final long[] refs;
+    // búsqueda netId -> net densa (binaria)
+    private final int[] sortedNetIds;
+    private final int[] denseOfSorted;
 
-    private static int key(int ord, int bit){ return ((ord & 0xFF) << 8) | (bit & 0xFF); }
+    // ---- LUTs por celda (también columnares) ----
+    // celda -> primer ordinal global; los ordinales de la celda c son [cellOrdBase[c] .. cellOrdBase[c+1])
+    private final int[] cellOrdBase;
+    // ordinal global -> nombre de puerto
+    private final String[] ordName;
+    // ordinal global -> primer slot en eps; el bit b del puerto está en eps[ordEpBase[o] + b]
+    private final int[] ordEpBase;
+    private final PortEndpoint[] eps;
 
     public ModuleNetIndex(List<VerilogCell> cells, List<ModulePort> modulePorts) {
         this.cells = Objects.requireNonNull(cells);
         this.modulePorts = Objects.requireNonNull(modulePorts);
 
+        Pairs pairs = new Pairs();
+
         // 1) Puertos del módulo (top)
         for (int pIdx = 0; pIdx < modulePorts.size(); pIdx++) {
             ModulePort p = modulePorts.get(pIdx);
             for (int i = 0; i < p.width(); i++) {
                 int net = p.netIdAt(i);
-                if (net >= 0) add(net, encTop(pIdx, i)); // constantes (<0) no se indexan
+                if (net >= 0) pairs.add(net, encTop(pIdx, i)); // constantes (<0) no se indexan
             }
         }
 
         // 2) Celdas internas: construir LUTs y refs con portOrd embebido
+        int[] ordBase = new int[cells.size() + 1];
+        List<String> names = new ArrayList<>();
+        IntList epBase = new IntList();
+        List<PortEndpoint> slots = new ArrayList<>();
+        Map<String,Integer> ordMap = new HashMap<>();
+        IntList maxBit = new IntList();
+
         for (int cIdx = 0; cIdx < cells.size(); cIdx++) {
             VerilogCell c = cells.get(cIdx);
-
-            Map<String,Integer> ordMap = new LinkedHashMap<>();
-            List<String> namesByOrd     = new ArrayList<>();
-            Map<Integer,PortEndpoint> epMap = new HashMap<>();
+            int base = names.size();
+            ordBase[cIdx] = base;
+            ordMap.clear();
+            maxBit.clear();
 
             // asigna ordinal incremental por nombre de puerto
-            Function<String,Integer> ordOf = name -> ordMap.computeIfAbsent(name, n -> {
-                int ord = namesByOrd.size();
-                namesByOrd.add(n);
-                return ord;
-            });
-
             for (PortEndpoint ep : c.endpoints()) {
-                var br = ep.getBitRef();
-                if (br instanceof NetBit nb) {
-                    int ord = ordOf.apply(ep.getPortName());
-                    int b   = ep.getBitIndex();
-                    epMap.put(key(ord, b), ep);
-                    add(nb.getNetId(), encCell(cIdx, ord, b));
+                if (!(ep.getBitRef() instanceof NetBit nb)) continue;
+                Integer ord = ordMap.get(ep.getPortName());
+                if (ord == null) {
+                    ord = ordMap.size();
+                    ordMap.put(ep.getPortName(), ord);
+                    names.add(ep.getPortName());
+                    maxBit.add(-1);
                 }
+                int b = ep.getBitIndex();
+                pairs.add(nb.getNetId(), encCell(cIdx, ord, b));
+                if (b > maxBit.get(ord)) maxBit.set(ord, b);
             }
 
-            cellPortOrd.add(ordMap);
-            cellOrdToName.add(namesByOrd);
-            cellEpByKey.add(epMap);
+            // reservar un slot por bit de cada puerto y llenarlos
+            for (int ord = 0; ord < maxBit.size(); ord++) {
+                epBase.add(slots.size());
+                for (int b = 0; b <= maxBit.get(ord); b++) slots.add(null);
+            }
+            for (PortEndpoint ep : c.endpoints()) {
+                if (!(ep.getBitRef() instanceof NetBit)) continue;
+                int ord = ordMap.get(ep.getPortName());
+                slots.set(epBase.get(base + ord) + ep.getBitIndex(), ep);
+            }
         }
+        ordBase[cells.size()] = names.size();
+        epBase.add(slots.size());
+
+        this.cellOrdBase = ordBase;
+        this.ordName = names.toArray(new String[0]);
+        this.ordEpBase = epBase.toArray();
+        this.eps = slots.toArray(new PortEndpoint[0]);
+
+        // 3) Compactar a CSR
+        int n = pairs.size;
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            // netId en la parte alta, posición de inserción en la baja: agrupa por net
+            // y conserva el orden de aparición dentro de cada net
+            keys[i] = ((long) pairs.nets[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        // grupos (uno por net) en orden de netId
+        IntList groupStart = new IntList();
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || (int) (keys[i] >> 32) != (int) (keys[i - 1] >> 32)) groupStart.add(i);
+        }
+        int groups = groupStart.size();
+        groupStart.add(n);
+
+        // ordenar los grupos por su primera aparición (orden estable para el layout)
+        long[] byFirst = new long[groups];
+        for (int g = 0; g < groups; g++) {
+            byFirst[g] = ((keys[groupStart.get(g)] & 0xFFFFFFFFL) << 32) | g;
+        }
+        Arrays.sort(byFirst);
+
+        this.netIds = new int[groups];
+        this.offsets = new int[groups + 1];
+        this.refs = new long[n];
+        this.sortedNetIds = new int[groups];
+        this.denseOfSorted = new int[groups];
+        int k = 0;
+        for (int d = 0; d < groups; d++) {
+            int g = (int) byFirst[d];
+            int from = groupStart.get(g), to = groupStart.get(g + 1);
+            netIds[d] = (int) (keys[from] >> 32);
+            offsets[d] = k;
+            for (int i = from; i < to; i++) refs[k++] = pairs.refs[(int) keys[i]];
+            sortedNetIds[g] = netIds[d];
+            denseOfSorted[g] = d;
+        }
+        offsets[groups] = k;
     }
 
-    private void add(int netId, int ref) {
-        byNet.computeIfAbsent(netId, k -> new ArrayList<>()).add(ref);
+    // ---- Acceso CSR ----
+
+    /** Cantidad de nets con al menos un endpoint. */
+    public int netCount() { return netIds.length; }
+
+    /** netId de la net densa {@code i} (las nets se numeran en orden de aparición). */
+    public int netId(int i) { return netIds[i]; }
+
+    /** Primer índice de {@link #ref(int)} para la net densa {@code i}. */
+    public int refStart(int i) { return offsets[i]; }
+
+    /** Índice siguiente al último de {@link #ref(int)} para la net densa {@code i}. */
+    public int refEnd(int i) { return offsets[i + 1]; }
+
+    /** Ref en la posición {@code k} del arreglo CSR. */
+    public long ref(int k) { return refs[k]; }
+
+    /** Cantidad total de refs indexados. */
+    public int refCount() { return refs.length; }
+
+    /** Estimación de los bytes que ocupa el índice (sin contar el modelo). */
+    public long estimatedBytes() {
+        long ints = (long) netIds.length * 3 + offsets.length + denseOfSorted.length
+                + cellOrdBase.length + ordEpBase.length;
+        long objRefs = (long) ordName.length + eps.length;  // oops comprimidos
+        return ints * 4 + (long) refs.length * 8 + objRefs * 4;
     }
 
     // ---- API pública existente ----
-    public Set<Integer> netIds() { return byNet.keySet(); }
-    public List<Integer> endpointsOf(int netId) {
-        return byNet.getOrDefault(netId, List.of());
+    public int[] netIds() { return netIds.clone(); }
+    public long[] endpointsOf(int netId) {
+        int pos = Arrays.binarySearch(sortedNetIds, netId);
+        if (pos < 0) return new long[0];
+        int d = denseOfSorted[pos];
+        return Arrays.copyOfRange(refs, offsets[d], offsets[d + 1]);
     }
 
     // ---- NUEVO: resoluciones para “bus edges” ----
 
     /** Devuelve el índice de puerto top directamente del ref. */
-    public int resolveTopPortIdx(int topRef) {
+    public int resolveTopPortIdx(long topRef) {
         if (!isTop(topRef)) throw new IllegalArgumentException("Ref no es top");
         return ownerIdx(topRef);
     }
 
     /** Devuelve el nombre de puerto de celda a partir del ref. */
-    public Optional<String> resolveCellPortName(int cellRef) {
+    public Optional<String> resolveCellPortName(long cellRef) {
         if (isTop(cellRef)) return Optional.empty();
         int cIdx = ownerIdx(cellRef);
-        int ord  = portOrd(cellRef);
-        List<String> names = cellOrdToName.get(cIdx);
-        if (ord < 0 || ord >= names.size()) return Optional.empty();
-        return Optional.ofNullable(names.get(ord));
+        int ord  = cellOrdBase[cIdx] + portOrd(cellRef);
+        if (ord >= cellOrdBase[cIdx + 1]) return Optional.empty();
+        return Optional.ofNullable(ordName[ord]);
     }
 
     /** Devuelve el PortEndpoint (dirección incluida) para un ref de celda. */
-    public Optional<PortEndpoint> resolveCellEndpoint(int cellRef) {
+    public Optional<PortEndpoint> resolveCellEndpoint(long cellRef) {
         if (isTop(cellRef)) return Optional.empty();
         int cIdx = ownerIdx(cellRef);
-        int ord  = portOrd(cellRef);
-        int bit  = bitIdx(cellRef);
-        PortEndpoint ep = cellEpByKey.get(cIdx).get(key(ord, bit));
-        return Optional.ofNullable(ep);
+        int ord  = cellOrdBase[cIdx] + portOrd(cellRef);
+        if (ord >= cellOrdBase[cIdx + 1]) return Optional.empty();
+        int slot = ordEpBase[ord] + bitIdx(cellRef);
+        if (slot >= ordEpBase[ord + 1]) return Optional.empty();
+        return Optional.ofNullable(eps[slot]);
     }
 
     /** Acceso al modelo (por si lo necesitas para layout/adapters). */
@@ -168,5 +281,37 @@ public final class ModuleNetIndex {
         }
         return infos;
     }
-}
 
+    /** Pares (netId, ref) en orden de inserción, antes de compactar. */
+    private static final class Pairs {
+        int[] nets = new int[64];
+        long[] refs = new long[64];
+        int size;
+
+        void add(int net, long ref) {
+            if (size == nets.length) {
+                nets = Arrays.copyOf(nets, size * 2);
+                refs = Arrays.copyOf(refs, size * 2);
+            }
+            nets[size] = net;
+            refs[size] = ref;
+            size++;
+        }
+    }
+
+    /** Lista de ints sin boxing. */
+    private static final class IntList {
+        private int[] data = new int[16];
+        private int size;
+
+        void add(int v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+        int get(int i) { return data[i]; }
+        void set(int i, int v) { data[i] = v; }
+        int size() { return size; }
+        void clear() { size = 0; }
+        int[] toArray() { return Arrays.copyOf(data, size); }
+    }
+}
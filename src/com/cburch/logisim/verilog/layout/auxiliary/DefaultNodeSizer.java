@@ -15,14 +15,15 @@ import com.cburch.logisim.verilog.std.ComponentAdapter;
 import com.cburch.logisim.verilog.std.ComponentAdapterRegistry;
 
 import java.awt.*;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class DefaultNodeSizer implements NodeSizer {
     private final ComponentAdapterRegistry adapters;
-    // cache por tipo (para no recalcular cada vez)
-    private final Map<String, Dimension> byTypeCache = new HashMap<>();
+    // cache por tipo (para no recalcular cada vez); concurrente porque los layouts de
+    // varios módulos pueden correr a la vez
+    private final Map<String, Dimension> byTypeCache = new ConcurrentHashMap<>();
 
     public DefaultNodeSizer(ComponentAdapterRegistry adapters) {
         this.adapters = Objects.requireNonNull(adapters);
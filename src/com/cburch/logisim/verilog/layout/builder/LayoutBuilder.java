@@ -175,13 +175,15 @@ public final class LayoutBuilder {
         // --- 3) Aristas agrupadas por bus (src,dst,baseLabel) ---
         Map<PairKey, SortedSet<Integer>> busGroups = new HashMap<>();
 
-        for (int netId : netIdx.netIds()) {
-            List<Integer> refs = netIdx.endpointsOf(netId);
-            if (refs == null || refs.size() < 2) continue;
+        for (int net = 0; net < netIdx.netCount(); net++) {
+            int netId = netIdx.netId(net);
+            int from = netIdx.refStart(net), to = netIdx.refEnd(net);
+            if (to - from < 2) continue;
 
             // Resolvemos cada endpoint a (nodo ELK, nombre de puerto, bit)
-            List<RefInfo> infos = new ArrayList<>(refs.size());
-            for (int ref : refs) {
+            List<RefInfo> infos = new ArrayList<>(to - from);
+            for (int k = from; k < to; k++) {
+                long ref = netIdx.ref(k);
                 int bit = ModuleNetIndex.bitIdx(ref);
 
                 if (ModuleNetIndex.isTop(ref)) {
@@ -9,6 +9,7 @@ import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.LogisimFile;
 import com.cburch.logisim.instance.*;
 import com.cburch.logisim.proj.Project;
@@ -51,6 +52,12 @@ public final class BinaryOpAdapter extends AbstractComponentAdapter
             return fallback.create(proj, circ, g, cell, where);
         }
 
+        // Anchos > 32: solo las compuertas bit a bit soportan valores anchos
+        if (guessBinaryWidth(cell.params()) > Value.MAX_WIDTH
+                && op.category() != BinaryOp.Category.BITWISE) {
+            return fallback.create(proj, circ, g, cell, where);
+        }
+
         // ¿hay receta macro? -> compón en el circuito destino (no el del canvas)
         InstanceHandle composed = tryComposeWithMacroOrNull(proj, circ, g, cell, where, registry);
         if (composed != null) return composed;
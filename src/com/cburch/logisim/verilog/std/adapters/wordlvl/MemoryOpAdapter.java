@@ -6,6 +6,7 @@ import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.*;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.tools.Library;
@@ -127,8 +128,8 @@ public final class MemoryOpAdapter extends AbstractComponentAdapter
             return new InstanceHandle(null, null);
         }
 
-        // Chequeo de forma soportada (1R/(0|1)W)
-        if (!supportsMemV2Shape(p)) {
+        // Chequeo de forma soportada (1R/(0|1)W, palabras de hasta 32 bits)
+        if (!supportsMemV2Shape(p) || p.width() > Value.MAX_WIDTH) {
             return fallback.create(proj, circ, g, cell, where);
         }
 
@@ -64,6 +64,10 @@ public final class RegisterOpAdapter extends AbstractComponentAdapter
         final String typeId = cell.type().typeId().toLowerCase(java.util.Locale.ROOT);
 
         final int width = Math.max(1, guessWidth(params));
+        if (width > Value.MAX_WIDTH) {
+            // Register guarda su contenido en un int
+            return fallback.create(proj, circ, g, cell, where);
+        }
 
         // ¿Es latch?
         final boolean isLatch =
@@ -7,6 +7,7 @@ import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.*;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.tools.Library;
@@ -30,6 +31,8 @@ import java.util.Map;
  * Crea NOT/BUF/NEG/POS nativos de Logisim con ancho de bus.
  * Para otras unarias genera una composicion de componentes
  * o delega al módulo (caja negra).
+ * Sobre {@link Value#MAX_WIDTH} bits solo NOT/BUF/POS quedan nativos
+ * (operan bit a bit sobre valores anchos); el resto va a la caja negra.
  */
 public final class UnaryOpAdapter extends AbstractComponentAdapter
         implements SupportsFactoryLookup {
@@ -50,6 +53,11 @@ public final class UnaryOpAdapter extends AbstractComponentAdapter
     public InstanceHandle create(Project proj, Circuit circ, Graphics g, VerilogCell cell, Location where) {
         UnaryOp op = UnaryOp.fromYosys(cell.type().typeId());
         try {
+            // 0) Anchos > 32: solo componentes bit a bit soportan valores anchos
+            if (guessUnaryWidth(cell.params()) > Value.MAX_WIDTH && !supportsWide(op)) {
+                return fallback.create(proj, circ, g, cell, where);
+            }
+
             // 1) Receta compuesta (si existe)
             InstanceHandle composed = tryComposeWithMacroOrNull(proj, circ, g, cell, where, registry);
             if (composed != null) return composed;
@@ -93,6 +101,12 @@ public final class UnaryOpAdapter extends AbstractComponentAdapter
         return lf == null ? null : lf.factory();
     }
 
+    /** Indica si el componente nativo de la operación trabaja con anchos
+     *  mayores a {@link Value#MAX_WIDTH}. */
+    private static boolean supportsWide(UnaryOp op) {
+        return op == UnaryOp.BUF || op == UnaryOp.NOT || op == UnaryOp.POS;
+    }
+
     /** Mapea BUF/NOT/LOGIC_NOT/NEG/POS a factories nativas y devuelve (lib,factory). */
     private static LibFactory pickFactory(Project proj, UnaryOp op) {
         switch (op.category()) {